@@ -0,0 +1,346 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class AstFile {
+
+    /*
+    A parsed program in a file, to be parsed once and read by any number of processes
+    afterwards. The file is the FlatAst as it is, so writing is a copy of its arrays
+    and reading maps the file and answers the same accessors straight from the
+    mapping: opening costs the header, whatever the size of the program. Nodes are
+    read when asked for, strings are decoded the first time they are needed, and
+    statements() turns a statement into objects only when it's touched.
+
+    File layout, all big endian like the token cache:
+        header      MAGIC, VERSION, node count, double count, string count,
+                    the root, declarations and sequence nodes,
+                    offset of the doubles, offset of the strings
+        nodes       NODE_SIZE bytes each: kind, child (or a leaf's value), next sibling,
+                    as in FlatAst
+        doubles     the raw bits of every double constant
+        strings     an offset per string, then the strings, each as a length and UTF-8 bytes
+
+    The operators, types and read operations are stored as their enum ordinals, so the
+    VERSION goes up whenever FlatAst, Operator or TokenCode change. The objects made
+    from a file have no tokens (first, last), like the tokens of a TokenCache have no spans.
+
+    Usage: java AstFile program.txt program.ast
+     */
+
+    private static final int MAGIC = 0x41535442;  // "ASTB"
+    private static final int VERSION = 1;  // bump when the layout, FlatAst or the enums change
+    private static final int HEADER_SIZE = 10 * 4;
+    private static final int NODE_SIZE = 3 * 4;
+    private static final TokenCode[] CODES = TokenCode.values();
+    private static final Operator[] OPERATORS = Operator.values();
+
+    public static void main(String[] args) throws IOException {
+        Scanner scanner = new Scanner(Scanner.map(Path.of(args[0])));
+        Parser parser = new Parser(scanner);
+        FlatAst ast = FlatAst.parse(parser);
+        write(ast, Path.of(args[1]));
+        System.out.printf("%d nodes written to %s, %d errors%n", ast.size(), args[1], parser.getErrors());
+    }
+
+    public static void write(Program program, Path file) throws IOException {
+        write(FlatAst.of(program), file);
+    }
+
+    public static void write(FlatAst ast, Path file) throws IOException {
+        // next to file first and then moved there, so readers never see half a file
+        byte[][] strings = new byte[ast.stringCount][];
+        int stringsSize = ast.stringCount * 4;
+        for (int i = 0; i < ast.stringCount; i++) {
+            strings[i] = ast.strings[i].getBytes(StandardCharsets.UTF_8);
+            stringsSize += 4 + strings[i].length;
+        }
+        int doublesOffset = HEADER_SIZE + ast.size * NODE_SIZE;
+        int stringsOffset = doublesOffset + ast.doubleCount * 8;
+
+        Path directory = file.toAbsolutePath().getParent();
+        Path temporary = Files.createTempFile(directory, "ast", ".tmp");
+        try (OutputStream stream = Files.newOutputStream(temporary);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(ast.size);
+            out.writeInt(ast.doubleCount);
+            out.writeInt(ast.stringCount);
+            out.writeInt(ast.root);
+            out.writeInt(ast.declarations);
+            out.writeInt(ast.sequence);
+            out.writeInt(doublesOffset);
+            out.writeInt(stringsOffset);
+            for (int node = 0; node < ast.size; node++) {
+                out.writeInt(ast.kinds[node]);
+                out.writeInt(ast.children[node]);
+                out.writeInt(ast.next[node]);
+            }
+            for (int i = 0; i < ast.doubleCount; i++) {
+                out.writeLong(ast.doubles[i]);
+            }
+            int offset = stringsOffset + ast.stringCount * 4;
+            for (byte[] string : strings) {
+                out.writeInt(offset);
+                offset += 4 + string.length;
+            }
+            for (byte[] string : strings) {
+                out.writeInt(string.length);
+                out.write(string);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static AstFile open(Path file) throws IOException {
+        ByteBuffer data;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (data.limit() < HEADER_SIZE || data.getInt(0) != MAGIC) {
+            throw new IOException(file + " is not an AST file");
+        }
+        if (data.getInt(4) != VERSION) {
+            throw new IOException(file + " has version " + data.getInt(4) + " of the AST format, this is version " + VERSION);
+        }
+        return new AstFile(data);
+    }
+
+    private final ByteBuffer data;
+    private final int size;
+    private final int root;
+    private final int declarations;
+    private final int sequence;
+    private final int doublesOffset;
+    private final int stringsOffset;
+    private final String[] strings;  // decoded when a node first needs them
+
+    private AstFile(ByteBuffer data) {
+        this.data = data;
+        this.size = data.getInt(8);
+        this.strings = new String[data.getInt(16)];
+        this.root = data.getInt(20);
+        this.declarations = data.getInt(24);
+        this.sequence = data.getInt(28);
+        this.doublesOffset = data.getInt(32);
+        this.stringsOffset = data.getInt(36);
+    }
+
+    //------------------- Reading, the same as FlatAst ----------------------
+
+    public int root() {
+        return this.root;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    private int rawKind(int node) {
+        return this.data.getInt(HEADER_SIZE + node * NODE_SIZE);
+    }
+
+    private int rawChild(int node) {
+        return this.data.getInt(HEADER_SIZE + node * NODE_SIZE + 4);
+    }
+
+    public int kind(int node) {
+        return this.rawKind(node) & 0xFF;
+    }
+
+    public Operator operator(int node) {
+        return OPERATORS[this.rawKind(node) >>> 8];
+    }
+
+    public String type(int node) {
+        int type = this.rawKind(node) >>> 8;
+        return type == FlatAst.NO_TYPE ? "Non existent variable type" : CODES[type].toString();
+    }
+
+    public int firstChild(int node) {
+        return FlatAst.isLeaf(this.kind(node)) ? -1 : this.rawChild(node);
+    }
+
+    public int nextSibling(int node) {
+        return this.data.getInt(HEADER_SIZE + node * NODE_SIZE + 8);
+    }
+
+    public int intValue(int node) {
+        return this.rawChild(node);
+    }
+
+    public boolean boolValue(int node) {
+        return this.rawChild(node) != 0;
+    }
+
+    public double doubleValue(int node) {
+        return Double.longBitsToDouble(this.data.getLong(this.doublesOffset + this.rawChild(node) * 8));
+    }
+
+    public String string(int node) {
+        int index = this.rawChild(node);
+        if (index < 0) {
+            return null;
+        }
+        if (this.strings[index] == null) {
+            int offset = this.data.getInt(this.stringsOffset + index * 4);
+            byte[] bytes = new byte[this.data.getInt(offset)];
+            this.data.get(offset + 4, bytes);
+            this.strings[index] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return this.strings[index];
+    }
+
+    public TokenCode readOperation(int node) {
+        return CODES[this.rawChild(node)];
+    }
+
+    //------------------- Decoding into objects ----------------------
+
+    public Program program() {
+        // the whole program as objects
+        return (Program) this.decode(this.root);
+    }
+
+    @SuppressWarnings("unchecked")
+    public ArrayList<Declaration> declarations() {
+        return (ArrayList<Declaration>) this.decode(this.declarations);
+    }
+
+    public List<Statement> statements() {
+        // the statements of the main command sequence, each made the first time it's asked for
+        int count = 0;
+        for (int node = this.firstChild(this.sequence); node >= 0; node = this.nextSibling(node)) {
+            count++;
+        }
+        int[] nodes = new int[count];
+        int i = 0;
+        for (int node = this.firstChild(this.sequence); node >= 0; node = this.nextSibling(node)) {
+            nodes[i++] = node;
+        }
+        Statement[] decoded = new Statement[count];
+        return new AbstractList<>() {
+            @Override
+            public Statement get(int index) {
+                if (decoded[index] == null) {
+                    decoded[index] = (Statement) AstFile.this.decode(nodes[index]);  // a NULL node decodes again, to null
+                }
+                return decoded[index];
+            }
+
+            @Override
+            public int size() {
+                return nodes.length;
+            }
+        };
+    }
+
+    public Object decode(int start) {
+        /*
+        The objects of the subtree at start: a Program, a CommandSequence, a Statement,
+        the list of the declarations, null for a NULL node. Without recursion: a node
+        is visited once to put its children on the stack and once more, after all of
+        them are made, to make it from the last of the made values.
+         */
+        int[] nodes = new int[16];
+        boolean[] visited = new boolean[16];
+        int depth = 1;
+        nodes[0] = start;
+        ArrayList<Object> values = new ArrayList<>();
+        while (depth > 0) {
+            int node = nodes[depth - 1];
+            int count = 0;
+            for (int child = this.firstChild(node); child >= 0; child = this.nextSibling(child)) {
+                count++;
+            }
+            if (!visited[depth - 1] && count > 0) {
+                visited[depth - 1] = true;
+                if (depth + count > nodes.length) {
+                    nodes = Arrays.copyOf(nodes, (depth + count) * 2);
+                    visited = Arrays.copyOf(visited, (depth + count) * 2);
+                }
+                int i = depth + count - 1;  // reversed, so the first child is made first
+                for (int child = this.firstChild(node); child >= 0; child = this.nextSibling(child)) {
+                    nodes[i] = child;
+                    visited[i--] = false;
+                }
+                depth += count;
+                continue;
+            }
+            depth--;
+            List<Object> made = values.subList(values.size() - count, values.size());
+            Object value = this.make(node, made);
+            made.clear();
+            values.add(value);
+        }
+        return values.get(0);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object make(int node, List<Object> children) {
+        // the object of a node from the objects of its children
+        return switch (this.kind(node)) {
+            case FlatAst.PROGRAM -> new Program((ArrayList<Declaration>) children.get(0), (CommandSequence) children.get(1));
+            case FlatAst.DECLARATIONS -> {
+                ArrayList<Declaration> declarations = new ArrayList<>();
+                for (Object declaration : children) {
+                    declarations.add((Declaration) declaration);
+                }
+                yield declarations;
+            }
+            case FlatAst.DECLARATION -> new Declaration(this.type(node), this.string(node));
+            case FlatAst.SEQUENCE -> {
+                ArrayList<Statement> statements = new ArrayList<>();
+                for (Object statement : children) {
+                    statements.add((Statement) statement);
+                }
+                yield new CommandSequence(statements);
+            }
+            case FlatAst.IF -> new StatementIf((Expression) children.get(0), (CommandSequence) children.get(1),
+                    (StatementEndIf) children.get(2));
+            case FlatAst.END_IF -> new StatementEndIf(children.isEmpty() ? null : (CommandSequence) children.get(0));
+            case FlatAst.WHILE -> new StatementWhile((Expression) children.get(0), (CommandSequence) children.get(1));
+            case FlatAst.FOR -> new StatementFor((ExpressionAssign) children.get(0), (Expression) children.get(1),
+                    (ExpressionAssign) children.get(2), (CommandSequence) children.get(3));
+            case FlatAst.BREAK -> new StatementBreak();
+            case FlatAst.PRINT -> new StatementPrint((Expression) children.get(0));
+            case FlatAst.REPEAT -> new StatementRepeat((CommandSequence) children.get(0), (Expression) children.get(1));
+            case FlatAst.CALC -> {
+                ArrayList<Expression> expressions = new ArrayList<>();
+                for (Object expression : children) {
+                    expressions.add((Expression) expression);
+                }
+                yield new StatementCalc(expressions);
+            }
+            case FlatAst.ASSIGN -> new ExpressionAssign(((ExpressionIdentifier) children.get(0)).name,
+                    (Expression) children.get(1), (ExpressionAssignEnd) children.get(2));
+            case FlatAst.ASSIGN_END -> new ExpressionAssignEnd((Expression) children.get(0), (Expression) children.get(1));
+            case FlatAst.BINARY -> new ExpressionBinary(this.operator(node), (Expression) children.get(0),
+                    (Expression) children.get(1));
+            case FlatAst.UNARY -> new ExpressionUnary(this.operator(node), (Expression) children.get(0));
+            case FlatAst.INT_CONSTANT -> new IntConst(this.intValue(node));
+            case FlatAst.DOUBLE_CONSTANT -> new DoubleConst(this.doubleValue(node));
+            case FlatAst.BOOL_CONSTANT -> new BoolConst(this.boolValue(node));
+            case FlatAst.STRING_CONSTANT -> new StringConst(this.string(node));
+            case FlatAst.IDENTIFIER -> new ExpressionIdentifier(this.string(node));
+            case FlatAst.READ -> new ExpressionRead(this.readOperation(node));
+            default -> null;  // NULL
+        };
+    }
+}
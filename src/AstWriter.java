@@ -0,0 +1,584 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+public class AstWriter {
+
+    /*
+    Writes the tree of a program in one of three formats:
+        TEXT    the layout of Parser.printProgram, line for line
+        JSON    compact JSON, an object per node with its kind (the StatementKind name)
+                and its parts by name, arrays for the command sequences
+        SEXP    an S-expression, (program (declarations ...) (commands ...)), the
+                operators as their symbols, nil where the tree has nothing
+
+    printProgram prints every line with its own println on a PrintStream and builds
+    the tabs again for every line. Here the output goes into a char buffer that is
+    given to the Writer BUFFER_SIZE chars at a time, the tabs are copied from an
+    array of tabs, and the tree is walked with a stack of its own, so a deep
+    expression doesn't run out of Java stack. JSON and SEXP are written on one
+    line, ended by a newline.
+
+    Nothing is written to the Writer before flush() or close(), or before the buffer
+    is full. An AstWriter can write any number of programs, one after the other.
+
+    Usage: java AstWriter [-text | -json | -sexp] (program.txt | program.ast)
+     */
+
+    public enum Format { TEXT, JSON, SEXP }
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Writer out;
+    private final Format format;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int length;
+    private char[] tabs = new char[64];  // only tabs, as many as the deepest line so far
+
+    // what is left to write: a String is written as it is (a line of its own for TEXT),
+    // anything else is a node that is written at its depth
+    private Object[] items = new Object[64];
+    private int[] depths = new int[64];
+    private int top;
+    // the parts of the node being written, in order, pushed reversed when it's done
+    private Object[] parts = new Object[16];
+    private int[] partDepths = new int[16];
+    private int partCount;
+
+    public AstWriter(Writer out, Format format) {
+        this.out = out;
+        this.format = format;
+    }
+
+    public AstWriter(OutputStream out, Format format) {
+        this(new OutputStreamWriter(out, StandardCharsets.UTF_8), format);
+    }
+
+    public static void main(String[] args) throws IOException {
+        // only the tree goes to stdout, the errors and the usage to stderr
+        Format format = Format.TEXT;
+        if (args.length == 0) {
+            System.err.println("Usage: java AstWriter [-text | -json | -sexp] (program.txt | program.ast)");
+            System.exit(2);
+        }
+        String path = args[args.length - 1];
+        for (int i = 0; i < args.length - 1; i++) {
+            switch (args[i]) {
+                case "-text" -> format = Format.TEXT;
+                case "-json" -> format = Format.JSON;
+                case "-sexp" -> format = Format.SEXP;
+                default -> {
+                    System.err.println("-- unknown option " + args[i]);
+                    System.exit(2);
+                }
+            }
+        }
+        Program program;
+        if (path.endsWith(".ast")) {
+            program = AstFile.open(Path.of(path)).program();
+        }
+        else {
+            Scanner scanner = new Scanner(Scanner.map(Path.of(path)));
+            scanner.setDiagnostics(System.err::println);
+            Parser parser = new Parser(scanner);
+            parser.setDiagnostics(System.err::println);
+            program = parser.parse();
+        }
+        AstWriter writer = new AstWriter(System.out, format);
+        writer.write(program);
+        writer.flush();
+    }
+
+    public void write(Program program) throws IOException {
+        this.push(program, 0);
+        this.run();
+        if (this.format != Format.TEXT) {
+            this.append("\n");
+        }
+    }
+
+    public void flush() throws IOException {
+        this.out.write(this.buffer, 0, this.length);
+        this.length = 0;
+        this.out.flush();
+    }
+
+    public void close() throws IOException {
+        this.flush();
+        this.out.close();
+    }
+
+    private void run() throws IOException {
+        while (this.top > 0) {
+            Object item = this.items[--this.top];
+            int depth = this.depths[this.top];
+            this.items[this.top] = null;
+            if (item instanceof String text) {
+                if (this.format == Format.TEXT) {
+                    this.appendTabs(depth);
+                    this.append(text);
+                    this.append("\n");
+                }
+                else {
+                    this.append(text);
+                }
+                continue;
+            }
+            switch (this.format) {
+                case TEXT -> this.text(item, depth);
+                case JSON -> this.json(item);
+                case SEXP -> this.sexp(item);
+            }
+            for (int i = this.partCount - 1; i >= 0; i--) {
+                this.push(this.parts[i], this.partDepths[i]);
+                this.parts[i] = null;
+            }
+            this.partCount = 0;
+        }
+    }
+
+    //------------------- TEXT ----------------------
+
+    private void text(Object item, int depth) {
+        /*
+        The depths are the numTabs of printProgram, but for a command sequence,
+        which is at the depth of its "COMMANDS:" line, one less than its statements.
+         */
+        if (item instanceof Program program) {
+            this.part("", 0);
+            this.part("DECLARATIONS", 0);
+            this.part("", 0);
+            for (Declaration declaration : program.declarations) {
+                if (declaration != null) {
+                    this.part("Type: " + declaration.type + ", Name: " + declaration.identifier, 1);
+                }
+            }
+            this.part("", 0);
+            this.part(program.commandSequence, 0);
+            return;
+        }
+        if (item instanceof CommandSequence commandSequence) {
+            this.part("COMMANDS:", depth);
+            for (Statement statement : commandSequence.statements) {
+                if (statement == null) {
+                    this.part("NULL STATEMENT", depth + 1);
+                }
+                else if (printed(statement.kind)) {
+                    this.part(statement, depth + 1);
+                }
+            }
+            return;
+        }
+        Statement statement = (Statement) item;
+        switch (statement.kind) {
+            case IF_STATEMENT -> {
+                StatementIf ifStatement = (StatementIf) statement;
+                this.part(statement.kind.toString(), depth);
+                this.part("CONDITION:", depth + 1);
+                this.textExpression(ifStatement.expression, depth + 2);
+                this.part(ifStatement.commandSequence, depth + 1);
+                this.part(ifStatement.endIfStatement != null ? ifStatement.endIfStatement : "NULL END IF STATEMENT", depth);
+            }
+            case END_IF_STATEMENT -> {
+                StatementEndIf endIfStatement = (StatementEndIf) statement;
+                if (endIfStatement.commandSequence != null) {
+                    this.part("ELSE statement", depth);
+                    this.part(endIfStatement.commandSequence, depth + 1);
+                }
+                else {
+                    this.part("END IF", depth);
+                }
+            }
+            case WHILE_STATEMENT -> {
+                StatementWhile whileStatement = (StatementWhile) statement;
+                this.part(statement.kind.toString(), depth);
+                this.part("CONDITION:", depth + 1);
+                this.textExpression(whileStatement.expression, depth + 2);
+                this.part(whileStatement.commandSequence, depth + 1);
+            }
+            case FOR_STATEMENT -> {
+                StatementFor forStatement = (StatementFor) statement;
+                this.part(statement.kind.toString(), depth);
+                this.part(forStatement.first != null ? forStatement.first : "NULL STATEMENT", depth + 1);
+                this.part("EXPRESSION:", depth + 1);
+                this.textExpression(forStatement.expression, depth + 2);
+                this.part(forStatement.second != null ? forStatement.second : "NULL STATEMENT", depth + 1);
+                this.part(forStatement.commandSequence, depth + 1);
+            }
+            case BREAK_STATEMENT -> this.part(statement.kind.toString(), depth);
+            case PRINT_STATEMENT -> {
+                this.part(statement.kind.toString(), depth);
+                this.part("EXPRESSION:", depth + 1);
+                this.textExpression(((StatementPrint) statement).expression, depth + 2);
+            }
+            case REPEAT_STATEMENT -> {
+                StatementRepeat repeatStatement = (StatementRepeat) statement;
+                this.part(statement.kind.toString(), depth);
+                this.part(repeatStatement.commandSequence, depth + 1);
+                this.part("UNTIL:", depth + 1);
+                this.textExpression(repeatStatement.expression, depth + 2);
+            }
+            case CALC_STATEMENT -> {
+                this.part(statement.kind.toString(), depth);
+                for (Expression expression : ((StatementCalc) statement).expressions) {
+                    this.textExpression(expression, depth + 1);
+                }
+            }
+            case ASSIGN_EXPR -> {
+                ExpressionAssign assign = (ExpressionAssign) statement;
+                this.part(statement.kind.toString(), depth);
+                this.part("IDENTIFIER: " + assign.identifier, depth + 1);
+                this.part("EXPRESSION:", depth + 1);
+                this.textExpression(assign.expression, depth + 2);
+                this.part("END:", depth + 1);
+                this.part(assign.end != null ? assign.end : "IMMEDIATE ASSIGN EXPR END", depth + 1);
+            }
+            case ASSIGN_EXPR_END -> {
+                ExpressionAssignEnd end = (ExpressionAssignEnd) statement;
+                this.part("FIRST EXPR:", depth + 1);
+                this.textExpression(end.first, depth + 2);
+                this.part("SECOND EXPR:", depth + 1);
+                this.textExpression(end.second, depth + 2);
+            }
+            case BINARY_EXPR -> {
+                ExpressionBinary binary = (ExpressionBinary) statement;
+                this.part(statement.kind.toString(), depth);
+                this.part("LEFT OPERAND:", depth + 1);
+                this.textExpression(binary.left, depth + 2);
+                this.part("OPERATOR: " + binary.operator, depth + 1);
+                this.part("RIGHT OPERAND:", depth + 1);
+                this.textExpression(binary.right, depth + 2);
+            }
+            case UNARY_EXPR -> {
+                ExpressionUnary unary = (ExpressionUnary) statement;
+                this.part(statement.kind.toString(), depth);
+                this.part("OPERATOR: " + unary.operator, depth + 1);
+                this.part("EXPRESSION:", depth + 1);
+                this.textExpression(unary.operand, depth + 2);
+            }
+            case INT_CONSTANT -> this.part(statement.kind + ": " + ((IntConst) statement).value, depth);
+            case DOUBLE_CONSTANT -> this.part(statement.kind + ": " + ((DoubleConst) statement).value, depth);
+            case BOOL_CONSTANT -> this.part(statement.kind + ": " + ((BoolConst) statement).value, depth);
+            case STRING_CONSTANT -> this.part(statement.kind + ": " + ((StringConst) statement).value, depth);
+            case IDENTIFIER -> this.part(statement.kind + ": " + ((ExpressionIdentifier) statement).name, depth);
+            case READ_OPERATION -> this.part(statement.kind + ": " + ((ExpressionRead) statement).operation, depth);
+        }
+    }
+
+    private void textExpression(Expression expression, int depth) {
+        this.part(expression != null ? expression : "NULL EXPRESSION", depth);
+    }
+
+    private static boolean printed(StatementKind kind) {
+        // the statements printProgram prints in a command sequence, it skips the others
+        return switch (kind) {
+            case IF_STATEMENT, WHILE_STATEMENT, FOR_STATEMENT, BREAK_STATEMENT, PRINT_STATEMENT,
+                 REPEAT_STATEMENT, CALC_STATEMENT, ASSIGN_EXPR, BINARY_EXPR, UNARY_EXPR -> true;
+            default -> false;
+        };
+    }
+
+    //------------------- JSON ----------------------
+
+    private void json(Object item) {
+        if (item instanceof Program program) {
+            StringBuilder declarations = new StringBuilder("{\"declarations\":[");
+            String separator = "";
+            for (Declaration declaration : program.declarations) {
+                if (declaration != null) {
+                    declarations.append(separator).append("{\"type\":").append(quote(declaration.type))
+                            .append(",\"name\":").append(quote(declaration.identifier)).append('}');
+                    separator = ",";
+                }
+            }
+            this.part(declarations.append("],\"commands\":").toString(), 0);
+            this.jsonNode(program.commandSequence);
+            this.part("}", 0);
+            return;
+        }
+        if (item instanceof CommandSequence commandSequence) {
+            this.part("[", 0);
+            String separator = "";
+            for (Statement statement : commandSequence.statements) {
+                this.part(separator, 0);
+                this.jsonNode(statement);
+                separator = ",";
+            }
+            this.part("]", 0);
+            return;
+        }
+        Statement statement = (Statement) item;
+        this.part("{\"kind\":\"" + statement.kind.name() + "\"", 0);
+        switch (statement.kind) {
+            case IF_STATEMENT -> {
+                StatementIf ifStatement = (StatementIf) statement;
+                this.jsonField("condition", ifStatement.expression);
+                this.jsonField("commands", ifStatement.commandSequence);
+                this.jsonField("end", ifStatement.endIfStatement);
+            }
+            case END_IF_STATEMENT -> this.jsonField("else", ((StatementEndIf) statement).commandSequence);
+            case WHILE_STATEMENT -> {
+                StatementWhile whileStatement = (StatementWhile) statement;
+                this.jsonField("condition", whileStatement.expression);
+                this.jsonField("commands", whileStatement.commandSequence);
+            }
+            case FOR_STATEMENT -> {
+                StatementFor forStatement = (StatementFor) statement;
+                this.jsonField("first", forStatement.first);
+                this.jsonField("condition", forStatement.expression);
+                this.jsonField("second", forStatement.second);
+                this.jsonField("commands", forStatement.commandSequence);
+            }
+            case BREAK_STATEMENT -> { }
+            case PRINT_STATEMENT -> this.jsonField("expression", ((StatementPrint) statement).expression);
+            case REPEAT_STATEMENT -> {
+                StatementRepeat repeatStatement = (StatementRepeat) statement;
+                this.jsonField("commands", repeatStatement.commandSequence);
+                this.jsonField("until", repeatStatement.expression);
+            }
+            case CALC_STATEMENT -> {
+                this.part(",\"expressions\":[", 0);
+                String separator = "";
+                for (Expression expression : ((StatementCalc) statement).expressions) {
+                    this.part(separator, 0);
+                    this.jsonNode(expression);
+                    separator = ",";
+                }
+                this.part("]", 0);
+            }
+            case ASSIGN_EXPR -> {
+                ExpressionAssign assign = (ExpressionAssign) statement;
+                this.part(",\"identifier\":" + quote(assign.identifier), 0);
+                this.jsonField("expression", assign.expression);
+                this.jsonField("end", assign.end);
+            }
+            case ASSIGN_EXPR_END -> {
+                ExpressionAssignEnd end = (ExpressionAssignEnd) statement;
+                this.jsonField("first", end.first);
+                this.jsonField("second", end.second);
+            }
+            case BINARY_EXPR -> {
+                ExpressionBinary binary = (ExpressionBinary) statement;
+                this.part(",\"operator\":" + quote(binary.operator.toString()), 0);
+                this.jsonField("left", binary.left);
+                this.jsonField("right", binary.right);
+            }
+            case UNARY_EXPR -> {
+                ExpressionUnary unary = (ExpressionUnary) statement;
+                this.part(",\"operator\":" + quote(unary.operator.toString()), 0);
+                this.jsonField("operand", unary.operand);
+            }
+            case INT_CONSTANT -> this.part(",\"value\":" + ((IntConst) statement).value, 0);
+            case DOUBLE_CONSTANT -> {
+                double value = ((DoubleConst) statement).value;
+                // JSON has no NaN or infinities, those are written as strings
+                this.part(",\"value\":" + (Double.isFinite(value) ? String.valueOf(value) : quote(String.valueOf(value))), 0);
+            }
+            case BOOL_CONSTANT -> this.part(",\"value\":" + ((BoolConst) statement).value, 0);
+            case STRING_CONSTANT -> this.part(",\"value\":" + quote(((StringConst) statement).value), 0);
+            case IDENTIFIER -> this.part(",\"name\":" + quote(((ExpressionIdentifier) statement).name), 0);
+            case READ_OPERATION -> this.part(",\"operation\":" + quote(((ExpressionRead) statement).operation.toString()), 0);
+        }
+        this.part("}", 0);
+    }
+
+    private void jsonField(String name, Object node) {
+        this.part(",\"" + name + "\":", 0);
+        this.jsonNode(node);
+    }
+
+    private void jsonNode(Object node) {
+        this.part(node != null ? node : "null", 0);
+    }
+
+    //------------------- SEXP ----------------------
+
+    private void sexp(Object item) {
+        if (item instanceof Program program) {
+            StringBuilder declarations = new StringBuilder("(program (declarations");
+            for (Declaration declaration : program.declarations) {
+                if (declaration != null) {
+                    declarations.append(" (").append(atom(declaration.type)).append(' ')
+                            .append(atom(declaration.identifier)).append(')');
+                }
+            }
+            this.part(declarations.append(") ").toString(), 0);
+            this.sexpNode(program.commandSequence);
+            this.part(")", 0);
+            return;
+        }
+        if (item instanceof CommandSequence commandSequence) {
+            this.part("(commands", 0);
+            for (Statement statement : commandSequence.statements) {
+                this.part(" ", 0);
+                this.sexpNode(statement);
+            }
+            this.part(")", 0);
+            return;
+        }
+        Statement statement = (Statement) item;
+        switch (statement.kind) {
+            case IF_STATEMENT -> {
+                StatementIf ifStatement = (StatementIf) statement;
+                this.sexpList("if", ifStatement.expression, ifStatement.commandSequence, ifStatement.endIfStatement);
+            }
+            case END_IF_STATEMENT -> {
+                CommandSequence commandSequence = ((StatementEndIf) statement).commandSequence;
+                if (commandSequence != null) {
+                    this.sexpList("else", commandSequence);
+                }
+                else {
+                    this.part("(end-if)", 0);
+                }
+            }
+            case WHILE_STATEMENT -> {
+                StatementWhile whileStatement = (StatementWhile) statement;
+                this.sexpList("while", whileStatement.expression, whileStatement.commandSequence);
+            }
+            case FOR_STATEMENT -> {
+                StatementFor forStatement = (StatementFor) statement;
+                this.sexpList("for", forStatement.first, forStatement.expression, forStatement.second,
+                        forStatement.commandSequence);
+            }
+            case BREAK_STATEMENT -> this.part("(break)", 0);
+            case PRINT_STATEMENT -> this.sexpList("print", ((StatementPrint) statement).expression);
+            case REPEAT_STATEMENT -> {
+                StatementRepeat repeatStatement = (StatementRepeat) statement;
+                this.sexpList("repeat", repeatStatement.commandSequence, repeatStatement.expression);
+            }
+            case CALC_STATEMENT -> this.sexpList("calc", ((StatementCalc) statement).expressions.toArray());
+            case ASSIGN_EXPR -> {
+                ExpressionAssign assign = (ExpressionAssign) statement;
+                this.sexpList("assign " + atom(assign.identifier), assign.expression, assign.end);
+            }
+            case ASSIGN_EXPR_END -> {
+                ExpressionAssignEnd end = (ExpressionAssignEnd) statement;
+                this.sexpList("?", end.first, end.second);
+            }
+            case BINARY_EXPR -> {
+                ExpressionBinary binary = (ExpressionBinary) statement;
+                this.sexpList(binary.operator.toString(), binary.left, binary.right);
+            }
+            case UNARY_EXPR -> {
+                ExpressionUnary unary = (ExpressionUnary) statement;
+                this.sexpList(unary.operator.toString(), unary.operand);
+            }
+            case INT_CONSTANT -> this.part(String.valueOf(((IntConst) statement).value), 0);
+            case DOUBLE_CONSTANT -> this.part(String.valueOf(((DoubleConst) statement).value), 0);
+            case BOOL_CONSTANT -> this.part(String.valueOf(((BoolConst) statement).value), 0);
+            case STRING_CONSTANT -> this.part(quote(((StringConst) statement).value), 0);
+            case IDENTIFIER -> this.part(atom(((ExpressionIdentifier) statement).name), 0);
+            case READ_OPERATION -> this.part("(read " + ((ExpressionRead) statement).operation + ")", 0);
+        }
+    }
+
+    private void sexpList(String head, Object... nodes) {
+        this.part("(" + head, 0);
+        for (Object node : nodes) {
+            this.part(" ", 0);
+            this.sexpNode(node);
+        }
+        this.part(")", 0);
+    }
+
+    private void sexpNode(Object node) {
+        this.part(node != null ? node : "nil", 0);
+    }
+
+    private static String atom(String name) {
+        // a name as it is if it can be a symbol, else quoted
+        if (name == null) {
+            return "nil";
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '_') {
+                return quote(name);
+            }
+        }
+        return name.isEmpty() ? "\"\"" : name;
+    }
+
+    //------------------- Auxiliary methods ----------------------
+
+    private static String quote(String string) {
+        // a string between double quotes, escaped like JSON wants it
+        if (string == null) {
+            return "null";
+        }
+        StringBuilder quoted = new StringBuilder(string.length() + 2).append('"');
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            switch (c) {
+                case '"' -> quoted.append("\\\"");
+                case '\\' -> quoted.append("\\\\");
+                case '\n' -> quoted.append("\\n");
+                case '\r' -> quoted.append("\\r");
+                case '\t' -> quoted.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        quoted.append(String.format("\\u%04x", (int) c));
+                    }
+                    else {
+                        quoted.append(c);
+                    }
+                }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    private void part(Object item, int depth) {
+        if (this.partCount == this.parts.length) {
+            this.parts = Arrays.copyOf(this.parts, this.partCount * 2);
+            this.partDepths = Arrays.copyOf(this.partDepths, this.partCount * 2);
+        }
+        this.parts[this.partCount] = item;
+        this.partDepths[this.partCount++] = depth;
+    }
+
+    private void push(Object item, int depth) {
+        if (this.top == this.items.length) {
+            this.items = Arrays.copyOf(this.items, this.top * 2);
+            this.depths = Arrays.copyOf(this.depths, this.top * 2);
+        }
+        this.items[this.top] = item;
+        this.depths[this.top++] = depth;
+    }
+
+    private void appendTabs(int depth) throws IOException {
+        if (depth > this.tabs.length) {
+            this.tabs = new char[Math.max(depth, this.tabs.length * 2)];
+        }
+        if (this.tabs[0] != '\t') {
+            Arrays.fill(this.tabs, '\t');
+        }
+        for (int offset = 0; offset < depth; ) {
+            int count = Math.min(depth - offset, this.buffer.length - this.length);
+            System.arraycopy(this.tabs, 0, this.buffer, this.length, count);
+            this.length += count;
+            offset += count;
+            if (this.length == this.buffer.length) {
+                this.out.write(this.buffer, 0, this.length);
+                this.length = 0;
+            }
+        }
+    }
+
+    private void append(String text) throws IOException {
+        for (int offset = 0; offset < text.length(); ) {
+            int count = Math.min(text.length() - offset, this.buffer.length - this.length);
+            text.getChars(offset, offset + count, this.buffer, this.length);
+            this.length += count;
+            offset += count;
+            if (this.length == this.buffer.length) {
+                this.out.write(this.buffer, 0, this.length);
+                this.length = 0;
+            }
+        }
+    }
+}
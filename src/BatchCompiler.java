@@ -0,0 +1,229 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+
+public class BatchCompiler {
+
+    /*
+    Scans and parses many source files in one JVM, for jobs that would otherwise
+    start java again for every file. Every file is its own Scanner + Parser, run as
+    a task in a fork-join pool with one thread per core. The files are not shared,
+    so the tasks never wait on each other and the throughput grows with the cores.
+
+    The calling thread does the reading: it maps the files in order and touches their
+    pages (MappedByteBuffer.load()) before it hands a file to the pool, so a parser
+    finds its source in memory and never blocks a pool thread on the disk. It stays
+    at most `prefetch` files ahead of the parsers, which keeps the memory bounded
+    for any number of files.
+
+    Every pool thread reuses its scanners and parsers (ParserPool), and the
+    statements are streamed away as they're parsed (Parser.parse(Consumer)),
+    nothing but the error counts and messages of a file is kept. The messages of a
+    file are collected and printed together in the report, in the order of the files.
+
+    With -cache, the tokens of every file come from a TokenCache in that directory:
+    a file whose bytes have been compiled before is parsed from its cached tokens
+    without scanning it, the others are scanned once into the cache. The errors are
+    the same either way. If the cache can't be used, the file is scanned as usual.
+
+    Usage: java BatchCompiler [-threads n] [-prefetch n] [-cache directory] [-quiet] (file | directory | @list)...
+    A directory stands for all the regular files under it, @list for the paths in
+    the file list, one per line. Exits with 1 when any of the files had errors, or
+    couldn't be read or compiled.
+     */
+
+    public static void main(String[] args) throws IOException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        int prefetch = -1;
+        boolean quiet = false;
+        TokenCache cache = null;
+        ArrayList<Path> files = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-threads" -> threads = Integer.parseInt(args[++i]);
+                case "-prefetch" -> prefetch = Integer.parseInt(args[++i]);
+                case "-cache" -> cache = new TokenCache(Path.of(args[++i]));
+                case "-quiet" -> quiet = true;
+                default -> files.addAll(expand(args[i]));
+            }
+        }
+        if (prefetch < 0) {
+            prefetch = 2 * threads;
+        }
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        long start = System.nanoTime();
+        List<Result> results = compile(files, pool, prefetch, cache);
+        long wall = System.nanoTime() - start;
+        pool.shutdown();
+        int errors = report(results, wall, threads, quiet);
+        System.exit(errors > 0 ? 1 : 0);
+    }
+
+    private static List<Path> expand(String argument) throws IOException {
+        // the files an argument stands for
+        if (argument.startsWith("@")) {
+            ArrayList<Path> files = new ArrayList<>();
+            for (String line : Files.readAllLines(Path.of(argument.substring(1)), StandardCharsets.UTF_8)) {
+                if (!line.isBlank()) {
+                    files.add(Path.of(line.strip()));
+                }
+            }
+            return files;
+        }
+        Path path = Path.of(argument);
+        if (Files.isDirectory(path)) {
+            try (Stream<Path> walk = Files.walk(path)) {
+                return walk.filter(Files::isRegularFile).sorted().toList();
+            }
+        }
+        return List.of(path);
+    }
+
+    static class Result {
+
+        final Path file;
+        int scanErrors;  // diagnostics of the scanner
+        int parseErrors;  // Parser.getErrors()
+        long bytes;
+        long readNanos;  // mapping and loading the source, on the reading thread
+        long parseNanos;  // scanning and parsing
+        Throwable failure;  // the file couldn't be read, or compiling it threw
+        final ArrayList<String> diagnostics = new ArrayList<>();
+
+        Result(Path file) {
+            this.file = file;
+        }
+
+        int errors() {
+            return this.scanErrors + this.parseErrors + (this.failure != null ? 1 : 0);
+        }
+    }
+
+    static List<Result> compile(List<Path> files, ForkJoinPool pool, int prefetch, TokenCache cache) {
+        // compile every file on pool, the results in the order of files; cache may be null
+        Semaphore ahead = new Semaphore(Math.max(1, prefetch));
+        ArrayList<CompletableFuture<Result>> tasks = new ArrayList<>();
+        try {
+            for (Path file : files) {
+                ahead.acquire();
+                Result result = new Result(file);
+                ByteBuffer source = read(result);
+                if (source == null) {
+                    ahead.release();
+                    tasks.add(CompletableFuture.completedFuture(result));
+                    continue;
+                }
+                tasks.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return compile(result, source, cache);
+                    } catch (RuntimeException | StackOverflowError e) {
+                        // a number too big for its type, say; the other files go on
+                        result.failure = e;
+                        result.diagnostics.add("-- cannot compile " + result.file + ": " + e);
+                        return result;
+                    } finally {
+                        ahead.release();
+                    }
+                }, pool));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while compiling", e);
+        }
+        ArrayList<Result> results = new ArrayList<>();
+        for (CompletableFuture<Result> task : tasks) {
+            results.add(task.join());
+        }
+        return results;
+    }
+
+    private static ByteBuffer read(Result result) {
+        // map the file and bring it into memory, or null if it can't be read
+        long start = System.nanoTime();
+        try {
+            ByteBuffer source = Scanner.map(result.file);
+            if (source instanceof MappedByteBuffer) {
+                ((MappedByteBuffer) source).load();
+            }
+            result.bytes = source.remaining();
+            return source;
+        } catch (IOException e) {
+            result.failure = e;
+            result.diagnostics.add("-- cannot open input file " + result.file + ": " + e);
+            return null;
+        } finally {
+            result.readNanos = System.nanoTime() - start;
+        }
+    }
+
+    private static Result compile(Result result, ByteBuffer source, TokenCache cache) {
+        long start = System.nanoTime();
+        if (cache != null) {
+            TokenSource tokens = null;
+            try {
+                tokens = cache.open(source, message -> {
+                    result.diagnostics.add(message);
+                    result.scanErrors++;
+                });
+            } catch (IOException e) {
+                result.diagnostics.add("-- token cache not used: " + e);
+            }
+            if (tokens != null) {
+                Parser parser = new Parser(tokens, result.diagnostics::add, new HashMap<>());
+                parser.parse(statement -> { });
+                result.parseErrors = parser.getErrors();
+                result.parseNanos = System.nanoTime() - start;
+                return result;
+            }
+        }
+        try (ParserPool.Lease lease = ParserPool.acquire(source, result.diagnostics::add)) {
+            lease.scanner.setDiagnostics(message -> {
+                result.diagnostics.add(message);
+                result.scanErrors++;
+            });
+            lease.parser.parse(statement -> { });
+            result.parseErrors = lease.parser.getErrors();
+        }
+        result.parseNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    private static int report(List<Result> results, long wall, int threads, boolean quiet) {
+        // print the results and the summary; the number of errors
+        int errors = 0;
+        int failed = 0;
+        long bytes = 0;
+        long parseNanos = 0;
+        long readNanos = 0;
+        for (Result result : results) {
+            if (!quiet) {
+                System.out.printf("%s: %d errors, %.3f ms%n", result.file, result.errors(), result.parseNanos / 1e6);
+                for (String message : result.diagnostics) {
+                    System.out.println("\t" + message);
+                }
+            }
+            errors += result.errors();
+            failed += result.errors() > 0 ? 1 : 0;
+            bytes += result.bytes;
+            parseNanos += result.parseNanos;
+            readNanos += result.readNanos;
+        }
+        double seconds = wall / 1e9;
+        System.out.printf("%d files, %d with errors, %d errors in total%n", results.size(), failed, errors);
+        System.out.printf("%.3f s on %d threads: %.0f files/s, %.1f MB/s%n",
+                seconds, threads, results.size() / seconds, bytes / seconds / 1e6);
+        System.out.printf("parsing %.3f s (summed over the threads), reading %.3f s%n",
+                parseNanos / 1e9, readNanos / 1e9);
+        return errors;
+    }
+}
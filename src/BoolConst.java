@@ -0,0 +1,14 @@
+public final class BoolConst extends Expression {
+
+    boolean value;
+
+    BoolConst(boolean value) {
+        super(StatementKind.BOOL_CONSTANT);
+        this.value = value;
+    }
+
+    @Override
+    <R> R accept(StatementVisitor<R> visitor) {
+        return visitor.visitBool(this);
+    }
+}
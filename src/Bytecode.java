@@ -0,0 +1,176 @@
+import java.io.PrintStream;
+
+public final class Bytecode {
+
+    /*
+    A program compiled by BytecodeCompiler for the VirtualMachine: the instructions
+    in one int[], every one an opcode and its operands, and the registers as they
+    are when the program starts.
+
+    There are three register files: int (integers and bools, 0 or 1), double and
+    String. Each starts with the variables, in the order of their Resolver slots
+    (the bools after the integers), then the constants of the program, put there
+    once instead of being loaded by instructions, then the temporaries. So a
+    variable or a constant in an expression is an operand and costs nothing.
+
+    Operand shapes, one letter per operand:
+        i   an int register       d   a double register       s   a String register
+        j   the index in code of the instruction to jump to
+    For the opcodes that WRITE, the first operand is the register written. The
+    compare-and-jump opcodes (ICMP_LT_JMP ...) jump when the compare is true.
+     */
+
+    static final int HALT = 0;
+    static final int JMP = 1;
+    static final int JMPT = 2;  // jump if the bool is true
+    static final int JMPF = 3;
+    static final int IMOV = 4;
+    static final int DMOV = 5;
+    static final int SMOV = 6;
+    static final int IADD = 7;
+    static final int ISUB = 8;
+    static final int IMUL = 9;
+    static final int IDIV = 10;
+    static final int IMOD = 11;
+    static final int INEG = 12;
+    static final int DADD = 13;
+    static final int DSUB = 14;
+    static final int DMUL = 15;
+    static final int DDIV = 16;
+    static final int DMOD = 17;
+    static final int DNEG = 18;
+    static final int I2D = 19;
+    static final int NOT = 20;
+    static final int ILT = 21;
+    static final int ILE = 22;
+    static final int IGT = 23;
+    static final int IGE = 24;
+    static final int IEQ = 25;
+    static final int INE = 26;
+    static final int DLT = 27;
+    static final int DLE = 28;
+    static final int DGT = 29;
+    static final int DGE = 30;
+    static final int DEQ = 31;
+    static final int DNE = 32;
+    static final int SEQ = 33;
+    static final int SNE = 34;
+    static final int SCONCAT = 35;
+    static final int I2S = 36;
+    static final int D2S = 37;
+    static final int B2S = 38;
+    static final int ICMP_LT_JMP = 39;
+    static final int ICMP_LE_JMP = 40;
+    static final int ICMP_GT_JMP = 41;
+    static final int ICMP_GE_JMP = 42;
+    static final int ICMP_EQ_JMP = 43;
+    static final int ICMP_NE_JMP = 44;
+    static final int DCMP_LT_JMP = 45;
+    static final int DCMP_LE_JMP = 46;
+    static final int DCMP_GT_JMP = 47;
+    static final int DCMP_GE_JMP = 48;
+    static final int DCMP_EQ_JMP = 49;
+    static final int DCMP_NE_JMP = 50;
+    static final int IPRINT = 51;
+    static final int DPRINT = 52;
+    static final int BPRINT = 53;
+    static final int SPRINT = 54;
+    static final int READI = 55;
+    static final int READD = 56;
+    static final int READB = 57;
+    static final int READS = 58;
+
+    static final String[] NAMES = {
+            "HALT", "JMP", "JMPT", "JMPF", "IMOV", "DMOV", "SMOV",
+            "IADD", "ISUB", "IMUL", "IDIV", "IMOD", "INEG",
+            "DADD", "DSUB", "DMUL", "DDIV", "DMOD", "DNEG",
+            "I2D", "NOT",
+            "ILT", "ILE", "IGT", "IGE", "IEQ", "INE",
+            "DLT", "DLE", "DGT", "DGE", "DEQ", "DNE",
+            "SEQ", "SNE", "SCONCAT", "I2S", "D2S", "B2S",
+            "ICMP_LT_JMP", "ICMP_LE_JMP", "ICMP_GT_JMP", "ICMP_GE_JMP", "ICMP_EQ_JMP", "ICMP_NE_JMP",
+            "DCMP_LT_JMP", "DCMP_LE_JMP", "DCMP_GT_JMP", "DCMP_GE_JMP", "DCMP_EQ_JMP", "DCMP_NE_JMP",
+            "IPRINT", "DPRINT", "BPRINT", "SPRINT",
+            "READI", "READD", "READB", "READS",
+    };
+
+    static final String[] SHAPES = {
+            "", "j", "ij", "ij", "ii", "dd", "ss",
+            "iii", "iii", "iii", "iii", "iii", "ii",
+            "ddd", "ddd", "ddd", "ddd", "ddd", "dd",
+            "di", "ii",
+            "iii", "iii", "iii", "iii", "iii", "iii",
+            "idd", "idd", "idd", "idd", "idd", "idd",
+            "iss", "iss", "sss", "si", "sd", "si",
+            "iij", "iij", "iij", "iij", "iij", "iij",
+            "ddj", "ddj", "ddj", "ddj", "ddj", "ddj",
+            "i", "d", "i", "s",
+            "i", "d", "i", "s",
+    };
+
+    static boolean writes(int opcode) {
+        // is the first operand the register the instruction writes
+        return opcode >= IMOV && opcode <= B2S || opcode >= READI;
+    }
+
+    final int[] code;
+    final int[] integers;  // the registers as the program starts
+    final double[] doubles;
+    final String[] strings;
+    final int[] lines;  // for every statement the index of its first instruction, its line and col
+    final String[] integerNames;  // what the registers are, for the disassembler
+    final String[] doubleNames;
+    final String[] stringNames;
+
+    Bytecode(int[] code, int[] integers, double[] doubles, String[] strings, int[] lines,
+             String[] integerNames, String[] doubleNames, String[] stringNames) {
+        this.code = code;
+        this.integers = integers;
+        this.doubles = doubles;
+        this.strings = strings;
+        this.lines = lines;
+        this.integerNames = integerNames;
+        this.doubleNames = doubleNames;
+        this.stringNames = stringNames;
+    }
+
+    int line(int pc) {
+        // the index in lines of the statement an instruction belongs to, -1 if none
+        int found = -1;
+        for (int i = 0; i < this.lines.length && this.lines[i] <= pc; i += 3) {
+            found = i;
+        }
+        return found;
+    }
+
+    public void disassemble(PrintStream out) {
+        registers(out, "i", this.integerNames);
+        registers(out, "d", this.doubleNames);
+        registers(out, "s", this.stringNames);
+        int line = 0;
+        for (int pc = 0; pc < this.code.length; ) {
+            if (line < this.lines.length && this.lines[line] == pc) {
+                out.printf("; line %d col %d%n", this.lines[line + 1], this.lines[line + 2]);
+                line += 3;
+            }
+            int opcode = this.code[pc];
+            String shape = SHAPES[opcode];
+            StringBuilder operands = new StringBuilder();
+            for (int i = 0; i < shape.length(); i++) {
+                operands.append(i == 0 ? "" : ", ");
+                char kind = shape.charAt(i);
+                operands.append(kind == 'j' ? "-> " : String.valueOf(kind)).append(this.code[pc + 1 + i]);
+            }
+            out.printf("%6d  %-12s%s%n", pc, NAMES[opcode], operands);
+            pc += 1 + shape.length();
+        }
+    }
+
+    private static void registers(PrintStream out, String prefix, String[] names) {
+        StringBuilder line = new StringBuilder("; " + names.length + " " + prefix + " registers:");
+        for (int i = 0; i < names.length; i++) {
+            line.append(' ').append(prefix).append(i).append('=').append(names[i]);
+        }
+        out.println(line);
+    }
+}
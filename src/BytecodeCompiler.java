@@ -0,0 +1,582 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+public class BytecodeCompiler {
+
+    /*
+    Compiles a resolved and type checked program to Bytecode.
+
+    An expression is compiled to the register its value ends up in: a variable or
+    a constant is its own register and makes no instruction, everything else writes
+    a temporary. Temporaries are taken and given back like a stack per register
+    file, which the order the operands are compiled in allows, and they are numbered
+    -1, -2, ... until the end, when the number of constants is known and they are
+    moved behind them. Assigning the value of an instruction to a variable makes the
+    instruction write the variable, instead of a temporary and a move.
+
+    Conditions compile to jumps. A compare of two integers, or of doubles where the
+    jump is on true, is one compare-and-jump instruction (the inverse of a double
+    compare isn't its opposite compare, because of NaN), anything else is computed
+    into a bool and tested. Loops have their condition at the bottom, so an
+    iteration takes one jump:
+
+        WHILE (c) body          JMP cond; top: body; cond: if c JMP top; exit:
+        FOR (a; c; b) body      a; JMP cond; top: body; b; cond: if c JMP top; exit:
+        REPEAT body UNTIL (c)   top: body; if !c JMP top; exit:
+
+    and a BREAK jumps to the exit of its loop. Expressions are compiled without
+    recursion, with a stack like the Interpreter's; statements recurse as deep as
+    the parser did.
+     */
+
+    private static final int INT = 0;  // the register files
+    private static final int DOUBLE = 1;
+    private static final int STRING = 2;
+
+    private int[] code = new int[256];
+    private int length;
+    private int lastWrite = -1;  // where the register the last instruction writes is, -1 if it writes none
+    private int label = -1;  // the last index a jump goes to
+    private int[] lines = new int[48];
+    private int lineCount;
+
+    // the registers: variables first, then constants, then temporaries
+    private final int integerVariables;  // bools come after them
+    private final int[] variables = new int[3];
+    private final int[] sizes = new int[3];  // variables and constants
+    private final int[] temporaries = new int[3];  // in use
+    private final int[] maxTemporaries = new int[3];
+    private final HashMap<Integer, Integer> intConstants = new HashMap<>();
+    private final HashMap<Long, Integer> doubleConstants = new HashMap<>();
+    private final HashMap<String, Integer> stringConstants = new HashMap<>();
+    private final ArrayList<String> integerNames = new ArrayList<>();
+    private final ArrayList<String> doubleNames = new ArrayList<>();
+    private final ArrayList<String> stringNames = new ArrayList<>();
+
+    private final ArrayDeque<ArrayList<Integer>> breaks = new ArrayDeque<>();  // of the loops around, where their BREAKs jump
+
+    // the expression walk: nodes, how many operands are done, a jump to patch, registers of the values
+    private Expression[] nodes = new Expression[64];
+    private int[] states = new int[64];
+    private int[] jumps = new int[64];
+    private int[] registers = new int[64];
+    private int registerTop;
+
+    private BytecodeCompiler(Program program, Resolver resolver) {
+        this.integerVariables = resolver.slots(ValueType.INTEGER);
+        String[] integers = new String[resolver.slots(ValueType.INTEGER) + resolver.slots(ValueType.BOOL)];
+        String[] doubles = new String[resolver.slots(ValueType.DOUBLE)];
+        String[] strings = new String[resolver.slots(ValueType.STRING)];
+        for (Declaration declaration : program.declarations) {
+            if (declaration != null && declaration.valueType != null) {
+                switch (declaration.valueType) {
+                    case INTEGER -> integers[declaration.slot] = declaration.identifier;
+                    case BOOL -> integers[this.integerVariables + declaration.slot] = declaration.identifier;
+                    case DOUBLE -> doubles[declaration.slot] = declaration.identifier;
+                    case STRING -> strings[declaration.slot] = declaration.identifier;
+                }
+            }
+        }
+        this.integerNames.addAll(Arrays.asList(integers));
+        this.doubleNames.addAll(Arrays.asList(doubles));
+        this.stringNames.addAll(Arrays.asList(strings));
+        this.variables[INT] = this.sizes[INT] = integers.length;
+        this.variables[DOUBLE] = this.sizes[DOUBLE] = doubles.length;
+        this.variables[STRING] = this.sizes[STRING] = strings.length;
+    }
+
+    public static Bytecode compile(Program program, Resolver resolver) {
+        // the program must have been resolved by resolver and checked without errors
+        BytecodeCompiler compiler = new BytecodeCompiler(program, resolver);
+        compiler.compile(program.commandSequence);
+        compiler.emit(Bytecode.HALT);
+        return compiler.finish();
+    }
+
+    private Bytecode finish() {
+        // the temporaries behind the constants, and the registers as they start
+        int[] code = Arrays.copyOf(this.code, this.length);
+        for (int pc = 0; pc < code.length; ) {
+            String shape = Bytecode.SHAPES[code[pc]];
+            for (int i = 0; i < shape.length(); i++) {
+                int file = "ids".indexOf(shape.charAt(i));
+                if (file >= 0 && code[pc + 1 + i] < 0) {
+                    code[pc + 1 + i] = this.sizes[file] - 1 - code[pc + 1 + i];
+                }
+            }
+            pc += 1 + shape.length();
+        }
+        int[] integers = new int[this.sizes[INT] + this.maxTemporaries[INT]];
+        double[] doubles = new double[this.sizes[DOUBLE] + this.maxTemporaries[DOUBLE]];
+        String[] strings = new String[this.sizes[STRING] + this.maxTemporaries[STRING]];
+        Arrays.fill(strings, 0, this.variables[STRING], "");
+        this.intConstants.forEach((value, register) -> integers[register] = value);
+        this.doubleConstants.forEach((bits, register) -> doubles[register] = Double.longBitsToDouble(bits));
+        this.stringConstants.forEach((value, register) -> strings[register] = value);
+        return new Bytecode(code, integers, doubles, strings, Arrays.copyOf(this.lines, this.lineCount),
+                names(this.integerNames, integers.length), names(this.doubleNames, doubles.length),
+                names(this.stringNames, strings.length));
+    }
+
+    private static String[] names(ArrayList<String> names, int registers) {
+        String[] all = names.toArray(new String[registers]);
+        Arrays.fill(all, names.size(), registers, "temp");
+        return all;
+    }
+
+    //------------------- Statements ----------------------
+
+    private void compile(CommandSequence commandSequence) {
+        for (Statement statement : commandSequence.statements) {
+            this.line(statement);
+            this.compile(statement);
+        }
+    }
+
+    private void compile(Statement statement) {
+        switch (statement.kind) {
+            case IF_STATEMENT -> {
+                StatementIf ifStatement = (StatementIf) statement;
+                int otherwise = this.branch(ifStatement.expression, false);
+                this.compile(ifStatement.commandSequence);
+                CommandSequence elseSequence = ifStatement.endIfStatement.commandSequence;
+                if (elseSequence != null) {
+                    int end = this.jump(Bytecode.JMP);
+                    this.bind(otherwise);
+                    this.compile(elseSequence);
+                    this.bind(end);
+                }
+                else {
+                    this.bind(otherwise);
+                }
+            }
+            case WHILE_STATEMENT -> {
+                StatementWhile whileStatement = (StatementWhile) statement;
+                int condition = this.jump(Bytecode.JMP);
+                int top = this.here();
+                this.loop(whileStatement.commandSequence);
+                this.bind(condition);
+                this.line(whileStatement);
+                this.patch(this.branch(whileStatement.expression, true), top);
+                this.exit();
+            }
+            case FOR_STATEMENT -> {
+                StatementFor forStatement = (StatementFor) statement;
+                this.assign(forStatement.first);
+                int condition = this.jump(Bytecode.JMP);
+                int top = this.here();
+                this.loop(forStatement.commandSequence);
+                this.line(forStatement);
+                this.assign(forStatement.second);
+                this.bind(condition);
+                this.patch(this.branch(forStatement.expression, true), top);
+                this.exit();
+            }
+            case REPEAT_STATEMENT -> {
+                StatementRepeat repeatStatement = (StatementRepeat) statement;
+                int top = this.here();
+                this.loop(repeatStatement.commandSequence);
+                this.line(repeatStatement);
+                this.patch(this.branch(repeatStatement.expression, false), top);
+                this.exit();
+            }
+            case BREAK_STATEMENT -> this.breaks.peek().add(this.jump(Bytecode.JMP));
+            case PRINT_STATEMENT -> this.print(((StatementPrint) statement).expression);
+            case CALC_STATEMENT -> {
+                for (Expression expression : ((StatementCalc) statement).expressions) {
+                    this.print(expression);
+                }
+            }
+            case ASSIGN_EXPR -> this.assign((ExpressionAssign) statement);
+            default -> { }
+        }
+    }
+
+    private void loop(CommandSequence body) {
+        this.breaks.push(new ArrayList<>());
+        this.compile(body);
+    }
+
+    private void exit() {
+        for (int jump : this.breaks.pop()) {
+            this.bind(jump);
+        }
+    }
+
+    private void print(Expression expression) {
+        int register = this.compile(expression);
+        this.emit(switch (expression.type) {
+            case INTEGER -> Bytecode.IPRINT;
+            case DOUBLE -> Bytecode.DPRINT;
+            case BOOL -> Bytecode.BPRINT;
+            case STRING -> Bytecode.SPRINT;
+        }, register);
+        this.free(expression.type, register);
+    }
+
+    private void assign(ExpressionAssign assign) {
+        if (assign.end == null) {
+            this.store(assign, assign.expression);
+        }
+        else {
+            int second = this.branch(assign.expression, false);
+            this.store(assign, assign.end.first);
+            int end = this.jump(Bytecode.JMP);
+            this.bind(second);
+            this.store(assign, assign.end.second);
+            this.bind(end);
+        }
+    }
+
+    private void store(ExpressionAssign assign, Expression value) {
+        int register = this.compile(value);
+        int variable = this.variable(assign.type, assign.slot);
+        if (assign.type == ValueType.DOUBLE && value.type == ValueType.INTEGER) {
+            this.emit(Bytecode.I2D, variable, register);
+        }
+        else if (register < 0 && this.lastWrite >= 0 && this.code[this.lastWrite] == register && this.label != this.length) {
+            this.code[this.lastWrite] = variable;  // the instruction that made the value writes the variable
+        }
+        else if (register != variable) {
+            this.emit(switch (file(assign.type)) {
+                case INT -> Bytecode.IMOV;
+                case DOUBLE -> Bytecode.DMOV;
+                default -> Bytecode.SMOV;
+            }, variable, register);
+        }
+        this.free(value.type, register);
+    }
+
+    private int branch(Expression condition, boolean when) {
+        // a jump taken when the condition is when; the index of its target, to be set
+        if (condition instanceof ExpressionBinary binary && binary.type == ValueType.BOOL
+                && binary.left.type.isNumeric() && binary.right.type.isNumeric()) {
+            boolean integers = binary.left.type == ValueType.INTEGER && binary.right.type == ValueType.INTEGER;
+            int opcode = switch (binary.operator) {
+                case LESS -> integers ? Bytecode.ICMP_LT_JMP : Bytecode.DCMP_LT_JMP;
+                case LESS_EQUAL -> integers ? Bytecode.ICMP_LE_JMP : Bytecode.DCMP_LE_JMP;
+                case GREATER -> integers ? Bytecode.ICMP_GT_JMP : Bytecode.DCMP_GT_JMP;
+                case GREATER_EQUAL -> integers ? Bytecode.ICMP_GE_JMP : Bytecode.DCMP_GE_JMP;
+                case EQUAL -> integers ? Bytecode.ICMP_EQ_JMP : Bytecode.DCMP_EQ_JMP;
+                case NOT_EQUAL -> integers ? Bytecode.ICMP_NE_JMP : Bytecode.DCMP_NE_JMP;
+                default -> -1;
+            };
+            if (opcode >= 0 && (integers || when)) {
+                if (!when) {
+                    opcode = switch (opcode) {
+                        case Bytecode.ICMP_LT_JMP -> Bytecode.ICMP_GE_JMP;
+                        case Bytecode.ICMP_LE_JMP -> Bytecode.ICMP_GT_JMP;
+                        case Bytecode.ICMP_GT_JMP -> Bytecode.ICMP_LE_JMP;
+                        case Bytecode.ICMP_GE_JMP -> Bytecode.ICMP_LT_JMP;
+                        case Bytecode.ICMP_EQ_JMP -> Bytecode.ICMP_NE_JMP;
+                        default -> Bytecode.ICMP_EQ_JMP;
+                    };
+                }
+                int left = this.compile(binary.left);
+                int right = this.compile(binary.right);
+                int[] operands = this.operands(binary.left.type, left, binary.right.type, right, integers ? ValueType.INTEGER : ValueType.DOUBLE);
+                this.emit(opcode, operands[0], operands[1], -1);
+                this.release(binary.left.type, left, binary.right.type, right, operands, integers ? ValueType.INTEGER : ValueType.DOUBLE);
+                return this.length - 1;
+            }
+        }
+        int register = this.compile(condition);
+        this.free(ValueType.BOOL, register);
+        return this.jump(when ? Bytecode.JMPT : Bytecode.JMPF, register);
+    }
+
+    //------------------- Expressions ----------------------
+
+    private int compile(Expression root) {
+        // the register that has the value of root after the instructions it takes
+        int top = this.push(0, root);
+        while (top > 0) {
+            Expression expression = this.nodes[top - 1];
+            int state = this.states[top - 1]++;
+            switch (expression.kind) {
+                case BINARY_EXPR -> {
+                    ExpressionBinary binary = (ExpressionBinary) expression;
+                    boolean logical = binary.operator == Operator.AND || binary.operator == Operator.OR;
+                    if (state == 0) {
+                        top = this.push(top, binary.left);
+                    }
+                    else if (state == 1) {
+                        if (logical) {
+                            // the left value into the result, then a jump over the right operand
+                            int left = this.registers[this.registerTop - 1];
+                            if (left >= 0) {
+                                int result = this.temporary(INT);
+                                this.emit(Bytecode.IMOV, result, left);
+                                this.registers[this.registerTop - 1] = result;
+                                left = result;
+                            }
+                            this.jumps[top - 1] = this.jump(binary.operator == Operator.AND ? Bytecode.JMPF : Bytecode.JMPT, left);
+                        }
+                        top = this.push(top, binary.right);
+                    }
+                    else {
+                        top--;
+                        int right = this.registers[--this.registerTop];
+                        if (logical) {
+                            this.emit(Bytecode.IMOV, this.registers[this.registerTop - 1], right);
+                            this.free(ValueType.BOOL, right);
+                            this.bind(this.jumps[top]);
+                        }
+                        else {
+                            int left = this.registers[--this.registerTop];
+                            this.registers[this.registerTop++] = this.binary(binary, left, right);
+                        }
+                    }
+                }
+                case UNARY_EXPR -> {
+                    ExpressionUnary unary = (ExpressionUnary) expression;
+                    if (state == 0) {
+                        top = this.push(top, unary.operand);
+                    }
+                    else {
+                        top--;
+                        int operand = this.registers[--this.registerTop];
+                        this.free(unary.type, operand);
+                        int result = this.temporary(file(unary.type));
+                        int opcode = unary.operator == Operator.NOT ? Bytecode.NOT
+                                : unary.type == ValueType.INTEGER ? Bytecode.INEG : Bytecode.DNEG;
+                        this.emit(opcode, result, operand);
+                        this.registers[this.registerTop++] = result;
+                    }
+                }
+                case READ_OPERATION -> {
+                    top--;
+                    int result = this.temporary(file(expression.type));
+                    this.emit(switch (expression.type) {
+                        case INTEGER -> Bytecode.READI;
+                        case DOUBLE -> Bytecode.READD;
+                        case BOOL -> Bytecode.READB;
+                        case STRING -> Bytecode.READS;
+                    }, result);
+                    this.registers[this.registerTop++] = result;
+                }
+                default -> {
+                    top--;
+                    this.registers[this.registerTop++] = this.leaf(expression);
+                }
+            }
+            if (this.registerTop == this.registers.length) {
+                this.registers = Arrays.copyOf(this.registers, this.registerTop * 2);
+            }
+        }
+        return this.registers[--this.registerTop];
+    }
+
+    private int binary(ExpressionBinary binary, int left, int right) {
+        // the instruction of a binary operator that isn't && or ||, and the register of its value
+        ValueType leftType = binary.left.type;
+        ValueType rightType = binary.right.type;
+        ValueType operands;
+        int opcode;
+        if (binary.type == ValueType.STRING) {
+            operands = ValueType.STRING;
+            opcode = Bytecode.SCONCAT;
+        }
+        else if (binary.type == ValueType.BOOL) {
+            operands = leftType == rightType ? leftType : ValueType.DOUBLE;
+            int first = switch (operands) {
+                case INTEGER, BOOL -> Bytecode.ILT;
+                case DOUBLE -> Bytecode.DLT;
+                case STRING -> Bytecode.SEQ - 4;  // so EQUAL and NOT_EQUAL end up at SEQ and SNE
+            };
+            opcode = first + switch (binary.operator) {
+                case LESS -> 0;
+                case LESS_EQUAL -> 1;
+                case GREATER -> 2;
+                case GREATER_EQUAL -> 3;
+                case EQUAL -> 4;
+                default -> 5;
+            };
+        }
+        else {
+            operands = binary.type;
+            int first = binary.type == ValueType.INTEGER ? Bytecode.IADD : Bytecode.DADD;
+            opcode = first + switch (binary.operator) {
+                case PLUS -> 0;
+                case MINUS -> 1;
+                case MULTIPLY -> 2;
+                case DIVIDE -> 3;
+                default -> 4;
+            };
+        }
+        int[] converted = this.operands(leftType, left, rightType, right, operands);
+        this.release(leftType, left, rightType, right, converted, operands);
+        int result = this.temporary(file(binary.type));
+        this.emit(opcode, result, converted[0], converted[1]);
+        return result;
+    }
+
+    private int[] operands(ValueType leftType, int left, ValueType rightType, int right, ValueType type) {
+        // the two operands converted to type, in new temporaries where they have to be
+        return new int[] { this.convert(leftType, left, type), this.convert(rightType, right, type) };
+    }
+
+    private void release(ValueType leftType, int left, ValueType rightType, int right, int[] converted, ValueType type) {
+        // the temporaries of the operands and of their conversions to type, the last taken first
+        if (file(rightType) != file(type)) {
+            this.free(type, converted[1]);
+        }
+        if (file(leftType) != file(type)) {
+            this.free(type, converted[0]);
+        }
+        this.free(rightType, right);
+        this.free(leftType, left);
+    }
+
+    private int convert(ValueType from, int register, ValueType to) {
+        if (file(from) == file(to)) {
+            return register;
+        }
+        if (register >= this.variables[file(from)]) {
+            // a constant, converted here; the name of a constant is its value as a string
+            String value = file(from) == INT ? this.integerNames.get(register) : this.doubleNames.get(register);
+            if (to == ValueType.DOUBLE) {
+                return this.doubleConstant(Integer.parseInt(value));
+            }
+            return this.stringConstant(from == ValueType.BOOL ? String.valueOf(!value.equals("0")) : value);
+        }
+        int opcode;
+        if (to == ValueType.DOUBLE) {
+            opcode = Bytecode.I2D;
+        }
+        else {
+            opcode = switch (from) {
+                case INTEGER -> Bytecode.I2S;
+                case DOUBLE -> Bytecode.D2S;
+                default -> Bytecode.B2S;
+            };
+        }
+        int result = this.temporary(file(to));
+        this.emit(opcode, result, register);
+        return result;
+    }
+
+    private int leaf(Expression expression) {
+        // the register of a variable or a constant
+        return switch (expression.kind) {
+            case IDENTIFIER -> this.variable(expression.type, ((ExpressionIdentifier) expression).slot);
+            case INT_CONSTANT -> this.intConstant(((IntConst) expression).value);
+            case BOOL_CONSTANT -> this.intConstant(((BoolConst) expression).value ? 1 : 0);
+            case DOUBLE_CONSTANT -> this.doubleConstant(((DoubleConst) expression).value);
+            default -> this.stringConstant(((StringConst) expression).value);
+        };
+    }
+
+    private int doubleConstant(double value) {
+        return this.doubleConstants.computeIfAbsent(Double.doubleToLongBits(value), bits -> {
+            this.doubleNames.add(String.valueOf(value));
+            return this.sizes[DOUBLE]++;
+        });
+    }
+
+    private int stringConstant(String value) {
+        return this.stringConstants.computeIfAbsent(value, string -> {
+            this.stringNames.add('"' + value + '"');
+            return this.sizes[STRING]++;
+        });
+    }
+
+    private int intConstant(int value) {
+        return this.intConstants.computeIfAbsent(value, constant -> {
+            this.integerNames.add(String.valueOf(value));
+            return this.sizes[INT]++;
+        });
+    }
+
+    private int variable(ValueType type, int slot) {
+        return type == ValueType.BOOL ? this.integerVariables + slot : slot;
+    }
+
+    private static int file(ValueType type) {
+        return switch (type) {
+            case INTEGER, BOOL -> INT;
+            case DOUBLE -> DOUBLE;
+            case STRING -> STRING;
+        };
+    }
+
+    private int temporary(int file) {
+        int number = this.temporaries[file]++;
+        this.maxTemporaries[file] = Math.max(this.maxTemporaries[file], this.temporaries[file]);
+        return -1 - number;
+    }
+
+    private void free(ValueType type, int register) {
+        // give a temporary back; they come back in the reverse order they were taken
+        if (register < 0) {
+            int file = file(type);
+            if (register != -this.temporaries[file]) {
+                throw new IllegalStateException("temporary " + register + " given back out of order");
+            }
+            this.temporaries[file]--;
+        }
+    }
+
+    private int push(int top, Expression expression) {
+        if (top == this.nodes.length) {
+            this.nodes = Arrays.copyOf(this.nodes, top * 2);
+            this.states = Arrays.copyOf(this.states, top * 2);
+            this.jumps = Arrays.copyOf(this.jumps, top * 2);
+        }
+        this.nodes[top] = expression;
+        this.states[top] = 0;
+        return top + 1;
+    }
+
+    //------------------- Emitting ----------------------
+
+    private void emit(int opcode, int... operands) {
+        if (this.length + 1 + operands.length > this.code.length) {
+            this.code = Arrays.copyOf(this.code, this.code.length * 2);
+        }
+        this.lastWrite = Bytecode.writes(opcode) ? this.length + 1 : -1;
+        this.code[this.length++] = opcode;
+        for (int operand : operands) {
+            this.code[this.length++] = operand;
+        }
+    }
+
+    private int jump(int opcode, int... operands) {
+        // a jump to a place that isn't known yet, the index of its target
+        int[] withTarget = Arrays.copyOf(operands, operands.length + 1);
+        this.emit(opcode, withTarget);
+        return this.length - 1;
+    }
+
+    private void bind(int target) {
+        // the jump whose target is at code[target] goes to the next instruction
+        this.patch(target, this.here());
+    }
+
+    private void patch(int target, int pc) {
+        this.code[target] = pc;
+    }
+
+    private int here() {
+        this.label = this.length;
+        return this.length;
+    }
+
+    private void line(Statement statement) {
+        // the instructions from here on are this statement's
+        if (statement == null || statement.first == null) {
+            return;
+        }
+        if (this.lineCount > 0 && this.lines[this.lineCount - 3] == this.length) {
+            this.lineCount -= 3;
+        }
+        if (this.lineCount + 3 > this.lines.length) {
+            this.lines = Arrays.copyOf(this.lines, this.lines.length * 2);
+        }
+        this.lines[this.lineCount++] = this.length;
+        this.lines[this.lineCount++] = statement.first.line;
+        this.lines[this.lineCount++] = statement.first.col;
+    }
+}
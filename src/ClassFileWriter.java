@@ -0,0 +1,431 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+
+public final class ClassFileWriter {
+
+    /*
+    Writes a JVM class file with one public static method, for JvmCompiler. Only
+    what that needs is here: the constant pool, the instructions of the method with
+    jumps to labels, and its exception table.
+
+    The class file is version 49 (Java 5), the last one the JVM verifies by
+    inferring the types itself, so the method needs no StackMapTable. The depth of
+    the operand stack is followed along as instructions are added, every emit says
+    what its instruction does to it; after a GOTO or a return the code is not
+    reached from above, and a label that is bound there starts with the depth the
+    jumps to it had.
+
+    Jump offsets are 16 bits, so a method longer than 32767 bytes can't be written,
+    fits() tells. The JVM wouldn't compile a method that long anyway. Neither can a
+    string constant longer than 65535 bytes of (modified) UTF-8, or more than 65535
+    constants; those are added as empty strings and fits() is false from then on.
+     */
+
+    // the opcodes JvmCompiler uses
+    static final int ICONST_M1 = 0x02;
+    static final int ICONST_0 = 0x03;
+    static final int ICONST_1 = 0x04;
+    static final int BIPUSH = 0x10;
+    static final int SIPUSH = 0x11;
+    static final int LDC = 0x12;
+    static final int LDC_W = 0x13;
+    static final int LDC2_W = 0x14;
+    static final int ILOAD = 0x15;
+    static final int DLOAD = 0x18;
+    static final int ALOAD = 0x19;
+    static final int IALOAD = 0x2e;
+    static final int DALOAD = 0x31;
+    static final int AALOAD = 0x32;
+    static final int BALOAD = 0x33;
+    static final int ISTORE = 0x36;
+    static final int DSTORE = 0x39;
+    static final int ASTORE = 0x3a;
+    static final int IASTORE = 0x4f;
+    static final int DASTORE = 0x52;
+    static final int AASTORE = 0x53;
+    static final int BASTORE = 0x54;
+    static final int POP = 0x57;
+    static final int DUP = 0x59;
+    static final int SWAP = 0x5f;
+    static final int IADD = 0x60;
+    static final int DADD = 0x63;
+    static final int ISUB = 0x64;
+    static final int DSUB = 0x67;
+    static final int IMUL = 0x68;
+    static final int DMUL = 0x6b;
+    static final int IDIV = 0x6c;
+    static final int DDIV = 0x6f;
+    static final int IREM = 0x70;
+    static final int DREM = 0x73;
+    static final int INEG = 0x74;
+    static final int DNEG = 0x77;
+    static final int IXOR = 0x82;
+    static final int I2D = 0x87;
+    static final int DCMPL = 0x97;
+    static final int DCMPG = 0x98;
+    static final int IFEQ = 0x99;
+    static final int IFNE = 0x9a;
+    static final int IFLT = 0x9b;
+    static final int IFGE = 0x9c;
+    static final int IFGT = 0x9d;
+    static final int IFLE = 0x9e;
+    static final int IF_ICMPEQ = 0x9f;
+    static final int IF_ICMPNE = 0xa0;
+    static final int IF_ICMPLT = 0xa1;
+    static final int IF_ICMPGE = 0xa2;
+    static final int IF_ICMPGT = 0xa3;
+    static final int IF_ICMPLE = 0xa4;
+    static final int GOTO = 0xa7;
+    static final int IRETURN = 0xac;
+    static final int GETSTATIC = 0xb2;
+    static final int INVOKEVIRTUAL = 0xb6;
+    static final int INVOKESTATIC = 0xb8;
+    static final int WIDE = 0xc4;
+
+    private static final int MAX_JUMP = 32767;
+
+    private final String className;
+    private final String methodName;
+    private final String descriptor;
+
+    // the constant pool, its entries once each
+    private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+    private final DataOutputStream poolOut = new DataOutputStream(this.pool);
+    private final HashMap<String, Integer> constants = new HashMap<>();
+    private int poolCount = 1;
+    private boolean oversized;  // a string constant too long for the class file
+
+    private byte[] code = new byte[1024];
+    private int length;
+    private int stack;  // the depth of the operand stack after the last instruction, -1 where it isn't reached
+    private int maxStack;
+    private int[] handlers = new int[32];  // start, end, handler, catch type
+    private int handlerCount;
+
+    // labels: where they are bound (-1 before), the stack depth there, and the jumps to them not patched yet
+    private int[] labels = new int[32];
+    private int[] labelStacks = new int[32];
+    private int[][] pending = new int[32][];
+    private int labelCount;
+
+    ClassFileWriter(String className, String methodName, String descriptor) {
+        this.className = className;
+        this.methodName = methodName;
+        this.descriptor = descriptor;
+    }
+
+    //------------------- Instructions ----------------------
+
+    int length() {
+        return this.length;
+    }
+
+    void emit(int opcode, int stack) {
+        // an instruction without operands, and the change of the stack depth
+        this.put(opcode);
+        this.stack(stack);
+    }
+
+    void local(int opcode, int local, int stack) {
+        // a load or store of a local variable
+        if (local > 255) {
+            this.put(WIDE);
+            this.put(opcode);
+            this.putShort(local);
+        }
+        else {
+            this.put(opcode);
+            this.put(local);
+        }
+        this.stack(stack);
+    }
+
+    void constant(int value) {
+        if (value >= -1 && value <= 5) {
+            this.emit(ICONST_0 + value, 1);
+        }
+        else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            this.put(BIPUSH);
+            this.put(value);
+            this.stack(1);
+        }
+        else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            this.put(SIPUSH);
+            this.putShort(value);
+            this.stack(1);
+        }
+        else {
+            this.ldc(this.constant("I" + value, 3, out -> out.writeInt(value)), 1);
+        }
+    }
+
+    void constant(double value) {
+        int index = this.constant("D" + Double.doubleToRawLongBits(value), 6, out -> out.writeDouble(value));
+        this.put(LDC2_W);
+        this.putShort(index);
+        this.stack(2);
+    }
+
+    void constant(String value) {
+        int utf8 = this.utf8(value);
+        this.ldc(this.constant("S" + value, 8, out -> out.writeShort(utf8)), 1);
+    }
+
+    void getStatic(String owner, String name, String descriptor) {
+        this.put(GETSTATIC);
+        this.putShort(this.member(9, owner, name, descriptor));
+        this.stack(descriptor.equals("D") || descriptor.equals("J") ? 2 : 1);
+    }
+
+    void invoke(int opcode, String owner, String name, String descriptor) {
+        this.put(opcode);
+        this.putShort(this.member(10, owner, name, descriptor));
+        int stack = -slots(descriptor.substring(1, descriptor.indexOf(')')));
+        stack += slots(descriptor.substring(descriptor.indexOf(')') + 1));
+        this.stack(opcode == INVOKESTATIC ? stack : stack - 1);
+    }
+
+    int label() {
+        if (this.labelCount == this.labels.length) {
+            this.labels = Arrays.copyOf(this.labels, this.labelCount * 2);
+            this.labelStacks = Arrays.copyOf(this.labelStacks, this.labelCount * 2);
+            this.pending = Arrays.copyOf(this.pending, this.labelCount * 2);
+        }
+        this.labels[this.labelCount] = -1;
+        this.pending[this.labelCount] = new int[0];
+        return this.labelCount++;
+    }
+
+    void jump(int opcode, int label) {
+        // GOTO, or an IF that takes the one or two ints on the stack
+        int at = this.length;
+        this.put(opcode);
+        this.putShort(0);
+        this.stack(opcode == GOTO ? 0 : opcode >= IF_ICMPEQ ? -2 : -1);
+        if (this.labels[label] >= 0) {
+            this.patch(at, this.labels[label]);
+        }
+        else {
+            int[] jumps = this.pending[label];
+            jumps = Arrays.copyOf(jumps, jumps.length + 1);
+            jumps[jumps.length - 1] = at;
+            this.pending[label] = jumps;
+            this.labelStacks[label] = this.stack;
+        }
+        if (opcode == GOTO) {
+            this.stack = -1;
+        }
+    }
+
+    void bind(int label) {
+        this.labels[label] = this.length;
+        for (int at : this.pending[label]) {
+            this.patch(at, this.length);
+        }
+        if (this.stack < 0) {
+            this.stack = this.labelStacks[label];
+        }
+        this.pending[label] = null;
+    }
+
+    void handler(int label) {
+        // bind a label an exception handler starts at, with the exception on the stack
+        this.stack = 1;
+        this.maxStack = Math.max(this.maxStack, 1);
+        this.labelStacks[label] = 1;
+        this.bind(label);
+    }
+
+    void returns(int opcode) {
+        this.emit(opcode, 0);
+        this.stack = -1;
+    }
+
+    void exceptions(int start, int end, int handler, String catchType) {
+        // the handler at label handler catches the exceptions of catchType in [start, end)
+        if (this.handlerCount + 4 > this.handlers.length) {
+            this.handlers = Arrays.copyOf(this.handlers, this.handlers.length * 2);
+        }
+        this.handlers[this.handlerCount++] = start;
+        this.handlers[this.handlerCount++] = end;
+        this.handlers[this.handlerCount++] = handler;
+        this.handlers[this.handlerCount++] = this.classRef(catchType);
+    }
+
+    boolean fits() {
+        // can the method be written: every jump reaches, the stack is small enough
+        // and every constant is in the pool
+        return this.length <= MAX_JUMP && this.maxStack <= 65535 && this.poolCount <= 65535 && !this.oversized;
+    }
+
+    //------------------- The class file ----------------------
+
+    byte[] toBytes(int maxLocals) {
+        if (!this.fits()) {
+            throw new IllegalStateException("method too large: " + this.length + " bytes, stack " + this.maxStack
+                    + ", " + this.poolCount + " constants" + (this.oversized ? ", a string constant too long" : ""));
+        }
+        int thisClass = this.classRef(this.className);
+        int superClass = this.classRef("java/lang/Object");
+        int name = this.utf8(this.methodName);
+        int descriptor = this.utf8(this.descriptor);
+        int codeName = this.utf8("Code");
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(this.length + this.pool.size() + 128);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(49);
+            out.writeShort(this.poolCount);
+            this.pool.writeTo(out);
+            out.writeShort(0x0030);  // final, super
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0);  // interfaces
+            out.writeShort(0);  // fields
+            out.writeShort(1);  // methods
+            out.writeShort(0x0009);  // public static
+            out.writeShort(name);
+            out.writeShort(descriptor);
+            out.writeShort(1);
+            out.writeShort(codeName);
+            int handlers = this.handlerCount / 4;
+            out.writeInt(12 + this.length + 8 * handlers);
+            out.writeShort(this.maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(this.length);
+            out.write(this.code, 0, this.length);
+            out.writeShort(handlers);
+            for (int i = 0; i < this.handlerCount; i += 4) {
+                out.writeShort(this.handlers[i]);
+                out.writeShort(this.handlers[i + 1]);
+                out.writeShort(this.labels[this.handlers[i + 2]]);
+                out.writeShort(this.handlers[i + 3]);
+            }
+            out.writeShort(0);  // attributes of Code
+            out.writeShort(0);  // attributes of the class
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private interface Entry {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private int constant(String key, int tag, Entry entry) {
+        Integer index = this.constants.get(key);
+        if (index != null) {
+            return index;
+        }
+        try {
+            this.poolOut.writeByte(tag);
+            entry.write(this.poolOut);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        index = this.poolCount;
+        this.poolCount += tag == 5 || tag == 6 ? 2 : 1;  // a long or a double takes two entries
+        this.constants.put(key, index);
+        return index;
+    }
+
+    private int utf8(String value) {
+        if (utf8Length(value) > 65535) {
+            this.oversized = true;
+            value = "";  // the method won't be written
+        }
+        String utf8 = value;
+        return this.constant("U" + utf8, 1, out -> out.writeUTF(utf8));
+    }
+
+    private static long utf8Length(String value) {
+        // the bytes writeUTF() would write after the length
+        long length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            length += c >= 0x0001 && c <= 0x007F ? 1 : c <= 0x07FF ? 2 : 3;
+        }
+        return length;
+    }
+
+    private int classRef(String name) {
+        int utf8 = this.utf8(name);
+        return this.constant("C" + name, 7, out -> out.writeShort(utf8));
+    }
+
+    private int member(int tag, String owner, String name, String descriptor) {
+        int ownerClass = this.classRef(owner);
+        int nameUtf8 = this.utf8(name);
+        int descriptorUtf8 = this.utf8(descriptor);
+        int nameAndType = this.constant("N" + name + ' ' + descriptor, 12, out -> {
+            out.writeShort(nameUtf8);
+            out.writeShort(descriptorUtf8);
+        });
+        return this.constant(tag + owner + '.' + name + descriptor, tag, out -> {
+            out.writeShort(ownerClass);
+            out.writeShort(nameAndType);
+        });
+    }
+
+    private static int slots(String descriptors) {
+        // the stack slots of values of those types
+        int slots = 0;
+        for (int i = 0; i < descriptors.length(); i++) {
+            char c = descriptors.charAt(i);
+            if (c == 'V') {
+                continue;
+            }
+            slots += c == 'D' || c == 'J' ? 2 : 1;
+            while (descriptors.charAt(i) == '[') {
+                i++;
+            }
+            if (descriptors.charAt(i) == 'L') {
+                i = descriptors.indexOf(';', i);
+            }
+        }
+        return slots;
+    }
+
+    //------------------- Bytes ----------------------
+
+    private void ldc(int index, int stack) {
+        if (index <= 255) {
+            this.put(LDC);
+            this.put(index);
+        }
+        else {
+            this.put(LDC_W);
+            this.putShort(index);
+        }
+        this.stack(stack);
+    }
+
+    private void stack(int change) {
+        // code that isn't reached, after a BREAK, starts a statement, with nothing on the stack
+        this.stack = Math.max(this.stack, 0) + change;
+        this.maxStack = Math.max(this.maxStack, this.stack);
+    }
+
+    private void patch(int at, int target) {
+        int offset = target - at;
+        this.code[at + 1] = (byte) (offset >> 8);
+        this.code[at + 2] = (byte) offset;
+    }
+
+    private void put(int b) {
+        if (this.length == this.code.length) {
+            this.code = Arrays.copyOf(this.code, this.length * 2);
+        }
+        this.code[this.length++] = (byte) b;
+    }
+
+    private void putShort(int s) {
+        this.put(s >> 8);
+        this.put(s);
+    }
+}
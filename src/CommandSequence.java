@@ -3,6 +3,7 @@ import java.util.ArrayList;
 public class CommandSequence {
 
     ArrayList<Statement> statements;
+    Token first, last;  // the braces, set by the Parser (used for incremental reparsing)
 
     public CommandSequence(ArrayList<Statement> statements) {
         this.statements = statements;
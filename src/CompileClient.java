@@ -0,0 +1,68 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class CompileClient {
+
+    /*
+    Sends programs to a running CompileServer and prints what it answers, so a
+    program is parsed by the warm server instead of a new JVM. Exits with 1 when
+    any of the programs had errors, 2 when the server can't be reached.
+
+    Usage: java CompileClient socket [-ast | -json | -sexp | -run] [-time] (file | -)...
+    - reads a program from stdin. -ast also prints the tree, -json and -sexp print it
+    in those formats, -run runs the program, -time the time the server took for
+    every program.
+     */
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("Usage: java CompileClient socket [-ast | -json | -sexp | -run] [-time] (file | -)...");
+            System.exit(2);
+        }
+        byte command = CompileServer.CHECK;
+        boolean time = false;
+        int errors = 0;
+        SocketChannel channel;
+        try {
+            channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+            channel.connect(UnixDomainSocketAddress.of(Path.of(args[0])));
+        } catch (IOException e) {
+            System.out.println("-- cannot connect to the compile server at " + args[0] + ": " + e.getMessage());
+            System.exit(2);
+            return;
+        }
+        try (channel) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+            for (int i = 1; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-ast" -> command = CompileServer.AST;
+                    case "-json" -> command = CompileServer.JSON;
+                    case "-sexp" -> command = CompileServer.SEXP;
+                    case "-run" -> command = CompileServer.RUN;
+                    case "-time" -> time = true;
+                    default -> {
+                        byte[] source = args[i].equals("-") ? System.in.readAllBytes() : Files.readAllBytes(Path.of(args[i]));
+                        CompileServer.Response response = CompileServer.call(in, out, command, source);
+                        System.out.write(response.text);
+                        if (time) {
+                            System.out.printf("-- %s: %.3f ms on the server%n", args[i], response.nanos / 1e6);
+                        }
+                        errors += response.errors;
+                    }
+                }
+            }
+        }
+        System.out.flush();
+        System.exit(errors > 0 ? 1 : 0);
+    }
+}
@@ -0,0 +1,270 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+public class CompileServer {
+
+    /*
+    Keeps one JVM running with the Scanner and Parser already loaded and compiled by
+    the JIT, so a program costs its parse time instead of the start of a new java
+    process. Programs come in as frames, either over a Unix domain socket, every
+    connection on its own thread and any number of frames on a connection, or over
+    stdin/stdout for a process that starts the server as its child.
+
+    Frames, big endian like the token cache files:
+        request     a command byte (CHECK, AST, JSON, SEXP or RUN), the length of the source,
+                    the UTF-8 source
+        response    the number of errors, the nanoseconds the compile took on the server,
+                    the length of the output, the UTF-8 output
+
+    The output is what TestParser prints for the source: the scanner and parser errors,
+    then for AST the dump of the tree, for JSON and SEXP the tree in that AstWriter
+    format. RUN checks the program and runs it with the Interpreter, the output is
+    what it prints; its input is empty, a READ stops it with a runtime error. The
+    type and runtime errors are counted with the others.
+
+    One request can't take the server down or hold it: a request that fails with an
+    exception is answered with one error and what it is, a program that runs longer
+    than RUN_NANOS or an output longer than MAX_OUTPUT stops with a runtime error,
+    and a source longer than MAX_SOURCE gets an error and the connection is closed,
+    as there is no telling where the next frame would start.
+
+    Usage: java CompileServer (socket | -)
+    CompileClient is the command line side of the socket.
+     */
+
+    static final byte CHECK = 'C';  // only the errors
+    static final byte AST = 'A';  // the errors and the tree
+    static final byte JSON = 'J';  // the errors and the tree as JSON
+    static final byte SEXP = 'S';  // the errors and the tree as an S-expression
+    static final byte RUN = 'R';  // the errors, or what the program prints
+
+    static final int MAX_SOURCE = 64 << 20;  // bytes
+    static final int MAX_OUTPUT = 16 << 20;  // bytes
+    static final long RUN_NANOS = 10_000_000_000L;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0 || args[0].equals("-")) {
+            OutputStream out = System.out;
+            System.setOut(System.err);  // nothing else may write into the frames
+            serve(System.in, out);
+        }
+        else {
+            listen(Path.of(args[0]));
+        }
+    }
+
+    static void listen(Path socket) throws IOException {
+        Files.deleteIfExists(socket);  // left over from a server that was killed
+        ExecutorService connections = Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, "CompileServer connection");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(socket));
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    Files.deleteIfExists(socket);
+                } catch (IOException e) {
+                    // nothing to do about it while exiting
+                }
+            }));
+            System.out.println("-- listening on " + socket);
+            while (true) {
+                SocketChannel channel = server.accept();
+                connections.execute(() -> {
+                    try (channel) {
+                        serve(Channels.newInputStream(channel), Channels.newOutputStream(channel));
+                    } catch (IOException e) {
+                        System.out.println("-- connection closed: " + e.getMessage());
+                    }
+                });
+            }
+        }
+    }
+
+    static void serve(InputStream input, OutputStream output) throws IOException {
+        // answer the requests on a stream until the other side closes it
+        DataInputStream in = new DataInputStream(new BufferedInputStream(input, 1 << 16));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(output, 1 << 16));
+        while (true) {
+            int command = in.read();
+            if (command == -1) {
+                return;
+            }
+            int length = in.readInt();
+            if (length < 0 || length > MAX_SOURCE) {
+                respond(out, 1, 0, ("-- a source of " + length + " bytes, the most is " + MAX_SOURCE + "\n")
+                        .getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            byte[] source = new byte[length];
+            in.readFully(source);
+
+            long start = System.nanoTime();
+            LimitedOutput text = new LimitedOutput();
+            int errors;
+            try {
+                errors = compile(source, (byte) command, new PrintStream(text, false, StandardCharsets.UTF_8));
+            } catch (RuntimeException | StackOverflowError e) {
+                if (!text.full) {
+                    text.note("-- internal error: " + e);
+                }
+                errors = 1;
+            }
+            if (text.full) {
+                text.note("-- the output was cut at " + MAX_OUTPUT + " bytes");
+            }
+            long nanos = System.nanoTime() - start;
+
+            respond(out, errors, nanos, text.toByteArray());
+        }
+    }
+
+    private static void respond(DataOutputStream out, int errors, long nanos, byte[] text) throws IOException {
+        out.writeInt(errors);
+        out.writeLong(nanos);
+        out.writeInt(text.length);
+        out.write(text);
+        out.flush();
+    }
+
+    private static final class LimitedOutput extends ByteArrayOutputStream {
+
+        // keeps the first MAX_OUTPUT bytes; the write that goes past them stops a RUN with a runtime error
+        boolean full;
+
+        @Override
+        public synchronized void write(int b) {
+            this.write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            if (this.full) {
+                return;  // dropped, not thrown, so a PrintStream has nothing left over to write again
+            }
+            if (len > MAX_OUTPUT - this.count) {
+                super.write(b, off, MAX_OUTPUT - this.count);
+                this.full = true;
+                throw new Interpreter.RuntimeError("the output is longer than " + MAX_OUTPUT + " bytes");
+            }
+            super.write(b, off, len);
+        }
+
+        void note(String line) {
+            // a line of the server's own, past the limit
+            String start = this.count > 0 && this.buf[this.count - 1] != '\n' ? "\n" : "";
+            byte[] bytes = (start + line + "\n").getBytes(StandardCharsets.UTF_8);
+            super.write(bytes, 0, bytes.length);
+        }
+    }
+
+    static int compile(byte[] source, byte command, PrintStream out) throws IOException {
+        // scan and parse a source, printing like TestParser does (or run it); the number of errors
+        int[] scanErrors = new int[1];
+        try (ParserPool.Lease lease = ParserPool.acquire(ByteBuffer.wrap(source), out::println)) {
+            lease.scanner.setDiagnostics(message -> {
+                out.println(message);
+                scanErrors[0]++;
+            });
+            Parser parser = lease.parser;
+            AstWriter.Format format = switch (command) {
+                case AST -> AstWriter.Format.TEXT;
+                case JSON -> AstWriter.Format.JSON;
+                case SEXP -> AstWriter.Format.SEXP;
+                default -> null;
+            };
+            if (command == RUN) {
+                Program program = parser.parse();
+                int errors = scanErrors[0] + parser.getErrors();
+                if (errors == 0) {
+                    int[] runErrors = new int[1];
+                    Consumer<String> diagnostics = message -> {
+                        out.println(message);
+                        runErrors[0]++;
+                    };
+                    Resolver resolver = Resolver.resolve(program);
+                    if (TypeChecker.check(program, diagnostics) == 0) {
+                        Interpreter interpreter = new Interpreter(resolver, new BufferedReader(Reader.nullReader()), out, diagnostics);
+                        interpreter.limit(RUN_NANOS);
+                        interpreter.run(program.commandSequence);
+                    }
+                    errors += runErrors[0];
+                }
+                out.flush();
+                return errors;
+            }
+            else if (format != null) {
+                Program program = parser.parse();
+                out.flush();
+                AstWriter writer = new AstWriter(out, format);
+                writer.write(program);
+                writer.flush();
+                if (format == AstWriter.Format.TEXT) {
+                    out.println();
+                }
+            }
+            else {
+                parser.parse(statement -> { });
+            }
+            out.flush();
+            return scanErrors[0] + parser.getErrors();
+        }
+    }
+
+    static void request(DataOutputStream out, byte command, byte[] source) throws IOException {
+        out.writeByte(command);
+        out.writeInt(source.length);
+        out.write(source);
+        out.flush();
+    }
+
+    static class Response {
+
+        int errors;
+        long nanos;
+        byte[] text;
+
+        static Response read(DataInputStream in) throws IOException {
+            Response response = new Response();
+            response.errors = in.readInt();
+            response.nanos = in.readLong();
+            response.text = new byte[in.readInt()];
+            in.readFully(response.text);
+            return response;
+        }
+    }
+
+    static Response call(DataInputStream in, DataOutputStream out, byte command, byte[] source) throws IOException {
+        // one request and its response, for a client
+        request(out, command, source);
+        try {
+            return Response.read(in);
+        } catch (EOFException e) {
+            throw new IOException("the server closed the connection", e);
+        }
+    }
+}
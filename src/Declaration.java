@@ -2,9 +2,12 @@ public class Declaration {
 
     String type;
     String identifier;
+    final ValueType valueType;  // null when the type was missing
+    int slot = -1;  // index among the variables of its type, set by the Resolver
 
     public Declaration(String type, String identifier) {
         this.type = type;
         this.identifier = identifier;
+        this.valueType = type == null ? null : ValueType.of(type);
     }
 }
@@ -0,0 +1,14 @@
+public final class DoubleConst extends Expression {
+
+    double value;
+
+    DoubleConst(double value) {
+        super(StatementKind.DOUBLE_CONSTANT);
+        this.value = value;
+    }
+
+    @Override
+    <R> R accept(StatementVisitor<R> visitor) {
+        return visitor.visitDouble(this);
+    }
+}
@@ -0,0 +1,918 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public abstract class ExecNode {
+
+    /*
+    A node of the tree the NodeInterpreter runs, made from an Expression or a
+    statement, that changes as it runs. An operator starts uninitialized: the first
+    time it is executed it looks at the values its operands had and replaces itself,
+    in its parent, with a node for just those, an IntArithmetic for two ints or a
+    DoubleCompare for numbers. Those ask their operands for an int or a double
+    (executeInt(), executeDouble()) instead of an Object, so the values of a hot
+    loop are never boxed, and there is no looking at types left in them.
+
+    If an operand ever has a value its parent isn't made for, it throws it in an
+    UnexpectedValue. The parent then replaces itself with a Generic node, which
+    takes any values and looks at their types every time, computes its own value
+    with the values that were already evaluated (an operand is never evaluated
+    twice, a READ in it would read again) and goes on. A generic node stays generic.
+    That is a safety net, no program gets there: every variable has the one type it
+    is declared with, so the values an operator gets have the same types every time,
+    checked or not, and the first specialization is the last one. The generic nodes
+    are for node trees that don't come from the NodeInterpreter.
+
+    execute() gives the value as an Integer, Double, Boolean or String. The
+    recursion is as deep as the expression; the NodeInterpreter makes expressions
+    deeper than MAX_DEPTH a Deep node, which evaluates them with a stack of its own,
+    generically.
+     */
+
+    static final int MAX_DEPTH = 1000;
+
+    ExecNode parent;
+
+    abstract Object execute(NodeInterpreter frame);
+
+    int executeInt(NodeInterpreter frame) throws UnexpectedValue {
+        return expectInt(this.execute(frame));
+    }
+
+    double executeDouble(NodeInterpreter frame) throws UnexpectedValue {
+        return expectDouble(this.execute(frame));
+    }
+
+    boolean executeBool(NodeInterpreter frame) throws UnexpectedValue {
+        return expectBool(this.execute(frame));
+    }
+
+    void replaceChild(ExecNode child, ExecNode node) {
+        throw new IllegalStateException(this.getClass().getSimpleName() + " has no children to replace");
+    }
+
+    final ExecNode replace(ExecNode node, NodeInterpreter frame, boolean generic) {
+        // this node becomes node, in its parent
+        node.parent = this.parent;
+        this.parent.replaceChild(this, node);
+        frame.rewritten(generic);
+        return node;
+    }
+
+    final <T extends ExecNode> T adopt(T child) {
+        child.parent = this;
+        return child;
+    }
+
+    static int expectInt(Object value) throws UnexpectedValue {
+        if (value instanceof Integer integer) {
+            return integer;
+        }
+        throw new UnexpectedValue(value);
+    }
+
+    static double expectDouble(Object value) throws UnexpectedValue {
+        // an int is a double too
+        if (value instanceof Double number) {
+            return number;
+        }
+        if (value instanceof Integer integer) {
+            return integer;
+        }
+        throw new UnexpectedValue(value);
+    }
+
+    static boolean expectBool(Object value) throws UnexpectedValue {
+        if (value instanceof Boolean bool) {
+            return bool;
+        }
+        throw new UnexpectedValue(value);
+    }
+
+    static final class UnexpectedValue extends Exception {
+
+        private static final long serialVersionUID = 1L;
+
+        final Object value;
+
+        UnexpectedValue(Object value) {
+            super(null, null, false, false);
+            this.value = value;
+        }
+    }
+
+    //------------------- Leaves ----------------------
+
+    static final class IntConstant extends ExecNode {
+
+        private final int value;
+        private final Integer boxed;
+
+        IntConstant(int value) {
+            this.value = value;
+            this.boxed = value;
+        }
+
+        @Override
+        Object execute(NodeInterpreter frame) {
+            return this.boxed;
+        }
+
+        @Override
+        int executeInt(NodeInterpreter frame) {
+            return this.value;
+        }
+
+        @Override
+        double executeDouble(NodeInterpreter frame) {
+            return this.value;
+        }
+    }
+
+    static final class DoubleConstant extends ExecNode {
+
+        private final double value;
+        private final Double boxed;
+
+        DoubleConstant(double value) {
+            this.value = value;
+            this.boxed = value;
+        }
+
+        @Override
+        Object execute(NodeInterpreter frame) {
+            return this.boxed;
+        }
+
+        @Override
+        double executeDouble(NodeInterpreter frame) {
+            return this.value;
+        }
+    }
+
+    static final class Constant extends ExecNode {
+
+        // a bool or a string
+        private final Object value;
+
+        Constant(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        Object execute(NodeInterpreter frame) {
+            return this.value;
+        }
+    }
+
+    static final class IntVariable extends ExecNode {
+
+        private final int slot;
+
+        IntVariable(int slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        Object execute(NodeInterpreter frame) {
+            return frame.integers[this.slot];
+        }
+
+        @Override
+        int executeInt(NodeInterpreter frame) {
+            return frame.integers[this.slot];
+        }
+
+        @Override
+        double executeDouble(NodeInterpreter frame) {
+            return frame.integers[this.slot];
+        }
+    }
+
+    static final class DoubleVariable extends ExecNode {
+
+        private final int slot;
+
+        DoubleVariable(int slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        Object execute(NodeInterpreter frame) {
+            return frame.doubles[this.slot];
+        }
+
+        @Override
+        double executeDouble(NodeInterpreter frame) {
+            return frame.doubles[this.slot];
+        }
+    }
+
+    static final class BoolVariable extends ExecNode {
+
+        private final int slot;
+
+        BoolVariable(int slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        Object execute(NodeInterpreter frame) {
+            return frame.bools[this.slot];
+        }
+
+        @Override
+        boolean executeBool(NodeInterpreter frame) {
+            return frame.bools[this.slot];
+        }
+    }
+
+    static final class StringVariable extends ExecNode {
+
+        private final int slot;
+
+        StringVariable(int slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        Object execute(NodeInterpreter frame) {
+            return frame.strings[this.slot];
+        }
+    }
+
+    static final class Read extends ExecNode {
+
+        private final TokenCode operation;
+
+        Read(TokenCode operation) {
+            this.operation = operation;
+        }
+
+        @Override
+        Object execute(NodeInterpreter frame) {
+            String line = Interpreter.readLine(frame.in, this.operation);
+            return switch (this.operation) {
+                case READINT -> Interpreter.readInt(line);
+                case READDOUBLE -> Interpreter.readDouble(line);
+                case READBOOL -> Interpreter.readBool(line);
+                default -> line;
+            };
+        }
+    }
+
+    //------------------- Unary operators ----------------------
+
+    abstract static class Unary extends ExecNode {
+
+        final Operator operator;
+        ExecNode operand;
+
+        Unary(Operator operator, ExecNode operand) {
+            this.operator = operator;
+            this.operand = this.adopt(operand);
+        }
+
+        @Override
+        void replaceChild(ExecNode child, ExecNode node) {
+            this.operand = node;
+        }
+
+        final Object generic(Object value, NodeInterpreter frame) {
+            // the operand had a value this node isn't made for
+            this.replace(new GenericUnary(this.operator, this.operand), frame, true);
+            return GenericUnary.apply(this.operator, value);
+        }
+    }
+
+    static final class UninitializedUnary extends Unary {
+
+        UninitializedUnary(Operator operator, ExecNode operand) {
+            super(operator, operand);
+        }
+
+        @Override
+        Object execute(NodeInterpreter frame) {
+            Object value = this.operand.execute(frame);
+            Unary node;
+            if (this.operator == Operator.NOT && value instanceof Boolean) {
+                node = new Not(this.operand);
+            }
+            else if (this.operator == Operator.MINUS && value instanceof Integer) {
+                node = new IntNegate(this.operand);
+            }
+            else if (this.operator == Operator.MINUS && value instanceof Double) {
+                node = new DoubleNegate(this.operand);
+            }
+            else {
+                node = new GenericUnary(this.operator, this.operand);
+            }
+            this.replace(node, frame, node instanceof GenericUnary);
+            return GenericUnary.apply(this.operator, value);
+        }
+    }
+
+    static final class Not extends Unary {
+
+        Not(ExecNode operand) {
+            super(Operator.NOT, operand);
+        }
+
+        @Override
+        Object execute(NodeInterpreter frame) {
+            try {
+                return this.executeBool(frame);
+            } catch (UnexpectedValue e) {
+                return e.value;
+            }
+        }
+
+        @Override
+        boolean executeBool(NodeInterpreter frame) throws UnexpectedValue {
+            try {
+                return !this.operand.executeBool(frame);
+            } catch (UnexpectedValue e) {
+                return expectBool(this.generic(e.value, frame));
+            }
+        }
+    }
+
+    static final class IntNegate extends Unary {
+
+        IntNegate(ExecNode operand) {
+            super(Operator.MINUS, operand);
+        }
+
+        @Override
+        Object execute(NodeInterpreter frame) {
+            try {
+                return this.executeInt(frame);
+            } catch (UnexpectedValue e) {
+                return e.value;
+            }
+        }
+
+        @Override
+        int executeInt(NodeInterpreter frame) throws UnexpectedValue {
+            try {
+                return -this.operand.executeInt(frame);
+            } catch (UnexpectedValue e) {
+                return expectInt(this.generic(e.value, frame));
+            }
+        }
+
+        @Override
+        double executeDouble(NodeInterpreter frame) throws UnexpectedValue {
+            return this.executeInt(frame);
+        }
+    }
+
+    static final class DoubleNegate extends Unary {
+
+        DoubleNegate(ExecNode operand) {
+            super(Operator.MINUS, operand);
+        }
+
+        @Override
+        Object execute(NodeInterpreter frame) {
+            try {
+                return this.executeDouble(frame);
+            } catch (UnexpectedValue e) {
+                return e.value;
+            }
+        }
+
+        @Override
+        double executeDouble(NodeInterpreter frame) throws UnexpectedValue {
+            try {
+                return -this.operand.executeDouble(frame);
+            } catch (UnexpectedValue e) {
+                return expectDouble(this.generic(e.value, frame));
+            }
+        }
+    }
+
+    static final class GenericUnary extends Unary {
+
+        GenericUnary(Operator operator, ExecNode operand) {
+            super(operator, operand);
+        }
+
+        @Override
+        Object execute(NodeInterpreter frame) {
+            return apply(this.operator, this.operand.execute(frame));
+        }
+
+        static Object apply(Operator operator, Object value) {
+            if (operator == Operator.NOT && value instanceof Boolean bool) {
+                return !bool;
+            }
+            if (operator == Operator.MINUS && value instanceof Integer integer) {
+                return -integer;
+            }
+            if (operator == Operator.MINUS && value instanceof Double number) {
+                return -number;
+            }
+            throw new IllegalStateException("operator " + operator + " on " + value);
+        }
+    }
+
+    //------------------- Binary operators ----------------------
+
+    abstract static class Binary extends ExecNode {
+
+        final Operator operator;
+        ExecNode left;
+        ExecNode right;
+
+        Binary(Operator operator, ExecNode left, ExecNode right) {
+            this.operator = operator;
+            this.left = this.adopt(left);
+            this.right = this.adopt(right);
+        }
+
+        @Override
+        void replaceChild(ExecNode child, ExecNode node) {
+            if (this.left == child) {
+                this.left = node;
+            }
+            else {
+                this.right = node;
+            }
+        }
+
+        final Object generic(Object left, Object right, NodeInterpreter frame) {
+            // an operand had a value this node isn't made for: both values, the right one evaluated if it wasn't
+            this.replace(new GenericBinary(this.operator, this.left, this.right), frame, true);
+            return GenericBinary.apply(this.operator, left, right);
+        }
+    }
+
+    static final class UninitializedBinary extends Binary {
+
+        UninitializedBinary(Operator operator, ExecNode left, ExecNode right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        Object execute(NodeInterpreter frame) {
+            Object left = this.left.execute(frame);
+            Object right = this.right.execute(frame);
+            Binary node = this.specialize(left, right);
+            this.replace(node, frame, node instanceof GenericBinary);
+            return GenericBinary.apply(this.operator, left, right);
+        }
+
+        private Binary specialize(Object left, Object right) {
+            boolean integers = left instanceof Integer && right instanceof Integer;
+            boolean numbers = left instanceof Number && right instanceof Number;
+            switch (this.operator) {
+                case PLUS, MINUS, MULTIPLY, DIVIDE, MOD -> {
+                    if (this.operator == Operator.PLUS && (left instanceof String || right instanceof String)) {
+                        return new Concat(this.left, this.right);
+                    }
+                    if (integers) {
+                        return new IntArithmetic(this.operator, this.left, this.right);
+                    }
+                    if (numbers) {
+                        return new DoubleArithmetic(this.operator, this.left, this.right);
+                    }
+                }
+                default -> {
+                    if (integers) {
+                        return new IntCompare(this.operator, this.left, this.right);
+                    }
+                    if (numbers) {
+                        return new DoubleCompare(this.operator, this.left, this.right);
+                    }
+                    boolean equality = this.operator == Operator.EQUAL || this.operator == Operator.NOT_EQUAL;
+                    if (equality && left instanceof Boolean && right instanceof Boolean) {
+                        return new BoolEquality(this.operator, this.left, this.right);
+                    }
+                    if (equality && left instanceof String && right instanceof String) {
+                        return new StringEquality(this.operator, this.left, this.right);
+                    }
+                }
+            }
+            return new GenericBinary(this.operator, this.left, this.right);
+        }
+    }
+
+    static final class IntArithmetic extends Binary {
+
+        IntArithmetic(Operator operator, ExecNode left, ExecNode right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        Object execute(NodeInterpreter frame) {
+            try {
+                return this.executeInt(frame);
+            } catch (UnexpectedValue e) {
+                return e.value;
+            }
+        }
+
+        @Override
+        int executeInt(NodeInterpreter frame) throws UnexpectedValue {
+            int a;
+            try {
+                a = this.left.executeInt(frame);
+            } catch (UnexpectedValue e) {
+                return expectInt(this.generic(e.value, this.right.execute(frame), frame));
+            }
+            int b;
+            try {
+                b = this.right.executeInt(frame);
+            } catch (UnexpectedValue e) {
+                return expectInt(this.generic(a, e.value, frame));
+            }
+            return switch (this.operator) {
+                case PLUS -> a + b;
+                case MINUS -> a - b;
+                case MULTIPLY -> a * b;
+                case DIVIDE -> a / b;
+                default -> a % b;
+            };
+        }
+
+        @Override
+        double executeDouble(NodeInterpreter frame) throws UnexpectedValue {
+            return this.executeInt(frame);
+        }
+    }
+
+    static final class DoubleArithmetic extends Binary {
+
+        // either operand can be an int
+        DoubleArithmetic(Operator operator, ExecNode left, ExecNode right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        Object execute(NodeInterpreter frame) {
+            try {
+                return this.executeDouble(frame);
+            } catch (UnexpectedValue e) {
+                return e.value;
+            }
+        }
+
+        @Override
+        double executeDouble(NodeInterpreter frame) throws UnexpectedValue {
+            double a;
+            try {
+                a = this.left.executeDouble(frame);
+            } catch (UnexpectedValue e) {
+                return expectDouble(this.generic(e.value, this.right.execute(frame), frame));
+            }
+            double b;
+            try {
+                b = this.right.executeDouble(frame);
+            } catch (UnexpectedValue e) {
+                return expectDouble(this.generic(a, e.value, frame));
+            }
+            return switch (this.operator) {
+                case PLUS -> a + b;
+                case MINUS -> a - b;
+                case MULTIPLY -> a * b;
+                case DIVIDE -> a / b;
+                default -> a % b;
+            };
+        }
+    }
+
+    static final class IntCompare extends Binary {
+
+        IntCompare(Operator operator, ExecNode left, ExecNode right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        Object execute(NodeInterpreter frame) {
+            try {
+                return this.executeBool(frame);
+            } catch (UnexpectedValue e) {
+                return e.value;
+            }
+        }
+
+        @Override
+        boolean executeBool(NodeInterpreter frame) throws UnexpectedValue {
+            int a;
+            try {
+                a = this.left.executeInt(frame);
+            } catch (UnexpectedValue e) {
+                return expectBool(this.generic(e.value, this.right.execute(frame), frame));
+            }
+            int b;
+            try {
+                b = this.right.executeInt(frame);
+            } catch (UnexpectedValue e) {
+                return expectBool(this.generic(a, e.value, frame));
+            }
+            return switch (this.operator) {
+                case LESS -> a < b;
+                case LESS_EQUAL -> a <= b;
+                case GREATER -> a > b;
+                case GREATER_EQUAL -> a >= b;
+                case EQUAL -> a == b;
+                default -> a != b;
+            };
+        }
+    }
+
+    static final class DoubleCompare extends Binary {
+
+        // either operand can be an int
+        DoubleCompare(Operator operator, ExecNode left, ExecNode right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        Object execute(NodeInterpreter frame) {
+            try {
+                return this.executeBool(frame);
+            } catch (UnexpectedValue e) {
+                return e.value;
+            }
+        }
+
+        @Override
+        boolean executeBool(NodeInterpreter frame) throws UnexpectedValue {
+            double a;
+            try {
+                a = this.left.executeDouble(frame);
+            } catch (UnexpectedValue e) {
+                return expectBool(this.generic(e.value, this.right.execute(frame), frame));
+            }
+            double b;
+            try {
+                b = this.right.executeDouble(frame);
+            } catch (UnexpectedValue e) {
+                return expectBool(this.generic(a, e.value, frame));
+            }
+            return switch (this.operator) {
+                case LESS -> a < b;
+                case LESS_EQUAL -> a <= b;
+                case GREATER -> a > b;
+                case GREATER_EQUAL -> a >= b;
+                case EQUAL -> a == b;
+                default -> a != b;
+            };
+        }
+    }
+
+    static final class BoolEquality extends Binary {
+
+        BoolEquality(Operator operator, ExecNode left, ExecNode right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        Object execute(NodeInterpreter frame) {
+            try {
+                return this.executeBool(frame);
+            } catch (UnexpectedValue e) {
+                return e.value;
+            }
+        }
+
+        @Override
+        boolean executeBool(NodeInterpreter frame) throws UnexpectedValue {
+            boolean a;
+            try {
+                a = this.left.executeBool(frame);
+            } catch (UnexpectedValue e) {
+                return expectBool(this.generic(e.value, this.right.execute(frame), frame));
+            }
+            boolean b;
+            try {
+                b = this.right.executeBool(frame);
+            } catch (UnexpectedValue e) {
+                return expectBool(this.generic(a, e.value, frame));
+            }
+            return (a == b) == (this.operator == Operator.EQUAL);
+        }
+    }
+
+    static final class StringEquality extends Binary {
+
+        StringEquality(Operator operator, ExecNode left, ExecNode right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        Object execute(NodeInterpreter frame) {
+            Object a = this.left.execute(frame);
+            Object b = this.right.execute(frame);
+            if (!(a instanceof String) || !(b instanceof String)) {
+                return this.generic(a, b, frame);
+            }
+            return a.equals(b) == (this.operator == Operator.EQUAL);
+        }
+    }
+
+    static final class Concat extends Binary {
+
+        // a string and anything; the other value as String.valueOf makes it
+        Concat(ExecNode left, ExecNode right) {
+            super(Operator.PLUS, left, right);
+        }
+
+        @Override
+        Object execute(NodeInterpreter frame) {
+            Object a = this.left.execute(frame);
+            Object b = this.right.execute(frame);
+            if (!(a instanceof String) && !(b instanceof String)) {
+                return this.generic(a, b, frame);
+            }
+            return String.valueOf(a).concat(String.valueOf(b));
+        }
+    }
+
+    static final class And extends Binary {
+
+        // short-circuit: the right operand only when the left one is true
+        And(ExecNode left, ExecNode right) {
+            super(Operator.AND, left, right);
+        }
+
+        @Override
+        Object execute(NodeInterpreter frame) {
+            try {
+                return this.executeBool(frame);
+            } catch (UnexpectedValue e) {
+                return e.value;
+            }
+        }
+
+        @Override
+        boolean executeBool(NodeInterpreter frame) throws UnexpectedValue {
+            return this.left.executeBool(frame) && this.right.executeBool(frame);
+        }
+    }
+
+    static final class Or extends Binary {
+
+        Or(ExecNode left, ExecNode right) {
+            super(Operator.OR, left, right);
+        }
+
+        @Override
+        Object execute(NodeInterpreter frame) {
+            try {
+                return this.executeBool(frame);
+            } catch (UnexpectedValue e) {
+                return e.value;
+            }
+        }
+
+        @Override
+        boolean executeBool(NodeInterpreter frame) throws UnexpectedValue {
+            return this.left.executeBool(frame) || this.right.executeBool(frame);
+        }
+    }
+
+    static final class GenericBinary extends Binary {
+
+        GenericBinary(Operator operator, ExecNode left, ExecNode right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        Object execute(NodeInterpreter frame) {
+            return apply(this.operator, this.left.execute(frame), this.right.execute(frame));
+        }
+
+        static Object apply(Operator operator, Object left, Object right) {
+            // what the operator does with any values it can be applied to, looking at their types
+            if (operator == Operator.PLUS && (left instanceof String || right instanceof String)) {
+                return String.valueOf(left).concat(String.valueOf(right));
+            }
+            if (left instanceof Integer a && right instanceof Integer b) {
+                int x = a;
+                int y = b;
+                return switch (operator) {
+                    case PLUS -> x + y;
+                    case MINUS -> x - y;
+                    case MULTIPLY -> x * y;
+                    case DIVIDE -> x / y;
+                    case MOD -> x % y;
+                    case LESS -> x < y;
+                    case LESS_EQUAL -> x <= y;
+                    case GREATER -> x > y;
+                    case GREATER_EQUAL -> x >= y;
+                    case EQUAL -> x == y;
+                    case NOT_EQUAL -> x != y;
+                    default -> throw new IllegalStateException("operator " + operator + " on integers");
+                };
+            }
+            if (left instanceof Number a && right instanceof Number b) {
+                double x = a.doubleValue();
+                double y = b.doubleValue();
+                return switch (operator) {
+                    case PLUS -> x + y;
+                    case MINUS -> x - y;
+                    case MULTIPLY -> x * y;
+                    case DIVIDE -> x / y;
+                    case MOD -> x % y;
+                    case LESS -> x < y;
+                    case LESS_EQUAL -> x <= y;
+                    case GREATER -> x > y;
+                    case GREATER_EQUAL -> x >= y;
+                    case EQUAL -> x == y;
+                    case NOT_EQUAL -> x != y;
+                    default -> throw new IllegalStateException("operator " + operator + " on numbers");
+                };
+            }
+            if (left instanceof Boolean a && right instanceof Boolean b) {
+                return switch (operator) {
+                    case AND -> a && b;
+                    case OR -> a || b;
+                    case EQUAL -> a.equals(b);
+                    case NOT_EQUAL -> !a.equals(b);
+                    default -> throw new IllegalStateException("operator " + operator + " on bools");
+                };
+            }
+            if (left instanceof String && right instanceof String) {
+                if (operator == Operator.EQUAL || operator == Operator.NOT_EQUAL) {
+                    return left.equals(right) == (operator == Operator.EQUAL);
+                }
+            }
+            throw new IllegalStateException("operator " + operator + " on " + left + " and " + right);
+        }
+    }
+
+    //------------------- Deep expressions ----------------------
+
+    static final class Deep extends ExecNode {
+
+        /*
+        An expression too deep to be executed by recursion, evaluated generically
+        with stacks, like the Interpreter does. It stays what it is.
+         */
+        private final Expression expression;
+        private Expression[] nodes = new Expression[64];
+        private int[] states = new int[64];
+        private final ArrayList<Object> values = new ArrayList<>();
+
+        Deep(Expression expression) {
+            this.expression = expression;
+        }
+
+        @Override
+        Object execute(NodeInterpreter frame) {
+            int top = this.push(0, this.expression);
+            while (top > 0) {
+                Expression expression = this.nodes[top - 1];
+                int state = this.states[top - 1]++;
+                if (expression instanceof ExpressionBinary binary) {
+                    boolean logical = binary.operator == Operator.AND || binary.operator == Operator.OR;
+                    if (state == 0) {
+                        top = this.push(top, binary.left);
+                    }
+                    else if (state == 1) {
+                        Object left = this.values.get(this.values.size() - 1);
+                        if (logical && (Boolean) left == (binary.operator == Operator.OR)) {
+                            top--;  // the left value decides
+                        }
+                        else {
+                            top = this.push(top, binary.right);
+                        }
+                    }
+                    else {
+                        top--;
+                        Object right = this.values.remove(this.values.size() - 1);
+                        int last = this.values.size() - 1;
+                        this.values.set(last, logical ? right : GenericBinary.apply(binary.operator, this.values.get(last), right));
+                    }
+                }
+                else if (expression instanceof ExpressionUnary unary) {
+                    if (state == 0) {
+                        top = this.push(top, unary.operand);
+                    }
+                    else {
+                        top--;
+                        int last = this.values.size() - 1;
+                        this.values.set(last, GenericUnary.apply(unary.operator, this.values.get(last)));
+                    }
+                }
+                else {
+                    top--;
+                    this.values.add(NodeInterpreter.leaf(expression).execute(frame));
+                }
+            }
+            return this.values.remove(0);
+        }
+
+        private int push(int top, Expression expression) {
+            if (top == this.nodes.length) {
+                this.nodes = Arrays.copyOf(this.nodes, top * 2);
+                this.states = Arrays.copyOf(this.states, top * 2);
+            }
+            this.nodes[top] = expression;
+            this.states[top] = 0;
+            return top + 1;
+        }
+    }
+}
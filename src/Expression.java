@@ -1,13 +1,10 @@
-public class Expression extends Statement {
+public abstract sealed class Expression extends Statement
+        permits ExpressionBinary, ExpressionUnary, IntConst, DoubleConst, BoolConst, StringConst,
+                ExpressionIdentifier, ExpressionRead {
 
-    String operator;
-    Expression left, right;
-    Object value; // identifier name, constant value, type of read operation
+    ValueType type;  // of the value, set by the Resolver for identifiers and the TypeChecker for the rest
 
-    Expression(String operator, Expression left, Expression right, String kind) {
-        this.operator = operator;
-        this.left = left;
-        this.right = right;
-        this.kind = kind;
+    Expression(StatementKind kind) {
+        super(kind);
     }
 }
@@ -1,14 +1,20 @@
-public class ExpressionAssign extends Statement {
+public final class ExpressionAssign extends Statement {
 
     String identifier;
     Expression expression;
     ExpressionAssignEnd end;
+    ValueType type;  // of the variable assigned to and its slot, set by the Resolver
+    int slot = -1;
 
     public ExpressionAssign(String identifier, Expression expression, ExpressionAssignEnd end) {
+        super(StatementKind.ASSIGN_EXPR);
         this.identifier = identifier;
         this.expression = expression;
         this.end = end;
-        this.kind = StatementKind.ASSIGN_EXPR;
     }
 
+    @Override
+    <R> R accept(StatementVisitor<R> visitor) {
+        return visitor.visitAssign(this);
+    }
 }
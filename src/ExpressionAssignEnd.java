@@ -1,11 +1,16 @@
-public class ExpressionAssignEnd extends Statement {
+public final class ExpressionAssignEnd extends Statement {
 
     Expression first;
     Expression second;
 
     ExpressionAssignEnd(Expression first, Expression second) {
+        super(StatementKind.ASSIGN_EXPR_END);
         this.first = first;
         this.second = second;
-        this.kind = StatementKind.ASSIGN_EXPR_END;
+    }
+
+    @Override
+    <R> R accept(StatementVisitor<R> visitor) {
+        return visitor.visitAssignEnd(this);
     }
 }
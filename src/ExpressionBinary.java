@@ -0,0 +1,17 @@
+public final class ExpressionBinary extends Expression {
+
+    Operator operator;
+    Expression left, right;
+
+    ExpressionBinary(Operator operator, Expression left, Expression right) {
+        super(StatementKind.BINARY_EXPR);
+        this.operator = operator;
+        this.left = left;
+        this.right = right;
+    }
+
+    @Override
+    <R> R accept(StatementVisitor<R> visitor) {
+        return visitor.visitBinary(this);
+    }
+}
@@ -0,0 +1,15 @@
+public final class ExpressionIdentifier extends Expression {
+
+    String name;
+    int slot = -1;  // among the variables of its type, set by the Resolver; -1 when it isn't declared
+
+    ExpressionIdentifier(String name) {
+        super(StatementKind.IDENTIFIER);
+        this.name = name;
+    }
+
+    @Override
+    <R> R accept(StatementVisitor<R> visitor) {
+        return visitor.visitIdentifier(this);
+    }
+}
@@ -0,0 +1,202 @@
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Objects;
+
+public class ExpressionInterner {
+
+    /*
+    Hash-consing of expressions: every factory method returns the one Expression
+    that is structurally equal to what it's asked for, making it only if there isn't
+    one yet. The parser builds expressions bottom up, so the children it passes in
+    are canonical already and two nodes are equal exactly when they have the same
+    class, the same operator or value and the very same (==) children. The trees of
+    a program become a DAG where a repeated subexpression is one object, which later
+    passes can rely on to compute it once.
+
+    The table holds its expressions weakly, like a WeakHashMap, so an interner can
+    be kept for many programs: what no tree uses anymore is dropped at the next GC.
+    Nodes are never changed after they're made, that's what makes sharing them safe;
+    the tokens a Statement keeps are only set on statements, never on expressions.
+    The one exception is the slot the Resolver gives an identifier, and it copies an
+    identifier that already has a different one.
+    An interner isn't thread safe, give every thread its own.
+     */
+
+    private Entry[] table = new Entry[256];
+    private int size;
+    private long requests;  // factory calls
+    private long hits;  // of them, answered with an expression that was already there
+    private final ReferenceQueue<Expression> collected = new ReferenceQueue<>();
+
+    private static class Entry extends WeakReference<Expression> {
+
+        final int hash;
+        Entry next;
+
+        Entry(Expression expression, int hash, Entry next, ReferenceQueue<Expression> queue) {
+            super(expression, queue);
+            this.hash = hash;
+            this.next = next;
+        }
+    }
+
+    public ExpressionBinary binary(Operator operator, Expression left, Expression right) {
+        int hash = mix(mix(mix(StatementKind.BINARY_EXPR.ordinal(), operator.ordinal()),
+                System.identityHashCode(left)), System.identityHashCode(right));
+        for (Entry e = this.find(hash); e != null; e = e.next) {
+            if (e.hash == hash && e.get() instanceof ExpressionBinary b
+                    && b.operator == operator && b.left == left && b.right == right) {
+                return this.hit(b);
+            }
+        }
+        return this.add(new ExpressionBinary(operator, left, right), hash);
+    }
+
+    public ExpressionUnary unary(Operator operator, Expression operand) {
+        int hash = mix(mix(StatementKind.UNARY_EXPR.ordinal(), operator.ordinal()), System.identityHashCode(operand));
+        for (Entry e = this.find(hash); e != null; e = e.next) {
+            if (e.hash == hash && e.get() instanceof ExpressionUnary u && u.operator == operator && u.operand == operand) {
+                return this.hit(u);
+            }
+        }
+        return this.add(new ExpressionUnary(operator, operand), hash);
+    }
+
+    public IntConst intConst(int value) {
+        int hash = mix(StatementKind.INT_CONSTANT.ordinal(), value);
+        for (Entry e = this.find(hash); e != null; e = e.next) {
+            if (e.hash == hash && e.get() instanceof IntConst c && c.value == value) {
+                return this.hit(c);
+            }
+        }
+        return this.add(new IntConst(value), hash);
+    }
+
+    public DoubleConst doubleConst(double value) {
+        // the same bits, so 0.0 and -0.0 stay apart
+        long bits = Double.doubleToLongBits(value);
+        int hash = mix(StatementKind.DOUBLE_CONSTANT.ordinal(), Long.hashCode(bits));
+        for (Entry e = this.find(hash); e != null; e = e.next) {
+            if (e.hash == hash && e.get() instanceof DoubleConst c && Double.doubleToLongBits(c.value) == bits) {
+                return this.hit(c);
+            }
+        }
+        return this.add(new DoubleConst(value), hash);
+    }
+
+    public BoolConst boolConst(boolean value) {
+        int hash = mix(StatementKind.BOOL_CONSTANT.ordinal(), value ? 1 : 0);
+        for (Entry e = this.find(hash); e != null; e = e.next) {
+            if (e.hash == hash && e.get() instanceof BoolConst c && c.value == value) {
+                return this.hit(c);
+            }
+        }
+        return this.add(new BoolConst(value), hash);
+    }
+
+    public StringConst stringConst(String value) {
+        int hash = mix(StatementKind.STRING_CONSTANT.ordinal(), value.hashCode());
+        for (Entry e = this.find(hash); e != null; e = e.next) {
+            if (e.hash == hash && e.get() instanceof StringConst c && c.value.equals(value)) {
+                return this.hit(c);
+            }
+        }
+        return this.add(new StringConst(value), hash);
+    }
+
+    public ExpressionIdentifier identifier(String name) {
+        int hash = mix(StatementKind.IDENTIFIER.ordinal(), name == null ? 0 : name.hashCode());
+        for (Entry e = this.find(hash); e != null; e = e.next) {
+            if (e.hash == hash && e.get() instanceof ExpressionIdentifier i && Objects.equals(i.name, name)) {
+                return this.hit(i);
+            }
+        }
+        return this.add(new ExpressionIdentifier(name), hash);
+    }
+
+    public ExpressionRead read(TokenCode operation) {
+        int hash = mix(StatementKind.READ_OPERATION.ordinal(), operation.ordinal());
+        for (Entry e = this.find(hash); e != null; e = e.next) {
+            if (e.hash == hash && e.get() instanceof ExpressionRead r && r.operation == operation) {
+                return this.hit(r);
+            }
+        }
+        return this.add(new ExpressionRead(operation), hash);
+    }
+
+    public int size() {
+        // expressions in the table, some of them may have been collected already
+        return this.size;
+    }
+
+    public long requests() {
+        return this.requests;
+    }
+
+    public long hits() {
+        return this.hits;
+    }
+
+    //------------------- The table ----------------------
+
+    private static int mix(int hash, int value) {
+        return (hash + value) * 0x9E3779B9 ^ (hash >>> 16);
+    }
+
+    private Entry find(int hash) {
+        // the chain where hash would be, after dropping what has been collected
+        this.expunge();
+        this.requests++;
+        return this.table[(hash ^ hash >>> 16) & (this.table.length - 1)];
+    }
+
+    private <E extends Expression> E hit(E expression) {
+        this.hits++;
+        return expression;
+    }
+
+    private <E extends Expression> E add(E expression, int hash) {
+        if (++this.size * 4 > this.table.length * 3) {
+            this.grow();
+        }
+        int slot = (hash ^ hash >>> 16) & (this.table.length - 1);
+        this.table[slot] = new Entry(expression, hash, this.table[slot], this.collected);
+        return expression;
+    }
+
+    private void grow() {
+        Entry[] old = this.table;
+        this.table = new Entry[old.length * 2];
+        int mask = this.table.length - 1;
+        for (Entry chain : old) {
+            while (chain != null) {
+                Entry next = chain.next;
+                int slot = (chain.hash ^ chain.hash >>> 16) & mask;
+                chain.next = this.table[slot];
+                this.table[slot] = chain;
+                chain = next;
+            }
+        }
+    }
+
+    private void expunge() {
+        // unlink the entries whose expression the GC has taken
+        for (Object collected; (collected = this.collected.poll()) != null; ) {
+            Entry entry = (Entry) collected;
+            int slot = (entry.hash ^ entry.hash >>> 16) & (this.table.length - 1);
+            Entry previous = null;
+            for (Entry e = this.table[slot]; e != null; previous = e, e = e.next) {
+                if (e == entry) {
+                    if (previous == null) {
+                        this.table[slot] = e.next;
+                    }
+                    else {
+                        previous.next = e.next;
+                    }
+                    this.size--;
+                    break;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,14 @@
+public final class ExpressionRead extends Expression {
+
+    TokenCode operation;  // READINT, READSTRING, READDOUBLE or READBOOL
+
+    ExpressionRead(TokenCode operation) {
+        super(StatementKind.READ_OPERATION);
+        this.operation = operation;
+    }
+
+    @Override
+    <R> R accept(StatementVisitor<R> visitor) {
+        return visitor.visitRead(this);
+    }
+}
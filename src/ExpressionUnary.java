@@ -0,0 +1,16 @@
+public final class ExpressionUnary extends Expression {
+
+    Operator operator;  // NOT or MINUS
+    Expression operand;
+
+    ExpressionUnary(Operator operator, Expression operand) {
+        super(StatementKind.UNARY_EXPR);
+        this.operator = operator;
+        this.operand = operand;
+    }
+
+    @Override
+    <R> R accept(StatementVisitor<R> visitor) {
+        return visitor.visitUnary(this);
+    }
+}
@@ -0,0 +1,569 @@
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+public class FlatAst {
+
+    /*
+    The tree of a program in a few int arrays instead of an object per node. A node
+    is an index into them:
+        kinds       the kind of the node, and for BINARY and UNARY the Operator's ordinal << 8,
+                    for DECLARATION the ordinal of the type's TokenCode << 8 (NO_TYPE if missing)
+        children    the first child of the node, -1 when it has none; the rest are its
+                    next siblings. A leaf keeps its value in there instead: an int constant,
+                    0/1 for a boolean, the index of a double in doubles, of a string, a name
+                    or a declared name in strings (-1 if it has none), a READ*'s TokenCode ordinal
+        next        the next sibling, -1 for the last child
+
+    That's 12 bytes for a node, where the Statement classes take a header, a kind, a
+    couple of pointers, two Tokens and a boxed value. Every missing part of a statement
+    (a null in the object tree, after an error) is a NULL node, so a node always has
+    the same number of children:
+        PROGRAM      DECLARATIONS SEQUENCE
+        DECLARATIONS DECLARATION*               SEQUENCE     statement*
+        IF           condition SEQUENCE END_IF  END_IF       SEQUENCE of the ELSE, or nothing after FI
+        WHILE        condition SEQUENCE         FOR          ASSIGN condition ASSIGN SEQUENCE
+        PRINT        expression                 REPEAT       SEQUENCE condition
+        CALC         expression*                BREAK        nothing
+        ASSIGN       IDENTIFIER expression ASSIGN_END
+        ASSIGN_END   expression expression      BINARY       left right
+        UNARY        operand
+
+    The tree is built without recursion, so a deep expression fits as well as a long
+    one. It's walked with the accessors, or with walk() and a Visitor, which don't
+    make an object per node either. With parse(), the statements go into the arrays
+    as the parser streams them, and none of the object tree is kept.
+     */
+
+    // node kinds
+    public static final int NULL = 0;
+    public static final int PROGRAM = 1;
+    public static final int DECLARATIONS = 2;
+    public static final int DECLARATION = 3;
+    public static final int SEQUENCE = 4;
+    public static final int IF = 5;
+    public static final int END_IF = 6;
+    public static final int WHILE = 7;
+    public static final int FOR = 8;
+    public static final int BREAK = 9;
+    public static final int PRINT = 10;
+    public static final int REPEAT = 11;
+    public static final int CALC = 12;
+    public static final int ASSIGN = 13;
+    public static final int ASSIGN_END = 14;
+    public static final int BINARY = 15;
+    public static final int UNARY = 16;
+    // leaves
+    public static final int INT_CONSTANT = 17;
+    public static final int DOUBLE_CONSTANT = 18;
+    public static final int BOOL_CONSTANT = 19;
+    public static final int STRING_CONSTANT = 20;
+    public static final int IDENTIFIER = 21;
+    public static final int READ = 22;
+
+    static final int NO_TYPE = 0xFF;
+    private static final TokenCode[] CODES = TokenCode.values();
+    private static final Operator[] OPERATORS = Operator.values();
+    private static final HashMap<String, Integer> typeCodes = new HashMap<>();
+
+    static {
+        for (TokenCode code : CODES) {
+            typeCodes.put(code.toString(), code.ordinal());
+        }
+    }
+
+    // package-private for AstFile, which writes them out as they are
+    int[] kinds = new int[256];
+    int[] children = new int[256];
+    int[] next = new int[256];
+    int size;
+    long[] doubles = new long[16];  // raw bits
+    int doubleCount;
+    String[] strings = new String[64];
+    int stringCount;
+    private final HashMap<String, Integer> stringIndex = new HashMap<>();
+
+    final int root;
+    final int declarations;
+    final int sequence;
+    private int lastStatement = -1;  // the last child of sequence
+
+    public FlatAst() {
+        // an empty program, filled by addStatement() and setDeclarations()
+        this.root = this.node(PROGRAM, -1);
+        this.declarations = this.node(DECLARATIONS, -1);
+        this.sequence = this.node(SEQUENCE, -1);
+        this.children[this.root] = this.declarations;
+        this.next[this.declarations] = this.sequence;
+    }
+
+    public static FlatAst of(Program program) {
+        FlatAst ast = new FlatAst();
+        ast.setDeclarations(program.declarations);
+        for (Statement statement : program.commandSequence.statements) {
+            ast.addStatement(statement);
+        }
+        return ast;
+    }
+
+    public static FlatAst parse(Parser parser) {
+        // parse straight into the arrays, every statement of the main command sequence is dropped once it's in
+        FlatAst ast = new FlatAst();
+        Program program = parser.parse(ast::addStatement);
+        ast.setDeclarations(program.declarations);
+        return ast;
+    }
+
+    public void setDeclarations(ArrayList<Declaration> declarations) {
+        int previous = -1;
+        for (Declaration declaration : declarations) {
+            if (declaration == null) {
+                continue;  // a name that was declared twice, like printProgram the tree leaves it out
+            }
+            Integer type = typeCodes.get(declaration.type);
+            int node = this.node(DECLARATION | (type != null ? type : NO_TYPE) << 8, this.string(declaration.identifier));
+            this.link(this.declarations, previous, node);
+            previous = node;
+        }
+    }
+
+    public void addStatement(Statement statement) {
+        // append a statement to the main command sequence
+        int node = this.add(statement);
+        this.link(this.sequence, this.lastStatement, node);
+        this.lastStatement = node;
+        this.expand();
+    }
+
+    //------------------- Building ----------------------
+
+    // objects whose node has been made but whose children haven't, and their nodes
+    private Object[] pending = new Object[64];
+    private int[] pendingNodes = new int[64];
+    private int pendingCount;
+
+    private void expand() {
+        // make the children of the pending nodes until there are none left
+        while (this.pendingCount > 0) {
+            this.pendingCount--;
+            Object object = this.pending[this.pendingCount];
+            this.pending[this.pendingCount] = null;
+            int node = this.pendingNodes[this.pendingCount];
+            if (object instanceof CommandSequence) {
+                this.addChildren(node, ((CommandSequence) object).statements.toArray());
+                continue;
+            }
+            switch (((Statement) object).kind) {
+                case IF_STATEMENT -> {
+                    StatementIf statement = (StatementIf) object;
+                    this.addChildren(node, statement.expression, statement.commandSequence, statement.endIfStatement);
+                }
+                case END_IF_STATEMENT -> {
+                    StatementEndIf statement = (StatementEndIf) object;
+                    if (statement.commandSequence != null) {
+                        this.addChildren(node, statement.commandSequence);
+                    }
+                }
+                case WHILE_STATEMENT -> {
+                    StatementWhile statement = (StatementWhile) object;
+                    this.addChildren(node, statement.expression, statement.commandSequence);
+                }
+                case FOR_STATEMENT -> {
+                    StatementFor statement = (StatementFor) object;
+                    this.addChildren(node, statement.first, statement.expression, statement.second, statement.commandSequence);
+                }
+                case PRINT_STATEMENT -> this.addChildren(node, ((StatementPrint) object).expression);
+                case REPEAT_STATEMENT -> {
+                    StatementRepeat statement = (StatementRepeat) object;
+                    this.addChildren(node, statement.commandSequence, statement.expression);
+                }
+                case CALC_STATEMENT -> this.addChildren(node, ((StatementCalc) object).expressions.toArray());
+                case ASSIGN_EXPR -> {
+                    ExpressionAssign assign = (ExpressionAssign) object;
+                    int identifier = this.node(IDENTIFIER, this.string(assign.identifier));
+                    this.children[node] = identifier;
+                    this.appendChildren(node, identifier, assign.expression, assign.end);
+                }
+                case ASSIGN_EXPR_END -> {
+                    ExpressionAssignEnd end = (ExpressionAssignEnd) object;
+                    this.addChildren(node, end.first, end.second);
+                }
+                case BINARY_EXPR -> {
+                    ExpressionBinary binary = (ExpressionBinary) object;
+                    this.addChildren(node, binary.left, binary.right);
+                }
+                case UNARY_EXPR -> this.addChildren(node, ((ExpressionUnary) object).operand);
+                default -> { }  // BREAK and the leaves aren't pending
+            }
+        }
+    }
+
+    private void addChildren(int parent, Object... objects) {
+        // nodes for objects as the children of parent, put on the pending stack to get their own
+        this.appendChildren(parent, -1, objects);
+    }
+
+    private void appendChildren(int parent, int previous, Object... objects) {
+        // the same, after the child previous that's already there
+        for (Object object : objects) {
+            int node = this.add(object);
+            this.link(parent, previous, node);
+            previous = node;
+        }
+    }
+
+    private int add(Object object) {
+        // a node for object, with its value if it's a leaf; an inner node goes on the pending stack
+        if (object == null) {
+            return this.node(NULL, -1);
+        }
+        if (object instanceof CommandSequence) {
+            return this.pend(object, this.node(SEQUENCE, -1));
+        }
+        Statement statement = (Statement) object;
+        return switch (statement.kind) {
+            case IF_STATEMENT -> this.pend(object, this.node(IF, -1));
+            case END_IF_STATEMENT -> this.pend(object, this.node(END_IF, -1));
+            case WHILE_STATEMENT -> this.pend(object, this.node(WHILE, -1));
+            case FOR_STATEMENT -> this.pend(object, this.node(FOR, -1));
+            case BREAK_STATEMENT -> this.node(BREAK, -1);
+            case PRINT_STATEMENT -> this.pend(object, this.node(PRINT, -1));
+            case REPEAT_STATEMENT -> this.pend(object, this.node(REPEAT, -1));
+            case CALC_STATEMENT -> this.pend(object, this.node(CALC, -1));
+            case ASSIGN_EXPR -> this.pend(object, this.node(ASSIGN, -1));
+            case ASSIGN_EXPR_END -> this.pend(object, this.node(ASSIGN_END, -1));
+            case BINARY_EXPR -> this.pend(object, this.node(BINARY | ((ExpressionBinary) object).operator.ordinal() << 8, -1));
+            case UNARY_EXPR -> this.pend(object, this.node(UNARY | ((ExpressionUnary) object).operator.ordinal() << 8, -1));
+            case INT_CONSTANT -> this.node(INT_CONSTANT, ((IntConst) object).value);
+            case DOUBLE_CONSTANT -> {
+                if (this.doubleCount == this.doubles.length) {
+                    this.doubles = Arrays.copyOf(this.doubles, this.doubleCount * 2);
+                }
+                this.doubles[this.doubleCount] = Double.doubleToRawLongBits(((DoubleConst) object).value);
+                yield this.node(DOUBLE_CONSTANT, this.doubleCount++);
+            }
+            case BOOL_CONSTANT -> this.node(BOOL_CONSTANT, ((BoolConst) object).value ? 1 : 0);
+            case STRING_CONSTANT -> this.node(STRING_CONSTANT, this.string(((StringConst) object).value));
+            case IDENTIFIER -> this.node(IDENTIFIER, this.string(((ExpressionIdentifier) object).name));
+            case READ_OPERATION -> this.node(READ, ((ExpressionRead) object).operation.ordinal());
+        };
+    }
+
+    private int pend(Object object, int node) {
+        if (this.pendingCount == this.pending.length) {
+            this.pending = Arrays.copyOf(this.pending, this.pendingCount * 2);
+            this.pendingNodes = Arrays.copyOf(this.pendingNodes, this.pendingCount * 2);
+        }
+        this.pending[this.pendingCount] = object;
+        this.pendingNodes[this.pendingCount++] = node;
+        return node;
+    }
+
+    private int node(int kind, int child) {
+        if (this.size == this.kinds.length) {
+            this.kinds = Arrays.copyOf(this.kinds, this.size * 2);
+            this.children = Arrays.copyOf(this.children, this.size * 2);
+            this.next = Arrays.copyOf(this.next, this.size * 2);
+        }
+        this.kinds[this.size] = kind;
+        this.children[this.size] = child;
+        this.next[this.size] = -1;
+        return this.size++;
+    }
+
+    private void link(int parent, int previous, int node) {
+        if (previous < 0) {
+            this.children[parent] = node;
+        }
+        else {
+            this.next[previous] = node;
+        }
+    }
+
+    private int string(String string) {
+        if (string == null) {
+            return -1;
+        }
+        Integer index = this.stringIndex.get(string);
+        if (index == null) {
+            if (this.stringCount == this.strings.length) {
+                this.strings = Arrays.copyOf(this.strings, this.stringCount * 2);
+            }
+            index = this.stringCount;
+            this.strings[this.stringCount++] = string;
+            this.stringIndex.put(string, index);
+        }
+        return index;
+    }
+
+    //------------------- Reading ----------------------
+
+    public int root() {
+        return this.root;
+    }
+
+    public int size() {
+        // the number of nodes
+        return this.size;
+    }
+
+    public int kind(int node) {
+        return this.kinds[node] & 0xFF;
+    }
+
+    public static boolean isLeaf(int kind) {
+        return kind >= INT_CONSTANT || kind == NULL || kind == BREAK || kind == DECLARATION;
+    }
+
+    public Operator operator(int node) {
+        // of a BINARY or UNARY node
+        return OPERATORS[this.kinds[node] >>> 8];
+    }
+
+    public String type(int node) {
+        // of a DECLARATION, the way the Parser names it
+        int type = this.kinds[node] >>> 8;
+        return type == NO_TYPE ? "Non existent variable type" : CODES[type].toString();
+    }
+
+    public int firstChild(int node) {
+        return isLeaf(this.kind(node)) ? -1 : this.children[node];
+    }
+
+    public int nextSibling(int node) {
+        return this.next[node];
+    }
+
+    public int child(int node, int index) {
+        int child = this.firstChild(node);
+        for (int i = 0; i < index; i++) {
+            child = this.next[child];
+        }
+        return child;
+    }
+
+    public int intValue(int node) {
+        // of an INT_CONSTANT
+        return this.children[node];
+    }
+
+    public boolean boolValue(int node) {
+        return this.children[node] != 0;
+    }
+
+    public double doubleValue(int node) {
+        return Double.longBitsToDouble(this.doubles[this.children[node]]);
+    }
+
+    public String string(int node) {
+        // of a STRING_CONSTANT, the name of an IDENTIFIER or a DECLARATION
+        int index = this.children[node];
+        return index < 0 ? null : this.strings[index];
+    }
+
+    public TokenCode readOperation(int node) {
+        return CODES[this.children[node]];
+    }
+
+    public Object value(int node) {
+        // the value of a leaf, boxed, for printing
+        return switch (this.kind(node)) {
+            case INT_CONSTANT -> this.intValue(node);
+            case DOUBLE_CONSTANT -> this.doubleValue(node);
+            case BOOL_CONSTANT -> this.boolValue(node) ? "true" : "false";
+            case STRING_CONSTANT, IDENTIFIER, DECLARATION -> this.string(node);
+            case READ -> this.readOperation(node).toString();
+            default -> null;
+        };
+    }
+
+    public interface Visitor {
+        // called for every node in prefix order; returning false skips its children
+        boolean enter(FlatAst ast, int node, int depth);
+
+        // called after the children of a node (also when they were skipped)
+        default void exit(FlatAst ast, int node, int depth) {
+        }
+    }
+
+    public void walk(Visitor visitor) {
+        this.walk(this.root, visitor);
+    }
+
+    public void walk(int start, Visitor visitor) {
+        // the subtree of start, without recursion; the only thing allocated is the stack of parents
+        int[] parents = new int[16];
+        int depth = 0;
+        int node = start;
+        while (true) {
+            int child = this.firstChild(node);
+            if (visitor.enter(this, node, depth) && child >= 0) {
+                if (depth == parents.length) {
+                    parents = Arrays.copyOf(parents, depth * 2);
+                }
+                parents[depth++] = node;
+                node = child;
+                continue;
+            }
+            visitor.exit(this, node, depth);
+            while (node != start && this.next[node] < 0) {
+                node = parents[--depth];
+                visitor.exit(this, node, depth);
+            }
+            if (node == start) {
+                return;
+            }
+            node = this.next[node];
+        }
+    }
+
+    //------------------- Printing ----------------------
+
+    public void print(PrintStream out) {
+        // the same as Parser.printProgram
+        new Printer(this, out).print();
+    }
+
+    private static class Printer {
+
+        private final FlatAst ast;
+        private final PrintStream out;
+
+        Printer(FlatAst ast, PrintStream out) {
+            this.ast = ast;
+            this.out = out;
+        }
+
+        void print() {
+            this.out.println("\nDECLARATIONS\n");
+            for (int node = this.ast.firstChild(this.ast.declarations); node >= 0; node = this.ast.nextSibling(node)) {
+                this.out.printf("\tType: %s, Name: %s\n", this.ast.type(node), this.ast.string(node));
+            }
+            this.out.println();
+            this.printSequence(this.ast.sequence, 1);
+        }
+
+        private String tabs(int numTabs) {
+            return "\t".repeat(numTabs);
+        }
+
+        private void printSequence(int node, int numTabs) {
+            this.out.println(this.tabs(numTabs - 1) + "COMMANDS:");
+            for (int statement = this.ast.firstChild(node); statement >= 0; statement = this.ast.nextSibling(statement)) {
+                this.printStatement(statement, numTabs);
+            }
+        }
+
+        private void printStatement(int node, int numTabs) {
+            String tabs = this.tabs(numTabs);
+            int a = this.ast.firstChild(node);
+            switch (this.ast.kind(node)) {
+                case NULL -> this.out.println(tabs + "NULL STATEMENT");
+                case IF -> {
+                    this.out.println(tabs + StatementKind.IF_STATEMENT);
+                    this.out.println(tabs + "\t" + "CONDITION:");
+                    this.printExpr(a, numTabs + 2);
+                    int b = this.ast.nextSibling(a);
+                    this.printSequence(b, numTabs + 2);
+                    int end = this.ast.nextSibling(b);
+                    if (this.ast.kind(end) == NULL) {
+                        this.out.println(tabs + "NULL END IF STATEMENT");
+                    }
+                    else if (this.ast.firstChild(end) >= 0) {
+                        this.out.println(tabs + "ELSE statement");
+                        this.printSequence(this.ast.firstChild(end), numTabs + 2);
+                    }
+                    else {
+                        this.out.println(tabs + "END IF");
+                    }
+                }
+                case WHILE -> {
+                    this.out.println(tabs + StatementKind.WHILE_STATEMENT);
+                    this.out.println(tabs + "\t" + "CONDITION:");
+                    this.printExpr(a, numTabs + 2);
+                    this.printSequence(this.ast.nextSibling(a), numTabs + 2);
+                }
+                case FOR -> {
+                    this.out.println(tabs + StatementKind.FOR_STATEMENT);
+                    this.printAssign(a, numTabs + 1);
+                    this.out.println(tabs + "\t" + "EXPRESSION:");
+                    int b = this.ast.nextSibling(a);
+                    this.printExpr(b, numTabs + 2);
+                    int c = this.ast.nextSibling(b);
+                    this.printAssign(c, numTabs + 1);
+                    this.printSequence(this.ast.nextSibling(c), numTabs + 2);
+                }
+                case BREAK -> this.out.println(tabs + StatementKind.BREAK_STATEMENT);
+                case PRINT -> {
+                    this.out.println(tabs + StatementKind.PRINT_STATEMENT);
+                    this.out.println(tabs + "\t" + "EXPRESSION:");
+                    this.printExpr(a, numTabs + 2);
+                }
+                case REPEAT -> {
+                    this.out.println(tabs + StatementKind.REPEAT_STATEMENT);
+                    this.printSequence(a, numTabs + 2);
+                    this.out.println(tabs + "\t" + "UNTIL:");
+                    this.printExpr(this.ast.nextSibling(a), numTabs + 2);
+                }
+                case CALC -> {
+                    this.out.println(tabs + StatementKind.CALC_STATEMENT);
+                    for (int expression = a; expression >= 0; expression = this.ast.nextSibling(expression)) {
+                        this.printExpr(expression, numTabs + 1);
+                    }
+                }
+                case ASSIGN -> this.printAssign(node, numTabs);
+                case BINARY, UNARY -> this.printExpr(node, numTabs);
+                default -> { }
+            }
+        }
+
+        private void printAssign(int node, int numTabs) {
+            String tabs = this.tabs(numTabs);
+            int identifier = this.ast.firstChild(node);
+            int expression = this.ast.nextSibling(identifier);
+            int end = this.ast.nextSibling(expression);
+            this.out.println(tabs + StatementKind.ASSIGN_EXPR);
+            this.out.println(tabs + "\t" + "IDENTIFIER: " + this.ast.string(identifier));
+            this.out.println(tabs + "\t" + "EXPRESSION:");
+            this.printExpr(expression, numTabs + 2);
+            this.out.println(tabs + "\t" + "END:");
+            tabs = this.tabs(numTabs + 1);
+            if (this.ast.kind(end) == NULL) {
+                this.out.println(tabs + "IMMEDIATE ASSIGN EXPR END");
+            }
+            else {
+                int first = this.ast.firstChild(end);
+                this.out.println(tabs + "\t" + "FIRST EXPR:");
+                this.printExpr(first, numTabs + 3);
+                this.out.println(tabs + "\t" + "SECOND EXPR:");
+                this.printExpr(this.ast.nextSibling(first), numTabs + 3);
+            }
+        }
+
+        private void printExpr(int node, int numTabs) {
+            String tabs = this.tabs(numTabs);
+            switch (this.ast.kind(node)) {
+                case NULL -> this.out.println(tabs + "NULL EXPRESSION");
+                case BINARY -> {
+                    int left = this.ast.firstChild(node);
+                    this.out.println(tabs + StatementKind.BINARY_EXPR);
+                    this.out.println(tabs + "\t" + "LEFT OPERAND:");
+                    this.printExpr(left, numTabs + 2);
+                    this.out.println(tabs + "\t" + "OPERATOR: " + this.ast.operator(node));
+                    this.out.println(tabs + "\t" + "RIGHT OPERAND:");
+                    this.printExpr(this.ast.nextSibling(left), numTabs + 2);
+                }
+                case UNARY -> {
+                    this.out.println(tabs + StatementKind.UNARY_EXPR);
+                    this.out.println(tabs + "\t" + "OPERATOR: " + this.ast.operator(node));
+                    this.out.println(tabs + "\t" + "EXPRESSION:");
+                    this.printExpr(this.ast.firstChild(node), numTabs + 2);
+                }
+                case IDENTIFIER -> this.out.println(tabs + StatementKind.IDENTIFIER + ": " + this.ast.value(node));
+                case READ -> this.out.println(tabs + StatementKind.READ_OPERATION + ": " + this.ast.value(node));
+                default -> this.out.println(tabs + StatementKind.INT_CONSTANT + ": " + this.ast.value(node));  // any CONSTANT
+            }
+        }
+    }
+}
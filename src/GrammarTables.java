@@ -0,0 +1,403 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class GrammarTables {
+
+    /*
+    Build step for the Parser: reads grammar.txt, computes the FIRST and FOLLOW sets
+    of every nonterminal, checks that the grammar is LL(1) and writes them out as
+    ParserTables.java, so the Parser's decisions come from the grammar and can't
+    drift away from it.
+
+        javac -d out src/*.java && java -cp out GrammarTables grammar.txt src/ParserTables.java
+
+    Grammar format: "Name -> alternatives | separated | by bars", a line that doesn't
+    have an arrow goes on with the rule above it. Symbols are separated by blanks;
+    eps is the empty string and X+ is one or more X. A symbol with a rule is a
+    nonterminal, anything else has to be a terminal: a TokenCode name or one of the
+    spellings in TERMINALS.
+
+    Sets are bitmasks of TokenCode ordinals (there are fewer than 64 codes), so the
+    Parser tests a token with a shift and an and. On an LL(1) conflict nothing is
+    written, the conflicts are printed and the exit status is 1.
+     */
+
+    private static final Map<String, TokenCode> TERMINALS = new HashMap<>();
+
+    static {
+        TERMINALS.put("ident", TokenCode.IDENTIFIER);
+        TERMINALS.put("integer", TokenCode.INTEGER_TYPE);
+        TERMINALS.put("bool", TokenCode.BOOL_TYPE);
+        TERMINALS.put("string", TokenCode.STRING_TYPE);
+        TERMINALS.put("double", TokenCode.DOUBLE_TYPE);
+        TERMINALS.put("integerConstant", TokenCode.INTEGER_CONSTANT);
+        TERMINALS.put("boolConstant", TokenCode.BOOL_CONSTANT);
+        TERMINALS.put("stringConstant", TokenCode.STRING_CONSTANT);
+        TERMINALS.put("doubleConstant", TokenCode.DOUBLE_CONSTANT);
+        TERMINALS.put("+", TokenCode.PLUS);
+        TERMINALS.put("-", TokenCode.MINUS);
+        TERMINALS.put("*", TokenCode.MULTIPLY);
+        TERMINALS.put("/", TokenCode.DIVIDE);
+        TERMINALS.put("%", TokenCode.MOD);
+        TERMINALS.put("<", TokenCode.LESS);
+        TERMINALS.put("<=", TokenCode.LESS_EQUAL);
+        TERMINALS.put(">", TokenCode.GREATER);
+        TERMINALS.put(">=", TokenCode.GREATER_EQUAL);
+        TERMINALS.put("=", TokenCode.SINGLE_EQUALS);
+        TERMINALS.put("==", TokenCode.DOUBLE_EQUALS);
+        TERMINALS.put("!=", TokenCode.NOT_EQUALS);
+        TERMINALS.put("&&", TokenCode.AND);
+        TERMINALS.put("||", TokenCode.OR);
+        TERMINALS.put("!", TokenCode.NOT);
+        TERMINALS.put(";", TokenCode.SEMICOLON);
+        TERMINALS.put("(", TokenCode.LEFT_REGULAR);
+        TERMINALS.put(")", TokenCode.RIGHT_REGULAR);
+        TERMINALS.put("{", TokenCode.LEFT_CURLY);
+        TERMINALS.put("}", TokenCode.RIGHT_CURLY);
+        TERMINALS.put("?", TokenCode.QUESTION_MARK);
+        TERMINALS.put(":", TokenCode.COLON);
+    }
+
+    private static final String EPS = "eps";
+    private static final TokenCode[] CODES = TokenCode.values();
+
+    // Rules in the order of the file, then the ones made for X+; each alternative is a list of symbols
+    private final Map<String, List<List<String>>> rules = new LinkedHashMap<>();
+    private final List<String> declared = new ArrayList<>();  // nonterminals of the file, in order
+    private final Map<String, String> written = new HashMap<>();  // their rules as in the file, for the comments
+    private final Map<String, Long> first = new HashMap<>();
+    private final Map<String, Boolean> nullable = new HashMap<>();
+    private final Map<String, Long> follow = new HashMap<>();
+    private final List<String> conflicts = new ArrayList<>();
+
+    public static void main(String[] args) throws IOException {
+        Path grammar = Path.of(args.length > 0 ? args[0] : "grammar.txt");
+        Path output = Path.of(args.length > 1 ? args[1] : "src/ParserTables.java");
+        if (CODES.length > 64) {
+            throw new IllegalStateException("TokenCode has more than 64 values, the sets don't fit in a long");
+        }
+        GrammarTables tables = new GrammarTables();
+        tables.read(Files.readAllLines(grammar, StandardCharsets.UTF_8));
+        tables.computeFirst();
+        tables.computeFollow();
+        tables.check();
+        if (!tables.conflicts.isEmpty()) {
+            for (String conflict : tables.conflicts) {
+                System.out.println("-- " + conflict);
+            }
+            System.out.printf("The grammar is not LL(1), %d conflicts; %s not written%n", tables.conflicts.size(), output);
+            System.exit(1);
+        }
+        Files.writeString(output, tables.generate(grammar.getFileName().toString()), StandardCharsets.UTF_8);
+        System.out.printf("The grammar is LL(1); %d nonterminals written to %s%n", tables.declared.size(), output);
+    }
+
+    //------------------- Reading the grammar ----------------------
+
+    private void read(List<String> lines) {
+        String current = null;
+        StringBuilder body = new StringBuilder();
+        for (String line : lines) {
+            int arrow = line.indexOf("->");
+            if (arrow >= 0) {
+                if (current != null) {
+                    this.addRule(current, body.toString());
+                }
+                current = line.substring(0, arrow).trim();
+                body.setLength(0);
+                body.append(line.substring(arrow + 2));
+            }
+            else if (!line.isBlank()) {
+                if (current == null) {
+                    throw new IllegalArgumentException("Grammar line without a rule: " + line);
+                }
+                body.append(' ').append(line);
+            }
+        }
+        if (current != null) {
+            this.addRule(current, body.toString());
+        }
+
+        // every symbol has to be a nonterminal or a known terminal
+        for (List<List<String>> alternatives : new ArrayList<>(this.rules.values())) {
+            for (List<String> alternative : alternatives) {
+                for (int i = 0; i < alternative.size(); i++) {
+                    alternative.set(i, this.symbol(alternative.get(i)));
+                }
+            }
+        }
+    }
+
+    private void addRule(String name, String body) {
+        if (this.rules.containsKey(name)) {
+            throw new IllegalArgumentException("Two rules for " + name);
+        }
+        List<List<String>> alternatives = new ArrayList<>();
+        // a bar alone is the separator; "||" is a terminal
+        for (String text : (" " + body + " ").split("\\s\\|\\s")) {
+            List<String> alternative = new ArrayList<>();
+            for (String symbol : text.trim().split("\\s+")) {
+                if (!symbol.isEmpty() && !symbol.equals(EPS)) {
+                    alternative.add(symbol);
+                }
+            }
+            alternatives.add(alternative);
+        }
+        this.rules.put(name, alternatives);
+        this.declared.add(name);
+        this.written.put(name, body.trim().replaceAll("\\s+", " "));
+    }
+
+    private String symbol(String symbol) {
+        // the symbol as it is used from here on: a nonterminal, a TokenCode name, or X* for the rest of X+
+        if (this.rules.containsKey(symbol)) {
+            return symbol;
+        }
+        if (symbol.length() > 1 && symbol.endsWith("+")) {
+            String repeated = this.symbol(symbol.substring(0, symbol.length() - 1));
+            String rest = repeated + "*";
+            if (!this.rules.containsKey(rest)) {
+                // X+ = X X*, X* -> X X* | eps
+                List<List<String>> alternatives = new ArrayList<>();
+                alternatives.add(new ArrayList<>(List.of(repeated, rest)));
+                alternatives.add(new ArrayList<>());
+                this.rules.put(rest, alternatives);
+            }
+            return repeated + " " + rest;
+        }
+        if (TERMINALS.containsKey(symbol)) {
+            return TERMINALS.get(symbol).name();
+        }
+        try {
+            return TokenCode.valueOf(symbol).name();
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown symbol " + symbol + ": no rule for it and it isn't a terminal");
+        }
+    }
+
+    private List<String> symbols(List<String> alternative) {
+        // X+ was turned into "X X*", one entry for two symbols
+        List<String> symbols = new ArrayList<>();
+        for (String entry : alternative) {
+            symbols.addAll(List.of(entry.split(" ")));
+        }
+        return symbols;
+    }
+
+    //------------------- FIRST, FOLLOW and the LL(1) check ----------------------
+
+    private boolean isTerminal(String symbol) {
+        return !this.rules.containsKey(symbol);
+    }
+
+    private long firstOf(List<String> symbols, int from) {
+        // FIRST of symbols[from..]
+        long set = 0;
+        for (int i = from; i < symbols.size(); i++) {
+            String symbol = symbols.get(i);
+            if (this.isTerminal(symbol)) {
+                return set | 1L << TokenCode.valueOf(symbol).ordinal();
+            }
+            set |= this.first.get(symbol);
+            if (!this.nullable.get(symbol)) {
+                return set;
+            }
+        }
+        return set;
+    }
+
+    private boolean nullableFrom(List<String> symbols, int from) {
+        for (int i = from; i < symbols.size(); i++) {
+            String symbol = symbols.get(i);
+            if (this.isTerminal(symbol) || !this.nullable.get(symbol)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void computeFirst() {
+        for (String name : this.rules.keySet()) {
+            this.first.put(name, 0L);
+            this.nullable.put(name, false);
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Map.Entry<String, List<List<String>>> rule : this.rules.entrySet()) {
+                String name = rule.getKey();
+                long set = this.first.get(name);
+                boolean empty = this.nullable.get(name);
+                for (List<String> alternative : rule.getValue()) {
+                    List<String> symbols = this.symbols(alternative);
+                    set |= this.firstOf(symbols, 0);
+                    empty |= this.nullableFrom(symbols, 0);
+                }
+                if (set != this.first.get(name) || empty != this.nullable.get(name)) {
+                    this.first.put(name, set);
+                    this.nullable.put(name, empty);
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    private void computeFollow() {
+        for (String name : this.rules.keySet()) {
+            this.follow.put(name, 0L);
+        }
+        String start = this.declared.get(0);
+        this.follow.put(start, 1L << TokenCode.EOF.ordinal());
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Map.Entry<String, List<List<String>>> rule : this.rules.entrySet()) {
+                for (List<String> alternative : rule.getValue()) {
+                    List<String> symbols = this.symbols(alternative);
+                    for (int i = 0; i < symbols.size(); i++) {
+                        String symbol = symbols.get(i);
+                        if (this.isTerminal(symbol)) {
+                            continue;
+                        }
+                        long set = this.follow.get(symbol) | this.firstOf(symbols, i + 1);
+                        if (this.nullableFrom(symbols, i + 1)) {
+                            set |= this.follow.get(rule.getKey());
+                        }
+                        if (set != this.follow.get(symbol)) {
+                            this.follow.put(symbol, set);
+                            changed = true;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private void check() {
+        /*
+        For A -> U | V: FIRST(U) and FIRST(V) don't meet, at most one of them derives
+        eps, and if U does, FIRST(V) doesn't meet FOLLOW(A).
+         */
+        for (Map.Entry<String, List<List<String>>> rule : this.rules.entrySet()) {
+            String name = rule.getKey();
+            List<List<String>> alternatives = rule.getValue();
+            for (int i = 0; i < alternatives.size(); i++) {
+                List<String> u = this.symbols(alternatives.get(i));
+                long firstU = this.firstOf(u, 0);
+                for (int j = i + 1; j < alternatives.size(); j++) {
+                    List<String> v = this.symbols(alternatives.get(j));
+                    long firstV = this.firstOf(v, 0);
+                    if ((firstU & firstV) != 0) {
+                        this.conflict(name, u, v, "both start with", firstU & firstV);
+                    }
+                    if (this.nullableFrom(u, 0) && this.nullableFrom(v, 0)) {
+                        this.conflicts.add(name + ": " + text(u) + " and " + text(v) + " both derive eps");
+                    }
+                    if (this.nullableFrom(u, 0) && (firstV & this.follow.get(name)) != 0) {
+                        this.conflict(name, v, u, "starts with what follows eps in", firstV & this.follow.get(name));
+                    }
+                    if (this.nullableFrom(v, 0) && (firstU & this.follow.get(name)) != 0) {
+                        this.conflict(name, u, v, "starts with what follows eps in", firstU & this.follow.get(name));
+                    }
+                }
+            }
+        }
+    }
+
+    private void conflict(String name, List<String> u, List<String> v, String what, long codes) {
+        this.conflicts.add(name + ": " + text(u) + " " + what + " " + text(v) + ": " + String.join(", ", names(codes)));
+    }
+
+    private static String text(List<String> symbols) {
+        return symbols.isEmpty() ? EPS : String.join(" ", symbols);
+    }
+
+    private static List<String> names(long set) {
+        List<String> names = new ArrayList<>();
+        for (TokenCode code : CODES) {
+            if ((set >>> code.ordinal() & 1) != 0) {
+                names.add(code.name());
+            }
+        }
+        return names;
+    }
+
+    //------------------- Writing ParserTables.java ----------------------
+
+    private String generate(String grammar) {
+        StringBuilder out = new StringBuilder();
+        out.append("public final class ParserTables {\n\n");
+        out.append("    /*\n");
+        out.append("    Generated by GrammarTables from ").append(grammar).append(", don't edit it; change the\n");
+        out.append("    grammar and run GrammarTables again. FIRST and FOLLOW sets of the nonterminals,\n");
+        out.append("    with a bit for every TokenCode; the grammar has been checked to be LL(1).\n");
+        out.append("     */\n\n");
+        out.append("    private ParserTables() {\n    }\n\n");
+        out.append("    static boolean contains(long set, TokenCode code) {\n");
+        out.append("        return (set >>> code.ordinal() & 1) != 0;\n");
+        out.append("    }\n\n");
+        out.append("    private static long bits(TokenCode... codes) {\n");
+        out.append("        long set = 0;\n");
+        out.append("        for (TokenCode code : codes) {\n");
+        out.append("            set |= 1L << code.ordinal();\n");
+        out.append("        }\n");
+        out.append("        return set;\n");
+        out.append("    }\n");
+        for (String name : this.declared) {
+            out.append("\n    // ").append(name).append(" -> ").append(this.written.get(name)).append('\n');
+            constant(out, "FIRST_" + constantName(name), this.first.get(name));
+            constant(out, "FOLLOW_" + constantName(name), this.follow.get(name));
+        }
+        out.append("}\n");
+        return out.toString();
+    }
+
+    private static void constant(StringBuilder out, String name, long set) {
+        String line = "    static final long " + name + " = bits(";
+        out.append(line);
+        int column = line.length();
+        List<String> codes = names(set);
+        for (int i = 0; i < codes.size(); i++) {
+            String code = "TokenCode." + codes.get(i);
+            if (i > 0) {
+                out.append(',');
+                if (column + code.length() + 3 > 110) {
+                    out.append("\n            ");
+                    column = 12;
+                }
+                else {
+                    out.append(' ');
+                    column += 2;
+                }
+            }
+            out.append(code);
+            column += code.length();
+        }
+        out.append(");\n");
+    }
+
+    private static String constantName(String name) {
+        // CommandSequence -> COMMAND_SEQUENCE, Expr4' -> EXPR4_PRIM
+        StringBuilder constant = new StringBuilder();
+        for (int i = 0; i < name.length(); i++) {
+            char ch = name.charAt(i);
+            if (ch == '\'') {
+                constant.append("_PRIM");
+            }
+            else {
+                if (Character.isUpperCase(ch) && i > 0) {
+                    constant.append('_');
+                }
+                constant.append(Character.toUpperCase(ch));
+            }
+        }
+        return constant.toString();
+    }
+}
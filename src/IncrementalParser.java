@@ -0,0 +1,368 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+public class IncrementalParser {
+
+    /*
+    Keeps a source, its tokens and its AST up to date while the source is edited,
+    doing as little of the work again as it can.
+
+    Re-scanning. A token start is always a point where the scanner is between two
+    tokens, so the scanner is started again at the last token that starts before
+    the edit (the edit may make it longer) and runs until it starts a token at the
+    same place in the text after the edit, at the same column, as an old token did.
+    From there on the text is the same, so the rest of the old tokens are kept, only
+    moved by the change in length and lines.
+
+    Re-parsing. The Parser marks every statement and command sequence with its first
+    and last token. The changed tokens lie between two tokens that were kept, prev and
+    next; we go down the AST into the innermost command sequence whose braces are
+    still there and hold them, and parse again just the statements of it that touch
+    the change, up to the first statement that doesn't. The new statements take the
+    place of the old ones in the sequence, everything else is left as it is. If that
+    doesn't come out right (an error, or the statements don't end where the next one
+    starts), the statement around the sequence is parsed again instead, and so on up
+    to the whole program.
+
+    Tokens past the last edit keep their offset and line counted back from the end of
+    the text (as negative numbers, see start() and line()), so an edit doesn't have
+    to move every token after it; only the ones between two edits are converted
+    when the next edit is somewhere else. That costs time in the number of tokens
+    between the two edits: edits close to each other, like typing, are cheap, one
+    far from the last one costs as much as going over the tokens in between. The
+    Parser only needs the lines of tokens for its error messages, and the ones from
+    a partial parse are thrown away.
+
+    Only a source without errors is worked on like this; as long as there are scanner
+    or syntax errors, or the edit touches the declarations, every edit parses the
+    whole source, so the errors come out exactly as with a new Parser. Like a new
+    Parser, it doesn't scan past the token where a syntax error ended the parse. Offsets and
+    lengths of the edits are in bytes of the UTF-8 text.
+     */
+
+    private byte[] text;  // the UTF-8 source, with room to grow
+    private int length;
+    private Token[] tokens;  // without the comments, as far as the parser read; the last one is EOF if there were no errors
+    private int size;
+    private int gap;  // tokens from here on count their start and line from the end
+    private int lines;  // line of the end of the text
+    private Program program;
+    private HashMap<String, Declaration> symbols;  // the symbol table of the declarations
+    private final ArrayList<String> diagnostics = new ArrayList<>();  // scanner and parser errors of the whole source
+    private int reparsed;  // tokens the last edit parsed again, for measuring
+
+    public IncrementalParser(String text) {
+        this.text = text.getBytes(StandardCharsets.UTF_8);
+        this.length = this.text.length;
+        this.parseAll();
+    }
+
+    public Program program() {
+        return this.program;
+    }
+
+    public List<String> diagnostics() {
+        return Collections.unmodifiableList(this.diagnostics);
+    }
+
+    public String text() {
+        return new String(this.text, 0, this.length, StandardCharsets.UTF_8);
+    }
+
+    int reparsed() {
+        return this.reparsed;
+    }
+
+    public Program edit(int offset, int removed, String inserted) {
+        // replace removed bytes at offset with inserted, and return the AST of the new text
+        if (offset < 0 || removed < 0 || offset + removed > this.length) {
+            throw new IndexOutOfBoundsException("Edit at " + offset + " removing " + removed + " of " + this.length + " bytes");
+        }
+        byte[] insert = inserted.getBytes(StandardCharsets.UTF_8);
+        if (this.program == null || !this.diagnostics.isEmpty()) {
+            this.splice(offset, removed, insert);
+            this.parseAll();
+            return this.program;
+        }
+        // the last token starting before the edit is the first one that may change; the ones after it count from the end
+        int from = this.firstStartingAt(offset) - 1;
+        this.moveGap(from + 1);
+        this.splice(offset, removed, insert);
+        if (!this.update(offset + insert.length, from)) {
+            this.parseAll();
+        }
+        return this.program;
+    }
+
+    private void splice(int offset, int removed, byte[] insert) {
+        int length = this.length - removed + insert.length;
+        if (length > this.text.length) {
+            this.text = Arrays.copyOf(this.text, length + length / 2);
+        }
+        System.arraycopy(this.text, offset + removed, this.text, offset + insert.length, this.length - offset - removed);
+        System.arraycopy(insert, 0, this.text, offset, insert.length);
+        this.length = length;
+    }
+
+    private void parseAll() {
+        // scan and parse the whole text, keeping the tokens as the parser takes them
+        this.diagnostics.clear();
+        this.program = null;  // until it's done; the Scanner throws on a number that's too big
+        this.tokens = new Token[256];
+        this.size = 0;
+        Scanner scanner = new Scanner(ByteBuffer.wrap(this.text, 0, this.length));
+        scanner.setDiagnostics(this.diagnostics::add);
+        TokenSource recorded = () -> {
+            Token t = scanner.nextToken();
+            if (t != null) {
+                this.add(t);
+            }
+            return t;
+        };
+        Parser parser = new Parser(recorded, this.diagnostics::add, new HashMap<>());
+        this.program = parser.parse();
+        this.symbols = parser.symbols();
+        this.gap = this.size;
+        this.lines = this.tokens[this.size - 1].line;
+        this.reparsed = this.size;
+    }
+
+    private void add(Token t) {
+        t.string();  // decode it now, the text it points into is going to change
+        if (this.size == this.tokens.length) {
+            this.tokens = Arrays.copyOf(this.tokens, this.size * 2);
+        }
+        this.tokens[this.size++] = t;
+    }
+
+    private boolean update(int editEnd, int from) {
+        // re-scan and re-parse around an edit ending at editEnd, starting at the token at from; false if the whole text has to be parsed instead
+        ByteBuffer view = ByteBuffer.wrap(this.text, 0, this.length);
+        Scanner scanner;
+        if (from >= 0) {
+            Token restart = this.tokens[from];
+            view.position(restart.start);
+            scanner = new Scanner(view, restart.line, restart.col);
+        }
+        else {
+            from = 0;
+            scanner = new Scanner(view);
+        }
+        ArrayList<String> messages = new ArrayList<>();
+        scanner.setDiagnostics(messages::add);
+
+        ArrayList<Token> fresh = new ArrayList<>();
+        int kept = from;  // the old token that may be the first one to keep
+        Token sync;  // the new token where the old ones are met again
+        try {
+            while (true) {
+                Token t = scanner.nextToken();
+                if (t == null) {
+                    continue;
+                }
+                if (t.start >= editEnd) {
+                    // old tokens count from the end, so start() has them where they are in the new text
+                    while (kept < this.size && this.start(this.tokens[kept]) < t.start) {
+                        kept++;
+                    }
+                    Token old = kept < this.size ? this.tokens[kept] : null;
+                    if (old != null && this.start(old) == t.start && old.col == t.col && old.kind == t.kind) {
+                        sync = t;
+                        break;
+                    }
+                    if (old != null && old.kind == TokenCode.EOF && t.kind == TokenCode.EOF && this.start(old) == t.start) {
+                        fresh.add(t);  // only the column of the end moved, nothing after it to keep
+                        kept = this.size;
+                        sync = null;
+                        break;
+                    }
+                }
+                if (t.kind == TokenCode.EOF) {
+                    return false;  // never met the old tokens again, the edit changed everything after it
+                }
+                t.string();
+                fresh.add(t);
+            }
+        } catch (RuntimeException e) {
+            return false;  // a number too big; the whole run will report it
+        }
+        if (!messages.isEmpty()) {
+            return false;
+        }
+
+        // replace the old tokens from..kept with the new ones; the ones after count from the end and stay as they are
+        this.lines = sync != null ? this.lines + sync.line - this.line(this.tokens[kept]) : fresh.get(fresh.size() - 1).line;
+        Token after = kept < this.size ? this.tokens[kept] : fresh.get(fresh.size() - 1);
+        for (int i = from; i < kept; i++) {
+            // put the replaced tokens where the change is, so statements that start with one stay in order
+            this.tokens[i].start = after.start;
+        }
+        int tail = this.size - kept;
+        int newSize = from + fresh.size() + tail;
+        Token[] result = newSize <= this.tokens.length ? this.tokens : new Token[newSize + newSize / 2];
+        System.arraycopy(this.tokens, 0, result, 0, from);
+        System.arraycopy(this.tokens, kept, result, from + fresh.size(), tail);
+        for (int i = 0; i < fresh.size(); i++) {
+            result[from + i] = fresh.get(i);
+        }
+        Arrays.fill(result, newSize, Math.max(newSize, this.size), null);
+        this.tokens = result;
+        this.size = newSize;
+        this.gap = from + fresh.size();
+
+        this.reparsed = 0;
+        return this.reparse(this.program.commandSequence, from - 1, from + fresh.size());
+    }
+
+    private boolean reparse(CommandSequence cs, int prev, int next) {
+        /*
+        Parse again the statements of cs around the tokens between prev and next, or of a
+        command sequence nested in it. False if that isn't enough.
+         */
+        if (cs == null) {
+            return false;
+        }
+        int open = this.indexOf(cs.first);
+        int close = this.indexOf(cs.last);
+        if (open < 0 || close < 0 || prev < open || next > close) {
+            return false;
+        }
+        ArrayList<Statement> statements = cs.statements;
+        int a = this.statementAt(statements, prev);  // the statement holding prev, or -1
+        int b = this.statementAt(statements, next);  // the statement holding next
+
+        if (a >= 0 && a == b && next <= this.indexOf(statements.get(a).last)) {
+            // all inside of one statement; maybe in one of its command sequences
+            for (CommandSequence child : childSequences(statements.get(a))) {
+                if (this.reparse(child, prev, next)) {
+                    return true;
+                }
+            }
+        }
+
+        int first = a >= 0 ? a : 0;
+        int start = a >= 0 ? this.indexOf(statements.get(a).first) : open + 1;
+        Token stop = b + 1 < statements.size() ? statements.get(b + 1).first : cs.last;
+        if (start < 0 || this.indexOf(stop) < 0) {
+            return false;
+        }
+        Parser parser = new Parser(new Slice(start), message -> { }, this.symbols);
+        ArrayList<Statement> parsed = parser.parseStatements(stop);
+        this.reparsed += this.indexOf(stop) - start;
+        if (parser.getErrors() > 0 || parser.lookahead() != stop) {
+            return false;
+        }
+        List<Statement> replaced = statements.subList(first, b + 1);
+        replaced.clear();
+        replaced.addAll(parsed);
+        return true;
+    }
+
+    private static List<CommandSequence> childSequences(Statement statement) {
+        if (statement instanceof StatementIf ifStatement) {
+            ArrayList<CommandSequence> children = new ArrayList<>();
+            children.add(ifStatement.commandSequence);
+            if (ifStatement.endIfStatement != null && ifStatement.endIfStatement.commandSequence != null) {
+                children.add(ifStatement.endIfStatement.commandSequence);
+            }
+            return children;
+        }
+        else if (statement instanceof StatementWhile whileStatement) {
+            return List.of(whileStatement.commandSequence);
+        }
+        else if (statement instanceof StatementFor forStatement) {
+            return List.of(forStatement.commandSequence);
+        }
+        else if (statement instanceof StatementRepeat repeatStatement) {
+            return List.of(repeatStatement.commandSequence);
+        }
+        return List.of();
+    }
+
+    private void moveGap(int to) {
+        // make the tokens before to count from the start, and the ones from to on count from the end
+        for (int i = to; i < this.gap; i++) {
+            this.tokens[i].start -= this.length + 1;
+            this.tokens[i].line -= this.lines + 1;
+        }
+        for (int i = this.gap; i < to; i++) {
+            this.tokens[i].start += this.length + 1;
+            this.tokens[i].line += this.lines + 1;
+        }
+        this.gap = to;
+    }
+
+    private int start(Token t) {
+        // offset of the token in the text
+        return t.start >= 0 ? t.start : t.start + this.length + 1;
+    }
+
+    private int line(Token t) {
+        return t.start >= 0 ? t.line : t.line + this.lines + 1;
+    }
+
+    private int statementAt(ArrayList<Statement> statements, int index) {
+        // the last statement starting at the token at index or before it, -1 if there's none
+        int start = this.start(this.tokens[index]);
+        int low = 0;
+        int high = statements.size() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (this.start(statements.get(middle).first) <= start) {
+                low = middle + 1;
+            }
+            else {
+                high = middle - 1;
+            }
+        }
+        return high;
+    }
+
+    private int firstStartingAt(int offset) {
+        // index of the first token starting at offset or after it
+        int low = 0;
+        int high = this.size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (this.start(this.tokens[middle]) < offset) {
+                low = middle + 1;
+            }
+            else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    private int indexOf(Token t) {
+        // where t is in the tokens, or -1 if an edit replaced it
+        if (t == null) {
+            return -1;
+        }
+        int index = this.firstStartingAt(this.start(t));
+        return index < this.size && this.tokens[index] == t ? index : -1;
+    }
+
+    private class Slice implements TokenSource {
+
+        // The tokens from some index on, for parsing a part of the source
+        private int next;
+
+        Slice(int start) {
+            this.next = start;
+        }
+
+        @Override
+        public Token nextToken() {
+            if (this.next < IncrementalParser.this.size) {
+                return IncrementalParser.this.tokens[this.next++];
+            }
+            return IncrementalParser.this.tokens[IncrementalParser.this.size - 1];  // EOF
+        }
+    }
+}
@@ -0,0 +1,14 @@
+public final class IntConst extends Expression {
+
+    int value;
+
+    IntConst(int value) {
+        super(StatementKind.INT_CONSTANT);
+        this.value = value;
+    }
+
+    @Override
+    <R> R accept(StatementVisitor<R> visitor) {
+        return visitor.visitInt(this);
+    }
+}
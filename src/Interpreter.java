@@ -0,0 +1,563 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+public class Interpreter {
+
+    /*
+    Runs a program by walking its tree. The program is resolved and type checked
+    first, so every variable has a slot in the array of its type and every
+    expression knows the type of its value: integers, doubles and bools are kept
+    as ints, doubles and booleans from start to end, in the variable arrays and on
+    one value stack per type, and never become objects.
+
+    An expression is evaluated with a work stack instead of recursion, like the
+    parser builds it: a node is visited once to push its first operand and once per
+    operand after that, and leaves its value on the stack of its type. && and ||
+    look at the left value before pushing the right operand. The stacks grow to the
+    deepest expression once and are used again for everything after it, so a loop
+    over numbers allocates nothing. BREAK is the return value of the statements:
+    true leaves every command sequence up to the innermost loop.
+
+    What the statements do:
+        PRINT(e)            prints the value of e on a line of its own
+        CALC_BEGIN e; ...   prints the value of every expression
+        x = c ? e1 : e2     x = e1 if c, else x = e2
+        FOR (a; c; b) body  a, then body and b while c
+        REPEAT body UNTIL   body, again until the condition is true
+        READINT() ...       the next line of the input, as that type
+    Variables start as 0, 0.0, false and "". Integers wrap around like Java ints,
+    and an integer division by zero or a read that doesn't get its value stops the
+    program with a runtime error at the statement it was in.
+
+    Run by a TieredEngine, the Interpreter tells it whenever an iteration of a loop
+    ends, and hands the loop with its variables to compiled code once it says so.
+
+    Usage: java Interpreter program.txt, the input comes from stdin
+     */
+
+    private final int[] integers;
+    private final double[] doubles;
+    private final boolean[] bools;
+    private final String[] strings;
+
+    private final BufferedReader in;
+    private final PrintStream out;
+    private final Consumer<String> diagnostics;
+    private Statement current;  // the statement a runtime error is reported at
+    private final TieredEngine tiers;  // what hot loops are given to, null to interpret everything
+    private long deadline;  // the System.nanoTime() no loop may go on after, 0 for no limit
+
+    // the value stacks
+    private int[] integerStack = new int[16];
+    private int integerTop;
+    private double[] doubleStack = new double[16];
+    private int doubleTop;
+    private boolean[] boolStack = new boolean[16];
+    private int boolTop;
+    private String[] stringStack = new String[16];
+    private int stringTop;
+
+    // the work stack: the expressions being evaluated and how many of their operands are done
+    private Expression[] nodes = new Expression[64];
+    private int[] states = new int[64];
+
+    public Interpreter(Resolver resolver, BufferedReader in, PrintStream out, Consumer<String> diagnostics) {
+        this(resolver, in, out, diagnostics, null);
+    }
+
+    Interpreter(Resolver resolver, BufferedReader in, PrintStream out, Consumer<String> diagnostics, TieredEngine tiers) {
+        this.integers = new int[resolver.slots(ValueType.INTEGER)];
+        this.doubles = new double[resolver.slots(ValueType.DOUBLE)];
+        this.bools = new boolean[resolver.slots(ValueType.BOOL)];
+        this.strings = new String[resolver.slots(ValueType.STRING)];
+        Arrays.fill(this.strings, "");
+        this.in = in;
+        this.out = out;
+        this.diagnostics = diagnostics;
+        this.tiers = tiers;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.out.println("Usage: java Interpreter program.txt");
+            System.exit(2);
+        }
+        Parser parser = new Parser(new Scanner(Scanner.map(Path.of(args[0]))));
+        Program program = parser.parse();
+        if (parser.getErrors() > 0) {
+            System.out.printf("There have been %d detected errors%n", parser.getErrors());
+            System.exit(1);
+        }
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        PrintStream out = new PrintStream(new BufferedOutputStream(System.out, 1 << 16), false);
+        boolean ran = run(program, in, out, System.err::println);
+        out.flush();
+        System.exit(ran ? 0 : 1);
+    }
+
+    public static boolean run(Program program, BufferedReader in, PrintStream out, Consumer<String> diagnostics) {
+        // resolve, check and run a program the parser had no errors in; false if it didn't get to the end
+        Resolver resolver = Resolver.resolve(program);
+        if (TypeChecker.check(program, diagnostics) > 0) {
+            return false;
+        }
+        return new Interpreter(resolver, in, out, diagnostics).run(program.commandSequence);
+    }
+
+    public boolean run(CommandSequence commands) {
+        try {
+            this.execute(commands);
+            return true;
+        } catch (ArithmeticException | RuntimeError e) {
+            Token token = this.current == null ? null : this.current.first;
+            String at = token == null ? "-- " : "-- line " + token.line + " col " + token.col + ": ";
+            this.diagnostics.accept(at + "runtime error: " + message(e));
+            return false;
+        }
+    }
+
+    void limit(long nanos) {
+        // stop the program with a runtime error when a loop is still running after nanos
+        this.deadline = System.nanoTime() + nanos;
+    }
+
+    private void checkTime() {
+        if (System.nanoTime() - this.deadline > 0) {
+            throw new RuntimeError("the time limit is exceeded");
+        }
+    }
+
+    static String message(RuntimeException e) {
+        // an ArithmeticException thrown often enough by compiled code can be a preallocated one without a message
+        return e instanceof ArithmeticException && e.getMessage() == null ? "/ by zero" : e.getMessage();
+    }
+
+    static final class RuntimeError extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        RuntimeError(String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    //------------------- Statements ----------------------
+
+    private boolean execute(CommandSequence commandSequence) {
+        // true if a BREAK ended it
+        ArrayList<Statement> statements = commandSequence.statements;
+        for (int i = 0, size = statements.size(); i < size; i++) {
+            Statement statement = statements.get(i);
+            if (statement.first != null) {
+                this.current = statement;
+            }
+            if (this.execute(statement)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean execute(Statement statement) {
+        switch (statement.kind) {
+            case IF_STATEMENT -> {
+                StatementIf ifStatement = (StatementIf) statement;
+                if (this.condition(ifStatement.expression)) {
+                    return this.execute(ifStatement.commandSequence);
+                }
+                CommandSequence otherwise = ifStatement.endIfStatement.commandSequence;
+                return otherwise != null && this.execute(otherwise);
+            }
+            case WHILE_STATEMENT -> {
+                StatementWhile whileStatement = (StatementWhile) statement;
+                while (this.condition(whileStatement.expression)) {
+                    if (this.execute(whileStatement.commandSequence)) {
+                        break;
+                    }
+                    this.current = whileStatement;
+                    if (this.deadline != 0) {
+                        this.checkTime();
+                    }
+                    if (this.tiers != null && this.promoted(whileStatement)) {
+                        break;
+                    }
+                }
+            }
+            case FOR_STATEMENT -> {
+                StatementFor forStatement = (StatementFor) statement;
+                this.assign(forStatement.first);
+                while (this.condition(forStatement.expression)) {
+                    if (this.execute(forStatement.commandSequence)) {
+                        break;
+                    }
+                    this.current = forStatement;
+                    if (this.deadline != 0) {
+                        this.checkTime();
+                    }
+                    if (this.tiers != null && this.promoted(forStatement)) {
+                        break;
+                    }
+                    this.assign(forStatement.second);
+                }
+            }
+            case BREAK_STATEMENT -> {
+                return true;
+            }
+            case PRINT_STATEMENT -> this.print(((StatementPrint) statement).expression);
+            case REPEAT_STATEMENT -> {
+                StatementRepeat repeatStatement = (StatementRepeat) statement;
+                do {
+                    if (this.execute(repeatStatement.commandSequence)) {
+                        break;
+                    }
+                    this.current = repeatStatement;
+                    if (this.deadline != 0) {
+                        this.checkTime();
+                    }
+                    if (this.tiers != null && this.promoted(repeatStatement)) {
+                        break;
+                    }
+                } while (!this.condition(repeatStatement.expression));
+            }
+            case CALC_STATEMENT -> {
+                ArrayList<Expression> expressions = ((StatementCalc) statement).expressions;
+                for (int i = 0, size = expressions.size(); i < size; i++) {
+                    this.print(expressions.get(i));
+                }
+            }
+            case ASSIGN_EXPR -> this.assign((ExpressionAssign) statement);
+            default -> { }
+        }
+        return false;
+    }
+
+    private boolean promoted(Statement loop) {
+        // between two iterations of a loop: true if compiled code ran the rest of it
+        JitProgram compiled = this.tiers.backEdge(loop);
+        if (compiled == null) {
+            return false;
+        }
+        RuntimeException[] error = new RuntimeException[1];
+        Statement failed = compiled.execute(this.integers, this.doubles, this.bools, this.strings, this.in, this.out, error);
+        if (failed != null) {
+            this.current = failed;
+            throw error[0];
+        }
+        return true;
+    }
+
+    private boolean condition(Expression expression) {
+        this.evaluate(expression);
+        return this.boolStack[--this.boolTop];
+    }
+
+    private void print(Expression expression) {
+        this.evaluate(expression);
+        switch (expression.type) {
+            case INTEGER -> this.out.println(this.integerStack[--this.integerTop]);
+            case DOUBLE -> this.out.println(this.doubleStack[--this.doubleTop]);
+            case BOOL -> this.out.println(this.boolStack[--this.boolTop]);
+            case STRING -> this.out.println(this.stringStack[--this.stringTop]);
+        }
+    }
+
+    private void assign(ExpressionAssign assign) {
+        Expression value = assign.expression;
+        if (assign.end != null) {
+            value = this.condition(assign.expression) ? assign.end.first : assign.end.second;
+        }
+        this.evaluate(value);
+        switch (assign.type) {
+            case INTEGER -> this.integers[assign.slot] = this.integerStack[--this.integerTop];
+            case DOUBLE -> this.doubles[assign.slot] = this.popDouble(value.type);
+            case BOOL -> this.bools[assign.slot] = this.boolStack[--this.boolTop];
+            case STRING -> this.strings[assign.slot] = this.stringStack[--this.stringTop];
+        }
+    }
+
+    //------------------- Expressions ----------------------
+
+    private void evaluate(Expression root) {
+        // leaves the value of root on the stack of its type
+        int top = this.push(0, root);
+        while (top > 0) {
+            Expression expression = this.nodes[top - 1];
+            switch (expression.kind) {
+                case BINARY_EXPR -> {
+                    ExpressionBinary binary = (ExpressionBinary) expression;
+                    int state = this.states[top - 1]++;
+                    if (state == 0) {
+                        if (binary.operator != Operator.AND && binary.operator != Operator.OR
+                                && isLeaf(binary.left) && isLeaf(binary.right)) {
+                            top--;  // the most common case, done without the work stack
+                            this.leaf(binary.left);
+                            this.leaf(binary.right);
+                            this.binary(binary);
+                            continue;
+                        }
+                        top = this.push(top, binary.left);
+                    }
+                    else if (state == 1) {
+                        if (binary.operator == Operator.AND || binary.operator == Operator.OR) {
+                            boolean left = this.boolStack[this.boolTop - 1];
+                            if (left == (binary.operator == Operator.OR)) {
+                                top--;  // decided by the left value, which stays on the stack as the result
+                                continue;
+                            }
+                            this.boolTop--;  // the right value is the result
+                        }
+                        top = this.push(top, binary.right);
+                    }
+                    else {
+                        top--;
+                        if (binary.operator != Operator.AND && binary.operator != Operator.OR) {
+                            this.binary(binary);
+                        }
+                    }
+                }
+                case UNARY_EXPR -> {
+                    ExpressionUnary unary = (ExpressionUnary) expression;
+                    if (this.states[top - 1]++ == 0) {
+                        top = this.push(top, unary.operand);
+                    }
+                    else {
+                        top--;
+                        this.unary(unary);
+                    }
+                }
+                case READ_OPERATION -> {
+                    top--;
+                    this.read((ExpressionRead) expression);
+                }
+                default -> {
+                    top--;
+                    this.leaf(expression);
+                }
+            }
+        }
+    }
+
+    private static boolean isLeaf(Expression expression) {
+        return switch (expression.kind) {
+            case IDENTIFIER, INT_CONSTANT, DOUBLE_CONSTANT, BOOL_CONSTANT, STRING_CONSTANT -> true;
+            default -> false;
+        };
+    }
+
+    private void leaf(Expression expression) {
+        // pushes the value of a variable or a constant
+        switch (expression.kind) {
+            case IDENTIFIER -> {
+                ExpressionIdentifier identifier = (ExpressionIdentifier) expression;
+                switch (identifier.type) {
+                    case INTEGER -> this.pushInteger(this.integers[identifier.slot]);
+                    case DOUBLE -> this.pushDouble(this.doubles[identifier.slot]);
+                    case BOOL -> this.pushBool(this.bools[identifier.slot]);
+                    case STRING -> this.pushString(this.strings[identifier.slot]);
+                }
+            }
+            case INT_CONSTANT -> this.pushInteger(((IntConst) expression).value);
+            case DOUBLE_CONSTANT -> this.pushDouble(((DoubleConst) expression).value);
+            case BOOL_CONSTANT -> this.pushBool(((BoolConst) expression).value);
+            case STRING_CONSTANT -> this.pushString(((StringConst) expression).value);
+            default -> { }
+        }
+    }
+
+    private void binary(ExpressionBinary binary) {
+        // the operands are on their stacks, the right one on top of the left if they're on the same
+        ValueType left = binary.left.type;
+        ValueType right = binary.right.type;
+        switch (binary.operator) {
+            case EQUAL, NOT_EQUAL -> {
+                boolean equal;
+                if (left == ValueType.INTEGER && right == ValueType.INTEGER) {
+                    equal = this.integerStack[--this.integerTop] == this.integerStack[--this.integerTop];
+                }
+                else if (left.isNumeric()) {
+                    equal = this.popDouble(right) == this.popDouble(left);
+                }
+                else if (left == ValueType.BOOL) {
+                    equal = this.boolStack[--this.boolTop] == this.boolStack[--this.boolTop];
+                }
+                else {
+                    equal = this.stringStack[--this.stringTop].equals(this.stringStack[--this.stringTop]);
+                }
+                this.pushBool(equal == (binary.operator == Operator.EQUAL));
+            }
+            case LESS, LESS_EQUAL, GREATER, GREATER_EQUAL -> {
+                int compared;
+                if (left == ValueType.INTEGER && right == ValueType.INTEGER) {
+                    int y = this.integerStack[--this.integerTop];
+                    compared = Integer.compare(this.integerStack[--this.integerTop], y);
+                }
+                else {
+                    double y = this.popDouble(right);
+                    double x = this.popDouble(left);
+                    compared = x < y ? -1 : x > y ? 1 : x == y ? 0 : 2;  // 2 for a NaN, false for all four
+                }
+                this.pushBool(switch (binary.operator) {
+                    case LESS -> compared == -1;
+                    case LESS_EQUAL -> compared == -1 || compared == 0;
+                    case GREATER -> compared == 1;
+                    default -> compared == 1 || compared == 0;
+                });
+            }
+            default -> {
+                if (binary.type == ValueType.STRING) {
+                    String y = this.popString(right);
+                    this.pushString(this.popString(left).concat(y));
+                }
+                else if (binary.type == ValueType.INTEGER) {
+                    int y = this.integerStack[--this.integerTop];
+                    int x = this.integerStack[--this.integerTop];
+                    this.pushInteger(switch (binary.operator) {
+                        case PLUS -> x + y;
+                        case MINUS -> x - y;
+                        case MULTIPLY -> x * y;
+                        case DIVIDE -> x / y;
+                        default -> x % y;
+                    });
+                }
+                else {
+                    double y = this.popDouble(right);
+                    double x = this.popDouble(left);
+                    this.pushDouble(switch (binary.operator) {
+                        case PLUS -> x + y;
+                        case MINUS -> x - y;
+                        case MULTIPLY -> x * y;
+                        case DIVIDE -> x / y;
+                        default -> x % y;
+                    });
+                }
+            }
+        }
+    }
+
+    private void unary(ExpressionUnary unary) {
+        if (unary.operator == Operator.NOT) {
+            this.boolStack[this.boolTop - 1] = !this.boolStack[this.boolTop - 1];
+        }
+        else if (unary.type == ValueType.INTEGER) {
+            this.integerStack[this.integerTop - 1] = -this.integerStack[this.integerTop - 1];
+        }
+        else {
+            this.doubleStack[this.doubleTop - 1] = -this.doubleStack[this.doubleTop - 1];
+        }
+    }
+
+    private void read(ExpressionRead read) {
+        String line = readLine(this.in, read.operation);
+        switch (read.operation) {
+            case READINT -> this.pushInteger(readInt(line));
+            case READDOUBLE -> this.pushDouble(readDouble(line));
+            case READBOOL -> this.pushBool(readBool(line));
+            default -> this.pushString(line);
+        }
+    }
+
+    static String readLine(BufferedReader in, TokenCode operation) {
+        // the next line of the input for a READ, shared with the VirtualMachine so its errors are the same
+        String line;
+        try {
+            line = in.readLine();
+        } catch (IOException e) {
+            throw new RuntimeError("cannot read the input: " + e.getMessage());
+        }
+        if (line == null) {
+            throw new RuntimeError(operation + " at the end of the input");
+        }
+        return line;
+    }
+
+    static int readInt(String line) {
+        try {
+            return Integer.parseInt(line.trim());
+        } catch (NumberFormatException e) {
+            throw new RuntimeError(TokenCode.READINT + " got \"" + line + "\"");
+        }
+    }
+
+    static double readDouble(String line) {
+        try {
+            return Double.parseDouble(line.trim());
+        } catch (NumberFormatException e) {
+            throw new RuntimeError(TokenCode.READDOUBLE + " got \"" + line + "\"");
+        }
+    }
+
+    static boolean readBool(String line) {
+        String value = line.trim();
+        if (!value.equals("true") && !value.equals("false")) {
+            throw new RuntimeError(TokenCode.READBOOL + " got \"" + line + "\"");
+        }
+        return value.equals("true");
+    }
+
+    //------------------- The stacks ----------------------
+
+    private int push(int top, Expression expression) {
+        if (top == this.nodes.length) {
+            this.nodes = Arrays.copyOf(this.nodes, top * 2);
+            this.states = Arrays.copyOf(this.states, top * 2);
+        }
+        this.nodes[top] = expression;
+        this.states[top] = 0;
+        return top + 1;
+    }
+
+    private void pushInteger(int value) {
+        if (this.integerTop == this.integerStack.length) {
+            this.integerStack = Arrays.copyOf(this.integerStack, this.integerTop * 2);
+        }
+        this.integerStack[this.integerTop++] = value;
+    }
+
+    private void pushDouble(double value) {
+        if (this.doubleTop == this.doubleStack.length) {
+            this.doubleStack = Arrays.copyOf(this.doubleStack, this.doubleTop * 2);
+        }
+        this.doubleStack[this.doubleTop++] = value;
+    }
+
+    private void pushBool(boolean value) {
+        if (this.boolTop == this.boolStack.length) {
+            this.boolStack = Arrays.copyOf(this.boolStack, this.boolTop * 2);
+        }
+        this.boolStack[this.boolTop++] = value;
+    }
+
+    private void pushString(String value) {
+        if (this.stringTop == this.stringStack.length) {
+            this.stringStack = Arrays.copyOf(this.stringStack, this.stringTop * 2);
+        }
+        this.stringStack[this.stringTop++] = value;
+    }
+
+    private double popDouble(ValueType type) {
+        // a number as a double, whichever stack it is on
+        return type == ValueType.INTEGER ? this.integerStack[--this.integerTop] : this.doubleStack[--this.doubleTop];
+    }
+
+    private String popString(ValueType type) {
+        // any value as a string, the way PRINT prints it
+        return switch (type) {
+            case INTEGER -> String.valueOf(this.integerStack[--this.integerTop]);
+            case DOUBLE -> String.valueOf(this.doubleStack[--this.doubleTop]);
+            case BOOL -> String.valueOf(this.boolStack[--this.boolTop]);
+            case STRING -> {
+                String value = this.stringStack[--this.stringTop];
+                this.stringStack[this.stringTop] = null;
+                yield value;
+            }
+        };
+    }
+}
@@ -0,0 +1,59 @@
+import java.io.BufferedReader;
+import java.io.PrintStream;
+import java.lang.invoke.MethodHandle;
+import java.util.function.Consumer;
+
+public final class JitProgram {
+
+    /*
+    Code JvmCompiler made, in a hidden class of its own: a static method that takes
+    the variables from the arrays the Interpreter keeps them in, runs on them as
+    locals of the JVM, and puts them back when it is done.
+
+    A runtime error in it is caught by the method, which returns the index of the
+    statement it happened in; run() reports it like the Interpreter, at that
+    statement, and execute() gives the statement to whoever reports it. When the
+    class isn't reachable anymore, the JVM unloads it.
+     */
+
+    private final MethodHandle code;
+    private final Statement[] statements;  // the statements an error can be reported at
+
+    JitProgram(MethodHandle code, Statement[] statements) {
+        this.code = code;
+        this.statements = statements;
+    }
+
+    public boolean run(int[] integers, double[] doubles, boolean[] bools, String[] strings,
+                       BufferedReader in, PrintStream out, Consumer<String> diagnostics) {
+        // false if there was a runtime error
+        RuntimeException[] error = new RuntimeException[1];
+        Statement failed = this.execute(integers, doubles, bools, strings, in, out, error);
+        if (failed == null) {
+            return true;
+        }
+        Token token = failed.first;
+        diagnostics.accept("-- line " + token.line + " col " + token.col + ": runtime error: " + Interpreter.message(error[0]));
+        return false;
+    }
+
+    Statement execute(int[] integers, double[] doubles, boolean[] bools, String[] strings,
+                      BufferedReader in, PrintStream out, RuntimeException[] error) {
+        // null if the code ran to its end, else the statement of the runtime error in error[0]
+        int statement;
+        try {
+            statement = (int) this.code.invokeExact(integers, doubles, bools, strings, out, in, error);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+        if (statement < 0) {
+            return null;
+        }
+        if (!(error[0] instanceof ArithmeticException) && !(error[0] instanceof Interpreter.RuntimeError)) {
+            throw error[0];  // not an error of the program
+        }
+        return this.statements[statement];
+    }
+}
@@ -0,0 +1,646 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+public class JvmCompiler {
+
+    /*
+    Compiles a resolved and type checked program to a JVM method, written with the
+    ClassFileWriter and loaded as a hidden class, so the JVM's own compilers make
+    machine code of it. Every variable is a local of the type it is declared with
+    (a bool is an int), values are on the JVM's operand stack, loops are jumps, and
+    conditions are compares that jump, with && and || jumping past what they don't
+    need to evaluate. Nothing of the language is left to do at run time but the
+    READs and the strings.
+
+    The method is
+
+        static int run(int[] integers, double[] doubles, boolean[] bools, String[] strings,
+                       PrintStream out, BufferedReader in, RuntimeException[] error)
+
+    It loads the variables from the arrays, the Interpreter's, and stores them back
+    at the end. Each statement's instructions are covered by an exception handler
+    that puts the exception in error[0] and returns the index of the statement; -1
+    is returned when the code ran to its end. JitProgram runs it.
+
+    A method over 32767 bytes can't be written by the ClassFileWriter: compile()
+    gives null, and run() runs the program in the VirtualMachine instead. That is
+    far beyond the size the JVM still compiles a method at, 8000 bytes, anyway.
+
+        java JvmCompiler program.txt
+        java JvmCompiler -class program.txt Program.class
+
+    runs a program with the standard input and output, or writes its class file to
+    look at with javap.
+     */
+
+    private static final String DESCRIPTOR = "([I[D[Z[Ljava/lang/String;Ljava/io/PrintStream;Ljava/io/BufferedReader;"
+            + "[Ljava/lang/RuntimeException;)I";
+    private static final MethodType TYPE = MethodType.methodType(int.class, int[].class, double[].class,
+            boolean[].class, String[].class, PrintStream.class, BufferedReader.class, RuntimeException[].class);
+
+    // the locals of the method: its parameters, one for the handlers, then the variables
+    private static final int OUT = 4;
+    private static final int IN = 5;
+    private static final int ERROR = 6;
+    private static final int SCRATCH = 7;
+    private static final int VARIABLES = 8;
+
+    private static final int MAX_BRANCH_DEPTH = 64;  // how deep && and || are compiled to jumps in a condition
+
+    private static final String STRING = "java/lang/String";
+
+    private final ClassFileWriter writer = new ClassFileWriter("CompiledProgram", "run", DESCRIPTOR);
+    private final int[][] locals = new int[ValueType.values().length][];  // of every type, the local of every slot
+    private int maxLocals = VARIABLES;
+    private int[] lines = new int[32];  // where a statement starts, and its index in statements
+    private int lineCount;
+    private final ArrayDeque<Integer> breaks = new ArrayDeque<>();  // the labels after the loops around
+    private final ArrayList<Statement> statements = new ArrayList<>();  // the statement of every line entry
+    private Statement resumed;  // the loop that is compiled to be entered between two of its iterations
+
+    // the expression walk: nodes, how many operands are done, the label && and || jump to
+    private Expression[] nodes = new Expression[64];
+    private int[] states = new int[64];
+    private int[] jumps = new int[64];
+
+    private JvmCompiler(Resolver resolver) {
+        for (ValueType type : ValueType.values()) {
+            int[] locals = new int[resolver.slots(type)];
+            for (int slot = 0; slot < locals.length; slot++) {
+                locals[slot] = this.maxLocals;
+                this.maxLocals += type == ValueType.DOUBLE ? 2 : 1;
+            }
+            this.locals[type.ordinal()] = locals;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        boolean classFile = args.length > 0 && args[0].equals("-class");
+        if (args.length != (classFile ? 3 : 1)) {
+            System.out.println("Usage: java JvmCompiler program.txt | java JvmCompiler -class program.txt Program.class");
+            System.exit(2);
+        }
+        Parser parser = new Parser(new Scanner(Scanner.map(Path.of(args[classFile ? 1 : 0]))));
+        Program program = parser.parse();
+        if (parser.getErrors() > 0) {
+            System.out.printf("There have been %d detected errors%n", parser.getErrors());
+            System.exit(1);
+        }
+        if (classFile) {
+            Resolver resolver = Resolver.resolve(program);
+            if (TypeChecker.check(program, System.err::println) > 0) {
+                System.exit(1);
+            }
+            JvmCompiler compiler = new JvmCompiler(resolver);
+            compiler.compile(program.commandSequence);
+            if (!compiler.writer.fits()) {
+                System.err.println("-- the program is too large for a class file");
+                System.exit(1);
+            }
+            Files.write(Path.of(args[2]), compiler.writer.toBytes(compiler.maxLocals));
+            return;
+        }
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        PrintStream out = new PrintStream(new BufferedOutputStream(System.out, 1 << 16), false);
+        boolean ran = run(program, in, out, System.err::println);
+        out.flush();
+        System.exit(ran ? 0 : 1);
+    }
+
+    public static boolean run(Program program, BufferedReader in, PrintStream out, Consumer<String> diagnostics) {
+        // like Interpreter.run
+        Resolver resolver = Resolver.resolve(program);
+        if (TypeChecker.check(program, diagnostics) > 0) {
+            return false;
+        }
+        JitProgram compiled = compile(program.commandSequence, resolver);
+        if (compiled == null) {
+            return new VirtualMachine(BytecodeCompiler.compile(program, resolver), in, out, diagnostics).run();
+        }
+        String[] strings = new String[resolver.slots(ValueType.STRING)];
+        Arrays.fill(strings, "");
+        return compiled.run(new int[resolver.slots(ValueType.INTEGER)], new double[resolver.slots(ValueType.DOUBLE)],
+                new boolean[resolver.slots(ValueType.BOOL)], strings, in, out, diagnostics);
+    }
+
+    public static JitProgram compile(CommandSequence commands, Resolver resolver) {
+        // the commands of a resolved and checked program as a JitProgram, null if they are too large for a class file
+        JvmCompiler compiler = new JvmCompiler(resolver);
+        compiler.compile(commands);
+        return compiler.load();
+    }
+
+    public static JitProgram compileLoop(Statement loop, Resolver resolver) {
+        /*
+        A WHILE, FOR or REPEAT as a JitProgram that starts where one of its iterations
+        ends: at the condition, or at the second assignment of a FOR. It runs the rest
+        of the loop and returns after it, or at a BREAK. Null if it is too large.
+         */
+        JvmCompiler compiler = new JvmCompiler(resolver);
+        compiler.resumed = loop;
+        compiler.compile(null);
+        return compiler.load();
+    }
+
+    private void compile(CommandSequence commands) {
+        // the commands, or the resumed loop without them
+        this.variables(false);
+        int start = this.writer.length();
+        if (commands != null) {
+            this.statements(commands);
+        }
+        else {
+            this.line(this.resumed);
+            this.statement(this.resumed);
+        }
+        int end = this.writer.length();
+        this.variables(true);
+        this.writer.constant(-1);
+        this.writer.returns(ClassFileWriter.IRETURN);
+        this.handlers(start, end);
+    }
+
+    private JitProgram load() {
+        if (!this.writer.fits()) {
+            return null;
+        }
+        byte[] bytes = this.writer.toBytes(this.maxLocals);
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+            MethodHandle code = lookup.findStatic(lookup.lookupClass(), "run", TYPE);
+            return new JitProgram(code, this.statements.toArray(new Statement[0]));
+        } catch (IllegalAccessException | NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void variables(boolean store) {
+        // load the variables from the arrays into their locals, or store them back
+        ClassFileWriter w = this.writer;
+        for (ValueType type : ValueType.values()) {
+            int[] locals = this.locals[type.ordinal()];
+            int size = type == ValueType.DOUBLE ? 2 : 1;
+            for (int slot = 0; slot < locals.length; slot++) {
+                w.local(ClassFileWriter.ALOAD, type.ordinal(), 1);  // the array parameters are in the order of the types
+                w.constant(slot);
+                if (store) {
+                    w.local(load(type), locals[slot], size);
+                    w.emit(switch (type) {
+                        case INTEGER -> ClassFileWriter.IASTORE;
+                        case DOUBLE -> ClassFileWriter.DASTORE;
+                        case BOOL -> ClassFileWriter.BASTORE;
+                        case STRING -> ClassFileWriter.AASTORE;
+                    }, -2 - size);
+                }
+                else {
+                    w.emit(switch (type) {
+                        case INTEGER -> ClassFileWriter.IALOAD;
+                        case DOUBLE -> ClassFileWriter.DALOAD;
+                        case BOOL -> ClassFileWriter.BALOAD;
+                        case STRING -> ClassFileWriter.AALOAD;
+                    }, size - 2);
+                    w.local(store(type), locals[slot], -size);
+                }
+            }
+        }
+    }
+
+    private void handlers(int start, int end) {
+        // for the instructions of every statement, a handler that returns its index
+        ClassFileWriter w = this.writer;
+        int common = w.label();
+        for (int i = 0; i < this.lineCount; i += 2) {
+            int from = Math.max(this.lines[i], start);
+            int to = i + 2 < this.lineCount ? this.lines[i + 2] : end;
+            if (from < to) {
+                int handler = w.label();
+                w.exceptions(from, to, handler, "java/lang/RuntimeException");
+                w.handler(handler);
+                w.constant(this.lines[i + 1]);
+                w.jump(ClassFileWriter.GOTO, common);
+            }
+        }
+        // the exception and the index of the statement on the stack
+        w.bind(common);
+        w.local(ClassFileWriter.ISTORE, SCRATCH, -1);
+        w.local(ClassFileWriter.ALOAD, ERROR, 1);
+        w.emit(ClassFileWriter.SWAP, 0);
+        w.constant(0);
+        w.emit(ClassFileWriter.SWAP, 0);
+        w.emit(ClassFileWriter.AASTORE, -3);
+        w.local(ClassFileWriter.ILOAD, SCRATCH, 1);
+        w.returns(ClassFileWriter.IRETURN);
+        this.maxLocals = Math.max(this.maxLocals, SCRATCH + 1);
+    }
+
+    //------------------- Statements ----------------------
+
+    private void statements(CommandSequence commandSequence) {
+        for (Statement statement : commandSequence.statements) {
+            this.line(statement);
+            this.statement(statement);
+        }
+    }
+
+    private void statement(Statement statement) {
+        ClassFileWriter w = this.writer;
+        switch (statement.kind) {
+            case IF_STATEMENT -> {
+                StatementIf ifStatement = (StatementIf) statement;
+                int otherwise = w.label();
+                this.branch(ifStatement.expression, false, otherwise, 0);
+                this.statements(ifStatement.commandSequence);
+                CommandSequence elseSequence = ifStatement.endIfStatement.commandSequence;
+                if (elseSequence != null) {
+                    int end = w.label();
+                    w.jump(ClassFileWriter.GOTO, end);
+                    w.bind(otherwise);
+                    this.statements(elseSequence);
+                    w.bind(end);
+                }
+                else {
+                    w.bind(otherwise);
+                }
+            }
+            case WHILE_STATEMENT -> {
+                StatementWhile whileStatement = (StatementWhile) statement;
+                int top = w.label();
+                int condition = w.label();
+                w.jump(ClassFileWriter.GOTO, condition);
+                w.bind(top);
+                this.loop(whileStatement.commandSequence);
+                w.bind(condition);
+                this.line(whileStatement);
+                this.branch(whileStatement.expression, true, top, 0);
+                w.bind(this.breaks.pop());
+            }
+            case FOR_STATEMENT -> {
+                StatementFor forStatement = (StatementFor) statement;
+                int top = w.label();
+                int next = w.label();
+                int condition = w.label();
+                if (statement == this.resumed) {
+                    w.jump(ClassFileWriter.GOTO, next);
+                }
+                else {
+                    this.assign(forStatement.first);
+                    w.jump(ClassFileWriter.GOTO, condition);
+                }
+                w.bind(top);
+                this.loop(forStatement.commandSequence);
+                w.bind(next);
+                this.line(forStatement);
+                this.assign(forStatement.second);
+                w.bind(condition);
+                this.branch(forStatement.expression, true, top, 0);
+                w.bind(this.breaks.pop());
+            }
+            case REPEAT_STATEMENT -> {
+                StatementRepeat repeatStatement = (StatementRepeat) statement;
+                int top = w.label();
+                int condition = w.label();
+                if (statement == this.resumed) {
+                    w.jump(ClassFileWriter.GOTO, condition);
+                }
+                w.bind(top);
+                this.loop(repeatStatement.commandSequence);
+                w.bind(condition);
+                this.line(repeatStatement);
+                this.branch(repeatStatement.expression, false, top, 0);
+                w.bind(this.breaks.pop());
+            }
+            case BREAK_STATEMENT -> w.jump(ClassFileWriter.GOTO, this.breaks.peek());
+            case PRINT_STATEMENT -> this.print(((StatementPrint) statement).expression);
+            case CALC_STATEMENT -> {
+                for (Expression expression : ((StatementCalc) statement).expressions) {
+                    this.print(expression);
+                }
+            }
+            case ASSIGN_EXPR -> this.assign((ExpressionAssign) statement);
+            default -> { }
+        }
+    }
+
+    private void loop(CommandSequence body) {
+        this.breaks.push(this.writer.label());
+        this.statements(body);
+    }
+
+    private void print(Expression expression) {
+        this.writer.local(ClassFileWriter.ALOAD, OUT, 1);
+        this.expression(expression);
+        this.writer.invoke(ClassFileWriter.INVOKEVIRTUAL, "java/io/PrintStream", "println", switch (expression.type) {
+            case INTEGER -> "(I)V";
+            case DOUBLE -> "(D)V";
+            case BOOL -> "(Z)V";
+            case STRING -> "(Ljava/lang/String;)V";
+        });
+    }
+
+    private void assign(ExpressionAssign assign) {
+        if (assign.end == null) {
+            this.store(assign, assign.expression);
+        }
+        else {
+            ClassFileWriter w = this.writer;
+            int second = w.label();
+            int end = w.label();
+            this.branch(assign.expression, false, second, 0);
+            this.store(assign, assign.end.first);
+            w.jump(ClassFileWriter.GOTO, end);
+            w.bind(second);
+            this.store(assign, assign.end.second);
+            w.bind(end);
+        }
+    }
+
+    private void store(ExpressionAssign assign, Expression value) {
+        this.expression(value);
+        this.convert(value.type, assign.type);
+        this.writer.local(store(assign.type), this.locals[assign.type.ordinal()][assign.slot],
+                assign.type == ValueType.DOUBLE ? -2 : -1);
+    }
+
+    private void branch(Expression condition, boolean when, int label, int depth) {
+        // jump to label if the condition is when
+        while (condition instanceof ExpressionUnary unary && unary.operator == Operator.NOT) {
+            condition = unary.operand;
+            when = !when;
+        }
+        if (condition instanceof ExpressionBinary binary && depth < MAX_BRANCH_DEPTH) {
+            if (binary.operator == Operator.AND || binary.operator == Operator.OR) {
+                if ((binary.operator == Operator.AND) != when) {
+                    // false && ... and true || ... decide alone
+                    this.branch(binary.left, when, label, depth + 1);
+                    this.branch(binary.right, when, label, depth + 1);
+                }
+                else {
+                    int skip = this.writer.label();
+                    this.branch(binary.left, !when, skip, depth + 1);
+                    this.branch(binary.right, when, label, depth + 1);
+                    this.writer.bind(skip);
+                }
+                return;
+            }
+            if (isCompare(binary.operator)) {
+                ValueType operands = operandType(binary);
+                this.expression(binary.left);
+                this.convert(binary.left.type, operands);
+                this.expression(binary.right);
+                this.convert(binary.right.type, operands);
+                this.compare(binary.operator, operands, when, label);
+                return;
+            }
+        }
+        this.expression(condition);
+        this.writer.jump(when ? ClassFileWriter.IFNE : ClassFileWriter.IFEQ, label);
+    }
+
+    //------------------- Expressions ----------------------
+
+    private void expression(Expression root) {
+        // the instructions that leave the value of root on the stack, without recursion
+        ClassFileWriter w = this.writer;
+        int top = this.push(0, root);
+        while (top > 0) {
+            Expression expression = this.nodes[top - 1];
+            int state = this.states[top - 1]++;
+            switch (expression.kind) {
+                case BINARY_EXPR -> {
+                    ExpressionBinary binary = (ExpressionBinary) expression;
+                    if (binary.operator == Operator.AND || binary.operator == Operator.OR) {
+                        if (state == 0) {
+                            top = this.push(top, binary.left);
+                        }
+                        else if (state == 1) {
+                            // the left value is the value if it decides, else the right one is
+                            this.jumps[top - 1] = w.label();
+                            w.emit(ClassFileWriter.DUP, 1);
+                            w.jump(binary.operator == Operator.AND ? ClassFileWriter.IFEQ : ClassFileWriter.IFNE, this.jumps[top - 1]);
+                            w.emit(ClassFileWriter.POP, -1);
+                            top = this.push(top, binary.right);
+                        }
+                        else {
+                            w.bind(this.jumps[--top]);
+                        }
+                    }
+                    else if (state == 0) {
+                        top = this.push(top, binary.left);
+                    }
+                    else if (state == 1) {
+                        this.convert(binary.left.type, operandType(binary));
+                        top = this.push(top, binary.right);
+                    }
+                    else {
+                        top--;
+                        ValueType operands = operandType(binary);
+                        this.convert(binary.right.type, operands);
+                        this.operator(binary, operands);
+                    }
+                }
+                case UNARY_EXPR -> {
+                    ExpressionUnary unary = (ExpressionUnary) expression;
+                    if (state == 0) {
+                        top = this.push(top, unary.operand);
+                    }
+                    else {
+                        top--;
+                        if (unary.operator == Operator.NOT) {
+                            w.constant(1);
+                            w.emit(ClassFileWriter.IXOR, -1);
+                        }
+                        else {
+                            w.emit(unary.type == ValueType.INTEGER ? ClassFileWriter.INEG : ClassFileWriter.DNEG, 0);
+                        }
+                    }
+                }
+                case READ_OPERATION -> {
+                    top--;
+                    this.read((ExpressionRead) expression);
+                }
+                default -> {
+                    top--;
+                    this.leaf(expression);
+                }
+            }
+        }
+    }
+
+    private void operator(ExpressionBinary binary, ValueType operands) {
+        // the instructions of an operator that isn't && or ||, its operands on the stack
+        ClassFileWriter w = this.writer;
+        if (binary.type == ValueType.STRING) {
+            w.invoke(ClassFileWriter.INVOKEVIRTUAL, STRING, "concat", "(Ljava/lang/String;)Ljava/lang/String;");
+        }
+        else if (binary.type == ValueType.BOOL) {
+            int yes = w.label();
+            int end = w.label();
+            this.compare(binary.operator, operands, true, yes);
+            w.constant(0);
+            w.jump(ClassFileWriter.GOTO, end);
+            w.bind(yes);
+            w.constant(1);
+            w.bind(end);
+        }
+        else {
+            boolean integers = operands == ValueType.INTEGER;
+            w.emit(switch (binary.operator) {
+                case PLUS -> integers ? ClassFileWriter.IADD : ClassFileWriter.DADD;
+                case MINUS -> integers ? ClassFileWriter.ISUB : ClassFileWriter.DSUB;
+                case MULTIPLY -> integers ? ClassFileWriter.IMUL : ClassFileWriter.DMUL;
+                case DIVIDE -> integers ? ClassFileWriter.IDIV : ClassFileWriter.DDIV;
+                default -> integers ? ClassFileWriter.IREM : ClassFileWriter.DREM;
+            }, integers ? -1 : -2);
+        }
+    }
+
+    private void compare(Operator operator, ValueType operands, boolean when, int label) {
+        // jump to label if comparing the two operands on the stack is when
+        ClassFileWriter w = this.writer;
+        if (operands == ValueType.STRING) {
+            w.invoke(ClassFileWriter.INVOKEVIRTUAL, STRING, "equals", "(Ljava/lang/Object;)Z");
+            w.jump((operator == Operator.EQUAL) == when ? ClassFileWriter.IFNE : ClassFileWriter.IFEQ, label);
+            return;
+        }
+        int jump = switch (operator) {
+            case LESS -> ClassFileWriter.IF_ICMPLT;
+            case LESS_EQUAL -> ClassFileWriter.IF_ICMPLE;
+            case GREATER -> ClassFileWriter.IF_ICMPGT;
+            case GREATER_EQUAL -> ClassFileWriter.IF_ICMPGE;
+            case EQUAL -> ClassFileWriter.IF_ICMPEQ;
+            default -> ClassFileWriter.IF_ICMPNE;
+        };
+        if (!when) {
+            jump = ClassFileWriter.IF_ICMPEQ + ((jump - ClassFileWriter.IF_ICMPEQ) ^ 1);  // EQ NE, LT GE, GT LE are pairs
+        }
+        if (operands == ValueType.DOUBLE) {
+            // DCMPG makes a NaN greater, so < and <= are false with it, DCMPL makes it less for > and >=
+            boolean less = operator == Operator.LESS || operator == Operator.LESS_EQUAL;
+            w.emit(less ? ClassFileWriter.DCMPG : ClassFileWriter.DCMPL, -3);
+            jump += ClassFileWriter.IFEQ - ClassFileWriter.IF_ICMPEQ;
+        }
+        w.jump(jump, label);
+    }
+
+    private void convert(ValueType from, ValueType to) {
+        // the value on the stack from one type to another it can be used as
+        if (from == to) {
+            return;
+        }
+        if (to == ValueType.DOUBLE) {
+            this.writer.emit(ClassFileWriter.I2D, 1);
+        }
+        else if (to == ValueType.STRING) {
+            this.writer.invoke(ClassFileWriter.INVOKESTATIC, STRING, "valueOf", switch (from) {
+                case INTEGER -> "(I)Ljava/lang/String;";
+                case DOUBLE -> "(D)Ljava/lang/String;";
+                default -> "(Z)Ljava/lang/String;";
+            });
+        }
+    }
+
+    private void leaf(Expression expression) {
+        ClassFileWriter w = this.writer;
+        switch (expression.kind) {
+            case IDENTIFIER -> {
+                ValueType type = expression.type;
+                w.local(load(type), this.locals[type.ordinal()][((ExpressionIdentifier) expression).slot],
+                        type == ValueType.DOUBLE ? 2 : 1);
+            }
+            case INT_CONSTANT -> w.constant(((IntConst) expression).value);
+            case BOOL_CONSTANT -> w.constant(((BoolConst) expression).value ? 1 : 0);
+            case DOUBLE_CONSTANT -> w.constant(((DoubleConst) expression).value);
+            default -> w.constant(((StringConst) expression).value);
+        }
+    }
+
+    private void read(ExpressionRead read) {
+        // the same calls as the Interpreter's, so the errors are the same
+        ClassFileWriter w = this.writer;
+        w.local(ClassFileWriter.ALOAD, IN, 1);
+        w.getStatic("TokenCode", read.operation.name(), "LTokenCode;");
+        w.invoke(ClassFileWriter.INVOKESTATIC, "Interpreter", "readLine", "(Ljava/io/BufferedReader;LTokenCode;)Ljava/lang/String;");
+        switch (read.operation) {
+            case READINT -> w.invoke(ClassFileWriter.INVOKESTATIC, "Interpreter", "readInt", "(Ljava/lang/String;)I");
+            case READDOUBLE -> w.invoke(ClassFileWriter.INVOKESTATIC, "Interpreter", "readDouble", "(Ljava/lang/String;)D");
+            case READBOOL -> w.invoke(ClassFileWriter.INVOKESTATIC, "Interpreter", "readBool", "(Ljava/lang/String;)Z");
+            default -> { }
+        }
+    }
+
+    private static ValueType operandType(ExpressionBinary binary) {
+        // the type both operands are converted to before the operator
+        if (binary.type == ValueType.STRING) {
+            return ValueType.STRING;
+        }
+        if (binary.type == ValueType.BOOL && isCompare(binary.operator)) {
+            return binary.left.type == binary.right.type ? binary.left.type : ValueType.DOUBLE;
+        }
+        return binary.type;
+    }
+
+    private static boolean isCompare(Operator operator) {
+        return switch (operator) {
+            case LESS, LESS_EQUAL, GREATER, GREATER_EQUAL, EQUAL, NOT_EQUAL -> true;
+            default -> false;
+        };
+    }
+
+    private static int load(ValueType type) {
+        return switch (type) {
+            case INTEGER, BOOL -> ClassFileWriter.ILOAD;
+            case DOUBLE -> ClassFileWriter.DLOAD;
+            case STRING -> ClassFileWriter.ALOAD;
+        };
+    }
+
+    private static int store(ValueType type) {
+        return switch (type) {
+            case INTEGER, BOOL -> ClassFileWriter.ISTORE;
+            case DOUBLE -> ClassFileWriter.DSTORE;
+            case STRING -> ClassFileWriter.ASTORE;
+        };
+    }
+
+    private int push(int top, Expression expression) {
+        if (top == this.nodes.length) {
+            this.nodes = Arrays.copyOf(this.nodes, top * 2);
+            this.states = Arrays.copyOf(this.states, top * 2);
+            this.jumps = Arrays.copyOf(this.jumps, top * 2);
+        }
+        this.nodes[top] = expression;
+        this.states[top] = 0;
+        return top + 1;
+    }
+
+    private void line(Statement statement) {
+        // the instructions from here on are this statement's
+        if (statement == null || statement.first == null) {
+            return;
+        }
+        int pc = this.writer.length();
+        if (this.lineCount > 0 && this.lines[this.lineCount - 2] == pc) {
+            this.lineCount -= 2;
+            this.statements.remove(this.statements.size() - 1);
+        }
+        if (this.lineCount + 2 > this.lines.length) {
+            this.lines = Arrays.copyOf(this.lines, this.lines.length * 2);
+        }
+        this.lines[this.lineCount++] = pc;
+        this.lines[this.lineCount++] = this.statements.size();
+        this.statements.add(statement);
+    }
+}
@@ -0,0 +1,125 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class NameTable {
+
+    /*
+    Interns identifier names straight from the scanner's lexeme, so every occurrence
+    of an already seen name returns the same String without allocating anything.
+    Open addressing with linear probing; names are ASCII, so a byte span and a char
+    span of the same name hash and compare the same way.
+     */
+    private String[] names;
+    private int[] hashes;
+    private int size;
+
+    public NameTable() {
+        this.names = new String[256];
+        this.hashes = new int[256];
+    }
+
+    public String intern(ByteBuffer source, int start, int length) {
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + source.get(start + i);
+        }
+        int mask = this.names.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            String name = this.names[slot];
+            if (name == null) {
+                byte[] bytes = new byte[length];
+                source.get(start, bytes);
+                return this.insert(slot, hash, new String(bytes, StandardCharsets.ISO_8859_1));  // names are ASCII
+            }
+            if (this.hashes[slot] == hash && this.equals(name, source, start, length)) {
+                return name;
+            }
+        }
+    }
+
+    public String intern(char[] chars, int length) {
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + chars[i];
+        }
+        int mask = this.names.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            String name = this.names[slot];
+            if (name == null) {
+                return this.insert(slot, hash, new String(chars, 0, length));
+            }
+            if (this.hashes[slot] == hash && this.equals(name, chars, length)) {
+                return name;
+            }
+        }
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public void clear() {
+        // forget all the names, going back to the first size if the table has grown
+        if (this.names.length > 256) {
+            this.names = new String[256];
+            this.hashes = new int[256];
+        }
+        else {
+            Arrays.fill(this.names, null);
+        }
+        this.size = 0;
+    }
+
+    private boolean equals(String name, ByteBuffer source, int start, int length) {
+        if (name.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (name.charAt(i) != source.get(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean equals(String name, char[] chars, int length) {
+        if (name.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (name.charAt(i) != chars[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String insert(int slot, int hash, String name) {
+        this.names[slot] = name;
+        this.hashes[slot] = hash;
+        if (++this.size * 2 > this.names.length) {
+            this.grow();
+        }
+        return name;
+    }
+
+    private void grow() {
+        // double the table once it's half full
+        String[] oldNames = this.names;
+        int[] oldHashes = this.hashes;
+        this.names = new String[oldNames.length * 2];
+        this.hashes = new int[oldNames.length * 2];
+        int mask = this.names.length - 1;
+        for (int i = 0; i < oldNames.length; i++) {
+            if (oldNames[i] != null) {
+                int slot = oldHashes[i] & mask;
+                while (this.names[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                this.names[slot] = oldNames[i];
+                this.hashes[slot] = oldHashes[i];
+            }
+        }
+    }
+}
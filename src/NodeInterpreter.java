@@ -0,0 +1,531 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+public class NodeInterpreter {
+
+    /*
+    Runs a program as a tree of ExecNodes made from its statements and expressions,
+    that specializes itself while it runs: every operator becomes the node for the
+    values it sees the first time, and goes back to a generic one if it ever sees
+    others (see ExecNode). The JVM then runs a hot loop as a few small methods that
+    call each other on ints and doubles, which it can inline, instead of one
+    interpreter loop that looks at every node's kind and type again.
+
+    The output and the errors are the Interpreter's; the variables are kept in the
+    same arrays, which the nodes read and write as the frame. Statements are run by
+    recursion, like in the Interpreter.
+
+    What happened is counted:
+        specialized     operators that became a node for their values
+        generic         operators that became generic nodes
+
+        java NodeInterpreter [-counters] program.txt
+
+    runs a program with the standard input and output, and prints the counters to
+    the standard error if asked.
+     */
+
+    // the frame
+    final int[] integers;
+    final double[] doubles;
+    final boolean[] bools;
+    final String[] strings;
+    final BufferedReader in;
+    final PrintStream out;
+
+    private final Consumer<String> diagnostics;
+    private Statement current;  // the statement a runtime error is reported at
+
+    private long specialized;
+    private long generic;
+
+    public NodeInterpreter(Resolver resolver, BufferedReader in, PrintStream out, Consumer<String> diagnostics) {
+        this.integers = new int[resolver.slots(ValueType.INTEGER)];
+        this.doubles = new double[resolver.slots(ValueType.DOUBLE)];
+        this.bools = new boolean[resolver.slots(ValueType.BOOL)];
+        this.strings = new String[resolver.slots(ValueType.STRING)];
+        Arrays.fill(this.strings, "");
+        this.in = in;
+        this.out = out;
+        this.diagnostics = diagnostics;
+    }
+
+    public static void main(String[] args) throws IOException {
+        boolean counters = args.length == 2 && args[0].equals("-counters");
+        if (args.length != (counters ? 2 : 1)) {
+            System.out.println("Usage: java NodeInterpreter [-counters] program.txt");
+            System.exit(2);
+        }
+        Parser parser = new Parser(new Scanner(Scanner.map(Path.of(args[args.length - 1]))));
+        Program program = parser.parse();
+        if (parser.getErrors() > 0) {
+            System.out.printf("There have been %d detected errors%n", parser.getErrors());
+            System.exit(1);
+        }
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        PrintStream out = new PrintStream(new BufferedOutputStream(System.out, 1 << 16), false);
+        Resolver resolver = Resolver.resolve(program);
+        if (TypeChecker.check(program, System.err::println) > 0) {
+            System.exit(1);
+        }
+        NodeInterpreter interpreter = new NodeInterpreter(resolver, in, out, System.err::println);
+        boolean ran = interpreter.run(program.commandSequence);
+        out.flush();
+        if (counters) {
+            System.err.println(interpreter.counters());
+        }
+        System.exit(ran ? 0 : 1);
+    }
+
+    public static boolean run(Program program, BufferedReader in, PrintStream out, Consumer<String> diagnostics) {
+        // like Interpreter.run
+        Resolver resolver = Resolver.resolve(program);
+        if (TypeChecker.check(program, diagnostics) > 0) {
+            return false;
+        }
+        return new NodeInterpreter(resolver, in, out, diagnostics).run(program.commandSequence);
+    }
+
+    public boolean run(CommandSequence commands) {
+        try {
+            sequence(commands).run(this);
+            return true;
+        } catch (ArithmeticException | Interpreter.RuntimeError e) {
+            Token token = this.current == null ? null : this.current.first;
+            String at = token == null ? "-- " : "-- line " + token.line + " col " + token.col + ": ";
+            this.diagnostics.accept(at + "runtime error: " + Interpreter.message(e));
+            return false;
+        }
+    }
+
+    void rewritten(boolean generic) {
+        // a node replaced itself
+        if (generic) {
+            this.generic++;
+        }
+        else {
+            this.specialized++;
+        }
+    }
+
+    public long specialized() {
+        return this.specialized;
+    }
+
+    public long generic() {
+        return this.generic;
+    }
+
+    public String counters() {
+        return String.format("%d nodes specialized, %d generic", this.specialized, this.generic);
+    }
+
+    //------------------- Building the tree ----------------------
+
+    private static Sequence sequence(CommandSequence commandSequence) {
+        ArrayList<Statement> statements = commandSequence.statements;
+        StatementNode[] nodes = new StatementNode[statements.size()];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = statement(statements.get(i));
+        }
+        return new Sequence(nodes);
+    }
+
+    private static StatementNode statement(Statement statement) {
+        return switch (statement.kind) {
+            case IF_STATEMENT -> {
+                StatementIf ifStatement = (StatementIf) statement;
+                CommandSequence otherwise = ifStatement.endIfStatement.commandSequence;
+                yield new If(ifStatement, expression(ifStatement.expression), sequence(ifStatement.commandSequence),
+                        otherwise == null ? null : sequence(otherwise));
+            }
+            case WHILE_STATEMENT -> {
+                StatementWhile whileStatement = (StatementWhile) statement;
+                yield new While(whileStatement, expression(whileStatement.expression), sequence(whileStatement.commandSequence));
+            }
+            case FOR_STATEMENT -> {
+                StatementFor forStatement = (StatementFor) statement;
+                yield new For(forStatement, assign(forStatement.first), expression(forStatement.expression),
+                        assign(forStatement.second), sequence(forStatement.commandSequence));
+            }
+            case REPEAT_STATEMENT -> {
+                StatementRepeat repeatStatement = (StatementRepeat) statement;
+                yield new Repeat(repeatStatement, sequence(repeatStatement.commandSequence), expression(repeatStatement.expression));
+            }
+            case BREAK_STATEMENT -> new Break(statement);
+            case PRINT_STATEMENT -> new Print(statement, new ExecNode[] {expression(((StatementPrint) statement).expression)});
+            case CALC_STATEMENT -> {
+                ArrayList<Expression> expressions = ((StatementCalc) statement).expressions;
+                ExecNode[] nodes = new ExecNode[expressions.size()];
+                for (int i = 0; i < nodes.length; i++) {
+                    nodes[i] = expression(expressions.get(i));
+                }
+                yield new Print(statement, nodes);
+            }
+            case ASSIGN_EXPR -> assign((ExpressionAssign) statement);
+            default -> new Nothing(statement);
+        };
+    }
+
+    private static Assign assign(ExpressionAssign assign) {
+        if (assign.end == null) {
+            return new Assign(assign, null, expression(assign.expression), null);
+        }
+        return new Assign(assign, expression(assign.expression), expression(assign.end.first), expression(assign.end.second));
+    }
+
+    private static ExecNode expression(Expression root) {
+        // the uninitialized nodes of an expression, bottom up with a work stack; a Deep node if it's too deep for them
+        Expression[] nodes = new Expression[64];
+        int[] states = new int[64];
+        ArrayList<ExecNode> built = new ArrayList<>();
+        nodes[0] = root;
+        int top = 1;
+        while (top > 0) {
+            if (top > ExecNode.MAX_DEPTH) {
+                return new ExecNode.Deep(root);
+            }
+            Expression expression = nodes[top - 1];
+            int state = states[top - 1]++;
+            Expression operand = null;
+            if (expression instanceof ExpressionBinary binary) {
+                if (state < 2) {
+                    operand = state == 0 ? binary.left : binary.right;
+                }
+                else {
+                    top--;
+                    ExecNode right = built.remove(built.size() - 1);
+                    ExecNode left = built.remove(built.size() - 1);
+                    built.add(switch (binary.operator) {
+                        case AND -> new ExecNode.And(left, right);
+                        case OR -> new ExecNode.Or(left, right);
+                        default -> new ExecNode.UninitializedBinary(binary.operator, left, right);
+                    });
+                }
+            }
+            else if (expression instanceof ExpressionUnary unary) {
+                if (state == 0) {
+                    operand = unary.operand;
+                }
+                else {
+                    top--;
+                    built.add(new ExecNode.UninitializedUnary(unary.operator, built.remove(built.size() - 1)));
+                }
+            }
+            else {
+                top--;
+                built.add(leaf(expression));
+            }
+            if (operand != null) {
+                if (top == nodes.length) {
+                    nodes = Arrays.copyOf(nodes, top * 2);
+                    states = Arrays.copyOf(states, top * 2);
+                }
+                nodes[top] = operand;
+                states[top++] = 0;
+            }
+        }
+        return built.get(0);
+    }
+
+    static ExecNode leaf(Expression expression) {
+        // a variable, a constant or a read
+        return switch (expression.kind) {
+            case IDENTIFIER -> {
+                ExpressionIdentifier identifier = (ExpressionIdentifier) expression;
+                yield switch (identifier.type) {
+                    case INTEGER -> new ExecNode.IntVariable(identifier.slot);
+                    case DOUBLE -> new ExecNode.DoubleVariable(identifier.slot);
+                    case BOOL -> new ExecNode.BoolVariable(identifier.slot);
+                    case STRING -> new ExecNode.StringVariable(identifier.slot);
+                };
+            }
+            case INT_CONSTANT -> new ExecNode.IntConstant(((IntConst) expression).value);
+            case DOUBLE_CONSTANT -> new ExecNode.DoubleConstant(((DoubleConst) expression).value);
+            case BOOL_CONSTANT -> new ExecNode.Constant(((BoolConst) expression).value);
+            case STRING_CONSTANT -> new ExecNode.Constant(((StringConst) expression).value);
+            case READ_OPERATION -> new ExecNode.Read(((ExpressionRead) expression).operation);
+            default -> throw new IllegalStateException("not a leaf: " + expression.kind);
+        };
+    }
+
+    //------------------- Statements ----------------------
+
+    abstract static class StatementNode extends ExecNode {
+
+        final Statement statement;
+
+        StatementNode(Statement statement) {
+            this.statement = statement;
+        }
+
+        abstract boolean run(NodeInterpreter frame);  // true if a BREAK ended it
+
+        @Override
+        Object execute(NodeInterpreter frame) {
+            return this.run(frame);
+        }
+
+        static boolean condition(ExecNode condition, NodeInterpreter frame) {
+            try {
+                return condition.executeBool(frame);
+            } catch (UnexpectedValue e) {
+                throw new IllegalStateException("a condition that is " + e.value);
+            }
+        }
+    }
+
+    static final class Sequence extends StatementNode {
+
+        private final StatementNode[] statements;
+
+        Sequence(StatementNode[] statements) {
+            super(null);
+            this.statements = statements;
+            for (StatementNode statement : statements) {
+                this.adopt(statement);
+            }
+        }
+
+        @Override
+        boolean run(NodeInterpreter frame) {
+            for (StatementNode node : this.statements) {
+                if (node.statement.first != null) {
+                    frame.current = node.statement;
+                }
+                if (node.run(frame)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    static final class If extends StatementNode {
+
+        private ExecNode condition;
+        private final Sequence then;
+        private final Sequence otherwise;
+
+        If(Statement statement, ExecNode condition, Sequence then, Sequence otherwise) {
+            super(statement);
+            this.condition = this.adopt(condition);
+            this.then = this.adopt(then);
+            this.otherwise = otherwise == null ? null : this.adopt(otherwise);
+        }
+
+        @Override
+        void replaceChild(ExecNode child, ExecNode node) {
+            this.condition = node;
+        }
+
+        @Override
+        boolean run(NodeInterpreter frame) {
+            if (condition(this.condition, frame)) {
+                return this.then.run(frame);
+            }
+            return this.otherwise != null && this.otherwise.run(frame);
+        }
+    }
+
+    static final class While extends StatementNode {
+
+        private ExecNode condition;
+        private final Sequence body;
+
+        While(Statement statement, ExecNode condition, Sequence body) {
+            super(statement);
+            this.condition = this.adopt(condition);
+            this.body = this.adopt(body);
+        }
+
+        @Override
+        void replaceChild(ExecNode child, ExecNode node) {
+            this.condition = node;
+        }
+
+        @Override
+        boolean run(NodeInterpreter frame) {
+            while (condition(this.condition, frame)) {
+                if (this.body.run(frame)) {
+                    break;
+                }
+                frame.current = this.statement;
+            }
+            return false;
+        }
+    }
+
+    static final class For extends StatementNode {
+
+        private final Assign first;
+        private ExecNode condition;
+        private final Assign second;
+        private final Sequence body;
+
+        For(Statement statement, Assign first, ExecNode condition, Assign second, Sequence body) {
+            super(statement);
+            this.first = this.adopt(first);
+            this.condition = this.adopt(condition);
+            this.second = this.adopt(second);
+            this.body = this.adopt(body);
+        }
+
+        @Override
+        void replaceChild(ExecNode child, ExecNode node) {
+            this.condition = node;
+        }
+
+        @Override
+        boolean run(NodeInterpreter frame) {
+            this.first.run(frame);
+            while (condition(this.condition, frame)) {
+                if (this.body.run(frame)) {
+                    break;
+                }
+                frame.current = this.statement;
+                this.second.run(frame);
+            }
+            return false;
+        }
+    }
+
+    static final class Repeat extends StatementNode {
+
+        private final Sequence body;
+        private ExecNode condition;
+
+        Repeat(Statement statement, Sequence body, ExecNode condition) {
+            super(statement);
+            this.body = this.adopt(body);
+            this.condition = this.adopt(condition);
+        }
+
+        @Override
+        void replaceChild(ExecNode child, ExecNode node) {
+            this.condition = node;
+        }
+
+        @Override
+        boolean run(NodeInterpreter frame) {
+            do {
+                if (this.body.run(frame)) {
+                    break;
+                }
+                frame.current = this.statement;
+            } while (!condition(this.condition, frame));
+            return false;
+        }
+    }
+
+    static final class Break extends StatementNode {
+
+        Break(Statement statement) {
+            super(statement);
+        }
+
+        @Override
+        boolean run(NodeInterpreter frame) {
+            return true;
+        }
+    }
+
+    static final class Nothing extends StatementNode {
+
+        // a statement the Interpreter doesn't run either
+        Nothing(Statement statement) {
+            super(statement);
+        }
+
+        @Override
+        boolean run(NodeInterpreter frame) {
+            return false;
+        }
+    }
+
+    static final class Print extends StatementNode {
+
+        // PRINT, or CALC with every expression
+        private final ExecNode[] expressions;
+
+        Print(Statement statement, ExecNode[] expressions) {
+            super(statement);
+            this.expressions = expressions;
+            for (ExecNode expression : expressions) {
+                this.adopt(expression);
+            }
+        }
+
+        @Override
+        void replaceChild(ExecNode child, ExecNode node) {
+            for (int i = 0; i < this.expressions.length; i++) {
+                if (this.expressions[i] == child) {
+                    this.expressions[i] = node;
+                }
+            }
+        }
+
+        @Override
+        boolean run(NodeInterpreter frame) {
+            for (ExecNode expression : this.expressions) {
+                frame.out.println(expression.execute(frame));
+            }
+            return false;
+        }
+    }
+
+    static final class Assign extends StatementNode {
+
+        private final ValueType type;
+        private final int slot;
+        private ExecNode condition;  // of x = c ? e1 : e2, null for x = e
+        private ExecNode value;
+        private ExecNode otherwise;
+
+        Assign(ExpressionAssign assign, ExecNode condition, ExecNode value, ExecNode otherwise) {
+            super(assign);
+            this.type = assign.type;
+            this.slot = assign.slot;
+            this.condition = condition == null ? null : this.adopt(condition);
+            this.value = this.adopt(value);
+            this.otherwise = otherwise == null ? null : this.adopt(otherwise);
+        }
+
+        @Override
+        void replaceChild(ExecNode child, ExecNode node) {
+            if (this.condition == child) {
+                this.condition = node;
+            }
+            else if (this.value == child) {
+                this.value = node;
+            }
+            else {
+                this.otherwise = node;
+            }
+        }
+
+        @Override
+        boolean run(NodeInterpreter frame) {
+            ExecNode value = this.condition == null || condition(this.condition, frame) ? this.value : this.otherwise;
+            try {
+                switch (this.type) {
+                    case INTEGER -> frame.integers[this.slot] = value.executeInt(frame);
+                    case DOUBLE -> frame.doubles[this.slot] = value.executeDouble(frame);
+                    case BOOL -> frame.bools[this.slot] = value.executeBool(frame);
+                    case STRING -> frame.strings[this.slot] = (String) value.execute(frame);
+                }
+            } catch (UnexpectedValue e) {
+                throw new IllegalStateException("a " + this.type + " variable assigned " + e.value);
+            }
+            return false;
+        }
+    }
+}
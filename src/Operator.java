@@ -0,0 +1,34 @@
+public enum Operator {
+
+    // Logical
+    OR("||"),
+    AND("&&"),
+    // Equality
+    EQUAL("=="),
+    NOT_EQUAL("!="),
+    // Compare
+    LESS("<"),
+    LESS_EQUAL("<="),
+    GREATER(">"),
+    GREATER_EQUAL(">="),
+    // AddSub, MINUS is also the unary minus
+    PLUS("+"),
+    MINUS("-"),
+    // MulDivMod
+    MULTIPLY("*"),
+    DIVIDE("/"),
+    MOD("%"),
+    // unary only
+    NOT("!");
+
+    private final String symbol;
+
+    Operator(String symbol) {
+        this.symbol = symbol;
+    }
+
+    @Override
+    public String toString() {
+        return this.symbol;
+    }
+}
@@ -1,11 +0,0 @@
-public class Pair {
-
-    // Defines a pair for the symbol table
-    String type;
-    Expression expression;
-
-    public Pair(String type, Expression expression) {
-        this.type = type;
-        this.expression = expression;
-    }
-}
@@ -0,0 +1,234 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+public class ParallelScanner {
+
+    /*
+    Scans a big source on several threads. The source is split into chunks that
+    start right after a newline, and every chunk is scanned on its own as if it
+    started between two tokens. Strings can't contain a newline, so the only
+    way that guess can be wrong is a block comment that is still open at the end
+    of a chunk; the next chunk then lexed the inside of the comment as code.
+
+    The chunks are stitched together in order. The scanner of the previous chunk
+    knows where the sequential run continues (the offset of its first token at or
+    past the chunk end). When the next chunk started a token or comment at that
+    very offset, the two runs are in the same state from there on and the rest
+    of the chunk is taken as it is. Otherwise the previous scanner keeps going,
+    one token at a time, until it meets such a point. Lines are numbered up front
+    from per-chunk newline counts, so line/col numbers and scanner errors come out
+    exactly as with a single Scanner; the errors are reported while stitching,
+    so the ones found in misread comments are dropped.
+     */
+
+    public static final int DEFAULT_CHUNK_SIZE = 256 * 1024;
+
+    public static TokenList scan(ByteBuffer source) {
+        return scan(source, ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE, System.out::println);
+    }
+
+    public static TokenList scan(ByteBuffer source, ForkJoinPool pool, int chunkSize, Consumer<String> diagnostics) {
+        ArrayList<Chunk> chunks = split(source, chunkSize);
+        runAll(pool, chunks, chunk -> chunk.countLines(source));
+        int line = 1;
+        for (Chunk chunk : chunks) {
+            chunk.firstLine = line;
+            line += chunk.newlines;
+        }
+        runAll(pool, chunks, chunk -> chunk.scan(source));
+        return stitch(chunks, diagnostics);
+    }
+
+    private static ArrayList<Chunk> split(ByteBuffer source, int chunkSize) {
+        // cut the source into chunks of about chunkSize bytes, each one starting at the beginning of a line
+        ArrayList<Chunk> chunks = new ArrayList<>();
+        int start = source.position();
+        int limit = source.limit();
+        do {
+            int end = limit;
+            if (limit - start > chunkSize) {
+                end = start + chunkSize;
+                while (end < limit && source.get(end - 1) != '\n') {
+                    end++;
+                }
+            }
+            chunks.add(new Chunk(chunks.size(), start, end));
+            start = end;
+        } while (start < limit);
+        return chunks;
+    }
+
+    private static void runAll(ForkJoinPool pool, ArrayList<Chunk> chunks, Consumer<Chunk> work) {
+        ArrayList<Callable<Void>> tasks = new ArrayList<>();
+        for (Chunk chunk : chunks) {
+            tasks.add(() -> {
+                work.accept(chunk);
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> result : pool.invokeAll(tasks)) {
+                result.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while scanning", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static TokenList stitch(ArrayList<Chunk> chunks, Consumer<String> diagnostics) {
+        TokenList result = new TokenList();
+        Chunk first = chunks.get(0);  // starts where the source starts, so it's always right
+        first.emit(0, result, diagnostics);
+        Scanner scanner = first.scanner;
+        Token pending = first.pending;  // first token of the sequential run that hasn't been placed yet
+        int pendingOffset = first.pendingOffset;
+        ArrayList<String> pendingMessages = first.pendingMessages();
+
+        for (int i = 1; i < chunks.size(); i++) {
+            Chunk chunk = chunks.get(i);
+            while (pendingOffset < chunk.end) {
+                int index = chunk.syncAt(pendingOffset);
+                if (index >= 0) {
+                    // both runs are at the same place; the chunk is right from here on
+                    chunk.emit(index, result, diagnostics);
+                    scanner = chunk.scanner;
+                    pending = chunk.pending;
+                    pendingOffset = chunk.pendingOffset;
+                    pendingMessages = chunk.pendingMessages();
+                    break;
+                }
+                // the chunk started inside a comment; scan on sequentially until the runs meet
+                if (pending != null) {
+                    result.add(pending);
+                }
+                pendingMessages.forEach(diagnostics);
+                pendingMessages = new ArrayList<>();
+                scanner.setDiagnostics(pendingMessages::add);
+                pending = scanner.nextToken();
+                pendingOffset = scanner.tokenOffset();
+            }
+        }
+        result.add(pending);  // EOF
+        pendingMessages.forEach(diagnostics);
+        return result;
+    }
+
+    private static class Chunk {
+
+        final int index;
+        final int start;  // offset of the first byte, always the start of a line
+        final int end;  // offset after the last byte
+        int newlines;  // number of newlines in the chunk
+        int firstLine;  // line number of the first byte
+
+        final ArrayList<Token> tokens = new ArrayList<>();
+        // Offsets where the chunk's scanner started a token or a comment, and the number of tokens before it
+        int[] syncOffsets = new int[64];
+        int[] syncTokens = new int[64];
+        int syncCount;
+        // Scanner errors, with the index of the token they were reported for
+        final ArrayList<String> messages = new ArrayList<>();
+        final ArrayList<Integer> messageTokens = new ArrayList<>();
+
+        Scanner scanner;  // left right after the pending token
+        Token pending;  // first token starting at or after end, not a part of this chunk
+        int pendingOffset;
+
+        Chunk(int index, int start, int end) {
+            this.index = index;
+            this.start = start;
+            this.end = end;
+        }
+
+        void countLines(ByteBuffer source) {
+            this.newlines = Scanner.countNewlines(source.duplicate().order(ByteOrder.LITTLE_ENDIAN), this.start, this.end);
+        }
+
+        void scan(ByteBuffer source) {
+            ByteBuffer view = source.duplicate();
+            view.position(this.start);  // the limit stays, tokens at the end may run into the next chunk
+            Scanner scanner = new Scanner(view, this.firstLine);
+            scanner.setDiagnostics(message -> {
+                this.messages.add(message);
+                this.messageTokens.add(this.tokens.size());
+            });
+            try {
+                while (true) {
+                    Token t = scanner.nextToken();
+                    int offset = scanner.tokenOffset();
+                    if (offset >= this.end) {
+                        this.pending = t;
+                        this.pendingOffset = offset;
+                        break;
+                    }
+                    this.addSync(offset);
+                    if (t != null) {
+                        this.tokens.add(t);
+                    }
+                }
+                this.scanner = scanner;
+            } catch (RuntimeException e) {
+                if (this.index == 0) {
+                    throw e;  // the first chunk is scanned exactly like a sequential run would be
+                }
+                // Likely a number that overflows inside of a comment. Never sync to this chunk, the
+                // previous scanner will run through it and throw again if the problem is real.
+                this.syncCount = 0;
+            }
+        }
+
+        private void addSync(int offset) {
+            if (this.syncCount > 0 && this.syncOffsets[this.syncCount - 1] == offset) {
+                return;  // the second half of a surrogate pair, the run goes on from the first
+            }
+            if (this.syncCount == this.syncOffsets.length) {
+                this.syncOffsets = Arrays.copyOf(this.syncOffsets, this.syncCount * 2);
+                this.syncTokens = Arrays.copyOf(this.syncTokens, this.syncCount * 2);
+            }
+            this.syncOffsets[this.syncCount] = offset;
+            this.syncTokens[this.syncCount++] = this.tokens.size();
+        }
+
+        int syncAt(int offset) {
+            // index of the token the chunk continues with from the given offset, or -1
+            int i = Arrays.binarySearch(this.syncOffsets, 0, this.syncCount, offset);
+            return i >= 0 ? this.syncTokens[i] : -1;
+        }
+
+        void emit(int from, TokenList result, Consumer<String> diagnostics) {
+            // add the tokens from the given index on, with their errors
+            for (int i = 0; i < this.messages.size(); i++) {
+                int token = this.messageTokens.get(i);
+                if (token >= from && token < this.tokens.size()) {
+                    diagnostics.accept(this.messages.get(i));
+                }
+            }
+            for (int i = from; i < this.tokens.size(); i++) {
+                result.add(this.tokens.get(i));
+            }
+        }
+
+        ArrayList<String> pendingMessages() {
+            ArrayList<String> pendingMessages = new ArrayList<>();
+            for (int i = 0; i < this.messages.size(); i++) {
+                if (this.messageTokens.get(i) == this.tokens.size()) {
+                    pendingMessages.add(this.messages.get(i));
+                }
+            }
+            return pendingMessages;
+        }
+    }
+}
@@ -1,6 +1,8 @@
+import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.function.Consumer;
 
 public class Parser {
 
@@ -8,57 +10,113 @@ public class Parser {
     private TokenCode sym;  // always contains la.kind; token code of the lookahead token
     private int errDist;    // no. of correctly recognized tokens since last error
     private int errors;     // error counter
-
-    // maps a nonterminal to it's FirstSet; the FirstSet is a list of codes from above
-    private final HashMap<String, ArrayList<TokenCode>> firstMap;
-    private final HashMap<String, Pair> symbolTable;
-    private final Scanner scanner;
-
-    public Parser(Scanner s) {
-
-        this.symbolTable = new HashMap<>();
-        this.firstMap = new HashMap<>();
-        this.firstMap.put("Declarations", new ArrayList<>(Arrays.asList(TokenCode.INTEGER_TYPE,
-                TokenCode.BOOL_TYPE, TokenCode.STRING_TYPE, TokenCode.DOUBLE_TYPE)));
-        this.firstMap.put("CommandSequence", new ArrayList<>(Arrays.asList(TokenCode.IF, TokenCode.WHILE,
-                TokenCode.FOR, TokenCode.BREAK, TokenCode.PRINT, TokenCode.REPEAT,
-                TokenCode.CALC_BEGIN, TokenCode.IDENTIFIER, TokenCode.INTEGER_CONSTANT,
-                TokenCode.BOOL_CONSTANT, TokenCode.STRING_CONSTANT, TokenCode.DOUBLE_CONSTANT,
-                TokenCode.LEFT_REGULAR, TokenCode.READINT, TokenCode.READSTRING, TokenCode.READDOUBLE,
-                TokenCode.READBOOL)));
-        this.firstMap.put("Compare", new ArrayList<>(Arrays.asList(TokenCode.LESS, TokenCode.LESS_EQUAL,
-                TokenCode.GREATER, TokenCode.GREATER_EQUAL)));
-        this.firstMap.put("Constant", new ArrayList<>(Arrays.asList(TokenCode.INTEGER_CONSTANT,
-                TokenCode.BOOL_CONSTANT, TokenCode.STRING_CONSTANT, TokenCode.DOUBLE_CONSTANT)));
-        this.firstMap.put("ReadOperations", new ArrayList<>(Arrays.asList(TokenCode.READINT,
-                TokenCode.READSTRING, TokenCode.READBOOL, TokenCode.READDOUBLE)));
-        // had to put it just for the purposes of CalcStatement
-        this.firstMap.put("Expression",
-                new ArrayList<>(Arrays.asList(TokenCode.IDENTIFIER, TokenCode.INTEGER_CONSTANT,
-                TokenCode.BOOL_CONSTANT, TokenCode.STRING_CONSTANT, TokenCode.DOUBLE_CONSTANT,
-                TokenCode.LEFT_REGULAR, TokenCode.READINT, TokenCode.READSTRING, TokenCode.READDOUBLE,
-                TokenCode.READBOOL)));
-
-        // start parsing
+    private Token last;     // last recognized token, the one before la
+
+    private final HashMap<String, Declaration> symbolTable;
+    private TokenSource scanner;
+    private Consumer<String> diagnostics;  // where the syntax errors go
+    private PrintStream out = System.out;  // where printProgram() prints
+    private ExpressionInterner interner;  // makes the expressions when set, sharing the equal ones
+
+    // levels of the operators on the stacks of Expr(), an operand has the level of the operator that made it
+    private static final int GROUP = 0;
+    private static final int LOGICAL = 1;
+    private static final int EQUALITY = 2;
+    private static final int COMPARE = 3;
+    private static final int ADD_SUB = 4;
+    private static final int MUL_DIV_MOD = 5;
+    private static final int UNARY = 6;
+    private static final int PRIMARY = 7;
+
+    private Operator[] operators = new Operator[16];  // null for a GROUP
+    private int[] operatorLevels = new int[16];
+    private int operatorCount;
+    private Expression[] operands = new Expression[16];
+    private int[] operandLevels = new int[16];
+    private int operandCount;
+
+    public Parser(TokenSource s) {
+        this(s, System.out::println, new HashMap<>());
+    }
+
+    Parser(TokenSource s, Consumer<String> diagnostics, HashMap<String, Declaration> symbolTable) {
+        // Only sets up; parse() or parseStatements() does the parsing, without printing anything
+        this.symbolTable = symbolTable;
         this.errors = 0;
         this.scanner = s;
+        this.diagnostics = diagnostics;
+        this.errDist = 3;
+    }
+
+    public void reset(TokenSource s) {
+        /*
+        Start over on another token source, as if it were a new Parser with an empty
+        symbol table, but keeping the table's and the expression stacks' memory.
+         */
+        this.scanner = s;
+        this.symbolTable.clear();
+        this.la = null;
+        this.sym = null;
+        this.last = null;
+        this.errors = 0;
         this.errDist = 3;
+        this.operatorCount = 0;
+        Arrays.fill(this.operands, 0, this.operandCount, null);
+        this.operandCount = 0;
+        this.out = System.out;
+    }
+
+    public void setDiagnostics(Consumer<String> diagnostics) {
+        // Syntax errors are printed to System.out unless they're sent somewhere else
+        this.diagnostics = diagnostics;
+    }
+
+    public void setInterner(ExpressionInterner interner) {
+        // Hash-cons the expressions from now on (null to stop), the trees become a DAG
+        this.interner = interner;
+    }
+
+    public Program parse() {
+        // the whole token stream, as a Program with all of its statements
+        return this.parse(null);
+    }
+
+    public Program parse(Consumer<Statement> statements) {
+        /*
+        The whole token stream, handing every statement of the main command sequence
+        to statements as soon as it is parsed instead of keeping it, so the caller can
+        start on it right away and the parser never holds more than one of them.
+        The Program that is returned has the declarations and an empty command sequence.
+        With statements null, they are kept in the Program like always.
+         */
         this.scan();
-        Program program = this.Program();
+        Program program = this.Program(statements);
         if (this.sym != TokenCode.EOF) {
             error("end of file found before end of program");
         }
+        return program;
+    }
 
-        // Print the AST/Parse tree/whatever the hell
-        this.printProgram(program);
-        System.out.println();
-//        System.out.println("----------- SYMBOL TABLE -----------\n");
-//        for (String identifier : this.symbolTable.keySet()) {
-//            Pair information = this.symbolTable.get(identifier);
-//            System.out.printf("IDENTIFIER: %s, TYPE: %s\nEXPRESSION:\n", identifier, information.type);
-//            this.printExpr(information.expression, 1);
-//            System.out.println();
-//        }
+    ArrayList<Statement> parseStatements(Token stop) {
+        /*
+        Stmt+ from the first token up to stop, a part of a command sequence that is
+        parsed again after an edit. The statements end right before stop only if
+        lookahead() is stop afterwards.
+         */
+        this.scan();
+        ArrayList<Statement> statements = new ArrayList<>();
+        while (this.la != stop && this.at(ParserTables.FIRST_STMT)) {
+            statements.add(this.Stmt());
+        }
+        return statements;
+    }
+
+    Token lookahead() {
+        return this.la;
+    }
+
+    HashMap<String, Declaration> symbols() {
+        return this.symbolTable;
     }
 
     //------------------- Printing methods ----------------------
@@ -78,20 +136,25 @@ public class Parser {
         return res;
     }
 
-    private void printProgram(Program program) {
-        System.out.println("\nDECLARATIONS\n");
+    public void printProgram(Program program) {
+        this.printProgram(program, System.out);
+    }
+
+    public void printProgram(Program program, PrintStream out) {
+        this.out = out;
+        this.out.println("\nDECLARATIONS\n");
         for (Declaration declaration : program.declarations) {
             if (declaration == null) {
                 continue;
             }
-            System.out.printf("\tType: %s, Name: %s\n", declaration.type, declaration.identifier);
+            this.out.printf("\tType: %s, Name: %s\n", declaration.type, declaration.identifier);
         }
-        System.out.println();
+        this.out.println();
         printCommandSequence(program.commandSequence, 1);
     }
 
     private void printCommandSequence(CommandSequence commandSequence, int numTabs) {
-        System.out.println(generateTabs(numTabs - 1) + "COMMANDS:");
+        this.out.println(generateTabs(numTabs - 1) + "COMMANDS:");
         for (Statement statement : commandSequence.statements) {
             this.printStatement(statement, numTabs);
         }
@@ -99,27 +162,27 @@ public class Parser {
 
     private void printStatement(Statement statement, int numTabs) {
         if (statement == null) {
-            System.out.println(generateTabs(numTabs) + "NULL STATEMENT");
+            this.out.println(generateTabs(numTabs) + "NULL STATEMENT");
             return;
         }
         switch (statement.kind) {
-            case StatementKind.IF_STATEMENT -> printIfStatement((StatementIf) statement, numTabs);
-            case StatementKind.WHILE_STATEMENT -> printWhileStatement((StatementWhile) statement, numTabs);
-            case StatementKind.FOR_STATEMENT -> printForStatement((StatementFor) statement, numTabs);
-            case StatementKind.BREAK_STATEMENT -> System.out.println(generateTabs(numTabs) + statement.kind);
-            case StatementKind.PRINT_STATEMENT -> printPrintStatement((StatementPrint) statement, numTabs);
-            case StatementKind.REPEAT_STATEMENT -> printRepeatStatement((StatementRepeat) statement, numTabs);
-            case StatementKind.CALC_STATEMENT -> printCalcStatement((StatementCalc) statement, numTabs);
-            case StatementKind.ASSIGN_EXPR -> printAssignExpr((ExpressionAssign) statement, numTabs);
-            case StatementKind.BINARY_EXPR, StatementKind.UNARY_EXPR -> printExpr((Expression) statement,
-                    numTabs);
+            case IF_STATEMENT -> printIfStatement((StatementIf) statement, numTabs);
+            case WHILE_STATEMENT -> printWhileStatement((StatementWhile) statement, numTabs);
+            case FOR_STATEMENT -> printForStatement((StatementFor) statement, numTabs);
+            case BREAK_STATEMENT -> this.out.println(generateTabs(numTabs) + statement.kind);
+            case PRINT_STATEMENT -> printPrintStatement((StatementPrint) statement, numTabs);
+            case REPEAT_STATEMENT -> printRepeatStatement((StatementRepeat) statement, numTabs);
+            case CALC_STATEMENT -> printCalcStatement((StatementCalc) statement, numTabs);
+            case ASSIGN_EXPR -> printAssignExpr((ExpressionAssign) statement, numTabs);
+            case BINARY_EXPR, UNARY_EXPR -> printExpr((Expression) statement, numTabs);
+            default -> { }
         }
     }
 
     private void printIfStatement(StatementIf ifStatement, int numTabs) {
         String tabs = generateTabs(numTabs);
-        System.out.println(tabs + ifStatement.kind);
-        System.out.println(tabs + "\t" + "CONDITION:");
+        this.out.println(tabs + ifStatement.kind);
+        this.out.println(tabs + "\t" + "CONDITION:");
         this.printExpr(ifStatement.expression, numTabs + 2);
         this.printCommandSequence(ifStatement.commandSequence, numTabs + 2);
         this.printEndIfStatement(ifStatement.endIfStatement, numTabs);
@@ -127,32 +190,32 @@ public class Parser {
 
     private void printEndIfStatement(StatementEndIf endIfStatement, int numTabs) {
         if (endIfStatement == null) {
-            System.out.println(generateTabs(numTabs) + "NULL END IF STATEMENT");
+            this.out.println(generateTabs(numTabs) + "NULL END IF STATEMENT");
             return;
         }
         String tabs = generateTabs(numTabs);
         if (endIfStatement.commandSequence != null) {
-            System.out.println(tabs + "ELSE statement");
+            this.out.println(tabs + "ELSE statement");
             this.printCommandSequence(endIfStatement.commandSequence, numTabs + 2);
         }
         else {
-            System.out.println(tabs + "END IF");
+            this.out.println(tabs + "END IF");
         }
     }
 
     private void printWhileStatement(StatementWhile whileStatement, int numTabs) {
         String tabs = generateTabs(numTabs);
-        System.out.println(tabs + whileStatement.kind);
-        System.out.println(tabs + "\t" + "CONDITION:");
+        this.out.println(tabs + whileStatement.kind);
+        this.out.println(tabs + "\t" + "CONDITION:");
         this.printExpr(whileStatement.expression, numTabs + 2);
         this.printCommandSequence(whileStatement.commandSequence, numTabs + 2);
     }
 
     private void printForStatement(StatementFor forStatement, int numTabs) {
         String tabs = generateTabs(numTabs);
-        System.out.println(tabs + forStatement.kind);
+        this.out.println(tabs + forStatement.kind);
         this.printAssignExpr(forStatement.first, numTabs + 1);
-        System.out.println(tabs + "\t" + "EXPRESSION:");
+        this.out.println(tabs + "\t" + "EXPRESSION:");
         this.printExpr(forStatement.expression, numTabs + 2);
         this.printAssignExpr(forStatement.second, numTabs + 1);
         this.printCommandSequence(forStatement.commandSequence, numTabs + 2);
@@ -160,22 +223,22 @@ public class Parser {
 
     private void printPrintStatement(StatementPrint printStatement, int numTabs) {
         String tabs = generateTabs(numTabs);
-        System.out.println(tabs + printStatement.kind);
-        System.out.println(tabs + "\t" + "EXPRESSION:");
+        this.out.println(tabs + printStatement.kind);
+        this.out.println(tabs + "\t" + "EXPRESSION:");
         this.printExpr(printStatement.expression, numTabs + 2);
     }
 
     private void printRepeatStatement(StatementRepeat repeatStatement, int numTabs) {
         String tabs = generateTabs(numTabs);
-        System.out.println(tabs + repeatStatement.kind);
+        this.out.println(tabs + repeatStatement.kind);
         this.printCommandSequence(repeatStatement.commandSequence, numTabs + 2);
-        System.out.println(tabs + "\t" + "UNTIL:");
+        this.out.println(tabs + "\t" + "UNTIL:");
         this.printExpr(repeatStatement.expression, numTabs + 2);
     }
 
     private void printCalcStatement(StatementCalc calcStatement, int numTabs) {
         String tabs = generateTabs(numTabs);
-        System.out.println(tabs + calcStatement.kind);
+        this.out.println(tabs + calcStatement.kind);
         for (Expression expression: calcStatement.expressions) {
             this.printExpr(expression, numTabs + 1);
         }
@@ -183,63 +246,77 @@ public class Parser {
 
     private void printAssignExpr(ExpressionAssign assign, int numTabs) {
         String tabs = generateTabs(numTabs);
-        System.out.println(tabs + assign.kind);
-        System.out.println(tabs + "\t" + "IDENTIFIER: " + assign.identifier);
-        System.out.println(tabs + "\t" + "EXPRESSION:");
+        this.out.println(tabs + assign.kind);
+        this.out.println(tabs + "\t" + "IDENTIFIER: " + assign.identifier);
+        this.out.println(tabs + "\t" + "EXPRESSION:");
         this.printExpr(assign.expression, numTabs + 2);
-        System.out.println(tabs + "\t" + "END:");
+        this.out.println(tabs + "\t" + "END:");
         this.printAssignExprEnd(assign.end, numTabs + 1);
     }
 
     private void printAssignExprEnd(ExpressionAssignEnd end, int numTabs) {
         String tabs = generateTabs(numTabs);
         if (end == null){
-            System.out.println(tabs + "IMMEDIATE ASSIGN EXPR END");
+            this.out.println(tabs + "IMMEDIATE ASSIGN EXPR END");
         }
         else {
-            System.out.println(tabs + "\t" + "FIRST EXPR:");
+            this.out.println(tabs + "\t" + "FIRST EXPR:");
             this.printExpr(end.first, numTabs + 2);
-            System.out.println(tabs + "\t" + "SECOND EXPR:");
+            this.out.println(tabs + "\t" + "SECOND EXPR:");
             this.printExpr(end.second, numTabs + 2);
         }
     }
 
     private void printExpr(Expression expression, int numTabs) {
         if (expression == null) {
-            System.out.println(generateTabs(numTabs) + "NULL EXPRESSION");
+            this.out.println(generateTabs(numTabs) + "NULL EXPRESSION");
             return;
         }
-        switch (expression.kind) {
-            case StatementKind.BINARY_EXPR -> this.printBinaryExpr(expression, numTabs);
-            case StatementKind.UNARY_EXPR -> this.printUnaryExpr(expression, numTabs);
-            case StatementKind.CONSTANT, StatementKind.IDENTIFIER,
-                    StatementKind.READ_OPERATION -> System.out.println(generateTabs(numTabs) +
-                    expression.kind + ": " + expression.value);
+        String value = switch (expression.kind) {
+            case BINARY_EXPR -> {
+                this.printBinaryExpr((ExpressionBinary) expression, numTabs);
+                yield null;
+            }
+            case UNARY_EXPR -> {
+                this.printUnaryExpr((ExpressionUnary) expression, numTabs);
+                yield null;
+            }
+            case INT_CONSTANT -> String.valueOf(((IntConst) expression).value);
+            case DOUBLE_CONSTANT -> String.valueOf(((DoubleConst) expression).value);
+            case BOOL_CONSTANT -> String.valueOf(((BoolConst) expression).value);
+            case STRING_CONSTANT -> ((StringConst) expression).value;
+            case IDENTIFIER -> ((ExpressionIdentifier) expression).name;
+            case READ_OPERATION -> ((ExpressionRead) expression).operation.toString();
+            default -> null;
+        };
+        if (value != null) {
+            this.out.println(generateTabs(numTabs) + expression.kind + ": " + value);
         }
     }
 
-    private void printBinaryExpr(Expression binary, int numTabs) {
+    private void printBinaryExpr(ExpressionBinary binary, int numTabs) {
         String tabs = generateTabs(numTabs);
-        System.out.println(tabs + binary.kind);
-        System.out.println(tabs + "\t" + "LEFT OPERAND:");
+        this.out.println(tabs + binary.kind);
+        this.out.println(tabs + "\t" + "LEFT OPERAND:");
         this.printExpr(binary.left, numTabs + 2);
-        System.out.println(tabs + "\t" + "OPERATOR: " + binary.operator);
-        System.out.println(tabs + "\t" + "RIGHT OPERAND:");
+        this.out.println(tabs + "\t" + "OPERATOR: " + binary.operator);
+        this.out.println(tabs + "\t" + "RIGHT OPERAND:");
         this.printExpr(binary.right, numTabs + 2);
     }
 
-    private void printUnaryExpr(Expression unary, int numTabs) {
+    private void printUnaryExpr(ExpressionUnary unary, int numTabs) {
         String tabs = generateTabs(numTabs);
-        System.out.println(tabs + unary.kind);
-        System.out.println(tabs + "\t" + "OPERATOR: " + unary.operator);
-        System.out.println(tabs + "\t" + "EXPRESSION:");
-        this.printExpr(unary.left, numTabs + 2);
+        this.out.println(tabs + unary.kind);
+        this.out.println(tabs + "\t" + "OPERATOR: " + unary.operator);
+        this.out.println(tabs + "\t" + "EXPRESSION:");
+        this.printExpr(unary.operand, numTabs + 2);
     }
 
     //------------------- Auxiliary methods ----------------------
 
     private void scan() {
         // scan for the next token
+        this.last = this.la;
         this.la = this.scanner.nextToken();
         while (this.la == null) {
             this.la = this.scanner.nextToken();
@@ -251,10 +328,15 @@ public class Parser {
         this.errDist++;
     }
 
+    private boolean at(long first) {
+        // is the lookahead in a set from ParserTables
+        return ParserTables.contains(first, this.sym);
+    }
+
     private void check(TokenCode expected) {
         // check if the kind of the lookahead token is the expected one
         if (this.sym == expected) {
-            if (this.sym == TokenCode.IDENTIFIER && this.la.string.length() > 31) {
+            if (this.sym == TokenCode.IDENTIFIER && this.la.string().length() > 31) {
                 error("Identifier name too long (must be <= 31)");
             }
             this.scan();  // read ahead
@@ -267,7 +349,7 @@ public class Parser {
     private void error(String msg) {
         // syntactic error at the lookahead token
         if (this.errDist >= 3) {
-            System.out.println("-- line " + this.la.line + " col " + this.la.col + ": " + msg);
+            this.diagnostics.accept("-- line " + this.la.line + " col " + this.la.col + ": " + msg);
             this.errors++;
         }
         this.errDist = 0;
@@ -279,12 +361,12 @@ public class Parser {
 
     //-------------- P A R S I N G   M E T H O D S -----------------
 
-    private Program Program() {
+    private Program Program(Consumer<Statement> statements) {
         // Program -> LET Declarations IN CommandSequence END
         this.check(TokenCode.LET);
         ArrayList<Declaration> declarations = this.Declarations();
         this.check(TokenCode.IN);
-        CommandSequence cs = this.CommandSequence();
+        CommandSequence cs = this.CommandSequence(statements);
         this.check(TokenCode.END);
         return new Program(declarations, cs);
     }
@@ -292,7 +374,7 @@ public class Parser {
     private ArrayList<Declaration> Declarations() {
         // Declarations -> Decl+
         ArrayList<Declaration> declarations = new ArrayList<>();
-        while (this.firstMap.get("Declarations").contains(this.sym)) {
+        while (this.at(ParserTables.FIRST_DECL)) {
             declarations.add(this.Decl());
         }
         return declarations;
@@ -301,7 +383,7 @@ public class Parser {
     private Declaration Decl() {
         // Decl -> Type ident ;
         String type = this.Type();
-        String identifier = this.la.string;
+        String identifier = this.la.string();
         this.check(TokenCode.IDENTIFIER);
         if (this.symbolTable.containsKey(identifier)) {
             this.error("Identifier " + identifier + " has already been declared");
@@ -309,9 +391,10 @@ public class Parser {
             return null;
         }
         else {
-            this.symbolTable.put(identifier, new Pair(type, null)); // for now there is no expression
+            Declaration declaration = new Declaration(type, identifier);
+            this.symbolTable.put(identifier, declaration);
             this.check(TokenCode.SEMICOLON);
-            return new Declaration(type, identifier);
+            return declaration;
         }
     }
 
@@ -331,16 +414,41 @@ public class Parser {
     }
 
     private CommandSequence CommandSequence() {
-        // CommandSequence -> {Stmt+}
+        return this.CommandSequence(null);
+    }
+
+    private CommandSequence CommandSequence(Consumer<Statement> streamed) {
+        // CommandSequence -> {Stmt+}, the statements go to streamed instead of the list if there is one
         ArrayList<Statement> statements = new ArrayList<>();
+        Token first = this.la;
         this.check(TokenCode.LEFT_CURLY);
-        while (this.firstMap.get("CommandSequence").contains(this.sym))
-            statements.add(this.Stmt());
+        while (this.at(ParserTables.FIRST_STMT)) {
+            Statement statement = this.Stmt();
+            if (streamed == null) {
+                statements.add(statement);
+            }
+            else {
+                streamed.accept(statement);
+            }
+        }
         this.check(TokenCode.RIGHT_CURLY);
-        return new CommandSequence(statements);
+        CommandSequence cs = new CommandSequence(statements);
+        cs.first = first;
+        cs.last = this.last;
+        return cs;
     }
 
     private Statement Stmt() {
+        Token first = this.la;
+        Statement statement = this.Statement();
+        if (statement != null) {
+            statement.first = first;
+            statement.last = this.last;
+        }
+        return statement;
+    }
+
+    private Statement Statement() {
         /*
         Stmt -> IfStmt  | WhileStmt |  ForStmt |
 			    BreakStmt  | PrintStmt | RepeatStmt ; | AssignExpr ;
@@ -434,9 +542,7 @@ public class Parser {
         // BreakStmt -> BREAK ;
         this.check(TokenCode.BREAK);
         this.check(TokenCode.SEMICOLON);
-        Statement statement = new Statement();
-        statement.kind = StatementKind.BREAK_STATEMENT;
-        return statement;
+        return new StatementBreak();
     }
 
     private StatementPrint PrintStmt() {
@@ -462,10 +568,10 @@ public class Parser {
     }
 
     private StatementCalc CalcStmt() {
-        // CalcStmt -> CALC_BEGIN (Expr;) + CALC_END
+        // CalcStmt -> CALC_BEGIN CalcExpr+ CALC_END, CalcExpr -> Expr ;
         this.check(TokenCode.CALC_BEGIN);
         ArrayList<Expression> expressions = new ArrayList<>();
-        while (this.firstMap.get("Expression").contains(this.sym)){
+        while (this.at(ParserTables.FIRST_CALC_EXPR)){
             expressions.add(this.Expr());
             this.check(TokenCode.SEMICOLON);
         }
@@ -474,15 +580,12 @@ public class Parser {
     }
 
     private ExpressionAssign AssignExpr() {
-        // AssignExpr -> ident = Expr
-        String identifier = this.la.string;
+        // AssignExpr -> ident = Expr AssignExprEnd
+        String identifier = this.la.string();
         this.check(TokenCode.IDENTIFIER);
         this.check(TokenCode.SINGLE_EQUALS);
         Expression expression = this.Expr();
-        if (this.symbolTable.containsKey(identifier)) {
-            this.symbolTable.get(identifier).expression = expression;
-        }
-        else {
+        if (!this.symbolTable.containsKey(identifier)) {
             this.error("Identifier " + identifier + " has not been declared");
         }
         ExpressionAssignEnd end = this.AssignExprEnd();
@@ -490,6 +593,7 @@ public class Parser {
     }
 
     private ExpressionAssignEnd AssignExprEnd() {
+        // AssignExprEnd -> ? Expr : Expr | eps
         if (this.sym == TokenCode.QUESTION_MARK) {
             this.scan();
             Expression first = this.Expr();
@@ -503,167 +607,188 @@ public class Parser {
     }
 
     private Expression Expr() {
-        // Expr -> Expr2 Expr'
-        Expression left = this.Expr2();
-        return this.ExprPrim(left);
-    }
-
-    private Expression ExprPrim(Expression left) {
-        // Expr' -> Logical Expr2 Expr' | eps
-        if (this.sym == TokenCode.AND || this.sym == TokenCode.OR) {
-            // Logical -> || | &&
-            String operator = this.sym == TokenCode.OR ? "||" : "&&";
-            this.scan();
-            Expression right = this.Expr2();
-            return this.ExprPrim(new Expression(operator, left, right, StatementKind.BINARY_EXPR));
-        }
-        // eps
-        else {
-            return left;
+        /*
+        Expr -> Expr2 Expr'           Expr' -> Logical Expr2 Expr' | eps
+        Expr2 -> Expr3 EndE2          EndE2 -> Equality Expr3 | eps
+        Expr3 -> Expr4 EndE3          EndE3 -> Compare Expr4 | eps
+        Expr4 -> Expr5 Expr4'         Expr4' -> AddSub Expr5 Expr4' | eps
+        Expr5 -> Expr6 Expr5'         Expr5' -> MulDivMod Expr6 Expr5' | eps
+        Expr6 -> ! Expr7 | - Expr7 | Expr7
+
+        All of these in one loop over an operand and an operator stack instead of a
+        method per level, so a long or deeply parenthesized expression takes no Java
+        stack. An operator waits on the stack until one of a lower or the same level
+        comes, which makes the same left-associative trees as the recursive rules.
+        EndE2 and EndE3 take only one operator: when the operand before an equality
+        or a comparison was made by one of the same level, the Expr ends there, as
+        Expr2 or Expr3 would have returned to a caller that can't use it.
+        A ( pushes a GROUP and starts an inner Expr on the same stacks; where that Expr
+        ends the ) is checked and the group becomes an operand like any other Expr7.
+         */
+        int operatorBase = this.operatorCount;
+        while (true) {
+            // Expr6 -> ! Expr7 | - Expr7 | Expr7
+            if (this.sym == TokenCode.NOT || this.sym == TokenCode.MINUS) {
+                this.pushOperator(this.sym == TokenCode.NOT ? Operator.NOT : Operator.MINUS, UNARY);
+                this.scan();
+            }
+            if (this.sym == TokenCode.LEFT_REGULAR) {
+                // Expr7 -> ( Expr )
+                this.pushOperator(null, GROUP);
+                this.scan();
+                continue;
+            }
+            this.pushOperand(this.Expr7(), PRIMARY);
+
+            while (true) {
+                // an Expr7 is done, put the ! or - in front of it if there is one
+                if (this.operatorCount > operatorBase && this.operatorLevels[this.operatorCount - 1] == UNARY) {
+                    Operator operator = this.operators[--this.operatorCount];
+                    Expression operand = this.operands[this.operandCount - 1];
+                    this.operands[this.operandCount - 1] = this.interner == null ? new ExpressionUnary(operator, operand)
+                            : this.interner.unary(operator, operand);
+                }
+
+                int level = this.binaryLevel();
+                if (level != 0) {
+                    this.reduce(operatorBase, level);
+                    boolean taken = this.operandLevels[this.operandCount - 1] == level;
+                    if (!taken || (level != EQUALITY && level != COMPARE)) {
+                        this.pushOperator(this.binaryOperator(), level);
+                        this.scan();
+                        break;
+                    }
+                }
+
+                // the end of an Expr, either the whole one or one in ( )
+                this.reduce(operatorBase, LOGICAL);
+                if (this.operatorCount == operatorBase) {
+                    this.operandCount--;
+                    Expression result = this.operands[this.operandCount];
+                    this.operands[this.operandCount] = null;
+                    return result;
+                }
+                this.operatorCount--;  // the GROUP
+                this.check(TokenCode.RIGHT_REGULAR);
+                this.operandLevels[this.operandCount - 1] = PRIMARY;
+            }
         }
     }
 
-    private Expression Expr2() {
-        // Expr2 -> Expr3 EndE2
-        Expression left = this.Expr3();
-        return this.EndE2(left);
-    }
-
-    private Expression EndE2(Expression left) {
-        // EndE2 -> Equality Expr3 | eps
-        if (this.sym == TokenCode.DOUBLE_EQUALS || this.sym == TokenCode.NOT_EQUALS) {
-            // Equality -> == | !=
-            String operator = this.sym == TokenCode.DOUBLE_EQUALS ? "==" : "!=";
-            this.scan();
-            Expression right = this.Expr3();
-            return new Expression(operator, left, right, StatementKind.BINARY_EXPR);
+    private int binaryLevel() {
+        // the level of the lookahead as a binary operator, 0 if it isn't one
+        if (this.at(ParserTables.FIRST_LOGICAL)) {
+            return LOGICAL;
         }
-        else {
-            return left;
+        else if (this.at(ParserTables.FIRST_EQUALITY)) {
+            return EQUALITY;
         }
-    }
-
-    private Expression Expr3() {
-        // Expr3 -> Expr4 EndE3
-        Expression left = this.Expr4();
-        return this.EndE3(left);
-    }
-
-    private Expression EndE3(Expression left) {
-        // EndE3 -> Compare Expr4 | eps
-        if (this.firstMap.get("Compare").contains(this.sym)) {
-            // Compare -> < | <= | > | >=
-            String operator = switch (this.sym) {
-                case LESS -> "<";
-                case LESS_EQUAL -> "<=";
-                case GREATER -> ">";
-                case GREATER_EQUAL -> ">=";
-                default -> "";
-            };
-            this.scan();
-            Expression right = this.Expr4();
-            return new Expression(operator, left, right, StatementKind.BINARY_EXPR);
+        else if (this.at(ParserTables.FIRST_COMPARE)) {
+            return COMPARE;
         }
-        else {
-            return left;
+        else if (this.at(ParserTables.FIRST_ADD_SUB)) {
+            return ADD_SUB;
         }
+        else if (this.at(ParserTables.FIRST_MUL_DIV_MOD)) {
+            return MUL_DIV_MOD;
+        }
+        return 0;
     }
 
-    private Expression Expr4() {
-        // Expr4 -> Expr5 Expr4'
-        Expression left = this.Expr5();
-        return this.Expr4Prim(left);
+    private Operator binaryOperator() {
+        // Logical -> || | &&, Equality -> == | !=, Compare -> < | <= | > | >=,
+        // AddSub -> + | -, MulDivMod -> * | / | %
+        return switch (this.sym) {
+            case OR -> Operator.OR;
+            case AND -> Operator.AND;
+            case DOUBLE_EQUALS -> Operator.EQUAL;
+            case NOT_EQUALS -> Operator.NOT_EQUAL;
+            case LESS -> Operator.LESS;
+            case LESS_EQUAL -> Operator.LESS_EQUAL;
+            case GREATER -> Operator.GREATER;
+            case GREATER_EQUAL -> Operator.GREATER_EQUAL;
+            case PLUS -> Operator.PLUS;
+            case MINUS -> Operator.MINUS;
+            case MULTIPLY -> Operator.MULTIPLY;
+            case DIVIDE -> Operator.DIVIDE;
+            case MOD -> Operator.MOD;
+            default -> null;
+        };
     }
 
-    private Expression Expr4Prim(Expression left) {
-        // Expr4' -> AddSub Expr5 Expr4' | eps
-        if (this.sym == TokenCode.PLUS || this.sym == TokenCode.MINUS) {
-            // AddSub -> + | -
-            String operator = this.sym == TokenCode.PLUS ? "+" : "-";
-            this.scan();
-            Expression right = this.Expr5();
-            return this.Expr4Prim(new Expression(operator, left, right, StatementKind.BINARY_EXPR));
-        }
-        else {
-            return left;
+    private void reduce(int operatorBase, int level) {
+        // make the binary expressions of the operators on top of the stack of this level or higher
+        while (this.operatorCount > operatorBase) {
+            int top = this.operatorLevels[this.operatorCount - 1];
+            if (top < level || top == GROUP) {
+                return;
+            }
+            this.operatorCount--;
+            this.operandCount--;
+            Expression right = this.operands[this.operandCount];
+            this.operands[this.operandCount] = null;
+            Expression left = this.operands[this.operandCount - 1];
+            Operator operator = this.operators[this.operatorCount];
+            this.operands[this.operandCount - 1] = this.interner == null ? new ExpressionBinary(operator, left, right)
+                    : this.interner.binary(operator, left, right);
+            this.operandLevels[this.operandCount - 1] = top;
         }
     }
 
-    private Expression Expr5() {
-        // Expr5 -> Expr6 Expr5'
-        Expression left = this.Expr6();
-        return this.Expr5Prim(left);
-    }
-
-    private Expression Expr5Prim(Expression left) {
-        // Expr5' -> MulDivMod Expr6 Expr5' | eps
-        if (this.sym == TokenCode.MULTIPLY || this.sym == TokenCode.DIVIDE || this.sym == TokenCode.MOD) {
-            // MulDivMod -> * | / | %
-            String operator = switch (this.sym) {
-                case MULTIPLY -> "*";
-                case DIVIDE -> "/";
-                case MOD -> "%";
-                default -> "";
-            };
-            this.scan();
-            Expression right = this.Expr6();
-            return this.Expr5Prim(new Expression(operator, left, right, StatementKind.BINARY_EXPR));
-        }
-        else {
-            return left;
+    private void pushOperator(Operator operator, int level) {
+        if (this.operatorCount == this.operators.length) {
+            this.operators = Arrays.copyOf(this.operators, this.operatorCount * 2);
+            this.operatorLevels = Arrays.copyOf(this.operatorLevels, this.operatorCount * 2);
         }
+        this.operators[this.operatorCount] = operator;
+        this.operatorLevels[this.operatorCount++] = level;
     }
 
-    private Expression Expr6() {
-        // Expr6 -> ! Expr7 | - Expr7 | Expr7
-        String operator = "";
-        if (this.sym == TokenCode.NOT || this.sym == TokenCode.MINUS) {
-            operator = this.sym == TokenCode.NOT ? "!" : "-";
-            this.scan();
-        }
-        Expression expr = this.Expr7();
-        if (operator.equals("")) {
-            return expr;
-        }
-        else {
-            return new Expression(operator, expr, null, StatementKind.UNARY_EXPR);
+    private void pushOperand(Expression operand, int level) {
+        if (this.operandCount == this.operands.length) {
+            this.operands = Arrays.copyOf(this.operands, this.operandCount * 2);
+            this.operandLevels = Arrays.copyOf(this.operandLevels, this.operandCount * 2);
         }
+        this.operands[this.operandCount] = operand;
+        this.operandLevels[this.operandCount++] = level;
     }
 
     private Expression Expr7() {
-        // Expr7 -> Constant | ident | ( Expr ) | READINT () | READSTRING () | READDOUBLE () | READBOOL ()
-        if (this.firstMap.get("Constant").contains(this.sym)) {
+        // Expr7 -> Constant | ident | ( Expr ) | ReadOperations ( ), where Expr() has taken care of ( Expr )
+        if (this.at(ParserTables.FIRST_CONSTANT)) {
             // Constant -> integerConstant | boolConstant | stringConstant | doubleConstant
-            Expression constant = new Expression("", null, null, StatementKind.CONSTANT);
-            constant.value = switch (this.sym) {
-                case INTEGER_CONSTANT -> this.la.intVal; // integer value
-                case DOUBLE_CONSTANT -> this.la.doubleVal; // double value
-                case BOOL_CONSTANT, STRING_CONSTANT -> this.la.string; // true/false/someString
-                default -> "No value";
-            };
+            Expression constant;
+            if (this.interner == null) {
+                constant = switch (this.sym) {
+                    case INTEGER_CONSTANT -> new IntConst(this.la.intVal);
+                    case DOUBLE_CONSTANT -> new DoubleConst(this.la.doubleVal);
+                    case BOOL_CONSTANT -> new BoolConst(this.la.string().equals("true"));
+                    default -> new StringConst(this.la.string());
+                };
+            }
+            else {
+                constant = switch (this.sym) {
+                    case INTEGER_CONSTANT -> this.interner.intConst(this.la.intVal);
+                    case DOUBLE_CONSTANT -> this.interner.doubleConst(this.la.doubleVal);
+                    case BOOL_CONSTANT -> this.interner.boolConst(this.la.string().equals("true"));
+                    default -> this.interner.stringConst(this.la.string());
+                };
+            }
             this.scan();
             return constant;
         }
         else if (this.sym == TokenCode.IDENTIFIER) {
-            Expression result = new Expression("", null, null, StatementKind.IDENTIFIER);
-            String identifier = this.la.string;
-            result.value = identifier; // identifier name
+            String identifier = this.la.string();
+            Expression result = this.interner == null ? new ExpressionIdentifier(identifier) : this.interner.identifier(identifier);
             this.scan();
             if (!this.symbolTable.containsKey(identifier)) {
                 this.error("Identifier " + identifier + " has not been declared");
             }
             return result;
         }
-        else if (this.sym == TokenCode.LEFT_REGULAR) {
-            this.scan();
-            Expression result = this.Expr();
-            this.check(TokenCode.RIGHT_REGULAR);
-            return result;
-        }
-        else if (this.firstMap.get("ReadOperations").contains(this.sym)) {
+        else if (this.at(ParserTables.FIRST_READ_OPERATIONS)) {
             // read operation
-            Expression read = new Expression("", null, null, StatementKind.READ_OPERATION);
-            read.value = this.sym.toString(); // TokenCode.READ*
+            Expression read = this.interner == null ? new ExpressionRead(this.sym) : this.interner.read(this.sym);
             this.scan();
             this.check(TokenCode.LEFT_REGULAR);
             this.check(TokenCode.RIGHT_REGULAR);
@@ -0,0 +1,71 @@
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.function.Consumer;
+
+public final class ParserPool {
+
+    /*
+    Scanners and parsers that are used again and again, for a thread that parses a
+    lot of small programs. Setting up a new pair costs more than such a program, and
+    a reset() pair has its name table, symbol table and stacks at the size it needed
+    before, and its code already compiled by the JIT.
+
+    Every thread has its own free list, so nothing is shared and nothing is locked.
+    A lease is taken for one program and given back by close():
+
+        try (ParserPool.Lease lease = ParserPool.acquire(source, diagnostics)) {
+            Program program = lease.parser.parse();
+        }
+
+    Taking a second lease before the first is closed (in a consumer given to
+    Parser.parse, say) gives another pair. At most KEPT pairs stay in the list.
+     */
+
+    private static final int KEPT = 4;
+    private static final ThreadLocal<ArrayDeque<Lease>> FREE = ThreadLocal.withInitial(ArrayDeque::new);
+
+    private ParserPool() {
+    }
+
+    public static Lease acquire(ByteBuffer source, Consumer<String> diagnostics) {
+        // a scanner on source and a parser on that scanner, both sending their errors to diagnostics
+        Lease lease = FREE.get().pollFirst();
+        if (lease == null) {
+            lease = new Lease(source);
+        }
+        else {
+            lease.scanner.reset(source);
+            lease.parser.reset(lease.scanner);
+        }
+        lease.scanner.setDiagnostics(diagnostics);
+        lease.parser.setDiagnostics(diagnostics);
+        lease.open = true;
+        return lease;
+    }
+
+    public static final class Lease implements AutoCloseable {
+
+        public final Scanner scanner;
+        public final Parser parser;
+        private boolean open;
+
+        private Lease(ByteBuffer source) {
+            this.scanner = new Scanner(source);
+            this.parser = new Parser(this.scanner, System.out::println, new HashMap<>());
+        }
+
+        @Override
+        public void close() {
+            // back to the free list of the thread that closes it
+            if (!this.open) {
+                return;
+            }
+            this.open = false;
+            ArrayDeque<Lease> free = FREE.get();
+            if (free.size() < KEPT) {
+                free.addFirst(this);
+            }
+        }
+    }
+}
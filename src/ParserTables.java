@@ -0,0 +1,270 @@
+public final class ParserTables {
+
+    /*
+    Generated by GrammarTables from grammar.txt, don't edit it; change the
+    grammar and run GrammarTables again. FIRST and FOLLOW sets of the nonterminals,
+    with a bit for every TokenCode; the grammar has been checked to be LL(1).
+     */
+
+    private ParserTables() {
+    }
+
+    static boolean contains(long set, TokenCode code) {
+        return (set >>> code.ordinal() & 1) != 0;
+    }
+
+    private static long bits(TokenCode... codes) {
+        long set = 0;
+        for (TokenCode code : codes) {
+            set |= 1L << code.ordinal();
+        }
+        return set;
+    }
+
+    // Program -> LET Declarations IN CommandSequence END
+    static final long FIRST_PROGRAM = bits(TokenCode.LET);
+    static final long FOLLOW_PROGRAM = bits(TokenCode.EOF);
+
+    // Declarations -> Decl+
+    static final long FIRST_DECLARATIONS = bits(TokenCode.INTEGER_TYPE, TokenCode.BOOL_TYPE,
+            TokenCode.STRING_TYPE, TokenCode.DOUBLE_TYPE);
+    static final long FOLLOW_DECLARATIONS = bits(TokenCode.IN);
+
+    // Decl -> Type ident ;
+    static final long FIRST_DECL = bits(TokenCode.INTEGER_TYPE, TokenCode.BOOL_TYPE, TokenCode.STRING_TYPE,
+            TokenCode.DOUBLE_TYPE);
+    static final long FOLLOW_DECL = bits(TokenCode.IN, TokenCode.INTEGER_TYPE, TokenCode.BOOL_TYPE,
+            TokenCode.STRING_TYPE, TokenCode.DOUBLE_TYPE);
+
+    // Type -> integer | bool | string | double
+    static final long FIRST_TYPE = bits(TokenCode.INTEGER_TYPE, TokenCode.BOOL_TYPE, TokenCode.STRING_TYPE,
+            TokenCode.DOUBLE_TYPE);
+    static final long FOLLOW_TYPE = bits(TokenCode.IDENTIFIER);
+
+    // CommandSequence -> { Stmt+ }
+    static final long FIRST_COMMAND_SEQUENCE = bits(TokenCode.LEFT_CURLY);
+    static final long FOLLOW_COMMAND_SEQUENCE = bits(TokenCode.END, TokenCode.IF, TokenCode.FI,
+            TokenCode.ELSE, TokenCode.WHILE, TokenCode.FOR, TokenCode.BREAK, TokenCode.PRINT,
+            TokenCode.REPEAT, TokenCode.UNTIL, TokenCode.CALC_BEGIN, TokenCode.IDENTIFIER,
+            TokenCode.RIGHT_CURLY);
+
+    // Stmt -> IfStmt | WhileStmt | ForStmt | BreakStmt | PrintStmt | RepeatStmt | CalcStmt | AssignExpr ;
+    static final long FIRST_STMT = bits(TokenCode.IF, TokenCode.WHILE, TokenCode.FOR, TokenCode.BREAK,
+            TokenCode.PRINT, TokenCode.REPEAT, TokenCode.CALC_BEGIN, TokenCode.IDENTIFIER);
+    static final long FOLLOW_STMT = bits(TokenCode.IF, TokenCode.WHILE, TokenCode.FOR, TokenCode.BREAK,
+            TokenCode.PRINT, TokenCode.REPEAT, TokenCode.CALC_BEGIN, TokenCode.IDENTIFIER,
+            TokenCode.RIGHT_CURLY);
+
+    // IfStmt -> IF ( Expr ) CommandSequence EndIf
+    static final long FIRST_IF_STMT = bits(TokenCode.IF);
+    static final long FOLLOW_IF_STMT = bits(TokenCode.IF, TokenCode.WHILE, TokenCode.FOR, TokenCode.BREAK,
+            TokenCode.PRINT, TokenCode.REPEAT, TokenCode.CALC_BEGIN, TokenCode.IDENTIFIER,
+            TokenCode.RIGHT_CURLY);
+
+    // EndIf -> ELSE CommandSequence FI | FI
+    static final long FIRST_END_IF = bits(TokenCode.FI, TokenCode.ELSE);
+    static final long FOLLOW_END_IF = bits(TokenCode.IF, TokenCode.WHILE, TokenCode.FOR, TokenCode.BREAK,
+            TokenCode.PRINT, TokenCode.REPEAT, TokenCode.CALC_BEGIN, TokenCode.IDENTIFIER,
+            TokenCode.RIGHT_CURLY);
+
+    // WhileStmt -> WHILE ( Expr ) CommandSequence
+    static final long FIRST_WHILE_STMT = bits(TokenCode.WHILE);
+    static final long FOLLOW_WHILE_STMT = bits(TokenCode.IF, TokenCode.WHILE, TokenCode.FOR, TokenCode.BREAK,
+            TokenCode.PRINT, TokenCode.REPEAT, TokenCode.CALC_BEGIN, TokenCode.IDENTIFIER,
+            TokenCode.RIGHT_CURLY);
+
+    // ForStmt -> FOR ( AssignExpr ; Expr ; AssignExpr ) CommandSequence
+    static final long FIRST_FOR_STMT = bits(TokenCode.FOR);
+    static final long FOLLOW_FOR_STMT = bits(TokenCode.IF, TokenCode.WHILE, TokenCode.FOR, TokenCode.BREAK,
+            TokenCode.PRINT, TokenCode.REPEAT, TokenCode.CALC_BEGIN, TokenCode.IDENTIFIER,
+            TokenCode.RIGHT_CURLY);
+
+    // BreakStmt -> BREAK ;
+    static final long FIRST_BREAK_STMT = bits(TokenCode.BREAK);
+    static final long FOLLOW_BREAK_STMT = bits(TokenCode.IF, TokenCode.WHILE, TokenCode.FOR, TokenCode.BREAK,
+            TokenCode.PRINT, TokenCode.REPEAT, TokenCode.CALC_BEGIN, TokenCode.IDENTIFIER,
+            TokenCode.RIGHT_CURLY);
+
+    // PrintStmt -> PRINT ( Expr ) ;
+    static final long FIRST_PRINT_STMT = bits(TokenCode.PRINT);
+    static final long FOLLOW_PRINT_STMT = bits(TokenCode.IF, TokenCode.WHILE, TokenCode.FOR, TokenCode.BREAK,
+            TokenCode.PRINT, TokenCode.REPEAT, TokenCode.CALC_BEGIN, TokenCode.IDENTIFIER,
+            TokenCode.RIGHT_CURLY);
+
+    // RepeatStmt -> REPEAT CommandSequence UNTIL ( Expr ) ;
+    static final long FIRST_REPEAT_STMT = bits(TokenCode.REPEAT);
+    static final long FOLLOW_REPEAT_STMT = bits(TokenCode.IF, TokenCode.WHILE, TokenCode.FOR, TokenCode.BREAK,
+            TokenCode.PRINT, TokenCode.REPEAT, TokenCode.CALC_BEGIN, TokenCode.IDENTIFIER,
+            TokenCode.RIGHT_CURLY);
+
+    // CalcStmt -> CALC_BEGIN CalcExpr+ CALC_END
+    static final long FIRST_CALC_STMT = bits(TokenCode.CALC_BEGIN);
+    static final long FOLLOW_CALC_STMT = bits(TokenCode.IF, TokenCode.WHILE, TokenCode.FOR, TokenCode.BREAK,
+            TokenCode.PRINT, TokenCode.REPEAT, TokenCode.CALC_BEGIN, TokenCode.IDENTIFIER,
+            TokenCode.RIGHT_CURLY);
+
+    // CalcExpr -> Expr ;
+    static final long FIRST_CALC_EXPR = bits(TokenCode.READINT, TokenCode.READSTRING, TokenCode.READBOOL,
+            TokenCode.READDOUBLE, TokenCode.IDENTIFIER, TokenCode.MINUS, TokenCode.NOT,
+            TokenCode.LEFT_REGULAR, TokenCode.INTEGER_CONSTANT, TokenCode.DOUBLE_CONSTANT,
+            TokenCode.STRING_CONSTANT, TokenCode.BOOL_CONSTANT);
+    static final long FOLLOW_CALC_EXPR = bits(TokenCode.READINT, TokenCode.READSTRING, TokenCode.READBOOL,
+            TokenCode.READDOUBLE, TokenCode.CALC_END, TokenCode.IDENTIFIER, TokenCode.MINUS, TokenCode.NOT,
+            TokenCode.LEFT_REGULAR, TokenCode.INTEGER_CONSTANT, TokenCode.DOUBLE_CONSTANT,
+            TokenCode.STRING_CONSTANT, TokenCode.BOOL_CONSTANT);
+
+    // AssignExpr -> ident = Expr AssignExprEnd
+    static final long FIRST_ASSIGN_EXPR = bits(TokenCode.IDENTIFIER);
+    static final long FOLLOW_ASSIGN_EXPR = bits(TokenCode.SEMICOLON, TokenCode.RIGHT_REGULAR);
+
+    // AssignExprEnd -> ? Expr : Expr | eps
+    static final long FIRST_ASSIGN_EXPR_END = bits(TokenCode.QUESTION_MARK);
+    static final long FOLLOW_ASSIGN_EXPR_END = bits(TokenCode.SEMICOLON, TokenCode.RIGHT_REGULAR);
+
+    // Expr -> Expr2 Expr'
+    static final long FIRST_EXPR = bits(TokenCode.READINT, TokenCode.READSTRING, TokenCode.READBOOL,
+            TokenCode.READDOUBLE, TokenCode.IDENTIFIER, TokenCode.MINUS, TokenCode.NOT,
+            TokenCode.LEFT_REGULAR, TokenCode.INTEGER_CONSTANT, TokenCode.DOUBLE_CONSTANT,
+            TokenCode.STRING_CONSTANT, TokenCode.BOOL_CONSTANT);
+    static final long FOLLOW_EXPR = bits(TokenCode.SEMICOLON, TokenCode.RIGHT_REGULAR,
+            TokenCode.QUESTION_MARK, TokenCode.COLON);
+
+    // Expr' -> Logical Expr2 Expr' | eps
+    static final long FIRST_EXPR_PRIM = bits(TokenCode.AND, TokenCode.OR);
+    static final long FOLLOW_EXPR_PRIM = bits(TokenCode.SEMICOLON, TokenCode.RIGHT_REGULAR,
+            TokenCode.QUESTION_MARK, TokenCode.COLON);
+
+    // Logical -> || | &&
+    static final long FIRST_LOGICAL = bits(TokenCode.AND, TokenCode.OR);
+    static final long FOLLOW_LOGICAL = bits(TokenCode.READINT, TokenCode.READSTRING, TokenCode.READBOOL,
+            TokenCode.READDOUBLE, TokenCode.IDENTIFIER, TokenCode.MINUS, TokenCode.NOT,
+            TokenCode.LEFT_REGULAR, TokenCode.INTEGER_CONSTANT, TokenCode.DOUBLE_CONSTANT,
+            TokenCode.STRING_CONSTANT, TokenCode.BOOL_CONSTANT);
+
+    // Expr2 -> Expr3 EndE2
+    static final long FIRST_EXPR2 = bits(TokenCode.READINT, TokenCode.READSTRING, TokenCode.READBOOL,
+            TokenCode.READDOUBLE, TokenCode.IDENTIFIER, TokenCode.MINUS, TokenCode.NOT,
+            TokenCode.LEFT_REGULAR, TokenCode.INTEGER_CONSTANT, TokenCode.DOUBLE_CONSTANT,
+            TokenCode.STRING_CONSTANT, TokenCode.BOOL_CONSTANT);
+    static final long FOLLOW_EXPR2 = bits(TokenCode.AND, TokenCode.OR, TokenCode.SEMICOLON,
+            TokenCode.RIGHT_REGULAR, TokenCode.QUESTION_MARK, TokenCode.COLON);
+
+    // EndE2 -> Equality Expr3 | eps
+    static final long FIRST_END_E2 = bits(TokenCode.DOUBLE_EQUALS, TokenCode.NOT_EQUALS);
+    static final long FOLLOW_END_E2 = bits(TokenCode.AND, TokenCode.OR, TokenCode.SEMICOLON,
+            TokenCode.RIGHT_REGULAR, TokenCode.QUESTION_MARK, TokenCode.COLON);
+
+    // Equality -> == | !=
+    static final long FIRST_EQUALITY = bits(TokenCode.DOUBLE_EQUALS, TokenCode.NOT_EQUALS);
+    static final long FOLLOW_EQUALITY = bits(TokenCode.READINT, TokenCode.READSTRING, TokenCode.READBOOL,
+            TokenCode.READDOUBLE, TokenCode.IDENTIFIER, TokenCode.MINUS, TokenCode.NOT,
+            TokenCode.LEFT_REGULAR, TokenCode.INTEGER_CONSTANT, TokenCode.DOUBLE_CONSTANT,
+            TokenCode.STRING_CONSTANT, TokenCode.BOOL_CONSTANT);
+
+    // Expr3 -> Expr4 EndE3
+    static final long FIRST_EXPR3 = bits(TokenCode.READINT, TokenCode.READSTRING, TokenCode.READBOOL,
+            TokenCode.READDOUBLE, TokenCode.IDENTIFIER, TokenCode.MINUS, TokenCode.NOT,
+            TokenCode.LEFT_REGULAR, TokenCode.INTEGER_CONSTANT, TokenCode.DOUBLE_CONSTANT,
+            TokenCode.STRING_CONSTANT, TokenCode.BOOL_CONSTANT);
+    static final long FOLLOW_EXPR3 = bits(TokenCode.DOUBLE_EQUALS, TokenCode.NOT_EQUALS, TokenCode.AND,
+            TokenCode.OR, TokenCode.SEMICOLON, TokenCode.RIGHT_REGULAR, TokenCode.QUESTION_MARK,
+            TokenCode.COLON);
+
+    // EndE3 -> Compare Expr4 | eps
+    static final long FIRST_END_E3 = bits(TokenCode.LESS, TokenCode.LESS_EQUAL, TokenCode.GREATER,
+            TokenCode.GREATER_EQUAL);
+    static final long FOLLOW_END_E3 = bits(TokenCode.DOUBLE_EQUALS, TokenCode.NOT_EQUALS, TokenCode.AND,
+            TokenCode.OR, TokenCode.SEMICOLON, TokenCode.RIGHT_REGULAR, TokenCode.QUESTION_MARK,
+            TokenCode.COLON);
+
+    // Compare -> < | <= | > | >=
+    static final long FIRST_COMPARE = bits(TokenCode.LESS, TokenCode.LESS_EQUAL, TokenCode.GREATER,
+            TokenCode.GREATER_EQUAL);
+    static final long FOLLOW_COMPARE = bits(TokenCode.READINT, TokenCode.READSTRING, TokenCode.READBOOL,
+            TokenCode.READDOUBLE, TokenCode.IDENTIFIER, TokenCode.MINUS, TokenCode.NOT,
+            TokenCode.LEFT_REGULAR, TokenCode.INTEGER_CONSTANT, TokenCode.DOUBLE_CONSTANT,
+            TokenCode.STRING_CONSTANT, TokenCode.BOOL_CONSTANT);
+
+    // Expr4 -> Expr5 Expr4'
+    static final long FIRST_EXPR4 = bits(TokenCode.READINT, TokenCode.READSTRING, TokenCode.READBOOL,
+            TokenCode.READDOUBLE, TokenCode.IDENTIFIER, TokenCode.MINUS, TokenCode.NOT,
+            TokenCode.LEFT_REGULAR, TokenCode.INTEGER_CONSTANT, TokenCode.DOUBLE_CONSTANT,
+            TokenCode.STRING_CONSTANT, TokenCode.BOOL_CONSTANT);
+    static final long FOLLOW_EXPR4 = bits(TokenCode.LESS, TokenCode.LESS_EQUAL, TokenCode.GREATER,
+            TokenCode.GREATER_EQUAL, TokenCode.DOUBLE_EQUALS, TokenCode.NOT_EQUALS, TokenCode.AND,
+            TokenCode.OR, TokenCode.SEMICOLON, TokenCode.RIGHT_REGULAR, TokenCode.QUESTION_MARK,
+            TokenCode.COLON);
+
+    // Expr4' -> AddSub Expr5 Expr4' | eps
+    static final long FIRST_EXPR4_PRIM = bits(TokenCode.PLUS, TokenCode.MINUS);
+    static final long FOLLOW_EXPR4_PRIM = bits(TokenCode.LESS, TokenCode.LESS_EQUAL, TokenCode.GREATER,
+            TokenCode.GREATER_EQUAL, TokenCode.DOUBLE_EQUALS, TokenCode.NOT_EQUALS, TokenCode.AND,
+            TokenCode.OR, TokenCode.SEMICOLON, TokenCode.RIGHT_REGULAR, TokenCode.QUESTION_MARK,
+            TokenCode.COLON);
+
+    // AddSub -> + | -
+    static final long FIRST_ADD_SUB = bits(TokenCode.PLUS, TokenCode.MINUS);
+    static final long FOLLOW_ADD_SUB = bits(TokenCode.READINT, TokenCode.READSTRING, TokenCode.READBOOL,
+            TokenCode.READDOUBLE, TokenCode.IDENTIFIER, TokenCode.MINUS, TokenCode.NOT,
+            TokenCode.LEFT_REGULAR, TokenCode.INTEGER_CONSTANT, TokenCode.DOUBLE_CONSTANT,
+            TokenCode.STRING_CONSTANT, TokenCode.BOOL_CONSTANT);
+
+    // Expr5 -> Expr6 Expr5'
+    static final long FIRST_EXPR5 = bits(TokenCode.READINT, TokenCode.READSTRING, TokenCode.READBOOL,
+            TokenCode.READDOUBLE, TokenCode.IDENTIFIER, TokenCode.MINUS, TokenCode.NOT,
+            TokenCode.LEFT_REGULAR, TokenCode.INTEGER_CONSTANT, TokenCode.DOUBLE_CONSTANT,
+            TokenCode.STRING_CONSTANT, TokenCode.BOOL_CONSTANT);
+    static final long FOLLOW_EXPR5 = bits(TokenCode.PLUS, TokenCode.MINUS, TokenCode.LESS,
+            TokenCode.LESS_EQUAL, TokenCode.GREATER, TokenCode.GREATER_EQUAL, TokenCode.DOUBLE_EQUALS,
+            TokenCode.NOT_EQUALS, TokenCode.AND, TokenCode.OR, TokenCode.SEMICOLON, TokenCode.RIGHT_REGULAR,
+            TokenCode.QUESTION_MARK, TokenCode.COLON);
+
+    // Expr5' -> MulDivMod Expr6 Expr5' | eps
+    static final long FIRST_EXPR5_PRIM = bits(TokenCode.MULTIPLY, TokenCode.DIVIDE, TokenCode.MOD);
+    static final long FOLLOW_EXPR5_PRIM = bits(TokenCode.PLUS, TokenCode.MINUS, TokenCode.LESS,
+            TokenCode.LESS_EQUAL, TokenCode.GREATER, TokenCode.GREATER_EQUAL, TokenCode.DOUBLE_EQUALS,
+            TokenCode.NOT_EQUALS, TokenCode.AND, TokenCode.OR, TokenCode.SEMICOLON, TokenCode.RIGHT_REGULAR,
+            TokenCode.QUESTION_MARK, TokenCode.COLON);
+
+    // MulDivMod -> * | / | %
+    static final long FIRST_MUL_DIV_MOD = bits(TokenCode.MULTIPLY, TokenCode.DIVIDE, TokenCode.MOD);
+    static final long FOLLOW_MUL_DIV_MOD = bits(TokenCode.READINT, TokenCode.READSTRING, TokenCode.READBOOL,
+            TokenCode.READDOUBLE, TokenCode.IDENTIFIER, TokenCode.MINUS, TokenCode.NOT,
+            TokenCode.LEFT_REGULAR, TokenCode.INTEGER_CONSTANT, TokenCode.DOUBLE_CONSTANT,
+            TokenCode.STRING_CONSTANT, TokenCode.BOOL_CONSTANT);
+
+    // Expr6 -> ! Expr7 | - Expr7 | Expr7
+    static final long FIRST_EXPR6 = bits(TokenCode.READINT, TokenCode.READSTRING, TokenCode.READBOOL,
+            TokenCode.READDOUBLE, TokenCode.IDENTIFIER, TokenCode.MINUS, TokenCode.NOT,
+            TokenCode.LEFT_REGULAR, TokenCode.INTEGER_CONSTANT, TokenCode.DOUBLE_CONSTANT,
+            TokenCode.STRING_CONSTANT, TokenCode.BOOL_CONSTANT);
+    static final long FOLLOW_EXPR6 = bits(TokenCode.PLUS, TokenCode.MINUS, TokenCode.MULTIPLY,
+            TokenCode.DIVIDE, TokenCode.MOD, TokenCode.LESS, TokenCode.LESS_EQUAL, TokenCode.GREATER,
+            TokenCode.GREATER_EQUAL, TokenCode.DOUBLE_EQUALS, TokenCode.NOT_EQUALS, TokenCode.AND,
+            TokenCode.OR, TokenCode.SEMICOLON, TokenCode.RIGHT_REGULAR, TokenCode.QUESTION_MARK,
+            TokenCode.COLON);
+
+    // Expr7 -> Constant | ident | ( Expr ) | ReadOperations ( )
+    static final long FIRST_EXPR7 = bits(TokenCode.READINT, TokenCode.READSTRING, TokenCode.READBOOL,
+            TokenCode.READDOUBLE, TokenCode.IDENTIFIER, TokenCode.LEFT_REGULAR, TokenCode.INTEGER_CONSTANT,
+            TokenCode.DOUBLE_CONSTANT, TokenCode.STRING_CONSTANT, TokenCode.BOOL_CONSTANT);
+    static final long FOLLOW_EXPR7 = bits(TokenCode.PLUS, TokenCode.MINUS, TokenCode.MULTIPLY,
+            TokenCode.DIVIDE, TokenCode.MOD, TokenCode.LESS, TokenCode.LESS_EQUAL, TokenCode.GREATER,
+            TokenCode.GREATER_EQUAL, TokenCode.DOUBLE_EQUALS, TokenCode.NOT_EQUALS, TokenCode.AND,
+            TokenCode.OR, TokenCode.SEMICOLON, TokenCode.RIGHT_REGULAR, TokenCode.QUESTION_MARK,
+            TokenCode.COLON);
+
+    // ReadOperations -> READINT | READSTRING | READDOUBLE | READBOOL
+    static final long FIRST_READ_OPERATIONS = bits(TokenCode.READINT, TokenCode.READSTRING,
+            TokenCode.READBOOL, TokenCode.READDOUBLE);
+    static final long FOLLOW_READ_OPERATIONS = bits(TokenCode.LEFT_REGULAR);
+
+    // Constant -> integerConstant | boolConstant | stringConstant | doubleConstant
+    static final long FIRST_CONSTANT = bits(TokenCode.INTEGER_CONSTANT, TokenCode.DOUBLE_CONSTANT,
+            TokenCode.STRING_CONSTANT, TokenCode.BOOL_CONSTANT);
+    static final long FOLLOW_CONSTANT = bits(TokenCode.PLUS, TokenCode.MINUS, TokenCode.MULTIPLY,
+            TokenCode.DIVIDE, TokenCode.MOD, TokenCode.LESS, TokenCode.LESS_EQUAL, TokenCode.GREATER,
+            TokenCode.GREATER_EQUAL, TokenCode.DOUBLE_EQUALS, TokenCode.NOT_EQUALS, TokenCode.AND,
+            TokenCode.OR, TokenCode.SEMICOLON, TokenCode.RIGHT_REGULAR, TokenCode.QUESTION_MARK,
+            TokenCode.COLON);
+}
@@ -0,0 +1,223 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+public class Resolver {
+
+    /*
+    Gives every declared variable a slot, its index among the variables of its type,
+    and puts the type and slot into every identifier and assignment that names it.
+    The slots are dense per type, in the order of the declarations, so whatever runs
+    the program can keep its variables in an int[], a double[], a boolean[] and a
+    String[] of slots(type) elements and never look a name up again:
+
+        Resolver resolver = Resolver.resolve(program);
+        int[] integers = new int[resolver.slots(ValueType.INTEGER)];
+
+    Names are looked up once per occurrence here, in a map of the declarations that
+    lives as long as the Resolver. Identifiers that aren't declared (the parser has
+    reported them) keep a null type and slot -1 and are counted in unresolved().
+
+    Expressions made by an ExpressionInterner can be shared by programs with other
+    declarations, where the same name has another slot. An identifier that already
+    carries another slot is not changed but copied, and so is every expression on
+    the way from it up to the statement, which is never shared. Expressions are
+    walked with a stack of their own, as deep as the parser makes them.
+     */
+
+    private final HashMap<String, Declaration> declarations = new HashMap<>();
+    private final int[] slots = new int[ValueType.values().length];
+    private int unresolved;
+
+    // the expression walk: the nodes to visit, whether their operands are done, what they became
+    private Expression[] stack = new Expression[64];
+    private boolean[] visited = new boolean[64];
+    private final ArrayList<Expression> values = new ArrayList<>();
+
+    private Resolver() {
+    }
+
+    public static Resolver resolve(Program program) {
+        Resolver resolver = new Resolver();
+        for (Declaration declaration : program.declarations) {
+            if (declaration != null && declaration.valueType != null) {
+                declaration.slot = resolver.slots[declaration.valueType.ordinal()]++;
+                resolver.declarations.put(declaration.identifier, declaration);
+            }
+        }
+        resolver.resolve(program.commandSequence);
+        return resolver;
+    }
+
+    public int slots(ValueType type) {
+        // variables of a type, the length of the array that holds them
+        return this.slots[type.ordinal()];
+    }
+
+    public int unresolved() {
+        // identifiers and assignments to names that aren't declared
+        return this.unresolved;
+    }
+
+    public Declaration declaration(String name) {
+        return this.declarations.get(name);
+    }
+
+    //------------------- Statements ----------------------
+
+    private void resolve(CommandSequence commandSequence) {
+        if (commandSequence == null) {
+            return;
+        }
+        ArrayList<Statement> statements = commandSequence.statements;
+        for (int i = 0; i < statements.size(); i++) {
+            Statement statement = statements.get(i);
+            if (statement instanceof Expression expression) {
+                statements.set(i, this.resolve(expression));
+            }
+            else if (statement != null) {
+                this.resolve(statement);
+            }
+        }
+    }
+
+    private void resolve(Statement statement) {
+        switch (statement.kind) {
+            case IF_STATEMENT -> {
+                StatementIf ifStatement = (StatementIf) statement;
+                ifStatement.expression = this.resolve(ifStatement.expression);
+                this.resolve(ifStatement.commandSequence);
+                if (ifStatement.endIfStatement != null) {
+                    this.resolve(ifStatement.endIfStatement.commandSequence);
+                }
+            }
+            case WHILE_STATEMENT -> {
+                StatementWhile whileStatement = (StatementWhile) statement;
+                whileStatement.expression = this.resolve(whileStatement.expression);
+                this.resolve(whileStatement.commandSequence);
+            }
+            case FOR_STATEMENT -> {
+                StatementFor forStatement = (StatementFor) statement;
+                this.resolveAssign(forStatement.first);
+                forStatement.expression = this.resolve(forStatement.expression);
+                this.resolveAssign(forStatement.second);
+                this.resolve(forStatement.commandSequence);
+            }
+            case PRINT_STATEMENT -> {
+                StatementPrint printStatement = (StatementPrint) statement;
+                printStatement.expression = this.resolve(printStatement.expression);
+            }
+            case REPEAT_STATEMENT -> {
+                StatementRepeat repeatStatement = (StatementRepeat) statement;
+                this.resolve(repeatStatement.commandSequence);
+                repeatStatement.expression = this.resolve(repeatStatement.expression);
+            }
+            case CALC_STATEMENT -> {
+                ArrayList<Expression> expressions = ((StatementCalc) statement).expressions;
+                for (int i = 0; i < expressions.size(); i++) {
+                    expressions.set(i, this.resolve(expressions.get(i)));
+                }
+            }
+            case ASSIGN_EXPR -> this.resolveAssign((ExpressionAssign) statement);
+            default -> { }  // BREAK, and END IF and ASSIGN END which are done with their statements
+        }
+    }
+
+    private void resolveAssign(ExpressionAssign assign) {
+        if (assign == null) {
+            return;
+        }
+        Declaration declaration = this.declarations.get(assign.identifier);
+        if (declaration != null) {
+            assign.type = declaration.valueType;
+            assign.slot = declaration.slot;
+        }
+        else {
+            this.unresolved++;
+        }
+        assign.expression = this.resolve(assign.expression);
+        if (assign.end != null) {
+            assign.end.first = this.resolve(assign.end.first);
+            assign.end.second = this.resolve(assign.end.second);
+        }
+    }
+
+    //------------------- Expressions ----------------------
+
+    private Expression resolve(Expression root) {
+        /*
+        The expression with its identifiers resolved: root itself, or a copy of the
+        part above an identifier that had to be copied. Postorder, a node is looked at
+        once to push its operands and once more, when they are done, to take what they
+        became off values.
+         */
+        int top = 0;
+        this.push(top++, root);
+        while (top > 0) {
+            Expression expression = this.stack[top - 1];
+            if (!this.visited[top - 1]) {
+                if (expression instanceof ExpressionBinary binary) {
+                    this.visited[top - 1] = true;
+                    this.push(top++, binary.right);
+                    this.push(top++, binary.left);
+                    continue;
+                }
+                if (expression instanceof ExpressionUnary unary) {
+                    this.visited[top - 1] = true;
+                    this.push(top++, unary.operand);
+                    continue;
+                }
+            }
+            this.stack[--top] = null;
+            int last = this.values.size() - 1;
+            if (expression instanceof ExpressionBinary binary) {
+                Expression left = this.values.get(last - 1);
+                Expression right = this.values.remove(last);
+                this.values.set(last - 1, left == binary.left && right == binary.right
+                        ? binary : new ExpressionBinary(binary.operator, left, right));
+            }
+            else if (expression instanceof ExpressionUnary unary) {
+                Expression operand = this.values.get(last);
+                this.values.set(last, operand == unary.operand ? unary : new ExpressionUnary(unary.operator, operand));
+            }
+            else if (expression instanceof ExpressionIdentifier identifier) {
+                this.values.add(this.resolveIdentifier(identifier));
+            }
+            else {
+                this.values.add(expression);
+            }
+        }
+        return this.values.remove(0);
+    }
+
+    private ExpressionIdentifier resolveIdentifier(ExpressionIdentifier identifier) {
+        Declaration declaration = this.declarations.get(identifier.name);
+        ValueType type = null;
+        int slot = -1;
+        if (declaration != null) {
+            type = declaration.valueType;
+            slot = declaration.slot;
+        }
+        else {
+            this.unresolved++;
+        }
+        if (identifier.type == type && identifier.slot == slot) {
+            return identifier;
+        }
+        if (identifier.type != null) {
+            identifier = new ExpressionIdentifier(identifier.name);  // resolved for another program
+        }
+        identifier.type = type;
+        identifier.slot = slot;
+        return identifier;
+    }
+
+    private void push(int index, Expression expression) {
+        if (index == this.stack.length) {
+            this.stack = Arrays.copyOf(this.stack, index * 2);
+            this.visited = Arrays.copyOf(this.visited, index * 2);
+        }
+        this.stack[index] = expression;
+        this.visited[index] = false;
+    }
+}
@@ -2,46 +2,308 @@
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.Reader;
-import java.util.HashMap;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.Consumer;
 
-public class Scanner {
+public class Scanner implements TokenSource {
     private final char eofCh = '\u0080';
     private final char eol = '\n';
 
-    private final HashMap<String, TokenCode> keywords;  // map for keywords
-    private final HashMap<String, TokenCode> tokensMap;  // map for tokens
-    private final HashMap<String, TokenCode> dataTypes;  // map for data types
-    private final String intRegex = "\\d+";  // regular expression for integers
-    private final String hexRegex = "^(0[xX])[a-fA-F\\d]+";  // regular expression for hex integers
-    private final String doubleRegex = "\\d+\\.\\d*([eE][+-]?\\d+)?";  // regular expression for doubles
-    private final String identifierRegex = "^[a-zA-Z]\\w*";  // regular expression for identifier names
-    // (\w is [a-zA-Z_0-9])
+    // Character classes used by the lexer tables below. Every ASCII character is mapped
+    // to its class once; characters outside of ASCII are classified on the fly.
+    private static final byte OTHER = 0;
+    private static final byte DIGIT = 1;  // 0-9
+    private static final byte HEX_X = 2;  // x X
+    private static final byte EXP_E = 3;  // e E
+    private static final byte HEX_LETTER = 4;  // a-d f A-D F
+    private static final byte LETTER = 5;  // the rest of a-z A-Z
+    private static final byte UNDERSCORE = 6;
+    private static final byte DOT = 7;
+    private static final byte SIGN = 8;  // + -
+    private static final byte UNICODE_DIGIT = 9;  // non ASCII digits, never valid
+    private static final byte UNICODE_LETTER = 10;  // non ASCII letters, never valid
+    private static final int CLASS_COUNT = 11;
+    private static final byte[] charClass = new byte[128];
+
+    /*
+    States of the number DFA. It consumes exactly the characters the old regex based
+    readNumber collected (digits, '.', x/X, a-f/A-F, +, -), so the lexeme boundaries do
+    not change, and it only decides how the collected lexeme is classified:
+        integer: \d+    hex: 0[xX][a-fA-F\d]+    double: \d+\.\d*([eE][+-]?\d+)?
+     */
+    private static final byte NUM_ERROR = 0;
+    private static final byte NUM_ZERO = 1;  // "0", may still become a hex constant
+    private static final byte NUM_INT = 2;
+    private static final byte NUM_HEX_PREFIX = 3;  // "0x", at least one hex digit must follow
+    private static final byte NUM_HEX = 4;
+    private static final byte NUM_FRACTION = 5;  // "12." or "12.34"
+    private static final byte NUM_EXPONENT = 6;  // "1.2e"
+    private static final byte NUM_EXPONENT_SIGN = 7;  // "1.2e+"
+    private static final byte NUM_EXPONENT_DIGITS = 8;  // "1.2e+10"
+    private static final byte STOP = -1;  // character is not a part of the number/name
+    private static final byte[][] numberTransitions = new byte[9][CLASS_COUNT];
+    private static final TokenCode[] numberAccepts = new TokenCode[9];
+
+    // States of the identifier DFA (the first letter has already been read by nextToken)
+    private static final byte NAME_ERROR = 0;
+    private static final byte NAME_IDENTIFIER = 1;
+    private static final byte[][] nameTransitions = new byte[2][CLASS_COUNT];
+
+    // Operator tables indexed by character; data types and keywords and the identifier token aren't included
+    private static final TokenCode[] singleTokens = new TokenCode[128];  // +, -, *, (, <, =, ...
+    private static final TokenCode[] equalsTokens = new TokenCode[128];  // <=, >=, ==, !=
+    private static final String[] asciiStrings = new String[128];  // lexemes of the single character tokens
+    private static final String[] equalsStrings = new String[128];  // lexemes of the two character tokens
+
+    // Keywords, data types and boolean constants, in a perfect hash table (see keywordSlot)
+    private static final String[] keywordText = new String[64];
+    private static final TokenCode[] keywordCodes = new TokenCode[64];
+
+    static {
+        for (char ch = '0'; ch <= '9'; ch++) charClass[ch] = DIGIT;
+        for (char ch = 'a'; ch <= 'z'; ch++) {
+            charClass[ch] = LETTER;
+            charClass[Character.toUpperCase(ch)] = LETTER;
+        }
+        for (char ch = 'a'; ch <= 'f'; ch++) {
+            charClass[ch] = HEX_LETTER;
+            charClass[Character.toUpperCase(ch)] = HEX_LETTER;
+        }
+        charClass['e'] = charClass['E'] = EXP_E;
+        charClass['x'] = charClass['X'] = HEX_X;
+        charClass['_'] = UNDERSCORE;
+        charClass['.'] = DOT;
+        charClass['+'] = charClass['-'] = SIGN;
+
+        // Number DFA; every state stops on characters a number can't contain and
+        // falls into NUM_ERROR on the ones it can contain but not at that position
+        byte[] numberChars = {DIGIT, HEX_X, EXP_E, HEX_LETTER, DOT, SIGN, UNICODE_DIGIT};
+        for (byte[] row : numberTransitions) {
+            Arrays.fill(row, STOP);
+            for (byte cls : numberChars) row[cls] = NUM_ERROR;
+        }
+        numberTransitions[NUM_ZERO][DIGIT] = NUM_INT;
+        numberTransitions[NUM_ZERO][HEX_X] = NUM_HEX_PREFIX;
+        numberTransitions[NUM_ZERO][DOT] = NUM_FRACTION;
+        numberTransitions[NUM_INT][DIGIT] = NUM_INT;
+        numberTransitions[NUM_INT][DOT] = NUM_FRACTION;
+        for (byte cls : new byte[]{DIGIT, EXP_E, HEX_LETTER}) {
+            numberTransitions[NUM_HEX_PREFIX][cls] = NUM_HEX;
+            numberTransitions[NUM_HEX][cls] = NUM_HEX;
+        }
+        numberTransitions[NUM_FRACTION][DIGIT] = NUM_FRACTION;
+        numberTransitions[NUM_FRACTION][EXP_E] = NUM_EXPONENT;
+        numberTransitions[NUM_EXPONENT][SIGN] = NUM_EXPONENT_SIGN;
+        numberTransitions[NUM_EXPONENT][DIGIT] = NUM_EXPONENT_DIGITS;
+        numberTransitions[NUM_EXPONENT_SIGN][DIGIT] = NUM_EXPONENT_DIGITS;
+        numberTransitions[NUM_EXPONENT_DIGITS][DIGIT] = NUM_EXPONENT_DIGITS;
+        Arrays.fill(numberAccepts, TokenCode.NONE);
+        numberAccepts[NUM_ZERO] = TokenCode.INTEGER_CONSTANT;
+        numberAccepts[NUM_INT] = TokenCode.INTEGER_CONSTANT;
+        numberAccepts[NUM_HEX] = TokenCode.INTEGER_CONSTANT;
+        numberAccepts[NUM_FRACTION] = TokenCode.DOUBLE_CONSTANT;
+        numberAccepts[NUM_EXPONENT_DIGITS] = TokenCode.DOUBLE_CONSTANT;
+
+        // Identifier DFA; non ASCII letters and digits are still a part of the name, but make it invalid
+        byte[] nameChars = {DIGIT, HEX_X, EXP_E, HEX_LETTER, LETTER, UNDERSCORE};
+        for (byte[] row : nameTransitions) {
+            Arrays.fill(row, STOP);
+            row[UNICODE_DIGIT] = NAME_ERROR;
+            row[UNICODE_LETTER] = NAME_ERROR;
+        }
+        for (byte cls : nameChars) {
+            nameTransitions[NAME_ERROR][cls] = NAME_ERROR;
+            nameTransitions[NAME_IDENTIFIER][cls] = NAME_IDENTIFIER;
+        }
+
+        singleTokens['+'] = TokenCode.PLUS;
+        singleTokens['-'] = TokenCode.MINUS;
+        singleTokens['*'] = TokenCode.MULTIPLY;
+        singleTokens['%'] = TokenCode.MOD;
+        singleTokens[';'] = TokenCode.SEMICOLON;
+        singleTokens[','] = TokenCode.NONE;  // scanned as a token, but not a part of the language
+        singleTokens['.'] = TokenCode.NONE;
+        singleTokens['('] = TokenCode.LEFT_REGULAR;
+        singleTokens[')'] = TokenCode.RIGHT_REGULAR;
+        singleTokens['{'] = TokenCode.LEFT_CURLY;
+        singleTokens['}'] = TokenCode.RIGHT_CURLY;
+        singleTokens['?'] = TokenCode.QUESTION_MARK;
+        singleTokens[':'] = TokenCode.COLON;
+        singleTokens['<'] = TokenCode.LESS;
+        singleTokens['>'] = TokenCode.GREATER;
+        singleTokens['='] = TokenCode.SINGLE_EQUALS;
+        singleTokens['!'] = TokenCode.NOT;
+        equalsTokens['<'] = TokenCode.LESS_EQUAL;
+        equalsTokens['>'] = TokenCode.GREATER_EQUAL;
+        equalsTokens['='] = TokenCode.DOUBLE_EQUALS;
+        equalsTokens['!'] = TokenCode.NOT_EQUALS;
+        for (char ch = 0; ch < 128; ch++) {
+            asciiStrings[ch] = String.valueOf(ch);
+            equalsStrings[ch] = ch + "=";
+        }
+
+        addKeyword("LET", TokenCode.LET);
+        addKeyword("IN", TokenCode.IN);
+        addKeyword("END", TokenCode.END);
+        addKeyword("IF", TokenCode.IF);
+        addKeyword("FI", TokenCode.FI);
+        addKeyword("ELSE", TokenCode.ELSE);
+        addKeyword("WHILE", TokenCode.WHILE);
+        addKeyword("FOR", TokenCode.FOR);
+        addKeyword("BREAK", TokenCode.BREAK);
+        addKeyword("PRINT", TokenCode.PRINT);
+        addKeyword("READINT", TokenCode.READINT);
+        addKeyword("READSTRING", TokenCode.READSTRING);
+        addKeyword("READBOOL", TokenCode.READBOOL);
+        addKeyword("READDOUBLE", TokenCode.READDOUBLE);
+        addKeyword("REPEAT", TokenCode.REPEAT);
+        addKeyword("UNTIL", TokenCode.UNTIL);
+        addKeyword("CALC_BEGIN", TokenCode.CALC_BEGIN);
+        addKeyword("CALC_END", TokenCode.CALC_END);
+        addKeyword("integer", TokenCode.INTEGER_TYPE);
+        addKeyword("string", TokenCode.STRING_TYPE);
+        addKeyword("bool", TokenCode.BOOL_TYPE);
+        addKeyword("double", TokenCode.DOUBLE_TYPE);
+        addKeyword("true", TokenCode.BOOL_CONSTANT);
+        addKeyword("false", TokenCode.BOOL_CONSTANT);
+    }
+
+    private static int keywordSlot(int length, char first, char last) {
+        /*
+        Perfect hash of the words added in the static block above: length, first and
+        last character are enough to tell all of them apart, and with these factors
+        no two of them land in the same slot. addKeyword checks that, so adding a
+        keyword that collides fails when the class is loaded instead of silently.
+         */
+        return (length + first * 18 + last) & 63;
+    }
+
+    private static void addKeyword(String text, TokenCode code) {
+        int slot = keywordSlot(text.length(), text.charAt(0), text.charAt(text.length() - 1));
+        if (keywordText[slot] != null) {
+            throw new IllegalStateException("Keywords " + text + " and " + keywordText[slot] +
+                    " have the same hash, change the factors in keywordSlot");
+        }
+        keywordText[slot] = text;
+        keywordCodes[slot] = code;
+    }
 
     private char lookahead;  // lookahead character
     private int col;  // current column
     private int line; // current line
-    private final Reader reader;  // source file reader
+    private Reader reader;  // source file reader, null when scanning a buffer
+
+    // Buffer input mode: the whole source as UTF-8 bytes, walked by index
+    private ByteBuffer source;
+    private ByteBuffer words;  // the same bytes, little endian, read 8 at a time by the bulk skipping
+    private int limit;  // end of the source
+    private int offset;  // offset of the lookahead character
+    private int nextOffset;  // offset of the character after the lookahead
+    private char pendingLow;  // low surrogate of a 4 byte UTF-8 sequence, returned by the next nextCharacter()
+
+    private char[] lexeme = new char[64];  // lexeme being read, used only in the Reader mode
+    private int lexemeLength;
+    private final NameTable names = new NameTable();  // interned identifier names
+    private static final int KEPT_NAMES = 4096;  // most names kept over a reset()
+    private int tokenOffset;  // offset where the last token (or comment) started, in the buffer mode
+    private Consumer<String> diagnostics = System.out::println;  // where the scanner errors go
 
     // --------- Initialize scanner
     public Scanner(Reader r) {
         this.reader = new BufferedReader(r);
+        this.source = null;
+        this.words = null;
+        this.limit = 0;
         this.line = 1;
         this.col = 0;
 
-        // Initialize the necessary maps and fill them
-        this.tokensMap = new HashMap<>();
-        this.fillTokensMap();
-        this.keywords = new HashMap<>();
-        this.fillKeywordsMap();
-        this.dataTypes = new HashMap<>();
-        this.fillDatatypesMap();
+        // start scanning
+        this.nextCharacter();
+    }
+
+    public Scanner(ByteBuffer source) {
+        /*
+        Scan UTF-8 encoded source from a buffer, from its position to its limit.
+        The buffer is read by absolute index, so a mapped file (see map()) is lexed
+        directly, without going through a Reader.
+         */
+        this(source, 1);
+    }
+
+    Scanner(ByteBuffer source, int line) {
+        // Scan a buffer whose position is the start of the given line (used for chunked scanning)
+        this(source, line, 1);
+    }
+
+    Scanner(ByteBuffer source, int line, int col) {
+        // Scan a buffer whose position is at the given line and column, between two tokens (used for re-scanning)
+        this.reader = null;
+        this.source = source;
+        this.words = source.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        this.limit = source.limit();
+        this.nextOffset = source.position();
+        this.line = line;
+        this.col = col - 1;
 
         // start scanning
         this.nextCharacter();
     }
 
+    public void reset(ByteBuffer source) {
+        /*
+        Start over on another source, as if it were new Scanner(source), without
+        allocating a new scanner. The names seen so far stay interned, they are
+        likely to come again in the next program; only when there are more than
+        KEPT_NAMES of them the table is emptied, so it can't grow without end.
+        The diagnostics keep going where setDiagnostics() sent them.
+         */
+        this.reader = null;
+        this.source = source;
+        this.words = source.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        this.limit = source.limit();
+        this.offset = 0;
+        this.nextOffset = source.position();
+        this.pendingLow = 0;
+        this.lexemeLength = 0;
+        this.tokenOffset = 0;
+        this.line = 1;
+        this.col = 0;
+        if (this.names.size() > KEPT_NAMES) {
+            this.names.clear();
+        }
+
+        // start scanning
+        this.nextCharacter();
+    }
+
+    public void setDiagnostics(Consumer<String> diagnostics) {
+        // Scanner errors are printed to System.out unless they're sent somewhere else
+        this.diagnostics = diagnostics;
+    }
+
+    int tokenOffset() {
+        // offset where the token (or comment) returned by the last nextToken() call started
+        return this.tokenOffset;
+    }
+
+    public static ByteBuffer map(Path path) throws IOException {
+        // Map a source file into memory, for the Scanner(ByteBuffer) constructor
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
     // lookahead = next input character
     private void nextCharacter() {
+        if (this.source != null) {
+            this.nextBufferCharacter();
+            return;
+        }
         try {
             this.lookahead = (char) this.reader.read();  // read a single character
             this.col++;
@@ -56,81 +318,325 @@ public class Scanner {
         }
     }
 
+    private void nextBufferCharacter() {
+        // nextCharacter() for the buffer input mode
+        this.col++;
+        if (this.pendingLow != 0) {
+            this.lookahead = this.pendingLow;
+            this.pendingLow = 0;
+            return;
+        }
+        this.offset = this.nextOffset;
+        if (this.offset >= this.limit) {
+            this.lookahead = this.eofCh;  // only terminates the scanning loops, atEof() is what detects the end
+            return;
+        }
+        int b = this.source.get(this.offset);
+        this.nextOffset = this.offset + 1;
+        if (b >= 0) {
+            this.lookahead = (char) b;
+            if (this.lookahead == this.eol) {
+                this.line++;
+                this.col = 0;
+            }
+        }
+        else {
+            this.lookahead = this.decodeMultiByte(b);
+        }
+    }
+
+    private char decodeMultiByte(int lead) {
+        /*
+        Decode a UTF-8 sequence of 2 to 4 bytes starting at offset. Malformed input
+        is replaced by U+FFFD one byte at a time, like an InputStreamReader does.
+         */
+        int length = (lead & 0xE0) == 0xC0 ? 2 : (lead & 0xF0) == 0xE0 ? 3 : (lead & 0xF8) == 0xF0 ? 4 : 0;
+        if (length == 0 || this.offset + length > this.limit) {
+            return '\ufffd';
+        }
+        int codePoint = lead & (0x7F >> length);
+        for (int i = 1; i < length; i++) {
+            int b = this.source.get(this.offset + i);
+            if ((b & 0xC0) != 0x80) {
+                return '\ufffd';
+            }
+            codePoint = (codePoint << 6) | (b & 0x3F);
+        }
+        this.nextOffset = this.offset + length;
+        if (length == 4) {
+            // supplementary character, the Reader would return it as two chars as well
+            this.pendingLow = Character.lowSurrogate(codePoint);
+            return Character.highSurrogate(codePoint);
+        }
+        return (char) codePoint;
+    }
+
+    private boolean atEof() {
+        // In the buffer mode the end of the input is an index check, so a '\u0080' in the source isn't EOF
+        if (this.source != null) {
+            return this.offset >= this.limit;
+        }
+        return this.lookahead == this.eofCh;
+    }
+
+    /*
+    Bulk skipping. Blanks, comments and string bodies make up most of the input, so
+    in the buffer mode they are skipped 8 bytes at a time: the bytes are loaded as
+    a long and the bytes we're looking for are found with bit tricks on the whole
+    word (SWAR), leaving the high bit set in every byte that matches. The search
+    also stops at every non ASCII byte, so those are still decoded and counted by
+    nextCharacter(), and the bytes skipped in between are all single characters.
+     */
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGHS = 0x8080808080808080L;
+
+    private static long bytesEqual(long word, char ch) {
+        // high bit set in each byte of word that is equal to ch; exact, because no carry crosses a byte
+        long x = word ^ (ONES * ch);
+        return ~(((x & ~HIGHS) + ~HIGHS) | x) & HIGHS;
+    }
+
+    private boolean canSkip() {
+        // bulk skipping only works on the buffer, and not in the middle of a surrogate pair
+        return this.source != null && this.pendingLow == 0;
+    }
+
+    private int findNonBlank(int from) {
+        // offset of the first byte from the given one on that is above ' ' (or not ASCII), or limit
+        int i = from;
+        for (; i + 8 <= this.limit; i += 8) {
+            long word = this.words.getLong(i);
+            long found = (((word & ~HIGHS) + ONES * (0x80 - 0x21)) | word) & HIGHS;
+            if (found != 0) {
+                return i + Long.numberOfTrailingZeros(found) / 8;
+            }
+        }
+        for (; i < this.limit; i++) {
+            byte b = this.source.get(i);
+            if (b < 0 || b > ' ') {
+                return i;
+            }
+        }
+        return this.limit;
+    }
+
+    private int findAny(int from, char first, char second) {
+        // offset of the first byte from the given one on that is first, second or not ASCII, or limit
+        int i = from;
+        for (; i + 8 <= this.limit; i += 8) {
+            long word = this.words.getLong(i);
+            long found = bytesEqual(word, first) | bytesEqual(word, second) | (word & HIGHS);
+            if (found != 0) {
+                return i + Long.numberOfTrailingZeros(found) / 8;
+            }
+        }
+        for (; i < this.limit; i++) {
+            byte b = this.source.get(i);
+            if (b < 0 || b == first || b == second) {
+                return i;
+            }
+        }
+        return this.limit;
+    }
+
+    private void skipTo(int target) {
+        /*
+        Make the character at target the lookahead. The bytes between the lookahead and
+        target have to be ASCII; the newlines among them are counted a word at a time,
+        and the column is the distance to the last one.
+         */
+        int newlines = 0;
+        int lastNewline = -1;
+        int i = this.nextOffset;
+        for (; i + 8 <= target; i += 8) {
+            long found = bytesEqual(this.words.getLong(i), this.eol);
+            if (found != 0) {
+                newlines += Long.bitCount(found);
+                lastNewline = i + (63 - Long.numberOfLeadingZeros(found)) / 8;
+            }
+        }
+        for (; i < target; i++) {
+            if (this.source.get(i) == this.eol) {
+                newlines++;
+                lastNewline = i;
+            }
+        }
+        if (newlines > 0) {
+            this.line += newlines;
+            this.col = target - 1 - lastNewline;
+        }
+        else {
+            this.col += target - this.nextOffset;
+        }
+        this.nextOffset = target;
+        this.nextBufferCharacter();
+    }
+
+    static int countNewlines(ByteBuffer words, int from, int to) {
+        // number of '\n' bytes in [from, to) of a little endian buffer
+        int newlines = 0;
+        int i = from;
+        for (; i + 8 <= to; i += 8) {
+            newlines += Long.bitCount(bytesEqual(words.getLong(i), '\n'));
+        }
+        for (; i < to; i++) {
+            if (words.get(i) == '\n') {
+                newlines++;
+            }
+        }
+        return newlines;
+    }
+
+    private static byte classOf(char ch) {
+        // character class of ch for the lexer tables
+        if (ch < 128) {
+            return charClass[ch];
+        }
+        if (Character.isDigit(ch)) {
+            return UNICODE_DIGIT;
+        }
+        return Character.isLetter(ch) ? UNICODE_LETTER : OTHER;
+    }
+
+    private void startLexeme(Token t) {
+        // the lexeme of t starts at the lookahead character
+        t.start = this.offset;
+        this.lexemeLength = 0;
+    }
+
+    private void appendLexeme() {
+        // add the lookahead to the lexeme; in the buffer mode the lexeme is just a span of the source
+        if (this.source == null) {
+            if (this.lexemeLength == this.lexeme.length) {
+                this.lexeme = Arrays.copyOf(this.lexeme, this.lexeme.length * 2);
+            }
+            this.lexeme[this.lexemeLength++] = this.lookahead;
+        }
+    }
+
+    private void endLexeme(Token t) {
+        // the lexeme of t ends before the lookahead character
+        if (this.source != null) {
+            t.length = this.offset - t.start;
+            t.source = this.source;  // t.string is made from the span only if someone asks for it
+        }
+        else {
+            t.string = new String(this.lexeme, 0, this.lexemeLength);
+        }
+    }
+
+    private int lexemeLength(Token t) {
+        // length of the lexeme of t, which has just been read (in the buffer mode, t.length has to be set already)
+        return this.source != null ? t.length : this.lexemeLength;
+    }
+
+    private char lexemeChar(Token t, int i) {
+        // i-th character of the lexeme of t, which has just been read
+        return this.source != null ? (char) this.source.get(t.start + i) : this.lexeme[i];
+    }
+
+    private boolean lexemeEquals(Token t, String s) {
+        // compare the lexeme of t to s, without making a String of it
+        int length = this.lexemeLength(t);
+        if (length != s.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (this.lexemeChar(t, i) != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private void readNumber(Token t) {
         /*
-        Read a number constant. Check it's validity using the
-        defined regular expressions.
+        Read a number constant. The lexeme is classified while it's being read,
+        by walking the number DFA (see numberTransitions), and integer values are
+        accumulated on the way.
          */
-        t.string = Character.toString(this.lookahead);  // we already found one character of t.string in nextToken()
+        byte state = this.lookahead == '0' ? NUM_ZERO : NUM_INT;
+        long value = this.lookahead - '0';  // saturates above Integer.MAX_VALUE, see below
+        this.startLexeme(t);
+        this.appendLexeme();  // we already found one character of the lexeme in nextToken()
         this.nextCharacter();
-        while (Character.isDigit(lookahead) || lookahead == '.' || Character.toString(lookahead).equalsIgnoreCase("x") ||
-                ('a' <= lookahead && lookahead <= 'f') || ('A' <= lookahead && lookahead <= 'F') || lookahead == '+' || lookahead == '-') {
-            t.string += Character.toString(this.lookahead);
+        byte next;
+        while ((next = numberTransitions[state][classOf(this.lookahead)]) != STOP) {
+            if (next == NUM_INT && value <= Integer.MAX_VALUE) {
+                value = value * 10 + (this.lookahead - '0');
+            }
+            else if (next == NUM_HEX_PREFIX) {
+                value = 0;
+            }
+            else if (next == NUM_HEX && value <= Integer.MAX_VALUE) {
+                value = value * 16 + Character.digit(this.lookahead, 16);
+            }
+            state = next;
+            this.appendLexeme();
             this.nextCharacter();
         }
+        this.endLexeme(t);
 
-        if (t.string.matches(this.intRegex) || t.string.matches(this.hexRegex)) {
-            t.kind = TokenCode.INTEGER_CONSTANT;
-            if (t.string.startsWith("0X") || t.string.startsWith("0x")) {
-                // hex integer, parseInt function does not need the 0x/0X to parse it.
-                t.intVal = Integer.parseInt(t.string.substring(2), 16);
-            }
-            else {
-                // regular decimal integer
-                t.intVal = Integer.parseInt(t.string);
+        t.kind = numberAccepts[state];
+        if (t.kind == TokenCode.INTEGER_CONSTANT) {
+            if (value > Integer.MAX_VALUE) {
+                // too big for an integer; let parseInt report it, exactly as it did for the whole lexeme
+                String digits = state == NUM_HEX ? t.string().substring(2) : t.string();
+                Integer.parseInt(digits, state == NUM_HEX ? 16 : 10);
             }
+            t.intVal = (int) value;
         }
-        else if (t.string.matches(doubleRegex)) {
-            // double value
-            t.kind = TokenCode.DOUBLE_CONSTANT;
-            t.doubleVal = Double.parseDouble(t.string);
+        else if (t.kind == TokenCode.DOUBLE_CONSTANT) {
+            t.doubleVal = Double.parseDouble(t.string());
         }
         else {
-            System.out.println("Scanner -- line " + this.line + " col " + this.col + ": Invalid number constant");
-            t.kind = TokenCode.NONE;
+            this.diagnostics.accept("Scanner -- line " + this.line + " col " + this.col + ": Invalid number constant");
         }
     }
 
     private void readName(Token t) {
         /*
         Read a keyword, data type, boolean constant or an identifier,
-        depending on the contents of t.string after the initial while loop
+        depending on the lexeme after the initial while loop
          */
 
-        t.string = Character.toString(this.lookahead);  // we already found one character of t.string in nextToken()
+        byte state = NAME_IDENTIFIER;
+        this.startLexeme(t);
+        this.appendLexeme();  // we already found one character of the lexeme in nextToken()
         this.nextCharacter();
-        while (Character.isLetterOrDigit(this.lookahead) || this.lookahead == '_') {
-            t.string += Character.toString(this.lookahead);
+        byte next;
+        while ((next = nameTransitions[state][classOf(this.lookahead)]) != STOP) {
+            state = next;
+            this.appendLexeme();
             this.nextCharacter();
         }
-        if (t.string.compareTo("true") == 0 || t.string.compareTo("false") == 0) {
-            t.kind = TokenCode.BOOL_CONSTANT;
+        t.length = this.offset - t.start;  // only meaningful in the buffer mode
+
+        // Check if it's a keyword, data type or boolean constant; one slot to look at, one comparison
+        int length = this.lexemeLength(t);
+        int slot = keywordSlot(length, this.lexemeChar(t, 0), this.lexemeChar(t, length - 1));
+        String keyword = keywordText[slot];
+        if (keyword != null && this.lexemeEquals(t, keyword)) {
+            t.kind = keywordCodes[slot];
+            t.string = keyword;
             return;
         }
 
-        // Check if it's a keyword
-        for (String keyword : this.keywords.keySet()) {
-            if (t.string.compareTo(keyword) == 0) {
-                t.kind = this.keywords.get(keyword);
-                return;
+        if (state == NAME_IDENTIFIER) {
+            t.kind = TokenCode.IDENTIFIER;  // it's length will be checked by the Parser class
+            // identifiers are interned, so a name that has been seen before doesn't allocate anything
+            if (this.source != null) {
+                t.string = this.names.intern(this.source, t.start, t.length);
             }
-        }
-
-        // Check for data types
-        for (String type : this.dataTypes.keySet()) {
-            if (t.string.compareTo(type) == 0) {
-                t.kind = this.dataTypes.get(type);
-                return;
+            else {
+                t.string = this.names.intern(this.lexeme, this.lexemeLength);
             }
         }
-
-        if (t.string.matches(identifierRegex)) {
-            t.kind = TokenCode.IDENTIFIER;  // it's length will be checked by the Parser class
-        }
         else {
-            System.out.println("Scanner -- line " + this.line + " col " + this.col + ": Invalid identifier " +
+            this.diagnostics.accept("Scanner -- line " + this.line + " col " + this.col + ": Invalid identifier " +
                     "name");
             t.kind = TokenCode.NONE;
+            this.endLexeme(t);
         }
     }
 
@@ -139,18 +645,23 @@ public class Scanner {
         Read a string constant
          */
         this.nextCharacter();  // cause we had to get here when a " was scanned, so we need to skip it.
-        t.string = "";
-        while (this.lookahead != '\"' && this.lookahead != '\n') {
-            t.string += Character.toString(this.lookahead);
+        this.startLexeme(t);
+        while (this.lookahead != '\"' && this.lookahead != '\n' && !this.atEof()) {
+            if (this.canSkip()) {
+                this.skipTo(this.findAny(this.nextOffset, '\"', '\n'));  // the span is the lexeme, nothing to copy
+                continue;
+            }
+            this.appendLexeme();
             this.nextCharacter();
         }
+        this.endLexeme(t);
         if (this.lookahead == '\"') {
             // it ended with a " before we found a \n so it's a valid constant
             t.kind = TokenCode.STRING_CONSTANT;
         }
         else {
             t.kind = TokenCode.NONE;
-            System.out.println("Scanner -- line: " + this.line + " col: " + this.col + ": found a new line," +
+            this.diagnostics.accept("Scanner -- line: " + this.line + " col: " + this.col + ": found a new line," +
                     "either the string contains it or the string constant is not properly closed");
         }
         this.nextCharacter();
@@ -161,21 +672,32 @@ public class Scanner {
         Return the next input token
          */
         while (this.lookahead <= ' ') {
-            this.nextCharacter();  // skip blanks, tabs, eols
+            // skip blanks, tabs, eols
+            if (this.canSkip()) {
+                this.skipTo(this.findNonBlank(this.nextOffset));
+            }
+            else {
+                this.nextCharacter();
+            }
         }
         Token t = new Token();
         t.line = this.line;
         t.col = this.col;
+        t.start = this.offset;
+        this.tokenOffset = this.offset;
 
         // Based on the lookahead character, perform the necessary operation(s)
-        if (('a' <= this.lookahead && this.lookahead <= 'z') || ('A' <= this.lookahead && this.lookahead <= 'Z')) {
+        if (this.atEof()) {
+            t.kind = TokenCode.EOF;  // end of file
+        }
+        else if (('a' <= this.lookahead && this.lookahead <= 'z') || ('A' <= this.lookahead && this.lookahead <= 'Z')) {
             this.readName(t);
         }
         else if ('0' <= this.lookahead && this.lookahead <= '9') {
             this.readNumber(t);
         }
         else {
-            String lookaheadString = Character.toString(this.lookahead);
+            String lookaheadString = this.lookahead < 128 ? asciiStrings[this.lookahead] : null;
             switch (this.lookahead) {
                 case '\"':
                     this.readString(t);
@@ -193,8 +715,8 @@ public class Scanner {
                 case '}':
                 case '?':
                 case ':':
+                    t.kind = singleTokens[this.lookahead];
                     this.nextCharacter();  // continue scanning
-                    t.kind = this.tokensMap.get(lookaheadString);
                     t.string = lookaheadString;
                     break;
 
@@ -203,8 +725,13 @@ public class Scanner {
                     this.nextCharacter();
                     if (this.lookahead == '/') {  // single line comment
                         this.nextCharacter();
-                        while (this.lookahead != this.eol && this.lookahead != this.eofCh) {
-                            this.nextCharacter();
+                        while (this.lookahead != this.eol && !this.atEof()) {
+                            if (this.canSkip()) {
+                                this.skipTo(this.findAny(this.nextOffset, this.eol, this.eol));
+                            }
+                            else {
+                                this.nextCharacter();
+                            }
                         }
                         this.nextCharacter();
                         t = null;  // set it to null so the parser can completely skip it
@@ -212,7 +739,14 @@ public class Scanner {
                     else if (lookahead == '*') {  // multi line comment
                         char prev;
                         this.nextCharacter();
-                        while (this.lookahead != this.eofCh && this.lookahead != '/') {
+                        while (!this.atEof() && this.lookahead != '/') {
+                            if (this.canSkip()) {
+                                // jump to the character before the next '/', that's where prev matters
+                                int slash = this.findAny(this.nextOffset, '/', '/');
+                                if (slash - 1 >= this.nextOffset) {
+                                    this.skipTo(slash - 1);
+                                }
+                            }
                             prev = this.lookahead;
                             this.nextCharacter();
                             if (this.lookahead == '/') {
@@ -224,7 +758,7 @@ public class Scanner {
                                 while (this.lookahead == '/') this.nextCharacter();
                             }
                         }
-                        if (this.lookahead == this.eofCh) {
+                        if (this.atEof()) {
                             t.kind = TokenCode.NONE;
                         }
                         else {
@@ -243,12 +777,16 @@ public class Scanner {
                 case '=':
                 case '!':
                     // check if it's <, >, =, ! or <=, >=, ==, !=
+                    char first = this.lookahead;
                     this.nextCharacter();
                     if (this.lookahead == '=') {
                         this.nextCharacter();  // continue scanning after the =
-                        lookaheadString += "=";
+                        lookaheadString = equalsStrings[first];
+                        t.kind = equalsTokens[first];
+                    }
+                    else {
+                        t.kind = singleTokens[first];
                     }
-                    t.kind = this.tokensMap.get(lookaheadString);
                     t.string = lookaheadString;
                     break;
 
@@ -278,10 +816,6 @@ public class Scanner {
                     }
                     break;
 
-                case eofCh: // end of file
-                    t.kind = TokenCode.EOF;
-                    break;
-
                 default:  // invalid character so just move on with the scanning process
                     this.nextCharacter();
                     t.kind = TokenCode.NONE;
@@ -291,60 +825,4 @@ public class Scanner {
         // print if not null, if necessary
         return t;
     }
-
-    private void fillTokensMap() {
-        // Fill the tokens map; data types and keywords and the identifier token aren't included
-        this.tokensMap.put("+", TokenCode.PLUS);
-        this.tokensMap.put("-", TokenCode.MINUS);
-        this.tokensMap.put("*", TokenCode.MULTIPLY);
-        this.tokensMap.put("/", TokenCode.DIVIDE);
-        this.tokensMap.put("%", TokenCode.MOD);
-        this.tokensMap.put("<", TokenCode.LESS);
-        this.tokensMap.put("<=", TokenCode.LESS_EQUAL);
-        this.tokensMap.put(">", TokenCode.GREATER);
-        this.tokensMap.put(">=", TokenCode.GREATER_EQUAL);
-        this.tokensMap.put("=", TokenCode.SINGLE_EQUALS);
-        this.tokensMap.put("==", TokenCode.DOUBLE_EQUALS);
-        this.tokensMap.put("!=", TokenCode.NOT_EQUALS);
-        this.tokensMap.put("&&", TokenCode.AND);
-        this.tokensMap.put("||", TokenCode.OR);
-        this.tokensMap.put("!", TokenCode.NOT);
-        this.tokensMap.put(";", TokenCode.SEMICOLON);
-        this.tokensMap.put("(", TokenCode.LEFT_REGULAR);
-        this.tokensMap.put(")", TokenCode.RIGHT_REGULAR);
-        this.tokensMap.put("{", TokenCode.LEFT_CURLY);
-        this.tokensMap.put("}", TokenCode.RIGHT_CURLY);
-        this.tokensMap.put("?", TokenCode.QUESTION_MARK);
-        this.tokensMap.put(":", TokenCode.COLON);
-    }
-
-    private void fillKeywordsMap() {
-        // Fill the keywords map
-        this.keywords.put("LET", TokenCode.LET);
-        this.keywords.put("IN", TokenCode.IN);
-        this.keywords.put("END", TokenCode.END);
-        this.keywords.put("IF", TokenCode.IF);
-        this.keywords.put("FI", TokenCode.FI);
-        this.keywords.put("ELSE", TokenCode.ELSE);
-        this.keywords.put("WHILE", TokenCode.WHILE);
-        this.keywords.put("FOR", TokenCode.FOR);
-        this.keywords.put("BREAK", TokenCode.BREAK);
-        this.keywords.put("PRINT", TokenCode.PRINT);
-        this.keywords.put("READINT", TokenCode.READINT);
-        this.keywords.put("READSTRING", TokenCode.READSTRING);
-        this.keywords.put("READBOOL", TokenCode.READBOOL);
-        this.keywords.put("READDOUBLE", TokenCode.READDOUBLE);
-        this.keywords.put("REPEAT", TokenCode.REPEAT);
-        this.keywords.put("UNTIL", TokenCode.UNTIL);
-        this.keywords.put("CALC_BEGIN", TokenCode.CALC_BEGIN);
-        this.keywords.put("CALC_END", TokenCode.CALC_END);
-    }
-
-    private void fillDatatypesMap() {
-        // Fill the data types map
-        this.dataTypes.put("integer", TokenCode.INTEGER_TYPE);
-        this.dataTypes.put("string", TokenCode.STRING_TYPE);
-        this.dataTypes.put("bool", TokenCode.BOOL_TYPE);
-        this.dataTypes.put("double", TokenCode.DOUBLE_TYPE);
-    }
 }
@@ -1,5 +1,14 @@
-public class Statement {
+public abstract sealed class Statement
+        permits StatementIf, StatementEndIf, StatementWhile, StatementFor, StatementBreak, StatementPrint,
+                StatementRepeat, StatementCalc, ExpressionAssign, ExpressionAssignEnd, Expression {
 
-    String kind;
+    final StatementKind kind;  // tells the node classes apart with a switch on an enum
+    Token first, last;  // first and last token of a statement, set by the Parser (used for incremental reparsing)
+
+    Statement(StatementKind kind) {
+        this.kind = kind;
+    }
+
+    abstract <R> R accept(StatementVisitor<R> visitor);
 
 }
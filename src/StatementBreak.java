@@ -0,0 +1,12 @@
+public final class StatementBreak extends Statement {
+
+    public StatementBreak() {
+        super(StatementKind.BREAK_STATEMENT);
+    }
+
+    @Override
+    <R> R accept(StatementVisitor<R> visitor) {
+        return visitor.visitBreak(this);
+    }
+
+}
@@ -0,0 +1,16 @@
+import java.util.ArrayList;
+
+public final class StatementCalc extends Statement {
+
+    ArrayList<Expression> expressions;
+
+    public StatementCalc(ArrayList<Expression> expressions) {
+        super(StatementKind.CALC_STATEMENT);
+        this.expressions = expressions;
+    }
+
+    @Override
+    <R> R accept(StatementVisitor<R> visitor) {
+        return visitor.visitCalc(this);
+    }
+}
@@ -1,10 +1,14 @@
-public class StatementEndIf extends Statement {
+public final class StatementEndIf extends Statement {
 
     CommandSequence commandSequence;
 
     public StatementEndIf(CommandSequence cs) {
+        super(StatementKind.END_IF_STATEMENT);
         this.commandSequence = cs;
-        this.kind = StatementKind.END_IF_STATEMENT;
     }
 
+    @Override
+    <R> R accept(StatementVisitor<R> visitor) {
+        return visitor.visitEndIf(this);
+    }
 }
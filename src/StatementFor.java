@@ -1,4 +1,4 @@
-public class StatementFor extends Statement {
+public final class StatementFor extends Statement {
 
     ExpressionAssign first;
     ExpressionAssign second;
@@ -6,11 +6,15 @@ public class StatementFor extends Statement {
     CommandSequence commandSequence;
 
     public StatementFor(ExpressionAssign first, Expression expr, ExpressionAssign second, CommandSequence cs) {
+        super(StatementKind.FOR_STATEMENT);
         this.first = first;
         this.expression = expr;
         this.second = second;
         this.commandSequence = cs;
-        this.kind = StatementKind.FOR_STATEMENT;
     }
 
+    @Override
+    <R> R accept(StatementVisitor<R> visitor) {
+        return visitor.visitFor(this);
+    }
 }
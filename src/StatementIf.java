@@ -1,14 +1,18 @@
-public class StatementIf extends Statement {
+public final class StatementIf extends Statement {
 
     Expression expression;
     CommandSequence commandSequence;
     StatementEndIf endIfStatement;
 
     public StatementIf(Expression expr, CommandSequence cs, StatementEndIf endIf) {
+        super(StatementKind.IF_STATEMENT);
         this.expression = expr;
         this.commandSequence = cs;
         this.endIfStatement = endIf;
-        this.kind = StatementKind.IF_STATEMENT;
     }
 
+    @Override
+    <R> R accept(StatementVisitor<R> visitor) {
+        return visitor.visitIf(this);
+    }
 }
@@ -1,24 +1,37 @@
-public class StatementKind {
+public enum StatementKind {
 
     // Statements
-    public static final String IF_STATEMENT = "IF statement";
-    public static final String END_IF_STATEMENT = "ELSE statement/FI";
-    public static final String WHILE_STATEMENT = "WHILE statement";
-    public static final String FOR_STATEMENT = "FOR statement";
-    public static final String BREAK_STATEMENT = "BREAK statement";
-    public static final String PRINT_STATEMENT = "PRINT statement";
-    public static final String REPEAT_STATEMENT = "REPEAT statement";
-    public static final String CALC_STATEMENT = "CALC statement";
+    IF_STATEMENT("IF statement"),
+    END_IF_STATEMENT("ELSE statement/FI"),
+    WHILE_STATEMENT("WHILE statement"),
+    FOR_STATEMENT("FOR statement"),
+    BREAK_STATEMENT("BREAK statement"),
+    PRINT_STATEMENT("PRINT statement"),
+    REPEAT_STATEMENT("REPEAT statement"),
+    CALC_STATEMENT("CALC statement"),
 
     // Expressions
-    public static final String ASSIGN_EXPR = "ASSIGN expression";
-    public static final String ASSIGN_EXPR_END = "ASSIGN expression end";
-    public static final String BINARY_EXPR = "BINARY expression";
-    public static final String UNARY_EXPR = "UNARY expression";
+    ASSIGN_EXPR("ASSIGN expression"),
+    ASSIGN_EXPR_END("ASSIGN expression end"),
+    BINARY_EXPR("BINARY expression"),
+    UNARY_EXPR("UNARY expression"),
 
-    // Expressions 'endings'/terminals
-    public static final String CONSTANT = "CONSTANT";
-    public static final String IDENTIFIER = "IDENTIFIER";
-    public static final String READ_OPERATION = "READ operation";
+    // Expressions 'endings'/terminals, every constant is printed as a CONSTANT
+    INT_CONSTANT("CONSTANT"),
+    DOUBLE_CONSTANT("CONSTANT"),
+    BOOL_CONSTANT("CONSTANT"),
+    STRING_CONSTANT("CONSTANT"),
+    IDENTIFIER("IDENTIFIER"),
+    READ_OPERATION("READ operation");
 
+    private final String text;  // how the tree printers name it
+
+    StatementKind(String text) {
+        this.text = text;
+    }
+
+    @Override
+    public String toString() {
+        return this.text;
+    }
 }
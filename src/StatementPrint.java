@@ -1,10 +1,14 @@
-public class StatementPrint extends Statement {
+public final class StatementPrint extends Statement {
 
     Expression expression;
 
     public StatementPrint(Expression expression) {
+        super(StatementKind.PRINT_STATEMENT);
         this.expression = expression;
-        this.kind = StatementKind.PRINT_STATEMENT;
     }
 
+    @Override
+    <R> R accept(StatementVisitor<R> visitor) {
+        return visitor.visitPrint(this);
+    }
 }
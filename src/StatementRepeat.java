@@ -1,12 +1,16 @@
-public class StatementRepeat extends Statement {
+public final class StatementRepeat extends Statement {
 
     CommandSequence commandSequence;
     Expression expression;
 
     public StatementRepeat(CommandSequence cs, Expression expr) {
+        super(StatementKind.REPEAT_STATEMENT);
         this.commandSequence = cs;
         this.expression = expr;
-        this.kind = StatementKind.REPEAT_STATEMENT;
     }
 
+    @Override
+    <R> R accept(StatementVisitor<R> visitor) {
+        return visitor.visitRepeat(this);
+    }
 }
@@ -0,0 +1,40 @@
+public interface StatementVisitor<R> {
+
+    // One method per node class; Statement.accept() calls the one of its class
+
+    R visitIf(StatementIf statement);
+
+    R visitEndIf(StatementEndIf statement);
+
+    R visitWhile(StatementWhile statement);
+
+    R visitFor(StatementFor statement);
+
+    R visitBreak(StatementBreak statement);
+
+    R visitPrint(StatementPrint statement);
+
+    R visitRepeat(StatementRepeat statement);
+
+    R visitCalc(StatementCalc statement);
+
+    R visitAssign(ExpressionAssign assign);
+
+    R visitAssignEnd(ExpressionAssignEnd end);
+
+    R visitBinary(ExpressionBinary binary);
+
+    R visitUnary(ExpressionUnary unary);
+
+    R visitInt(IntConst constant);
+
+    R visitDouble(DoubleConst constant);
+
+    R visitBool(BoolConst constant);
+
+    R visitString(StringConst constant);
+
+    R visitIdentifier(ExpressionIdentifier identifier);
+
+    R visitRead(ExpressionRead read);
+}
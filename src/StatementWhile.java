@@ -1,12 +1,16 @@
-public class StatementWhile extends Statement {
+public final class StatementWhile extends Statement {
 
     Expression expression;
     CommandSequence commandSequence;
 
     public StatementWhile(Expression expression, CommandSequence cs) {
+        super(StatementKind.WHILE_STATEMENT);
         this.expression = expression;
         this.commandSequence = cs;
-        this.kind = StatementKind.WHILE_STATEMENT;
     }
 
+    @Override
+    <R> R accept(StatementVisitor<R> visitor) {
+        return visitor.visitWhile(this);
+    }
 }
@@ -0,0 +1,14 @@
+public final class StringConst extends Expression {
+
+    String value;  // without the quotes
+
+    StringConst(String value) {
+        super(StatementKind.STRING_CONSTANT);
+        this.value = value;
+    }
+
+    @Override
+    <R> R accept(StatementVisitor<R> visitor) {
+        return visitor.visitString(this);
+    }
+}
@@ -1,6 +1,5 @@
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.nio.file.Path;
 
 public class TestParser {
 
@@ -11,7 +10,12 @@ public class TestParser {
         path += "\\src\\test.txt";
 
         try {
-            Parser parser = new Parser(new Scanner(new InputStreamReader(new FileInputStream(path))));
+            Parser parser = new Parser(new Scanner(Scanner.map(Path.of(path))));
+            Program program = parser.parse();
+
+            // Print the AST/Parse tree/whatever the hell
+            parser.printProgram(program);
+            System.out.println();
             if (parser.getErrors() == 0) {
                 System.out.println("Parsing completed successfully.");
             }
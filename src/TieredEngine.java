@@ -0,0 +1,168 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.IdentityHashMap;
+import java.util.function.Consumer;
+
+public class TieredEngine {
+
+    /*
+    Runs a program in the Interpreter, which costs nothing to start, and moves the
+    loops that turn out to be hot to code of the JvmCompiler, which costs a class
+    to make but runs them at the speed of Java.
+
+    The Interpreter tells backEdge() every time an iteration of a WHILE, FOR or
+    REPEAT ends. Each loop counts its back edges; at the threshold it is compiled,
+    once, to start where an iteration ends, and from then on the next time one of
+    its iterations ends the Interpreter gives the variables to the compiled loop,
+    which runs the rest of it and gives them back. A loop inside a loop that is
+    still interpreted starts every time in the Interpreter and moves on after its
+    first iteration, until the loop around it is hot too and takes it along.
+
+    What happened is counted:
+        backEdges       the iterations the Interpreter ended
+        compiled        loops compiled
+        promotions      times a loop went on in its compiled code
+        failures        loops too large to compile, or that compiling failed on,
+                        which stay in the Interpreter
+        compileNanos    the time it took to compile them
+
+        java TieredEngine [-threshold n] [-counters] program.txt
+
+    runs a program with the standard input and output, and prints the counters to
+    the standard error if asked.
+     */
+
+    static final int THRESHOLD = 1000;  // back edges, before a loop is compiled
+
+    private final int threshold;
+    private Resolver resolver;
+    private final IdentityHashMap<Statement, Loop> loops = new IdentityHashMap<>();
+
+    private long backEdges;
+    private int compiled;
+    private long promotions;
+    private int failures;
+    private long compileNanos;
+
+    private static final class Loop {
+
+        int backEdges;
+        boolean tried;  // compiled, or found too large
+        JitProgram code;
+    }
+
+    public TieredEngine(int threshold) {
+        this.threshold = threshold;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int threshold = THRESHOLD;
+        boolean counters = false;
+        int arg = 0;
+        for (; arg < args.length - 1; arg++) {
+            switch (args[arg]) {
+                case "-threshold" -> threshold = Integer.parseInt(args[++arg]);
+                case "-counters" -> counters = true;
+                default -> throw new IllegalArgumentException("unknown option " + args[arg]);
+            }
+        }
+        if (arg != args.length - 1) {
+            System.out.println("Usage: java TieredEngine [-threshold n] [-counters] program.txt");
+            System.exit(2);
+        }
+        Parser parser = new Parser(new Scanner(Scanner.map(Path.of(args[arg]))));
+        Program program = parser.parse();
+        if (parser.getErrors() > 0) {
+            System.out.printf("There have been %d detected errors%n", parser.getErrors());
+            System.exit(1);
+        }
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        PrintStream out = new PrintStream(new BufferedOutputStream(System.out, 1 << 16), false);
+        TieredEngine engine = new TieredEngine(threshold);
+        boolean ran = engine.execute(program, in, out, System.err::println);
+        out.flush();
+        if (counters) {
+            System.err.println(engine.counters());
+        }
+        System.exit(ran ? 0 : 1);
+    }
+
+    public static boolean run(Program program, BufferedReader in, PrintStream out, Consumer<String> diagnostics) {
+        // like Interpreter.run
+        return new TieredEngine(THRESHOLD).execute(program, in, out, diagnostics);
+    }
+
+    public boolean execute(Program program, BufferedReader in, PrintStream out, Consumer<String> diagnostics) {
+        // run with this engine's threshold, and its counters
+        this.resolver = Resolver.resolve(program);
+        if (TypeChecker.check(program, diagnostics) > 0) {
+            return false;
+        }
+        return new Interpreter(this.resolver, in, out, diagnostics, this).run(program.commandSequence);
+    }
+
+    JitProgram backEdge(Statement statement) {
+        // an iteration of the loop ended in the Interpreter: the code to go on in, or null to go on there
+        this.backEdges++;
+        Loop loop = this.loops.get(statement);
+        if (loop == null) {
+            loop = new Loop();
+            this.loops.put(statement, loop);
+        }
+        if (loop.backEdges < this.threshold && ++loop.backEdges < this.threshold) {
+            return null;
+        }
+        if (!loop.tried) {
+            loop.tried = true;
+            long start = System.nanoTime();
+            try {
+                loop.code = JvmCompiler.compileLoop(statement, this.resolver);
+            } catch (RuntimeException | StackOverflowError e) {
+                loop.code = null;  // the Interpreter can still run it, it stays there
+            }
+            this.compileNanos += System.nanoTime() - start;
+            if (loop.code != null) {
+                this.compiled++;
+            }
+            else {
+                this.failures++;
+            }
+        }
+        if (loop.code != null) {
+            this.promotions++;
+        }
+        return loop.code;
+    }
+
+    //------------------- Counters ----------------------
+
+    public long backEdges() {
+        return this.backEdges;
+    }
+
+    public int compiled() {
+        return this.compiled;
+    }
+
+    public long promotions() {
+        return this.promotions;
+    }
+
+    public int failures() {
+        return this.failures;
+    }
+
+    public long compileNanos() {
+        return this.compileNanos;
+    }
+
+    public String counters() {
+        return String.format("threshold %d: %d back edges, %d loops compiled in %.1f ms, %d promotions, %d not compiled",
+                this.threshold, this.backEdges, this.compiled, this.compileNanos / 1e6, this.promotions, this.failures);
+    }
+}
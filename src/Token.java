@@ -1,3 +1,6 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
 public class Token {
 
 	public TokenCode kind;	// token kind
@@ -5,6 +8,20 @@ public class Token {
 	public int col;			// token column
 	public int intVal;		// token value for integers
 	public double doubleVal;// token value for doubles
-	public String string;	// for whatever
+	public int start;		// offset of the lexeme in the source buffer
+	public int length;		// length of the lexeme in bytes
+	String string;			// for whatever; made from the span on the first string() call
+	ByteBuffer source;		// buffer the span points into, null if there's no span to decode
+
+	public String string() {
+		// the lexeme (identifier name, string constant, ...), or null if the token has none
+		if (this.string == null && this.source != null) {
+			byte[] bytes = new byte[this.length];
+			this.source.get(this.start, bytes);
+			this.string = new String(bytes, StandardCharsets.UTF_8);
+			this.source = null;
+		}
+		return this.string;
+	}
 
 }
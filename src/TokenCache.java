@@ -0,0 +1,247 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.function.Consumer;
+
+public class TokenCache {
+
+    /*
+    Keeps the tokens of every source it has scanned in a directory, in a file named
+    after the SHA-256 of the source bytes, so an unchanged source is never scanned
+    again. The file is mapped and the tokens are made one at a time as the parser
+    asks for them; nothing is read up front.
+
+    File layout, all big endian:
+        header      MAGIC, VERSION, token count, string count, diagnostic count,
+                    offset of the string table, offset of the diagnostics
+        tokens      RECORD_SIZE bytes each: kind ordinal, string index or -1,
+                    line << 32 | col, and the value: intVal for an integer
+                    constant, the bits of doubleVal for a double constant
+        strings     an offset per string, then the strings, each as a length and UTF-8 bytes
+        diagnostics the index of the token they came before, then the message like a string
+
+    The scanner errors are kept with the index of the token they were reported for,
+    and are given out again right before that token, so the output is the same as
+    when scanning. Comments are not kept; they make no tokens. Neither are the
+    spans, the tokens from the cache have their string but no source to point into.
+     */
+
+    private static final int MAGIC = 0x544F4B43;  // "TOKC"
+    private static final int VERSION = 1;  // bump when the scanner or the layout changes
+    private static final int HEADER_SIZE = 7 * 4;
+    private static final int RECORD_SIZE = 4 + 4 + 8 + 8;
+    private static final TokenCode[] KINDS = TokenCode.values();
+
+    private final Path directory;
+
+    public TokenCache(Path directory) {
+        this.directory = directory;
+    }
+
+    public TokenSource open(Path file) throws IOException {
+        return this.open(Scanner.map(file), System.out::println);
+    }
+
+    public TokenSource open(ByteBuffer source, Consumer<String> diagnostics) throws IOException {
+        // the tokens of source, from the cache if it has them, else scanned and put in the cache
+        Path file = this.directory.resolve(hash(source) + ".tok");
+        if (!Files.isRegularFile(file)) {
+            Files.createDirectories(this.directory);
+            write(source, file);
+        }
+        CachedTokens tokens = read(file, diagnostics);
+        if (tokens == null) {
+            write(source, file);  // made by another version, scan it again
+            tokens = read(file, diagnostics);
+        }
+        return tokens;
+    }
+
+    static String hash(ByteBuffer source) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(source.duplicate());
+            StringBuilder name = new StringBuilder();
+            for (byte b : digest.digest()) {
+                name.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return name.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);  // every JVM has to provide it
+        }
+    }
+
+    private static void write(ByteBuffer source, Path file) throws IOException {
+        // scan the whole source, then write it next to file and move it there, so readers never see half a file
+        ArrayList<Token> tokens = new ArrayList<>();
+        ArrayList<String> messages = new ArrayList<>();
+        ArrayList<Integer> messageTokens = new ArrayList<>();
+        Scanner scanner = new Scanner(source.duplicate());
+        scanner.setDiagnostics(message -> {
+            messages.add(message);
+            messageTokens.add(tokens.size());
+        });
+        Token t;
+        do {
+            t = scanner.nextToken();
+            if (t != null) {
+                tokens.add(t);
+            }
+        } while (t == null || t.kind != TokenCode.EOF);
+
+        ArrayList<byte[]> strings = new ArrayList<>();
+        HashMap<String, Integer> stringIndex = new HashMap<>();
+        int[] tokenStrings = new int[tokens.size()];
+        for (int i = 0; i < tokens.size(); i++) {
+            String string = tokens.get(i).string();
+            tokenStrings[i] = -1;
+            if (string != null) {
+                Integer index = stringIndex.get(string);
+                if (index == null) {
+                    index = strings.size();
+                    stringIndex.put(string, index);
+                    strings.add(string.getBytes(StandardCharsets.UTF_8));
+                }
+                tokenStrings[i] = index;
+            }
+        }
+        int stringsOffset = HEADER_SIZE + tokens.size() * RECORD_SIZE;
+        int stringsSize = strings.size() * 4;
+        for (byte[] string : strings) {
+            stringsSize += 4 + string.length;
+        }
+
+        Path temporary = Files.createTempFile(file.getParent(), "scan", ".tmp");
+        try (OutputStream stream = Files.newOutputStream(temporary);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(tokens.size());
+            out.writeInt(strings.size());
+            out.writeInt(messages.size());
+            out.writeInt(stringsOffset);
+            out.writeInt(stringsOffset + stringsSize);
+            for (int i = 0; i < tokens.size(); i++) {
+                Token token = tokens.get(i);
+                out.writeInt(token.kind.ordinal());
+                out.writeInt(tokenStrings[i]);
+                out.writeLong((long) token.line << 32 | (token.col & 0xFFFFFFFFL));
+                out.writeLong(token.kind == TokenCode.DOUBLE_CONSTANT ? Double.doubleToRawLongBits(token.doubleVal) : token.intVal);
+            }
+            int offset = stringsOffset + strings.size() * 4;
+            for (byte[] string : strings) {
+                out.writeInt(offset);
+                offset += 4 + string.length;
+            }
+            for (byte[] string : strings) {
+                out.writeInt(string.length);
+                out.write(string);
+            }
+            for (int i = 0; i < messages.size(); i++) {
+                byte[] message = messages.get(i).getBytes(StandardCharsets.UTF_8);
+                out.writeInt(messageTokens.get(i));
+                out.writeInt(message.length);
+                out.write(message);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static CachedTokens read(Path file, Consumer<String> diagnostics) throws IOException {
+        // map a cache file, or null if it isn't one this version can read
+        ByteBuffer data;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (data.limit() < HEADER_SIZE || data.getInt(0) != MAGIC || data.getInt(4) != VERSION) {
+            return null;
+        }
+        return new CachedTokens(data, diagnostics);
+    }
+
+    private static class CachedTokens implements TokenSource {
+
+        private final ByteBuffer data;
+        private final int count;
+        private final String[] strings;  // decoded when a token first needs them, then shared like the names
+        private final int stringsOffset;
+        private final Consumer<String> diagnostics;
+        private int diagnosticsLeft;
+        private int diagnosticOffset;  // of the next diagnostic to report
+        private int next;  // index of the token nextToken() makes
+        private Token last;  // EOF, once it has been made
+
+        CachedTokens(ByteBuffer data, Consumer<String> diagnostics) {
+            this.data = data;
+            this.count = data.getInt(8);
+            this.strings = new String[data.getInt(12)];
+            this.diagnosticsLeft = data.getInt(16);
+            this.stringsOffset = data.getInt(20);
+            this.diagnosticOffset = data.getInt(24);
+            this.diagnostics = diagnostics;
+        }
+
+        @Override
+        public Token nextToken() {
+            if (this.next == this.count) {
+                return this.last;
+            }
+            while (this.diagnosticsLeft > 0 && this.data.getInt(this.diagnosticOffset) == this.next) {
+                int length = this.data.getInt(this.diagnosticOffset + 4);
+                this.diagnostics.accept(this.decode(this.diagnosticOffset + 8, length));
+                this.diagnosticOffset += 8 + length;
+                this.diagnosticsLeft--;
+            }
+            int record = HEADER_SIZE + this.next * RECORD_SIZE;
+            Token t = new Token();
+            t.kind = KINDS[this.data.getInt(record)];
+            int string = this.data.getInt(record + 4);
+            if (string >= 0) {
+                t.string = this.string(string);
+            }
+            long position = this.data.getLong(record + 8);
+            t.line = (int) (position >>> 32);
+            t.col = (int) position;
+            long value = this.data.getLong(record + 16);
+            if (t.kind == TokenCode.DOUBLE_CONSTANT) {
+                t.doubleVal = Double.longBitsToDouble(value);
+            }
+            else {
+                t.intVal = (int) value;
+            }
+            if (++this.next == this.count) {
+                this.last = t;
+            }
+            return t;
+        }
+
+        private String string(int index) {
+            if (this.strings[index] == null) {
+                int offset = this.data.getInt(this.stringsOffset + index * 4);
+                this.strings[index] = this.decode(offset + 4, this.data.getInt(offset));
+            }
+            return this.strings[index];
+        }
+
+        private String decode(int offset, int length) {
+            byte[] bytes = new byte[length];
+            this.data.get(offset, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
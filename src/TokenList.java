@@ -0,0 +1,36 @@
+import java.util.Arrays;
+
+public class TokenList implements TokenSource {
+
+    // Tokens that have already been scanned, handed out one by one. The last token is EOF.
+    private Token[] tokens;
+    private int size;
+    private int next;  // index of the token nextToken() returns
+
+    public TokenList() {
+        this.tokens = new Token[256];
+    }
+
+    public void add(Token token) {
+        if (this.size == this.tokens.length) {
+            this.tokens = Arrays.copyOf(this.tokens, this.size * 2);
+        }
+        this.tokens[this.size++] = token;
+    }
+
+    public Token get(int index) {
+        return this.tokens[index];
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public Token nextToken() {
+        if (this.next < this.size) {
+            return this.tokens[this.next++];
+        }
+        return this.tokens[this.size - 1];  // EOF
+    }
+}
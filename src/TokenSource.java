@@ -0,0 +1,7 @@
+public interface TokenSource {
+
+    // Anything the Parser can pull tokens from: a Scanner, or tokens that have been scanned already.
+    // Like Scanner.nextToken(), it may return null for a comment, and keeps returning EOF at the end.
+    Token nextToken();
+
+}
@@ -0,0 +1,267 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+public class TypeChecker {
+
+    /*
+    Gives every expression of a resolved program its type (Expression.type) and
+    reports what doesn't fit, the way the parser reports its errors. The rules:
+
+        || &&               bool operands, a bool
+        == !=               two numbers, or two values of the same type, a bool
+        < <= > >=           two numbers, a bool
+        +                   a string if either operand is one (the other is converted), else like -
+        - * / %             two numbers, an integer if both are, else a double
+        unary -, !          a number, a bool
+        x = e               e of the type of x, or an integer for a double x
+        x = c ? e1 : e2     a bool c, e1 and e2 like e
+        IF WHILE FOR UNTIL  bool conditions
+        BREAK               only inside a loop
+
+    An expression whose type can't be known, an undeclared identifier or one with an
+    error in it, gets no type and takes its parents along without more errors. An
+    expression that already has a type is left as it is: the nodes an interner
+    shares are typed once, and their type is the same wherever they are used.
+     */
+
+    private final Consumer<String> diagnostics;
+    private int errors;
+    private int loops;  // loops around the statement being checked
+    private Statement current;  // the statement errors are reported at
+
+    // the expression walk, like the Resolver's
+    private Expression[] stack = new Expression[64];
+    private boolean[] visited = new boolean[64];
+
+    private TypeChecker(Consumer<String> diagnostics) {
+        this.diagnostics = diagnostics;
+    }
+
+    public static int check(Program program, Consumer<String> diagnostics) {
+        // the number of errors; the program must have been resolved
+        TypeChecker checker = new TypeChecker(diagnostics);
+        checker.check(program.commandSequence);
+        return checker.errors;
+    }
+
+    static ValueType binaryType(Operator operator, ValueType left, ValueType right) {
+        // the type of the operator on operands of those types, null if it can't be applied
+        return switch (operator) {
+            case OR, AND -> left == ValueType.BOOL && right == ValueType.BOOL ? ValueType.BOOL : null;
+            case EQUAL, NOT_EQUAL -> left == right || left.isNumeric() && right.isNumeric() ? ValueType.BOOL : null;
+            case LESS, LESS_EQUAL, GREATER, GREATER_EQUAL -> left.isNumeric() && right.isNumeric() ? ValueType.BOOL : null;
+            case PLUS -> left == ValueType.STRING || right == ValueType.STRING ? ValueType.STRING : arithmetic(left, right);
+            case MINUS, MULTIPLY, DIVIDE, MOD -> arithmetic(left, right);
+            case NOT -> null;
+        };
+    }
+
+    static ValueType unaryType(Operator operator, ValueType operand) {
+        return switch (operator) {
+            case MINUS -> operand.isNumeric() ? operand : null;
+            case NOT -> operand == ValueType.BOOL ? ValueType.BOOL : null;
+            default -> null;
+        };
+    }
+
+    static boolean assignable(ValueType variable, ValueType value) {
+        return variable == value || variable == ValueType.DOUBLE && value == ValueType.INTEGER;
+    }
+
+    private static ValueType arithmetic(ValueType left, ValueType right) {
+        if (!left.isNumeric() || !right.isNumeric()) {
+            return null;
+        }
+        return left == ValueType.INTEGER && right == ValueType.INTEGER ? ValueType.INTEGER : ValueType.DOUBLE;
+    }
+
+    //------------------- Statements ----------------------
+
+    private void check(CommandSequence commandSequence) {
+        if (commandSequence == null) {
+            return;
+        }
+        ArrayList<Statement> statements = commandSequence.statements;
+        for (int i = 0; i < statements.size(); i++) {
+            Statement statement = statements.get(i);
+            if (statement != null) {
+                this.current = statement;
+                this.check(statement);
+            }
+        }
+    }
+
+    private void check(Statement statement) {
+        switch (statement.kind) {
+            case IF_STATEMENT -> {
+                StatementIf ifStatement = (StatementIf) statement;
+                this.condition(ifStatement.expression, "IF");
+                this.check(ifStatement.commandSequence);
+                if (ifStatement.endIfStatement != null) {
+                    this.check(ifStatement.endIfStatement.commandSequence);
+                }
+            }
+            case WHILE_STATEMENT -> {
+                StatementWhile whileStatement = (StatementWhile) statement;
+                this.condition(whileStatement.expression, "WHILE");
+                this.loop(whileStatement.commandSequence);
+            }
+            case FOR_STATEMENT -> {
+                StatementFor forStatement = (StatementFor) statement;
+                this.checkAssign(forStatement.first);
+                this.condition(forStatement.expression, "FOR");
+                this.checkAssign(forStatement.second);
+                this.loop(forStatement.commandSequence);
+            }
+            case BREAK_STATEMENT -> {
+                if (this.loops == 0) {
+                    this.error("BREAK outside of a loop");
+                }
+            }
+            case PRINT_STATEMENT -> this.check(((StatementPrint) statement).expression);
+            case REPEAT_STATEMENT -> {
+                StatementRepeat repeatStatement = (StatementRepeat) statement;
+                this.loop(repeatStatement.commandSequence);
+                this.condition(repeatStatement.expression, "UNTIL");
+            }
+            case CALC_STATEMENT -> {
+                for (Expression expression : ((StatementCalc) statement).expressions) {
+                    this.check(expression);
+                }
+            }
+            case ASSIGN_EXPR -> this.checkAssign((ExpressionAssign) statement);
+            default -> {
+                if (statement instanceof Expression expression) {
+                    this.check(expression);
+                }
+            }
+        }
+    }
+
+    private void loop(CommandSequence body) {
+        Statement loop = this.current;
+        this.loops++;
+        this.check(body);
+        this.loops--;
+        this.current = loop;
+    }
+
+    private void condition(Expression expression, String statement) {
+        ValueType type = this.check(expression);
+        if (type != null && type != ValueType.BOOL) {
+            this.error("The condition of " + statement + " must be bool, not " + type);
+        }
+    }
+
+    private void checkAssign(ExpressionAssign assign) {
+        if (assign == null) {
+            return;
+        }
+        if (assign.end == null) {
+            this.checkValue(assign, this.check(assign.expression));
+        }
+        else {
+            this.condition(assign.expression, "?");
+            this.checkValue(assign, this.check(assign.end.first));
+            this.checkValue(assign, this.check(assign.end.second));
+        }
+    }
+
+    private void checkValue(ExpressionAssign assign, ValueType value) {
+        if (assign.type != null && value != null && !assignable(assign.type, value)) {
+            this.error("Can't assign " + value + " to " + assign.identifier + ", which is " + assign.type);
+        }
+    }
+
+    //------------------- Expressions ----------------------
+
+    private ValueType check(Expression root) {
+        // the type of root, after typing everything in it that isn't typed yet; without recursion
+        int top = 0;
+        this.push(top++, root);
+        while (top > 0) {
+            Expression expression = this.stack[top - 1];
+            if (expression == null || expression.type != null) {
+                top--;
+                continue;
+            }
+            if (!this.visited[top - 1]) {
+                if (expression instanceof ExpressionBinary binary) {
+                    this.visited[top - 1] = true;
+                    this.push(top++, binary.right);
+                    this.push(top++, binary.left);
+                    continue;
+                }
+                if (expression instanceof ExpressionUnary unary) {
+                    this.visited[top - 1] = true;
+                    this.push(top++, unary.operand);
+                    continue;
+                }
+            }
+            this.stack[--top] = null;
+            expression.type = this.type(expression);
+        }
+        return root == null ? null : root.type;
+    }
+
+    private ValueType type(Expression expression) {
+        // the type of an expression whose operands are typed
+        return switch (expression.kind) {
+            case INT_CONSTANT -> ValueType.INTEGER;
+            case DOUBLE_CONSTANT -> ValueType.DOUBLE;
+            case BOOL_CONSTANT -> ValueType.BOOL;
+            case STRING_CONSTANT -> ValueType.STRING;
+            case READ_OPERATION -> switch (((ExpressionRead) expression).operation) {
+                case READINT -> ValueType.INTEGER;
+                case READDOUBLE -> ValueType.DOUBLE;
+                case READBOOL -> ValueType.BOOL;
+                default -> ValueType.STRING;
+            };
+            case BINARY_EXPR -> {
+                ExpressionBinary binary = (ExpressionBinary) expression;
+                if (binary.left == null || binary.right == null || binary.left.type == null || binary.right.type == null) {
+                    yield null;
+                }
+                ValueType type = binaryType(binary.operator, binary.left.type, binary.right.type);
+                if (type == null) {
+                    this.error("Operator " + binary.operator + " can't be applied to " + binary.left.type
+                            + " and " + binary.right.type);
+                }
+                yield type;
+            }
+            case UNARY_EXPR -> {
+                ExpressionUnary unary = (ExpressionUnary) expression;
+                if (unary.operand == null || unary.operand.type == null) {
+                    yield null;
+                }
+                ValueType type = unaryType(unary.operator, unary.operand.type);
+                if (type == null) {
+                    this.error("Operator " + unary.operator + " can't be applied to " + unary.operand.type);
+                }
+                yield type;
+            }
+            default -> null;  // an identifier the Resolver didn't find
+        };
+    }
+
+    private void push(int index, Expression expression) {
+        if (index == this.stack.length) {
+            this.stack = Arrays.copyOf(this.stack, index * 2);
+            this.visited = Arrays.copyOf(this.visited, index * 2);
+        }
+        this.stack[index] = expression;
+        this.visited[index] = false;
+    }
+
+    private void error(String message) {
+        Token token = this.current == null ? null : this.current.first;
+        if (token != null) {
+            this.diagnostics.accept("-- line " + token.line + " col " + token.col + ": " + message);
+        }
+        else {
+            this.diagnostics.accept("-- " + message);
+        }
+        this.errors++;
+    }
+}
@@ -0,0 +1,35 @@
+public enum ValueType {
+
+    // The types a variable can be declared with, in the order of their slot arrays
+
+    INTEGER("integer"),
+    DOUBLE("double"),
+    BOOL("bool"),
+    STRING("string");
+
+    private final String keyword;  // how the source names it, for the error messages
+
+    ValueType(String keyword) {
+        this.keyword = keyword;
+    }
+
+    public static ValueType of(String type) {
+        // the type of a Declaration.type, null for the type the parser makes up after an error
+        return switch (type) {
+            case "INTEGER_TYPE" -> INTEGER;
+            case "DOUBLE_TYPE" -> DOUBLE;
+            case "BOOL_TYPE" -> BOOL;
+            case "STRING_TYPE" -> STRING;
+            default -> null;
+        };
+    }
+
+    public boolean isNumeric() {
+        return this == INTEGER || this == DOUBLE;
+    }
+
+    @Override
+    public String toString() {
+        return this.keyword;
+    }
+}
@@ -0,0 +1,286 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+public class VirtualMachine {
+
+    /*
+    Runs Bytecode: one loop that takes the opcode at pc and does it, on registers
+    copied from the ones the Bytecode starts with, so it can be run again. What it
+    prints and the errors it reports are the Interpreter's, to the letter; a runtime
+    error is reported at the statement of the instruction it happened in.
+
+        java VirtualMachine [-disassemble] program.txt
+
+    runs a program with the standard input and output, or prints its Bytecode.
+     */
+
+    private final Bytecode bytecode;
+    private final BufferedReader in;
+    private final PrintStream out;
+    private final Consumer<String> diagnostics;
+
+    public VirtualMachine(Bytecode bytecode, BufferedReader in, PrintStream out, Consumer<String> diagnostics) {
+        this.bytecode = bytecode;
+        this.in = in;
+        this.out = out;
+        this.diagnostics = diagnostics;
+    }
+
+    public static void main(String[] args) throws IOException {
+        boolean disassemble = args.length > 0 && args[0].equals("-disassemble");
+        if (args.length != (disassemble ? 2 : 1)) {
+            System.out.println("Usage: java VirtualMachine [-disassemble] program.txt");
+            System.exit(2);
+        }
+        Parser parser = new Parser(new Scanner(Scanner.map(Path.of(args[disassemble ? 1 : 0]))));
+        Program program = parser.parse();
+        if (parser.getErrors() > 0) {
+            System.out.printf("There have been %d detected errors%n", parser.getErrors());
+            System.exit(1);
+        }
+        Resolver resolver = Resolver.resolve(program);
+        if (TypeChecker.check(program, System.err::println) > 0) {
+            System.exit(1);
+        }
+        Bytecode bytecode = BytecodeCompiler.compile(program, resolver);
+        PrintStream out = new PrintStream(new BufferedOutputStream(System.out, 1 << 16), false);
+        boolean ran = true;
+        if (disassemble) {
+            bytecode.disassemble(out);
+        }
+        else {
+            BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+            ran = new VirtualMachine(bytecode, in, out, System.err::println).run();
+        }
+        out.flush();
+        System.exit(ran ? 0 : 1);
+    }
+
+    public static boolean run(Program program, BufferedReader in, PrintStream out, Consumer<String> diagnostics) {
+        // like Interpreter.run
+        Resolver resolver = Resolver.resolve(program);
+        if (TypeChecker.check(program, diagnostics) > 0) {
+            return false;
+        }
+        return new VirtualMachine(BytecodeCompiler.compile(program, resolver), in, out, diagnostics).run();
+    }
+
+    public boolean run() {
+        // false if there was a runtime error
+        int[] code = this.bytecode.code;
+        int[] i = this.bytecode.integers.clone();
+        double[] d = this.bytecode.doubles.clone();
+        String[] s = this.bytecode.strings.clone();
+        PrintStream out = this.out;
+        int pc = 0;
+        try {
+            while (true) {
+                // pc moves past an instruction when it is done, so an error is at the instruction
+                switch (code[pc]) {
+                    case Bytecode.HALT -> {
+                        return true;
+                    }
+                    case Bytecode.JMP -> pc = code[pc + 1];
+                    case Bytecode.JMPT -> pc = i[code[pc + 1]] != 0 ? code[pc + 2] : pc + 3;
+                    case Bytecode.JMPF -> pc = i[code[pc + 1]] == 0 ? code[pc + 2] : pc + 3;
+                    case Bytecode.IMOV -> {
+                        i[code[pc + 1]] = i[code[pc + 2]];
+                        pc += 3;
+                    }
+                    case Bytecode.DMOV -> {
+                        d[code[pc + 1]] = d[code[pc + 2]];
+                        pc += 3;
+                    }
+                    case Bytecode.SMOV -> {
+                        s[code[pc + 1]] = s[code[pc + 2]];
+                        pc += 3;
+                    }
+                    case Bytecode.IADD -> {
+                        i[code[pc + 1]] = i[code[pc + 2]] + i[code[pc + 3]];
+                        pc += 4;
+                    }
+                    case Bytecode.ISUB -> {
+                        i[code[pc + 1]] = i[code[pc + 2]] - i[code[pc + 3]];
+                        pc += 4;
+                    }
+                    case Bytecode.IMUL -> {
+                        i[code[pc + 1]] = i[code[pc + 2]] * i[code[pc + 3]];
+                        pc += 4;
+                    }
+                    case Bytecode.IDIV -> {
+                        i[code[pc + 1]] = i[code[pc + 2]] / i[code[pc + 3]];
+                        pc += 4;
+                    }
+                    case Bytecode.IMOD -> {
+                        i[code[pc + 1]] = i[code[pc + 2]] % i[code[pc + 3]];
+                        pc += 4;
+                    }
+                    case Bytecode.INEG -> {
+                        i[code[pc + 1]] = -i[code[pc + 2]];
+                        pc += 3;
+                    }
+                    case Bytecode.DADD -> {
+                        d[code[pc + 1]] = d[code[pc + 2]] + d[code[pc + 3]];
+                        pc += 4;
+                    }
+                    case Bytecode.DSUB -> {
+                        d[code[pc + 1]] = d[code[pc + 2]] - d[code[pc + 3]];
+                        pc += 4;
+                    }
+                    case Bytecode.DMUL -> {
+                        d[code[pc + 1]] = d[code[pc + 2]] * d[code[pc + 3]];
+                        pc += 4;
+                    }
+                    case Bytecode.DDIV -> {
+                        d[code[pc + 1]] = d[code[pc + 2]] / d[code[pc + 3]];
+                        pc += 4;
+                    }
+                    case Bytecode.DMOD -> {
+                        d[code[pc + 1]] = d[code[pc + 2]] % d[code[pc + 3]];
+                        pc += 4;
+                    }
+                    case Bytecode.DNEG -> {
+                        d[code[pc + 1]] = -d[code[pc + 2]];
+                        pc += 3;
+                    }
+                    case Bytecode.I2D -> {
+                        d[code[pc + 1]] = i[code[pc + 2]];
+                        pc += 3;
+                    }
+                    case Bytecode.NOT -> {
+                        i[code[pc + 1]] = i[code[pc + 2]] ^ 1;
+                        pc += 3;
+                    }
+                    case Bytecode.ILT -> {
+                        i[code[pc + 1]] = i[code[pc + 2]] < i[code[pc + 3]] ? 1 : 0;
+                        pc += 4;
+                    }
+                    case Bytecode.ILE -> {
+                        i[code[pc + 1]] = i[code[pc + 2]] <= i[code[pc + 3]] ? 1 : 0;
+                        pc += 4;
+                    }
+                    case Bytecode.IGT -> {
+                        i[code[pc + 1]] = i[code[pc + 2]] > i[code[pc + 3]] ? 1 : 0;
+                        pc += 4;
+                    }
+                    case Bytecode.IGE -> {
+                        i[code[pc + 1]] = i[code[pc + 2]] >= i[code[pc + 3]] ? 1 : 0;
+                        pc += 4;
+                    }
+                    case Bytecode.IEQ -> {
+                        i[code[pc + 1]] = i[code[pc + 2]] == i[code[pc + 3]] ? 1 : 0;
+                        pc += 4;
+                    }
+                    case Bytecode.INE -> {
+                        i[code[pc + 1]] = i[code[pc + 2]] != i[code[pc + 3]] ? 1 : 0;
+                        pc += 4;
+                    }
+                    case Bytecode.DLT -> {
+                        i[code[pc + 1]] = d[code[pc + 2]] < d[code[pc + 3]] ? 1 : 0;
+                        pc += 4;
+                    }
+                    case Bytecode.DLE -> {
+                        i[code[pc + 1]] = d[code[pc + 2]] <= d[code[pc + 3]] ? 1 : 0;
+                        pc += 4;
+                    }
+                    case Bytecode.DGT -> {
+                        i[code[pc + 1]] = d[code[pc + 2]] > d[code[pc + 3]] ? 1 : 0;
+                        pc += 4;
+                    }
+                    case Bytecode.DGE -> {
+                        i[code[pc + 1]] = d[code[pc + 2]] >= d[code[pc + 3]] ? 1 : 0;
+                        pc += 4;
+                    }
+                    case Bytecode.DEQ -> {
+                        i[code[pc + 1]] = d[code[pc + 2]] == d[code[pc + 3]] ? 1 : 0;
+                        pc += 4;
+                    }
+                    case Bytecode.DNE -> {
+                        i[code[pc + 1]] = d[code[pc + 2]] != d[code[pc + 3]] ? 1 : 0;
+                        pc += 4;
+                    }
+                    case Bytecode.SEQ -> {
+                        i[code[pc + 1]] = s[code[pc + 2]].equals(s[code[pc + 3]]) ? 1 : 0;
+                        pc += 4;
+                    }
+                    case Bytecode.SNE -> {
+                        i[code[pc + 1]] = s[code[pc + 2]].equals(s[code[pc + 3]]) ? 0 : 1;
+                        pc += 4;
+                    }
+                    case Bytecode.SCONCAT -> {
+                        s[code[pc + 1]] = s[code[pc + 2]].concat(s[code[pc + 3]]);
+                        pc += 4;
+                    }
+                    case Bytecode.I2S -> {
+                        s[code[pc + 1]] = String.valueOf(i[code[pc + 2]]);
+                        pc += 3;
+                    }
+                    case Bytecode.D2S -> {
+                        s[code[pc + 1]] = String.valueOf(d[code[pc + 2]]);
+                        pc += 3;
+                    }
+                    case Bytecode.B2S -> {
+                        s[code[pc + 1]] = String.valueOf(i[code[pc + 2]] != 0);
+                        pc += 3;
+                    }
+                    case Bytecode.ICMP_LT_JMP -> pc = i[code[pc + 1]] < i[code[pc + 2]] ? code[pc + 3] : pc + 4;
+                    case Bytecode.ICMP_LE_JMP -> pc = i[code[pc + 1]] <= i[code[pc + 2]] ? code[pc + 3] : pc + 4;
+                    case Bytecode.ICMP_GT_JMP -> pc = i[code[pc + 1]] > i[code[pc + 2]] ? code[pc + 3] : pc + 4;
+                    case Bytecode.ICMP_GE_JMP -> pc = i[code[pc + 1]] >= i[code[pc + 2]] ? code[pc + 3] : pc + 4;
+                    case Bytecode.ICMP_EQ_JMP -> pc = i[code[pc + 1]] == i[code[pc + 2]] ? code[pc + 3] : pc + 4;
+                    case Bytecode.ICMP_NE_JMP -> pc = i[code[pc + 1]] != i[code[pc + 2]] ? code[pc + 3] : pc + 4;
+                    case Bytecode.DCMP_LT_JMP -> pc = d[code[pc + 1]] < d[code[pc + 2]] ? code[pc + 3] : pc + 4;
+                    case Bytecode.DCMP_LE_JMP -> pc = d[code[pc + 1]] <= d[code[pc + 2]] ? code[pc + 3] : pc + 4;
+                    case Bytecode.DCMP_GT_JMP -> pc = d[code[pc + 1]] > d[code[pc + 2]] ? code[pc + 3] : pc + 4;
+                    case Bytecode.DCMP_GE_JMP -> pc = d[code[pc + 1]] >= d[code[pc + 2]] ? code[pc + 3] : pc + 4;
+                    case Bytecode.DCMP_EQ_JMP -> pc = d[code[pc + 1]] == d[code[pc + 2]] ? code[pc + 3] : pc + 4;
+                    case Bytecode.DCMP_NE_JMP -> pc = d[code[pc + 1]] != d[code[pc + 2]] ? code[pc + 3] : pc + 4;
+                    case Bytecode.IPRINT -> {
+                        out.println(i[code[pc + 1]]);
+                        pc += 2;
+                    }
+                    case Bytecode.DPRINT -> {
+                        out.println(d[code[pc + 1]]);
+                        pc += 2;
+                    }
+                    case Bytecode.BPRINT -> {
+                        out.println(i[code[pc + 1]] != 0);
+                        pc += 2;
+                    }
+                    case Bytecode.SPRINT -> {
+                        out.println(s[code[pc + 1]]);
+                        pc += 2;
+                    }
+                    case Bytecode.READI -> {
+                        i[code[pc + 1]] = Interpreter.readInt(Interpreter.readLine(this.in, TokenCode.READINT));
+                        pc += 2;
+                    }
+                    case Bytecode.READD -> {
+                        d[code[pc + 1]] = Interpreter.readDouble(Interpreter.readLine(this.in, TokenCode.READDOUBLE));
+                        pc += 2;
+                    }
+                    case Bytecode.READB -> {
+                        i[code[pc + 1]] = Interpreter.readBool(Interpreter.readLine(this.in, TokenCode.READBOOL)) ? 1 : 0;
+                        pc += 2;
+                    }
+                    case Bytecode.READS -> {
+                        s[code[pc + 1]] = Interpreter.readLine(this.in, TokenCode.READSTRING);
+                        pc += 2;
+                    }
+                    default -> throw new IllegalStateException("bad opcode " + code[pc] + " at " + pc);
+                }
+            }
+        } catch (ArithmeticException | Interpreter.RuntimeError e) {
+            int line = this.bytecode.line(pc);
+            String at = line < 0 ? "-- " : "-- line " + this.bytecode.lines[line + 1] + " col " + this.bytecode.lines[line + 2] + ": ";
+            this.diagnostics.accept(at + "runtime error: " + Interpreter.message(e));
+            return false;
+        }
+    }
+}